@@ -30,7 +30,7 @@ fun main() {
     printLn("A área é " + (PI * raio * raio));
     printLn("");
 
-    print("Deseja continuar? (true/false) ");
+    print("Deseja continuar? (\"true\"/\"false\")\t");
     maisUm = readBoolean();
   }
 }
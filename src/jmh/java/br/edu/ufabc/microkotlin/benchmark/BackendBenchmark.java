@@ -0,0 +1,88 @@
+package br.edu.ufabc.microkotlin.benchmark;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.TimeUnit;
+import javax.tools.JavaCompiler;
+import javax.tools.ToolProvider;
+import org.openjdk.jmh.annotations.*;
+import br.edu.ufabc.microkotlin.BytecodeCompiler;
+import br.edu.ufabc.microkotlin.Diagnostics;
+import br.edu.ufabc.microkotlin.Parser;
+import br.edu.ufabc.microkotlin.Resolver;
+import br.edu.ufabc.microkotlin.Scanner;
+import br.edu.ufabc.microkotlin.ScannerTokenStream;
+import br.edu.ufabc.microkotlin.Transpiler;
+import br.edu.ufabc.microkotlin.TypeChecker;
+import br.edu.ufabc.microkotlin.program.Program;
+
+/**
+ * Compara o tempo de ponta a ponta, do código MicroKotlin até a
+ * classe executável, gerando código Java e compilando-o com o javac
+ * (já carregado na mesma JVM) ou gerando o .class diretamente.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class BackendBenchmark {
+
+  @Param({
+    "CalculoArea.kt", "Fatorial.kt", "Fibonacci.kt", "Piramide.kt", "64KB"
+  })
+  public String input;
+
+  private String sourceCode;
+  private Path directory;
+  private JavaCompiler javac;
+  private ByteArrayOutputStream discard;
+
+  @Setup(Level.Trial)
+  public void setup() throws IOException {
+    sourceCode = Sources.load(input);
+    directory = Files.createTempDirectory("microkotlin");
+    javac = ToolProvider.getSystemJavaCompiler();
+    discard = new ByteArrayOutputStream();
+  }
+
+  @TearDown(Level.Trial)
+  public void tearDown() throws IOException {
+    for (File child : directory.toFile().listFiles()) {
+      Files.delete(child.toPath());
+    }
+    Files.delete(directory);
+  }
+
+  private Program parse(Diagnostics diagnostics) {
+    Scanner scanner = new Scanner(sourceCode, diagnostics);
+    Program program =
+        new Parser(new ScannerTokenStream(scanner), diagnostics).parse();
+    new Resolver(diagnostics).resolve(program);
+    new TypeChecker(diagnostics).check(program);
+    return program;
+  }
+
+  @Benchmark
+  public int javaSource() throws IOException {
+    Diagnostics diagnostics = new Diagnostics();
+    String output = directory.resolve("Benchmark.java").toString();
+    new Transpiler(output, diagnostics).transpile(parse(diagnostics));
+
+    discard.reset();
+    return javac.run(null, discard, discard,
+        "-d", directory.toString(), output);
+  }
+
+  @Benchmark
+  public byte[] bytecode() {
+    Diagnostics diagnostics = new Diagnostics();
+    String output = directory.resolve("Benchmark.class").toString();
+    return new BytecodeCompiler(output, diagnostics).compile(parse(diagnostics));
+  }
+
+}
@@ -0,0 +1,104 @@
+package br.edu.ufabc.microkotlin.benchmark;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.PrintStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.*;
+import br.edu.ufabc.microkotlin.Options;
+import br.edu.ufabc.microkotlin.ProgramRunner;
+
+/**
+ * Mede um programa que constrói uma String concatenando um caractere
+ * por vez em um laço, com e sem a otimização que guarda a variável
+ * em um StringBuilder. Sem ela, cada concatenação copia a String
+ * inteira e o tempo cresce com o quadrado do tamanho; com ela, cresce
+ * linearmente. Inclui a geração do código e o carregamento da classe.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class ConcatBenchmark {
+
+  private static final String PROGRAM = String.join("\n",
+      "fun main() {",
+      "  var n: Int = readInt();",
+      "  var line: String = \"\";",
+      "  var i: Int = 0;",
+      "  while (i < n) {",
+      "    line = line + \"*\";",
+      "    i = i + 1;",
+      "  }",
+      "  printLn(line);",
+      "}");
+
+  /**
+   * Tamanho da String construída.
+   */
+  @Param({"1000", "10000", "50000"})
+  public int length;
+
+  @Param({"bytecode", "java"})
+  public String backend;
+
+  @Param({"true", "false"})
+  public boolean optimize;
+
+  private Path directory;
+  private Options options;
+  private byte[] stdin;
+  private InputStream systemIn;
+  private PrintStream systemOut;
+  private PrintStream discard;
+
+  @Setup(Level.Trial)
+  public void setup() throws IOException {
+    directory = Files.createTempDirectory("microkotlin");
+    Path source = directory.resolve("Concat.kt");
+    Files.write(source, PROGRAM.getBytes(StandardCharsets.UTF_8));
+
+    List<String> args = new ArrayList<>();
+    args.add("--run");
+    args.add("--backend=" + backend);
+    if (!optimize) args.add("--no-optimize");
+    args.add(source.toString());
+    options = Options.parse(args);
+    stdin = (length + "\n").getBytes(StandardCharsets.UTF_8);
+
+    systemIn = System.in;
+    systemOut = System.out;
+    discard = new PrintStream(new ByteArrayOutputStream() {
+      @Override
+      public void write(byte[] bytes, int offset, int length) {}
+
+      @Override
+      public void write(int b) {}
+    });
+    System.setOut(discard);
+  }
+
+  @TearDown(Level.Trial)
+  public void tearDown() throws IOException {
+    System.setIn(systemIn);
+    System.setOut(systemOut);
+    Files.delete(directory.resolve("Concat.kt"));
+    Files.delete(directory);
+  }
+
+  @Benchmark
+  public int run() throws IOException {
+    System.setIn(new ByteArrayInputStream(stdin));
+    return new ProgramRunner(options, discard).run(options.inputs.get(0));
+  }
+
+}
@@ -0,0 +1,94 @@
+package br.edu.ufabc.microkotlin.benchmark;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.PrintStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Collections;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.*;
+import br.edu.ufabc.microkotlin.CompilerDaemon;
+import br.edu.ufabc.microkotlin.DaemonClient;
+
+/**
+ * Compara a latência de uma compilação pela linha de comando,
+ * iniciando uma JVM nova a cada vez, com a de um pedido feito ao
+ * CompilerDaemon já aquecido.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 2, time = 5)
+@Measurement(iterations = 5, time = 5)
+@Fork(1)
+public class DaemonBenchmark {
+
+  @Param({"CalculoArea.kt", "Fatorial.kt", "Fibonacci.kt", "Piramide.kt"})
+  public String input;
+
+  private Path directory;
+  private String file;
+  private CompilerDaemon daemon;
+  private PrintStream discard;
+
+  @Setup(Level.Trial)
+  public void setup() throws IOException {
+    // A saída é gerada ao lado da entrada, então os exemplos são copiados.
+    directory = Files.createTempDirectory("microkotlin");
+    Path copy = directory.resolve(input);
+    Files.copy(Sources.sample(input), copy);
+    file = copy.toString();
+
+    daemon = new CompilerDaemon(0);
+    Thread server = new Thread(() -> {
+      try {
+        daemon.serve();
+      } catch (IOException e) {
+        throw new IllegalStateException(e);
+      }
+    });
+    server.setDaemon(true);
+    server.start();
+
+    discard = new PrintStream(new ByteArrayOutputStream());
+  }
+
+  @TearDown(Level.Trial)
+  public void tearDown() throws IOException {
+    daemon.close();
+
+    for (File child : directory.toFile().listFiles()) {
+      Files.delete(child.toPath());
+    }
+    Files.delete(directory);
+  }
+
+  @Benchmark
+  public int coldCli() throws IOException, InterruptedException {
+    String java = System.getProperty("java.home")
+        + File.separator + "bin" + File.separator + "java";
+    Process process = new ProcessBuilder(java,
+        "-cp", System.getProperty("java.class.path"),
+        "br.edu.ufabc.microkotlin.MicroKotlin", file)
+        .redirectErrorStream(true)
+        .start();
+
+    try (InputStream output = process.getInputStream()) {
+      while (output.read() != -1) {
+        // Descarta a saída do processo.
+      }
+    }
+
+    return process.waitFor();
+  }
+
+  @Benchmark
+  public int warmDaemon() throws IOException {
+    return DaemonClient.compile(daemon.port(),
+        Collections.singletonList(file), discard);
+  }
+
+}
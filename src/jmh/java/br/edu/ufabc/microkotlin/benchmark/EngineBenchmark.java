@@ -0,0 +1,116 @@
+package br.edu.ufabc.microkotlin.benchmark;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.*;
+import br.edu.ufabc.microkotlin.ClosureCompiler;
+import br.edu.ufabc.microkotlin.Diagnostics;
+import br.edu.ufabc.microkotlin.Interpreter;
+import br.edu.ufabc.microkotlin.Parser;
+import br.edu.ufabc.microkotlin.Resolver;
+import br.edu.ufabc.microkotlin.Scanner;
+import br.edu.ufabc.microkotlin.ScannerTokenStream;
+import br.edu.ufabc.microkotlin.TypeChecker;
+import br.edu.ufabc.microkotlin.VmCompiler;
+import br.edu.ufabc.microkotlin.program.Program;
+import br.edu.ufabc.microkotlin.vm.Chunk;
+import br.edu.ufabc.microkotlin.vm.VirtualMachine;
+
+/**
+ * Compara a execução de um programa já analisado pelo interpretador,
+ * que visita a árvore sintática a cada nó executado, pela árvore de
+ * closures do ClosureCompiler e pela VirtualMachine, ambas já
+ * compiladas. A saída é descartada.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class EngineBenchmark {
+
+  /**
+   * Programa dominado por laços e aritmética, sem impressões no laço:
+   * conta os primos menores que a entrada.
+   */
+  private static final String PRIMES = String.join("\n",
+      "fun main() {",
+      "  var n: Int = readInt();",
+      "  var count: Int = 0;",
+      "  var i: Int = 2;",
+      "  while (i < n) {",
+      "    var prime: Boolean = true;",
+      "    var d: Int = 2;",
+      "    while (d * d <= i) {",
+      "      if (i % d == 0) prime = false;",
+      "      d = d + 1;",
+      "    }",
+      "    if (prime) count = count + 1;",
+      "    i = i + 1;",
+      "  }",
+      "  printLn(count);",
+      "}");
+
+  /**
+   * Exemplo, tamanho do programa sintético ou "primes".
+   */
+  @Param({"Piramide.kt", "64KB", "primes"})
+  public String input;
+
+  private Program program;
+  private ClosureCompiler.CompiledProgram compiled;
+  private Chunk chunk;
+  private byte[] stdin;
+  private PrintStream discard;
+
+  @Setup(Level.Trial)
+  public void setup() throws IOException {
+    Diagnostics diagnostics = new Diagnostics();
+    Scanner scanner = new Scanner(
+        input.equals("primes") ? PRIMES : Sources.load(input), diagnostics);
+    program = new Parser(new ScannerTokenStream(scanner), diagnostics).parse();
+    new Resolver(diagnostics).resolve(program);
+    new TypeChecker(diagnostics).check(program);
+    compiled = new ClosureCompiler(diagnostics).compile(program);
+    chunk = new VmCompiler(input + ".mkbc", diagnostics).compile(program);
+
+    if (diagnostics.hasErrors()) {
+      throw new IllegalStateException(diagnostics.messages().toString());
+    }
+
+    // Quantidade de linhas da pirâmide ou limite dos primos.
+    String text = input.equals("primes") ? "50000\n" : "500\n";
+    stdin = text.getBytes(StandardCharsets.UTF_8);
+    discard = new PrintStream(new OutputStream() {
+      @Override
+      public void write(byte[] bytes, int offset, int length) {}
+
+      @Override
+      public void write(int b) {}
+    });
+  }
+
+  @Benchmark
+  public boolean interpreter() {
+    return new Interpreter(new Diagnostics(),
+        new ByteArrayInputStream(stdin), discard).interpret(program);
+  }
+
+  @Benchmark
+  public boolean closures() {
+    return compiled.run(new ByteArrayInputStream(stdin), discard,
+        new Diagnostics());
+  }
+
+  @Benchmark
+  public Chunk vm() {
+    new VirtualMachine(new ByteArrayInputStream(stdin), discard).run(chunk);
+    return chunk;
+  }
+
+}
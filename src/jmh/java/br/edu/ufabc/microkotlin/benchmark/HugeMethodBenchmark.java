@@ -0,0 +1,128 @@
+package br.edu.ufabc.microkotlin.benchmark;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.PrintStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.*;
+import br.edu.ufabc.microkotlin.Options;
+import br.edu.ufabc.microkotlin.ProgramRunner;
+
+/**
+ * Mede um programa com um laço de 2000 a 100000 comandos, com e sem
+ * a divisão do main em métodos pelo Outliner. Sem ela, o main passa
+ * do limite de 8000 bytes da JVM e é sempre interpretado, e o de
+ * 100000 comandos nem compila, pois passa de 64 KB: essa combinação
+ * falha no setup. As repetições do laço mantêm a mesma quantidade de
+ * comandos executados. Inclui a geração do código e o carregamento
+ * da classe.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 2, time = 5)
+@Measurement(iterations = 3, time = 5)
+@Fork(1)
+public class HugeMethodBenchmark {
+
+  /**
+   * Quantidade de comandos executados em todas as repetições.
+   */
+  private static final int EXECUTED = 40000000;
+
+  /**
+   * Quantidade de comandos no corpo do laço.
+   */
+  @Param({"2000", "100000"})
+  public int statements;
+
+  @Param({"true", "false"})
+  public boolean split;
+
+  @Param({"bytecode", "java"})
+  public String backend;
+
+  private Path directory;
+  private Options options;
+  private byte[] stdin;
+  private InputStream systemIn;
+  private PrintStream systemOut;
+  private PrintStream discard;
+
+  @Setup(Level.Trial)
+  public void setup() throws IOException {
+    directory = Files.createTempDirectory("microkotlin");
+    Path source = directory.resolve("Huge.kt");
+    Files.write(source, program().getBytes(StandardCharsets.UTF_8));
+
+    List<String> args = new ArrayList<>();
+    args.add("--run");
+    args.add("--backend=" + backend);
+    if (!split) args.add("--no-split");
+    args.add(source.toString());
+    options = Options.parse(args);
+    stdin = (EXECUTED / statements + "\n").getBytes(StandardCharsets.UTF_8);
+
+    systemIn = System.in;
+    systemOut = System.out;
+    discard = new PrintStream(new ByteArrayOutputStream() {
+      @Override
+      public void write(byte[] bytes, int offset, int length) {}
+
+      @Override
+      public void write(int b) {}
+    });
+    System.setOut(discard);
+
+    if (run() != 0) {
+      throw new IllegalStateException(
+          "The program does not compile with these parameters.");
+    }
+  }
+
+  /**
+   * Gera o laço, cujos comandos dependem do anterior, para que não
+   * sejam calculados de uma só vez.
+   */
+  private String program() {
+    StringBuilder program = new StringBuilder(statements * 32);
+    program.append("fun main() {\n")
+        .append("  var n: Int = readInt();\n")
+        .append("  var sum: Int = 0;\n")
+        .append("  var i: Int = 0;\n")
+        .append("  while (i < n) {\n");
+
+    for (int i = 0; i < statements; i++) {
+      program.append("    sum = sum * 31 + i + ")
+          .append(i % 97 + 1).append(";\n");
+    }
+
+    return program.append("    i = i + 1;\n")
+        .append("  }\n")
+        .append("  printLn(sum);\n")
+        .append("}\n")
+        .toString();
+  }
+
+  @TearDown(Level.Trial)
+  public void tearDown() throws IOException {
+    System.setIn(systemIn);
+    System.setOut(systemOut);
+    Files.delete(directory.resolve("Huge.kt"));
+    Files.delete(directory);
+  }
+
+  @Benchmark
+  public int run() throws IOException {
+    System.setIn(new ByteArrayInputStream(stdin));
+    return new ProgramRunner(options, discard).run(options.inputs.get(0));
+  }
+
+}
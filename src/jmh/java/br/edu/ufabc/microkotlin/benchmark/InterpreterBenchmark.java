@@ -0,0 +1,86 @@
+package br.edu.ufabc.microkotlin.benchmark;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.PrintStream;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.*;
+import br.edu.ufabc.microkotlin.Options;
+import br.edu.ufabc.microkotlin.ProgramRunner;
+
+/**
+ * Compara o tempo para executar cada exemplo pela opção --run,
+ * interpretando a árvore sintática, compilando-a em closures ou
+ * gerando código Java e compilando-o com o javac (ou gerando o .class
+ * diretamente) antes de carregar a classe e executá-la. A entrada de
+ * cada exemplo é fixa e a saída do programa é descartada.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class InterpreterBenchmark {
+
+  /**
+   * Entrada padrão fornecida a cada exemplo.
+   */
+  private static final Map<String, String> STDIN = new HashMap<>();
+
+  static {
+    STDIN.put("CalculoArea.kt", "5\ntrue\n3\nfalse\n");
+    STDIN.put("Fatorial.kt", "10\n");
+    STDIN.put("Fibonacci.kt", "40\n");
+    STDIN.put("Piramide.kt", "40\n");
+  }
+
+  @Param({"CalculoArea.kt", "Fatorial.kt", "Fibonacci.kt", "Piramide.kt"})
+  public String input;
+
+  @Param({"interpreter", "closures", "vm", "java", "bytecode"})
+  public String backend;
+
+  private Options options;
+  private byte[] stdin;
+  private InputStream systemIn;
+  private PrintStream systemOut;
+  private PrintStream discard;
+
+  @Setup(Level.Trial)
+  public void setup() {
+    options = Options.parse(Arrays.asList("--run", "--backend=" + backend,
+        Sources.sample(input).toString()));
+    stdin = STDIN.get(input).getBytes(StandardCharsets.UTF_8);
+
+    systemIn = System.in;
+    systemOut = System.out;
+    discard = new PrintStream(new ByteArrayOutputStream() {
+      @Override
+      public void write(byte[] bytes, int offset, int length) {}
+
+      @Override
+      public void write(int b) {}
+    });
+    System.setOut(discard);
+  }
+
+  @TearDown(Level.Trial)
+  public void tearDown() {
+    System.setIn(systemIn);
+    System.setOut(systemOut);
+  }
+
+  @Benchmark
+  public int run() throws IOException {
+    System.setIn(new ByteArrayInputStream(stdin));
+    return new ProgramRunner(options, discard).run(options.inputs.get(0));
+  }
+
+}
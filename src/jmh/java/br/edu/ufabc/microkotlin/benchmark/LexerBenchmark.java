@@ -0,0 +1,54 @@
+package br.edu.ufabc.microkotlin.benchmark;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.*;
+import br.edu.ufabc.microkotlin.Diagnostics;
+import br.edu.ufabc.microkotlin.Scanner;
+import br.edu.ufabc.microkotlin.TableScanner;
+import br.edu.ufabc.microkotlin.TokenBuffer;
+
+/**
+ * Compara o Scanner com o analisador léxico dirigido por tabelas,
+ * ambos gerando o buffer compacto de tokens.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = {"-Xms2g", "-Xmx2g"})
+public class LexerBenchmark {
+
+  @Param({"Fibonacci.kt", "64KB", "1MB", "50MB"})
+  public String input;
+
+  @Param({"default", "table"})
+  public String lexer;
+
+  private ByteBuffer sourceCode;
+  private int byteCount;
+
+  @Setup(Level.Trial)
+  public void setup() throws IOException {
+    byte[] bytes = Sources.load(input).getBytes(StandardCharsets.UTF_8);
+    sourceCode = ByteBuffer.wrap(bytes);
+    byteCount = bytes.length;
+  }
+
+  @Benchmark
+  public TokenBuffer scan(PipelineBenchmark.Throughput throughput) {
+    throughput.bytes += byteCount;
+
+    Diagnostics diagnostics = new Diagnostics();
+    Scanner scanner = lexer.equals("table")
+        ? new TableScanner(sourceCode, diagnostics)
+        : new Scanner(sourceCode, diagnostics);
+    TokenBuffer tokens = scanner.scanTokenBuffer();
+    throughput.tokens += tokens.size();
+    return tokens;
+  }
+
+}
@@ -0,0 +1,74 @@
+package br.edu.ufabc.microkotlin.benchmark;
+
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.*;
+import br.edu.ufabc.microkotlin.Diagnostics;
+import br.edu.ufabc.microkotlin.Parser;
+import br.edu.ufabc.microkotlin.Scanner;
+import br.edu.ufabc.microkotlin.ScannerTokenStream;
+import br.edu.ufabc.microkotlin.Transpiler;
+import br.edu.ufabc.microkotlin.program.Program;
+
+/**
+ * Mede a geração de código de programas com blocos aninhados
+ * até 1000 níveis. Como a indentação de cada linha cresce com a
+ * profundidade, a própria saída cresce quadraticamente; o contador
+ * de caracteres gerados permite verificar que o custo por caractere
+ * se mantém constante, ou seja, que a geração é linear na saída.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = {"-Xss16m"})
+public class NestingBenchmark {
+
+  @Param({"10", "100", "250", "500", "1000"})
+  public int depth;
+
+  /**
+   * Programa já analisado.
+   */
+  private Program program;
+
+  /**
+   * Quantidade de caracteres gerados a cada tradução.
+   */
+  private long outputLength;
+
+  /**
+   * Contador da vazão em caracteres gerados.
+   */
+  @State(Scope.Thread)
+  @AuxCounters(AuxCounters.Type.OPERATIONS)
+  public static class Output {
+    public long chars;
+  }
+
+  @Setup
+  public void setup() throws IOException {
+    Diagnostics diagnostics = new Diagnostics();
+    Scanner scanner = new Scanner(Sources.nested(depth), diagnostics);
+    program = new Parser(new ScannerTokenStream(scanner), diagnostics).parse();
+
+    Sink sink = new Sink();
+    new Transpiler("Benchmark.java", diagnostics).transpile(program, sink);
+    outputLength = sink.length;
+
+    if (diagnostics.hasErrors()) {
+      throw new IllegalStateException(diagnostics.messages().toString());
+    }
+  }
+
+  @Benchmark
+  public long transpile(Output output) throws IOException {
+    output.chars += outputLength;
+    Sink sink = new Sink();
+    new Transpiler("Benchmark.java", new Diagnostics())
+        .transpile(program, sink);
+    return sink.length;
+  }
+
+}
@@ -0,0 +1,188 @@
+package br.edu.ufabc.microkotlin.benchmark;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.*;
+import br.edu.ufabc.microkotlin.Diagnostics;
+import br.edu.ufabc.microkotlin.MicroKotlin;
+import br.edu.ufabc.microkotlin.NodeCounter;
+import br.edu.ufabc.microkotlin.Options;
+import br.edu.ufabc.microkotlin.Parser;
+import br.edu.ufabc.microkotlin.Scanner;
+import br.edu.ufabc.microkotlin.ScannerTokenStream;
+import br.edu.ufabc.microkotlin.Token;
+import br.edu.ufabc.microkotlin.TokenBuffer;
+import br.edu.ufabc.microkotlin.Transpiler;
+import br.edu.ufabc.microkotlin.program.Program;
+
+/**
+ * Mede cada fase do transpilador (Scanner, Parser e Transpiler)
+ * separadamente e de ponta a ponta, sobre os exemplos e sobre
+ * programas sintéticos de 1 KB a 50 MB. O Parser também é medido
+ * consumindo os tokens sob demanda, direto do Scanner, e a partir
+ * do buffer compacto de tokens. O Transpiler recebe o programa já
+ * analisado e otimizado, e a medição de ponta a ponta inclui essas
+ * fases, como em MicroKotlin.analyze, com as opções padrão.
+ *
+ * Além das operações por segundo, são reportadas as vazões em
+ * tokens/s, nós/s e bytes/s através de contadores auxiliares.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = {"-Xms4g", "-Xmx4g"})
+public class PipelineBenchmark {
+
+  @Param({
+    "CalculoArea.kt", "Fatorial.kt", "Fibonacci.kt", "Piramide.kt",
+    "1KB", "64KB", "1MB", "50MB"
+  })
+  public String input;
+
+  /**
+   * Contadores de vazão, reportados por segundo.
+   */
+  @State(Scope.Thread)
+  @AuxCounters(AuxCounters.Type.OPERATIONS)
+  public static class Throughput {
+    public long tokens;
+    public long nodes;
+    public long bytes;
+
+    @Setup(Level.Iteration)
+    public void reset() {
+      tokens = 0;
+      nodes = 0;
+      bytes = 0;
+    }
+  }
+
+  private Options options;
+  private ByteBuffer sourceCode;
+  private List<Token> tokens;
+  private TokenBuffer tokenBuffer;
+  private Program program;
+
+  /**
+   * Programa após o TypeChecker e as otimizações, entrada do Transpiler.
+   */
+  private Program analyzed;
+
+  private int tokenCount;
+  private int nodeCount;
+  private int byteCount;
+
+  @Setup(Level.Trial)
+  public void setup() throws IOException {
+    options = Options.parse(Collections.singletonList("Benchmark.kt"));
+
+    byte[] bytes = Sources.load(input).getBytes(StandardCharsets.UTF_8);
+    sourceCode = ByteBuffer.wrap(bytes);
+
+    Diagnostics diagnostics = new Diagnostics();
+    tokens = new Scanner(sourceCode, diagnostics).scanTokens();
+    tokenBuffer = new Scanner(sourceCode, diagnostics).scanTokenBuffer();
+    program = new Parser(tokens, diagnostics).parse();
+
+    if (!diagnostics.hasErrors()) {
+      // As fases seguintes alteram a árvore, então recebem outra cópia.
+      Program copy = new Parser(tokens, diagnostics).parse();
+      analyzed = MicroKotlin.analyze(copy, options, diagnostics);
+    }
+
+    if (diagnostics.hasErrors()) {
+      throw new IllegalStateException("Invalid benchmark input: " + input
+          + " " + diagnostics.messages());
+    }
+
+    byteCount = bytes.length;
+    tokenCount = tokens.size();
+    nodeCount = NodeCounter.count(program);
+  }
+
+  @Benchmark
+  public List<Token> scan(Throughput throughput) {
+    throughput.tokens += tokenCount;
+    throughput.bytes += byteCount;
+    return new Scanner(sourceCode, new Diagnostics()).scanTokens();
+  }
+
+  @Benchmark
+  public TokenBuffer scanBuffer(Throughput throughput) {
+    throughput.tokens += tokenCount;
+    throughput.bytes += byteCount;
+    return new Scanner(sourceCode, new Diagnostics()).scanTokenBuffer();
+  }
+
+  @Benchmark
+  public Program parse(Throughput throughput) {
+    throughput.tokens += tokenCount;
+    throughput.nodes += nodeCount;
+    return new Parser(tokens, new Diagnostics()).parse();
+  }
+
+  @Benchmark
+  public Program parseBuffer(Throughput throughput) {
+    throughput.tokens += tokenCount;
+    throughput.nodes += nodeCount;
+    tokenBuffer.rewind();
+    return new Parser(tokenBuffer, new Diagnostics()).parse();
+  }
+
+  @Benchmark
+  public Program scanAndParse(Throughput throughput) {
+    throughput.tokens += tokenCount;
+    throughput.nodes += nodeCount;
+    throughput.bytes += byteCount;
+    Diagnostics diagnostics = new Diagnostics();
+    Scanner scanner = new Scanner(sourceCode, diagnostics);
+    return new Parser(new ScannerTokenStream(scanner), diagnostics).parse();
+  }
+
+  /**
+   * Gera o código do programa já analisado. As vazões são relativas
+   * ao código-fonte, como nas demais medições.
+   */
+  @Benchmark
+  public long transpile(Throughput throughput) throws IOException {
+    throughput.tokens += tokenCount;
+    throughput.nodes += nodeCount;
+    throughput.bytes += byteCount;
+    Sink sink = new Sink();
+    transpiler(new Diagnostics()).transpile(analyzed, sink);
+    return sink.length;
+  }
+
+  @Benchmark
+  public long endToEnd(Throughput throughput) throws IOException {
+    throughput.tokens += tokenCount;
+    throughput.nodes += nodeCount;
+    throughput.bytes += byteCount;
+
+    Diagnostics diagnostics = new Diagnostics();
+    Scanner scanner = new Scanner(sourceCode, diagnostics);
+    Program parsed =
+        new Parser(new ScannerTokenStream(scanner), diagnostics).parse();
+    Program ready = MicroKotlin.analyze(parsed, options, diagnostics);
+    Sink sink = new Sink();
+    transpiler(diagnostics).transpile(ready, sink);
+    return sink.length;
+  }
+
+  /**
+   * Cria o Transpiler com as opções de saída do MicroKotlin.
+   */
+  private Transpiler transpiler(Diagnostics diagnostics) {
+    Transpiler transpiler = new Transpiler("Benchmark.java", diagnostics);
+    transpiler.bufferOutput(options.bufferOutput);
+    transpiler.fastReader(options.fastReader);
+    return transpiler;
+  }
+
+}
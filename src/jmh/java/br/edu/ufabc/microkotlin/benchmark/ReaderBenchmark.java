@@ -0,0 +1,123 @@
+package br.edu.ufabc.microkotlin.benchmark;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.PrintStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.*;
+import br.edu.ufabc.microkotlin.Options;
+import br.edu.ufabc.microkotlin.ProgramRunner;
+
+/**
+ * Mede um programa que lê e soma de 10^6 a 10^7 números, lidos pelo
+ * leitor gerado, que converte os números diretamente de um buffer de
+ * bytes, e pelo java.util.Scanner, que usa expressões regulares.
+ * Inclui a geração do código e o carregamento da classe.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 2, time = 5)
+@Measurement(iterations = 3, time = 5)
+@Fork(1)
+public class ReaderBenchmark {
+
+  private static final String PROGRAM = String.join("\n",
+      "fun main() {",
+      "  var n: Int = readInt();",
+      "  var sum: TYPE = 0;",
+      "  var i: Int = 0;",
+      "  while (i < n) {",
+      "    sum = sum + readTYPE();",
+      "    i = i + 1;",
+      "  }",
+      "  printLn(sum);",
+      "}");
+
+  /**
+   * Quantidade de números lidos.
+   */
+  @Param({"1000000", "10000000"})
+  public int count;
+
+  /**
+   * Tipo dos números lidos.
+   */
+  @Param({"Int", "Double"})
+  public String type;
+
+  @Param({"fast", "scanner"})
+  public String reader;
+
+  @Param({"bytecode", "java"})
+  public String backend;
+
+  private Path directory;
+  private Options options;
+  private byte[] stdin;
+  private InputStream systemIn;
+  private PrintStream systemOut;
+  private PrintStream discard;
+
+  @Setup(Level.Trial)
+  public void setup() throws IOException {
+    directory = Files.createTempDirectory("microkotlin");
+    Path source = directory.resolve("Reader.kt");
+    Files.write(source,
+        PROGRAM.replace("TYPE", type).getBytes(StandardCharsets.UTF_8));
+
+    options = Options.parse(Arrays.asList("--run", "--backend=" + backend,
+        "--reader=" + reader, source.toString()));
+    stdin = input();
+
+    systemIn = System.in;
+    systemOut = System.out;
+    discard = new PrintStream(new ByteArrayOutputStream() {
+      @Override
+      public void write(byte[] bytes, int offset, int length) {}
+
+      @Override
+      public void write(int b) {}
+    });
+    System.setOut(discard);
+  }
+
+  /**
+   * Gera a quantidade seguida dos números, alguns negativos, um
+   * por linha.
+   */
+  private byte[] input() {
+    StringBuilder input = new StringBuilder(count * 8);
+    input.append(count).append('\n');
+
+    for (int i = 0; i < count; i++) {
+      int value = (i * 7919) % 100000 - 50000;
+      input.append(value);
+      if (type.equals("Double")) input.append('.').append(i % 100);
+      input.append('\n');
+    }
+
+    return input.toString().getBytes(StandardCharsets.UTF_8);
+  }
+
+  @TearDown(Level.Trial)
+  public void tearDown() throws IOException {
+    System.setIn(systemIn);
+    System.setOut(systemOut);
+    Files.delete(directory.resolve("Reader.kt"));
+    Files.delete(directory);
+  }
+
+  @Benchmark
+  public int run() throws IOException {
+    System.setIn(new ByteArrayInputStream(stdin));
+    return new ProgramRunner(options, discard).run(options.inputs.get(0));
+  }
+
+}
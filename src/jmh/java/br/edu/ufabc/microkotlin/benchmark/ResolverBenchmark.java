@@ -0,0 +1,72 @@
+package br.edu.ufabc.microkotlin.benchmark;
+
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.*;
+import br.edu.ufabc.microkotlin.Diagnostics;
+import br.edu.ufabc.microkotlin.NodeCounter;
+import br.edu.ufabc.microkotlin.Parser;
+import br.edu.ufabc.microkotlin.Resolver;
+import br.edu.ufabc.microkotlin.Scanner;
+import br.edu.ufabc.microkotlin.ScannerTokenStream;
+import br.edu.ufabc.microkotlin.program.Program;
+
+/**
+ * Mede a resolução de nomes em programas com milhares de variáveis
+ * locais, distribuídas em poucos blocos ou em blocos profundamente
+ * aninhados. Além das operações por segundo, é reportada a vazão
+ * em nós resolvidos por segundo.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = {"-Xss16m"})
+public class ResolverBenchmark {
+
+  @Param({"1000", "10000"})
+  public int locals;
+
+  @Param({"1", "100", "1000"})
+  public int depth;
+
+  /**
+   * Programa já analisado.
+   */
+  private Program program;
+
+  /**
+   * Quantidade de nós do programa.
+   */
+  private int nodeCount;
+
+  /**
+   * Contador da vazão em nós resolvidos.
+   */
+  @State(Scope.Thread)
+  @AuxCounters(AuxCounters.Type.OPERATIONS)
+  public static class Throughput {
+    public long nodes;
+  }
+
+  @Setup
+  public void setup() {
+    Diagnostics diagnostics = new Diagnostics();
+    Scanner scanner = new Scanner(Sources.scoped(locals, depth), diagnostics);
+    program = new Parser(new ScannerTokenStream(scanner), diagnostics).parse();
+
+    if (diagnostics.hasErrors()) {
+      throw new IllegalStateException(diagnostics.messages().toString());
+    }
+
+    nodeCount = NodeCounter.count(program);
+  }
+
+  @Benchmark
+  public Program resolve(Throughput throughput) {
+    throughput.nodes += nodeCount;
+    new Resolver(new Diagnostics()).resolve(program);
+    return program;
+  }
+
+}
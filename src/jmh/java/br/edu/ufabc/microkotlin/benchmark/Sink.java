@@ -0,0 +1,38 @@
+package br.edu.ufabc.microkotlin.benchmark;
+
+import java.io.Writer;
+
+/**
+ * Destino que descarta o código gerado, contando somente a
+ * quantidade de caracteres, de modo que a medição não inclua
+ * o custo de guardar a saída.
+ */
+public class Sink extends Writer {
+
+  /**
+   * Quantidade de caracteres escritos.
+   */
+  public long length = 0;
+
+  @Override
+  public void write(char[] buffer, int offset, int count) {
+    length += count;
+  }
+
+  @Override
+  public void write(String text, int offset, int count) {
+    length += count;
+  }
+
+  @Override
+  public void write(int c) {
+    length++;
+  }
+
+  @Override
+  public void flush() {}
+
+  @Override
+  public void close() {}
+
+}
@@ -0,0 +1,168 @@
+package br.edu.ufabc.microkotlin.benchmark;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+
+/**
+ * Fornece os programas de entrada dos benchmarks: os exemplos
+ * da pasta samples e programas sintéticos de tamanho arbitrário.
+ */
+public final class Sources {
+
+  /**
+   * Pasta dos exemplos, configurável pela propriedade
+   * microkotlin.samples.
+   */
+  private static final String SAMPLES =
+      System.getProperty("microkotlin.samples", "samples");
+
+  private Sources() {}
+
+  /**
+   * Obtém o código-fonte de uma entrada. Nomes terminados em ".kt"
+   * são lidos da pasta de exemplos; os demais são tamanhos, como
+   * "1KB" ou "50MB", de um programa sintético.
+   *
+   * @param input nome do exemplo ou tamanho do programa sintético
+   * @return código-fonte na linguagem MicroKotlin
+   * @throws IOException caso haja algum erro de leitura
+   */
+  public static String load(String input) throws IOException {
+    if (input.endsWith(".kt")) {
+      byte[] bytes = Files.readAllBytes(sample(input));
+      return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    return synthetic(parseSize(input));
+  }
+
+  /**
+   * Obtém o caminho de um dos exemplos.
+   *
+   * @param name nome do arquivo do exemplo
+   * @return caminho do exemplo
+   */
+  public static Path sample(String name) {
+    return Paths.get(SAMPLES, name);
+  }
+
+  /**
+   * Converte um tamanho como "64KB" para a quantidade de bytes.
+   *
+   * @param size tamanho com sufixo KB ou MB
+   * @return quantidade de bytes
+   */
+  public static int parseSize(String size) {
+    if (size.endsWith("MB")) {
+      return Integer.parseInt(size.substring(0, size.length() - 2)) << 20;
+    }
+
+    if (size.endsWith("KB")) {
+      return Integer.parseInt(size.substring(0, size.length() - 2)) << 10;
+    }
+
+    return Integer.parseInt(size);
+  }
+
+  /**
+   * Gera um programa válido com pelo menos a quantidade de bytes
+   * informada, repetindo trechos com declarações, expressões,
+   * condicionais e laços.
+   *
+   * @param bytes tamanho mínimo do programa
+   * @return código-fonte gerado
+   */
+  public static String synthetic(int bytes) {
+    StringBuilder builder = new StringBuilder(bytes + 512);
+    builder.append("val LIMIT: Int = 3;\n");
+    builder.append("val RATIO: Double = 1.5;\n\n");
+    builder.append("fun main() {\n");
+
+    for (int n = 0; builder.length() < bytes; n++) {
+      builder.append("  var a").append(n).append(": Int = ")
+          .append(n).append(" * LIMIT + 1;\n");
+      builder.append("  var s").append(n).append(": String = \"item \" + a")
+          .append(n).append(";\n");
+      builder.append("  if (a").append(n).append(" % 2 == 0) {\n");
+      builder.append("    printLn(s").append(n).append(");\n");
+      builder.append("  } else {\n");
+      builder.append("    var j: Int = 0;\n");
+      builder.append("    while (j < LIMIT) {\n");
+      builder.append("      print(j * RATIO + \", \");\n");
+      builder.append("      j = j + 1;\n");
+      builder.append("    }\n");
+      builder.append("  }\n");
+    }
+
+    builder.append("}\n");
+    return builder.toString();
+  }
+
+  /**
+   * Gera um programa com a quantidade de variáveis locais informada,
+   * distribuídas entre blocos aninhados até a profundidade informada.
+   * Cada variável é inicializada a partir da anterior e de uma
+   * variável do escopo global, e é usada logo em seguida.
+   *
+   * @param locals quantidade de variáveis locais
+   * @param depth profundidade do aninhamento
+   * @return código-fonte gerado
+   */
+  public static String scoped(int locals, int depth) {
+    StringBuilder builder = new StringBuilder();
+    builder.append("fun main() {\n");
+    builder.append("var g: Int = 1;\n");
+
+    String previous = "g";
+    int perLevel = Math.max(1, locals / depth);
+
+    for (int n = 0; n < locals; n++) {
+      if (n % perLevel == 0 && n / perLevel < depth) builder.append("{\n");
+
+      builder.append("var v").append(n).append(": Int = ")
+          .append(previous).append(" + g;\n");
+      builder.append("v").append(n).append(" = v").append(n)
+          .append(" * 2;\n");
+      previous = "v" + n;
+    }
+
+    for (int n = 0; n < Math.min(depth, (locals + perLevel - 1) / perLevel); n++) {
+      builder.append("}\n");
+    }
+
+    builder.append("}\n");
+    return builder.toString();
+  }
+
+  /**
+   * Gera um programa com blocos aninhados até a profundidade
+   * informada, alternando entre laços e condicionais, com uma
+   * declaração e uma impressão em cada nível.
+   *
+   * @param depth profundidade do aninhamento
+   * @return código-fonte gerado
+   */
+  public static String nested(int depth) {
+    StringBuilder builder = new StringBuilder();
+    builder.append("fun main() {\n");
+    builder.append("var i: Int = 0;\n");
+
+    for (int n = 0; n < depth; n++) {
+      builder.append(n % 2 == 0 ? "while (i < 1) {\n" : "if (i == 0) {\n");
+      builder.append("var v").append(n).append(": Int = i + ")
+          .append(n).append(";\n");
+      builder.append("printLn(v").append(n).append(");\n");
+    }
+
+    for (int n = 0; n < depth; n++) {
+      builder.append("}\n");
+    }
+
+    builder.append("}\n");
+    return builder.toString();
+  }
+
+}
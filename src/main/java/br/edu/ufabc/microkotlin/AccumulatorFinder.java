@@ -0,0 +1,306 @@
+package br.edu.ufabc.microkotlin;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import br.edu.ufabc.microkotlin.expr.*;
+import br.edu.ufabc.microkotlin.program.*;
+import br.edu.ufabc.microkotlin.stmt.*;
+
+/**
+ * Encontra as variáveis String acumuladas em laços, como em
+ * "s = s + x" dentro de um while, e as marca (StmtVar.accumulator)
+ * para que os backends que geram código da JVM as guardem em um
+ * StringBuilder criado na declaração, fora do laço. Assim, cada
+ * concatenação acrescenta somente a nova parte, em vez de copiar a
+ * String inteira, e construir uma String em um laço deixa de ter custo
+ * quadrático.
+ *
+ * Uma variável é marcada quando é declarada com uma String, recebe ao
+ * menos uma concatenação a si mesma em um laço mais interno que a
+ * declaração e cada um dos seus outros usos é:
+ *
+ *   - uma atribuição "s = s + a + b", em que as partes a e b não usam
+ *     a variável, que se torna s.append(a).append(b);
+ *   - uma atribuição de um literal String ou de uma concatenação, que
+ *     substitui o conteúdo do StringBuilder;
+ *   - uma leitura impressa ou concatenada, onde o StringBuilder é
+ *     convertido em String.
+ *
+ * As demais leituras, como em uma comparação com '==', dependem da
+ * identidade da String e impedem a marcação. Deve ser executado após
+ * o TypeChecker, e após o DeadCodeEliminator, que gera novos comandos.
+ */
+public class AccumulatorFinder implements
+    Stmt.Visitor<Void>, Program.Visitor<Void> {
+
+  /**
+   * Declaração atual de cada escopo e posição, ou null caso não seja
+   * uma variável que possa ser marcada.
+   */
+  private StmtVar[][] declarations;
+
+  /**
+   * Quantidade de laços que contêm o comando atual e que continham
+   * cada declaração.
+   */
+  private int loops;
+  private final Map<StmtVar, Integer> declarationLoops =
+      new IdentityHashMap<>();
+
+  /**
+   * Variáveis concatenadas a si mesmas em um laço e variáveis com
+   * algum uso que impede a marcação.
+   */
+  private final Set<StmtVar> appended =
+      Collections.newSetFromMap(new IdentityHashMap<>());
+  private final Set<StmtVar> rejected =
+      Collections.newSetFromMap(new IdentityHashMap<>());
+
+  /**
+   * Marca as variáveis acumuladas do programa.
+   *
+   * @param program programa já resolvido e verificado, sem erros
+   * @return quantidade de variáveis marcadas
+   */
+  public int find(Program program) {
+    declarationLoops.clear();
+    appended.clear();
+    rejected.clear();
+    program.accept(this);
+
+    int count = 0;
+    for (StmtVar varDecl : declarationLoops.keySet()) {
+      varDecl.accumulator =
+          appended.contains(varDecl) && !rejected.contains(varDecl);
+      if (varDecl.accumulator) count++;
+    }
+
+    return count;
+  }
+
+  /**
+   * Obtém as partes acrescentadas por uma atribuição na forma
+   * "s = s + a + b", na ordem em que são avaliadas.
+   *
+   * @param assign atribuição
+   * @return as partes, ou null caso a atribuição não tenha essa forma
+   */
+  static List<Expr> appendedParts(ExprAssign assign) {
+    List<Expr> parts = new ArrayList<>();
+    Expr expr = assign.value;
+
+    while (isConcatenation(expr)) {
+      parts.add(((ExprBinary) expr).right);
+      expr = ((ExprBinary) expr).left;
+    }
+
+    if (parts.isEmpty() || !(expr instanceof ExprVariable)
+        || ((ExprVariable) expr).depth != assign.depth
+        || ((ExprVariable) expr).slot != assign.slot) {
+      return null;
+    }
+
+    Collections.reverse(parts);
+    return parts;
+  }
+
+  private static boolean isConcatenation(Expr expr) {
+    return expr instanceof ExprBinary
+        && ((ExprBinary) expr).operator.type == TokenType.PLUS
+        && expr.kind == Kind.STRING;
+  }
+
+  @Override
+  public Void visitProgram(Program program) {
+    declarations = new StmtVar[program.maxDepth + 1][];
+    declarations[0] = new StmtVar[program.globals];
+    loops = 0;
+
+    for (StmtVal valDecl : program.constants) {
+      valDecl.accept(this);
+    }
+
+    for (Stmt statement : program.statements) {
+      statement.accept(this);
+    }
+
+    return null;
+  }
+
+  @Override
+  public Void visitBlockStmt(StmtBlock stmt) {
+    declarations[stmt.depth] = new StmtVar[stmt.locals];
+
+    for (Stmt statement : stmt.statements) {
+      statement.accept(this);
+    }
+
+    return null;
+  }
+
+  @Override
+  public Void visitDoWhileStmt(StmtDoWhile stmt) {
+    loops++;
+    stmt.body.accept(this);
+    use(stmt.condition, false);
+    loops--;
+    return null;
+  }
+
+  @Override
+  public Void visitExpressionStmt(StmtExpression stmt) {
+    if (!(stmt.expression instanceof ExprAssign)) {
+      use(stmt.expression, false);
+      return null;
+    }
+
+    ExprAssign assign = (ExprAssign) stmt.expression;
+    StmtVar varDecl = declarations[assign.depth][assign.slot];
+    List<Expr> parts = appendedParts(assign);
+
+    if (parts != null) {
+      for (Expr part : parts) {
+        if (varDecl != null && uses(part, assign.depth, assign.slot)) {
+          rejected.add(varDecl);
+        }
+        use(part, true);
+      }
+
+      if (varDecl != null && loops > declarationLoops.get(varDecl)) {
+        appended.add(varDecl);
+      }
+      return null;
+    }
+
+    boolean replaced = isConcatenation(assign.value)
+        || (assign.value instanceof ExprLiteral
+            && ((ExprLiteral) assign.value).value instanceof String);
+    if (varDecl != null && !replaced) rejected.add(varDecl);
+
+    use(assign.value, false);
+    return null;
+  }
+
+  @Override
+  public Void visitIfStmt(StmtIf stmt) {
+    use(stmt.condition, false);
+    stmt.thenBranch.accept(this);
+    if (stmt.elseBranch != null) stmt.elseBranch.accept(this);
+    return null;
+  }
+
+  @Override
+  public Void visitPrintStmt(StmtPrint stmt) {
+    use(stmt.expression, true);
+    return null;
+  }
+
+  @Override
+  public Void visitPrintLnStmt(StmtPrintLn stmt) {
+    use(stmt.expression, true);
+    return null;
+  }
+
+  @Override
+  public Void visitValStmt(StmtVal stmt) {
+    use(stmt.initializer, false);
+    declarations[stmt.depth][stmt.slot] = null;
+    return null;
+  }
+
+  @Override
+  public Void visitVarStmt(StmtVar stmt) {
+    stmt.accumulator = false;
+    if (stmt.initializer != null) use(stmt.initializer, false);
+
+    // O null não pode ser guardado em um StringBuilder.
+    boolean candidate = Kind.declared(stmt.type) == Kind.STRING
+        && stmt.initializer != null
+        && stmt.initializer.kind == Kind.STRING;
+
+    declarations[stmt.depth][stmt.slot] = candidate ? stmt : null;
+    if (candidate) declarationLoops.put(stmt, loops);
+    return null;
+  }
+
+  @Override
+  public Void visitWhileStmt(StmtWhile stmt) {
+    loops++;
+    use(stmt.condition, false);
+    stmt.body.accept(this);
+    loops--;
+    return null;
+  }
+
+  /**
+   * Verifica os usos das variáveis em uma expressão.
+   *
+   * @param expr expressão
+   * @param text verdadeiro caso o valor seja somente impresso ou
+   *             concatenado
+   */
+  private void use(Expr expr, boolean text) {
+    if (expr instanceof ExprVariable) {
+      ExprVariable variable = (ExprVariable) expr;
+      StmtVar varDecl = declarations[variable.depth][variable.slot];
+      if (varDecl != null && !text) rejected.add(varDecl);
+    } else if (expr instanceof ExprAssign) {
+      ExprAssign assign = (ExprAssign) expr;
+      StmtVar varDecl = declarations[assign.depth][assign.slot];
+      if (varDecl != null) rejected.add(varDecl);
+      use(assign.value, false);
+    } else if (expr instanceof ExprBinary) {
+      boolean concatenation = isConcatenation(expr);
+      use(((ExprBinary) expr).left, concatenation);
+      use(((ExprBinary) expr).right, concatenation);
+    } else if (expr instanceof ExprLogical) {
+      use(((ExprLogical) expr).left, false);
+      use(((ExprLogical) expr).right, false);
+    } else if (expr instanceof ExprGrouping) {
+      use(((ExprGrouping) expr).expression, text);
+    } else if (expr instanceof ExprUnary) {
+      use(((ExprUnary) expr).right, false);
+    }
+  }
+
+  /**
+   * Verifica se uma expressão lê ou atribui a variável informada.
+   */
+  private static boolean uses(Expr expr, int depth, int slot) {
+    if (expr instanceof ExprVariable) {
+      ExprVariable variable = (ExprVariable) expr;
+      return variable.depth == depth && variable.slot == slot;
+    }
+
+    if (expr instanceof ExprAssign) {
+      ExprAssign assign = (ExprAssign) expr;
+      return (assign.depth == depth && assign.slot == slot)
+          || uses(assign.value, depth, slot);
+    }
+
+    if (expr instanceof ExprBinary) {
+      return uses(((ExprBinary) expr).left, depth, slot)
+          || uses(((ExprBinary) expr).right, depth, slot);
+    }
+
+    if (expr instanceof ExprLogical) {
+      return uses(((ExprLogical) expr).left, depth, slot)
+          || uses(((ExprLogical) expr).right, depth, slot);
+    }
+
+    if (expr instanceof ExprGrouping) {
+      return uses(((ExprGrouping) expr).expression, depth, slot);
+    }
+
+    if (expr instanceof ExprUnary) {
+      return uses(((ExprUnary) expr).right, depth, slot);
+    }
+
+    return false;
+  }
+
+}
@@ -0,0 +1,182 @@
+package br.edu.ufabc.microkotlin;
+
+import java.io.IOException;
+import java.io.PrintStream;
+import java.nio.file.FileSystems;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.PathMatcher;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+/**
+ * Transpila vários arquivos em paralelo, em uma única execução.
+ *
+ * As entradas podem ser arquivos, pastas (percorridas em busca de
+ * arquivos ".kt") ou padrões glob, como "src/**.kt". Cada arquivo é
+ * transpilado por uma tarefa de um ForkJoinPool, e seus erros são
+ * mostrados juntos, precedidos pelo nome do arquivo e na ordem das
+ * entradas. Ao fim, é mostrado um resumo com a vazão e as falhas.
+ */
+public class BatchTranspiler {
+
+  /**
+   * Opções da execução.
+   */
+  private final Options options;
+
+  /**
+   * Cache incremental, ou null para sempre transpilar.
+   */
+  private final BuildCache cache;
+
+  /**
+   * Saída dos erros e do resumo.
+   */
+  private final PrintStream err;
+
+  public BatchTranspiler(Options options, BuildCache cache, PrintStream err) {
+    this.options = options;
+    this.cache = cache;
+    this.err = err;
+  }
+
+  /**
+   * Transpila todos os arquivos das entradas informadas.
+   *
+   * @param inputs arquivos, pastas ou padrões glob
+   * @return verdadeiro se todos os arquivos foram transpilados
+   * @throws IOException caso haja algum erro ao percorrer as pastas
+   */
+  public boolean transpile(List<String> inputs) throws IOException {
+    List<Path> files = collect(inputs);
+
+    if (files.isEmpty()) {
+      err.println("No input files found.");
+      return false;
+    }
+
+    long start = System.nanoTime();
+    ForkJoinPool pool = new ForkJoinPool(options.jobs);
+    int failures = 0;
+
+    try {
+      List<Future<List<String>>> results = new ArrayList<>(files.size());
+      for (Path file : files) {
+        results.add(pool.submit(
+            () -> MicroKotlin.transpileFile(file.toString(), options, cache)));
+      }
+
+      for (int i = 0; i < files.size(); i++) {
+        List<String> errors = result(results.get(i));
+        if (errors.isEmpty()) continue;
+
+        failures++;
+        StringBuilder builder = new StringBuilder();
+        for (String error : errors) {
+          builder.append(files.get(i)).append(": ").append(error).append('\n');
+        }
+        err.print(builder);
+      }
+    } finally {
+      pool.shutdown();
+    }
+
+    double seconds = (System.nanoTime() - start) / 1e9;
+    String upToDate = cache != null ? ", " + cache.skipped() + " up to date" : "";
+    err.printf("Transpiled %d files in %.3f s (%.1f files/s)%s, %d failed.%n",
+        files.size(), seconds, files.size() / seconds, upToDate, failures);
+
+    return failures == 0;
+  }
+
+  /**
+   * Aguarda o resultado de um arquivo, convertendo as falhas
+   * de leitura e escrita em um erro do próprio arquivo.
+   *
+   * @param result resultado da tarefa do arquivo
+   * @return erros encontrados no arquivo
+   */
+  private List<String> result(Future<List<String>> result) {
+    try {
+      return result.get();
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      return Collections.singletonList("Interrupted.");
+    } catch (ExecutionException e) {
+      return Collections.singletonList("Error: " + e.getCause());
+    }
+  }
+
+  /**
+   * Obtém os arquivos de todas as entradas, sem repetições.
+   *
+   * @param inputs arquivos, pastas ou padrões glob
+   * @return arquivos encontrados
+   * @throws IOException caso haja algum erro ao percorrer as pastas
+   */
+  private List<Path> collect(List<String> inputs) throws IOException {
+    Set<Path> files = new LinkedHashSet<>();
+
+    for (String input : inputs) {
+      Path path = Paths.get(input);
+
+      if (Files.isRegularFile(path)) {
+        files.add(path);
+      } else if (Files.isDirectory(path)) {
+        files.addAll(walk(path, p -> p.toString().endsWith(".kt")));
+      } else if (isGlob(input)) {
+        PathMatcher matcher = FileSystems.getDefault()
+            .getPathMatcher("glob:" + input);
+        files.addAll(walk(globBase(input), matcher));
+      } else {
+        err.println("Input '" + input + "' not found.");
+      }
+    }
+
+    return new ArrayList<>(files);
+  }
+
+  private List<Path> walk(Path base, PathMatcher matcher) throws IOException {
+    try (Stream<Path> paths = Files.walk(base)) {
+      return paths
+          .filter(Files::isRegularFile)
+          .filter(matcher::matches)
+          .sorted()
+          .collect(Collectors.toList());
+    }
+  }
+
+  private boolean isGlob(String input) {
+    return input.indexOf('*') >= 0 || input.indexOf('?') >= 0
+        || input.indexOf('{') >= 0 || input.indexOf('[') >= 0;
+  }
+
+  /**
+   * Obtém a pasta a partir da qual um padrão glob deve ser
+   * procurado, isto é, as pastas iniciais sem caracteres especiais.
+   *
+   * @param glob padrão glob
+   * @return pasta base do padrão
+   */
+  private Path globBase(String glob) {
+    String[] parts = glob.split("/");
+    StringBuilder base = new StringBuilder();
+
+    for (int i = 0; i < parts.length - 1 && !isGlob(parts[i]); i++) {
+      base.append(parts[i]).append('/');
+    }
+
+    return Paths.get(base.toString());
+  }
+
+}
@@ -0,0 +1,268 @@
+package br.edu.ufabc.microkotlin;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Cache de compilação incremental.
+ *
+ * Para cada entrada transpilada com sucesso, guarda o hash SHA-256
+ * do seu conteúdo (junto da versão do transpilador e das opções que
+ * alteram a saída), além do tamanho, da data de modificação e das
+ * opções usadas. Uma entrada transpilada com as mesmas opções, cujo
+ * tamanho e data não mudaram, é considerada atualizada sem nem mesmo
+ * ser lida; caso tenham mudado, o hash do conteúdo decide se ela
+ * precisa ser transpilada novamente. Uma entrada transpilada com
+ * outras opções é sempre transpilada novamente.
+ *
+ * O índice fica no arquivo "index" da pasta do cache e pode ser
+ * utilizado por várias threads ao mesmo tempo.
+ */
+public class BuildCache {
+
+  /**
+   * Cabeçalho do índice, que o invalida ao mudar a versão ou o
+   * formato das linhas.
+   */
+  private static final String HEADER =
+      "MicroKotlin-cache-2 " + MicroKotlin.VERSION;
+
+  /**
+   * Informações guardadas de uma entrada.
+   */
+  private static class Entry {
+    final String hash;
+    final long size;
+    final long modified;
+    final String fingerprint;
+
+    Entry(String hash, long size, long modified, String fingerprint) {
+      this.hash = hash;
+      this.size = size;
+      this.modified = modified;
+      this.fingerprint = fingerprint;
+    }
+  }
+
+  /**
+   * Pasta do cache.
+   */
+  private final Path directory;
+
+  /**
+   * Valor misturado a todos os hashes, com a versão e as opções.
+   */
+  private final byte[] salt;
+
+  /**
+   * Opções da execução que alteram a saída, sem espaços.
+   */
+  private final String fingerprint;
+
+  /**
+   * Entradas conhecidas, indexadas pelo caminho absoluto.
+   */
+  private final Map<String, Entry> entries = new ConcurrentHashMap<>();
+
+  /**
+   * Quantidade de entradas que não precisaram ser transpiladas.
+   */
+  private final AtomicInteger skipped = new AtomicInteger();
+
+  /**
+   * Carrega o cache da pasta informada, ou cria um vazio caso
+   * ela ainda não exista ou seja de outra versão.
+   *
+   * @param directory pasta do cache
+   * @param options opções da execução
+   * @throws IOException caso haja algum erro de leitura
+   */
+  public BuildCache(Path directory, Options options) throws IOException {
+    this.directory = directory;
+    this.fingerprint = options.fingerprint();
+    this.salt = (HEADER + " " + fingerprint).getBytes(StandardCharsets.UTF_8);
+
+    Path index = directory.resolve("index");
+    if (!Files.exists(index)) return;
+
+    try (BufferedReader reader =
+        Files.newBufferedReader(index, StandardCharsets.UTF_8)) {
+      if (!HEADER.equals(reader.readLine())) return;
+
+      String line;
+      while ((line = reader.readLine()) != null) {
+        String[] fields = line.split(" ", 5);
+        if (fields.length < 5) continue;
+
+        Entry entry = new Entry(fields[0], Long.parseLong(fields[1]),
+            Long.parseLong(fields[2]), fields[3]);
+        entries.put(fields[4], entry);
+      }
+    }
+  }
+
+  /**
+   * Lê o tamanho e a data de modificação de uma entrada. Devem ser
+   * lidos antes do conteúdo, de modo que uma alteração feita durante a
+   * compilação mude a data e a entrada seja conferida pelo hash na
+   * próxima vez, em vez de guardar a data nova junto do hash antigo.
+   *
+   * @param input arquivo de entrada
+   * @return atributos da entrada
+   * @throws IOException caso haja algum erro de leitura
+   */
+  public BasicFileAttributes attributes(Path input) throws IOException {
+    return Files.readAttributes(input, BasicFileAttributes.class);
+  }
+
+  /**
+   * Verifica, somente pelo tamanho e pela data de modificação,
+   * se a entrada não mudou desde a última compilação, feita com
+   * as mesmas opções.
+   *
+   * @param input arquivo de entrada
+   * @param output arquivo de saída
+   * @param attributes atributos da entrada, obtidos por attributes
+   * @return verdadeiro se a entrada não precisa ser transpilada
+   */
+  public boolean isUpToDate(Path input, Path output,
+      BasicFileAttributes attributes) {
+    Entry entry = entries.get(key(input));
+    if (entry == null || !entry.fingerprint.equals(fingerprint)
+        || !Files.exists(output)) {
+      return false;
+    }
+
+    if (attributes.size() != entry.size
+        || attributes.lastModifiedTime().toMillis() != entry.modified) {
+      return false;
+    }
+
+    skipped.incrementAndGet();
+    return true;
+  }
+
+  /**
+   * Verifica, pelo hash do conteúdo, se a entrada não mudou desde
+   * a última compilação. Caso não tenha mudado, atualiza o tamanho
+   * e a data guardados.
+   *
+   * @param input arquivo de entrada
+   * @param output arquivo de saída
+   * @param attributes atributos lidos antes do conteúdo
+   * @param hash hash do conteúdo, obtido por hash
+   * @return verdadeiro se a entrada não precisa ser transpilada
+   */
+  public boolean isUpToDate(Path input, Path output,
+      BasicFileAttributes attributes, String hash) {
+    Entry entry = entries.get(key(input));
+    if (entry == null || !entry.fingerprint.equals(fingerprint)
+        || !entry.hash.equals(hash) || !Files.exists(output)) {
+      return false;
+    }
+
+    update(input, attributes, hash);
+    skipped.incrementAndGet();
+    return true;
+  }
+
+  /**
+   * Guarda a entrada como transpilada com sucesso.
+   *
+   * @param input arquivo de entrada
+   * @param attributes atributos lidos antes do conteúdo
+   * @param hash hash do conteúdo, obtido por hash
+   */
+  public void update(Path input, BasicFileAttributes attributes,
+      String hash) {
+    entries.put(key(input), new Entry(hash, attributes.size(),
+        attributes.lastModifiedTime().toMillis(), fingerprint));
+  }
+
+  /**
+   * Descarta a entrada, para que seja transpilada na próxima vez.
+   *
+   * @param input arquivo de entrada
+   */
+  public void invalidate(Path input) {
+    entries.remove(key(input));
+  }
+
+  /**
+   * Calcula o hash do conteúdo de uma entrada.
+   *
+   * @param sourceCode conteúdo da entrada
+   * @return hash em hexadecimal
+   */
+  public String hash(ByteBuffer sourceCode) {
+    MessageDigest digest;
+    try {
+      digest = MessageDigest.getInstance("SHA-256");
+    } catch (NoSuchAlgorithmException e) {
+      throw new IllegalStateException(e);
+    }
+
+    digest.update(salt);
+    digest.update(sourceCode.duplicate());
+
+    StringBuilder builder = new StringBuilder(64);
+    for (byte b : digest.digest()) {
+      builder.append(Character.forDigit((b >> 4) & 0xF, 16));
+      builder.append(Character.forDigit(b & 0xF, 16));
+    }
+    return builder.toString();
+  }
+
+  /**
+   * Retorna a quantidade de entradas que não precisaram
+   * ser transpiladas.
+   *
+   * @return quantidade de entradas atualizadas
+   */
+  public int skipped() {
+    return skipped.get();
+  }
+
+  /**
+   * Grava o índice, substituindo o anterior de forma atômica.
+   *
+   * @throws IOException caso haja algum erro de escrita
+   */
+  public void save() throws IOException {
+    Files.createDirectories(directory);
+    Path temporary = Files.createTempFile(directory, "index", ".tmp");
+
+    try (BufferedWriter writer =
+        Files.newBufferedWriter(temporary, StandardCharsets.UTF_8)) {
+      writer.write(HEADER);
+      writer.newLine();
+
+      for (Map.Entry<String, Entry> item : entries.entrySet()) {
+        Entry entry = item.getValue();
+        writer.write(entry.hash + " " + entry.size + " " + entry.modified
+            + " " + entry.fingerprint + " " + item.getKey());
+        writer.newLine();
+      }
+    }
+
+    Files.move(temporary, directory.resolve("index"),
+        StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+  }
+
+  private String key(Path input) {
+    return input.toAbsolutePath().normalize().toString();
+  }
+
+}
@@ -0,0 +1,1011 @@
+package br.edu.ufabc.microkotlin;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.Arrays;
+import java.util.EnumSet;
+import java.util.List;
+import java.util.Set;
+import br.edu.ufabc.microkotlin.bytecode.ClassWriter;
+import br.edu.ufabc.microkotlin.bytecode.Code;
+import br.edu.ufabc.microkotlin.bytecode.Label;
+import br.edu.ufabc.microkotlin.expr.*;
+import br.edu.ufabc.microkotlin.program.*;
+import br.edu.ufabc.microkotlin.stmt.*;
+
+import static br.edu.ufabc.microkotlin.bytecode.Opcodes.*;
+
+/**
+ * Gera diretamente o arquivo .class do programa, sem passar pelo
+ * código Java e pelo javac.
+ *
+ * As constantes se tornam campos estáticos finais, inicializados no
+ * <clinit>, e as variáveis ocupam posições locais do método main,
+ * reaproveitadas ao fim de cada bloco. Os laços e condicionais são
+ * desvios diretos, e as comparações nas condições desviam sem criar
+ * o valor booleano intermediário. As Strings acumuladas em laços,
+ * marcadas pelo AccumulatorFinder, são guardadas em um StringBuilder.
+ * A saída é escrita em um buffer, esvaziado antes de cada leitura e
+ * ao fim do main, mesmo que uma exceção seja lançada, e a entrada é
+ * lida pelos métodos gerados pelo BytecodeInput. Nos programas
+ * divididos pelo Outliner, os trechos do main se tornam métodos
+ * estáticos, e as variáveis usadas por mais de um deles, campos.
+ *
+ * Depende das ligações (escopo, posição) definidas pelo Resolver e do
+ * tipo de cada expressão, definido pelo TypeChecker.
+ * A semântica segue a do código gerado pelo Transpiler: os literais
+ * inteiros são int, as operações com Double promovem o int e o '+'
+ * com uma String concatena.
+ */
+public class BytecodeCompiler implements
+    Expr.Visitor<Kind>, Stmt.Visitor<Void>, Program.Visitor<Void> {
+
+  @SuppressWarnings("serial")
+  private static class CompileError extends RuntimeException {
+    final Token token;
+
+    CompileError(Token token, String message) {
+      super(message);
+      this.token = token;
+    }
+  }
+
+  private static final String STRING_BUILDER = "java/lang/StringBuilder";
+  private static final String PRINT_STREAM = "java/io/PrintStream";
+  private static final String SCANNER = "java/util/Scanner";
+  private static final String BUFFERED_OUTPUT =
+      "java/io/BufferedOutputStream";
+
+  /**
+   * Campo da saída com buffer e tamanho do buffer, em bytes. O '$'
+   * não é aceito nos nomes do MicroKotlin, então o campo não colide
+   * com as variáveis e constantes do programa.
+   */
+  private static final String STDOUT = "$stdout";
+  private static final int OUTPUT_BUFFER = 65536;
+
+  /**
+   * Posição local do Scanner da entrada padrão, logo após args, ou
+   * da primeira variável, caso a entrada seja lida sem o Scanner.
+   * Nos programas divididos em métodos, o Scanner é um campo.
+   */
+  private static final int SCANNER_SLOT = 1;
+  private static final String SCANNER_FIELD = "$scanner";
+
+  /**
+   * Arquivo de saída.
+   */
+  private final String outputFile;
+
+  /**
+   * Nome da classe gerada.
+   */
+  private final String className;
+
+  /**
+   * Erros da compilação.
+   */
+  private final Diagnostics diagnostics;
+
+  /**
+   * Classe sendo gerada.
+   */
+  private ClassWriter writer;
+
+  /**
+   * Corpo do método sendo gerado.
+   */
+  private Code code;
+
+  /**
+   * Determina se o Scanner da entrada está disponível, o que
+   * não ocorre na inicialização das constantes.
+   */
+  private boolean inMain;
+
+  /**
+   * Determina se o main foi dividido em métodos pelo Outliner.
+   */
+  private boolean split;
+
+  /**
+   * Determina se a saída é escrita em um buffer, em vez de
+   * diretamente no System.out.
+   */
+  private boolean bufferOutput = true;
+
+  /**
+   * Determina se a entrada é lida pelos métodos do BytecodeInput, em
+   * vez do java.util.Scanner.
+   */
+  private boolean fastReader = true;
+
+  /**
+   * Tipos lidos pelo programa, que precisam de um método de leitura.
+   */
+  private final Set<ExprRead.ReadType> reads =
+      EnumSet.noneOf(ExprRead.ReadType.class);
+
+  /**
+   * Tipo e posição local de cada variável, indexados pelo escopo e
+   * pela posição definidos pelo Resolver.
+   */
+  private Kind[][] types;
+  private int[][] slots;
+
+  /**
+   * Indica as variáveis guardadas em um StringBuilder, indexadas
+   * da mesma forma.
+   */
+  private boolean[][] builders;
+
+  /**
+   * Nomes dos campos das constantes e das variáveis usadas por mais
+   * de um método gerado, ou null para as variáveis locais, indexados
+   * da mesma forma.
+   */
+  private String[][] fields;
+
+  /**
+   * Próxima posição local livre.
+   */
+  private int nextSlot;
+
+  /**
+   * Linha do último token visitado, usada nos erros sem token.
+   */
+  private int line = 1;
+
+  public BytecodeCompiler(String outputFile, Diagnostics diagnostics) {
+    this.outputFile = outputFile;
+    this.diagnostics = diagnostics;
+
+    String name = Paths.get(outputFile).getFileName().toString();
+    this.className = name.substring(0, name.length() - ".class".length());
+  }
+
+  /**
+   * Define se a saída do programa gerado é escrita em um buffer,
+   * esvaziado antes de cada leitura, ao fim da execução e quando
+   * fica cheio, ou diretamente no System.out, a cada impressão.
+   *
+   * @param bufferOutput verdadeiro para usar o buffer (padrão)
+   */
+  public void bufferOutput(boolean bufferOutput) {
+    this.bufferOutput = bufferOutput;
+  }
+
+  /**
+   * Define se o programa gerado lê a entrada por um leitor próprio,
+   * que converte os números diretamente de um buffer de bytes, ou
+   * pelo java.util.Scanner.
+   *
+   * @param fastReader verdadeiro para usar o leitor próprio (padrão)
+   */
+  public void fastReader(boolean fastReader) {
+    this.fastReader = fastReader;
+  }
+
+  /**
+   * Gera a classe e a escreve no arquivo de saída.
+   *
+   * @param program programa já resolvido e verificado
+   * @param onlyIfChanged não reescreve o arquivo caso o conteúdo seja
+   *                      idêntico, preservando sua data de modificação
+   * @throws IOException caso haja algum erro de escrita
+   */
+  public void compile(Program program, boolean onlyIfChanged)
+      throws IOException {
+    byte[] bytes = compile(program);
+    if (bytes == null) return;
+
+    Path path = Paths.get(outputFile);
+    if (onlyIfChanged && Files.exists(path) && Files.size(path) == bytes.length
+        && Arrays.equals(Files.readAllBytes(path), bytes)) {
+      return;
+    }
+
+    Files.write(path, bytes);
+  }
+
+  /**
+   * Gera a classe do programa.
+   *
+   * @param program programa já resolvido e verificado
+   * @return bytes da classe, ou null caso haja algum erro
+   */
+  public byte[] compile(Program program) {
+    writer = new ClassWriter(className, "java/lang/Object");
+    writer.sourceFile(className + ".kt");
+
+    try {
+      program.accept(this);
+      return writer.toByteArray();
+    } catch (CompileError error) {
+      if (error.token != null) {
+        diagnostics.error(error.token, error.getMessage());
+      } else {
+        diagnostics.error(line, error.getMessage());
+      }
+    } catch (IllegalStateException error) {
+      diagnostics.error(line, error.getMessage());
+    }
+
+    return null;
+  }
+
+  private Kind evaluate(Expr expr) {
+    return expr.accept(this);
+  }
+
+  private void execute(Stmt stmt) {
+    stmt.accept(this);
+  }
+
+  @Override
+  public Void visitProgram(Program program) {
+    types = new Kind[program.maxDepth + 1][];
+    slots = new int[program.maxDepth + 1][];
+    builders = new boolean[program.maxDepth + 1][];
+    fields = new String[program.maxDepth + 1][];
+    types[0] = new Kind[program.globals];
+    slots[0] = new int[program.globals];
+    builders[0] = new boolean[program.globals];
+    fields[0] = new String[program.globals];
+    split = program.methods != null;
+
+    reads.clear();
+    inMain = false;
+    Code clinit = writer.method(ACC_STATIC, "<clinit>", "()V", 0);
+    code = clinit;
+    if (bufferOutput) createOutput();
+    for (StmtVal valDecl : program.constants) {
+      execute(valDecl);
+    }
+
+    Code init = writer.method(ACC_PUBLIC, "<init>", "()V", 1);
+    init.load(ALOAD, 0);
+    init.invoke(INVOKESPECIAL, "java/lang/Object", "<init>", "()V");
+    init.op(RETURN);
+
+    inMain = true;
+    nextSlot = fastReader || split ? SCANNER_SLOT : SCANNER_SLOT + 1;
+    code = writer.method(ACC_PUBLIC | ACC_STATIC, "main",
+        "([Ljava/lang/String;)V", 1);
+
+    if (!fastReader) {
+      code.newObject(SCANNER);
+      code.op(DUP);
+      code.field(GETSTATIC, "java/lang/System", "in",
+          "Ljava/io/InputStream;");
+      code.invoke(INVOKESPECIAL, SCANNER, "<init>",
+          "(Ljava/io/InputStream;)V");
+
+      if (split) {
+        writer.field(ACC_PRIVATE | ACC_STATIC, SCANNER_FIELD,
+            "L" + SCANNER + ";");
+        code.field(PUTSTATIC, className, SCANNER_FIELD, "L" + SCANNER + ";");
+      } else {
+        code.store(ASTORE, SCANNER_SLOT);
+      }
+    }
+
+    Label start = new Label();
+    Label end = new Label();
+    code.mark(start);
+    int startPosition = code.length();
+
+    executeStatements(program.statements, program.methods);
+
+    if (!fastReader) {
+      loadScanner();
+      code.invoke(INVOKEVIRTUAL, SCANNER, "close", "()V");
+    }
+    code.mark(end);
+
+    // Um trecho protegido não pode ser vazio.
+    if (bufferOutput && code.length() > startPosition) {
+      flushOutput();
+      code.op(RETURN);
+
+      // Equivale a um finally: a saída é esvaziada e a exceção,
+      // lançada novamente.
+      Label handler = new Label();
+      code.catchAll(start, end, handler);
+      code.mark(handler);
+      flushOutput();
+      code.op(ATHROW);
+    } else {
+      if (bufferOutput) flushOutput();
+      code.op(RETURN);
+    }
+
+    if (fastReader && !reads.isEmpty()) {
+      new BytecodeInput(writer, className, bufferOutput ? STDOUT : null)
+          .generate(clinit, reads);
+    }
+    clinit.op(RETURN);
+
+    return null;
+  }
+
+  /**
+   * Cria a saída com buffer no campo STDOUT, sobre o System.out.
+   */
+  private void createOutput() {
+    writer.field(ACC_PRIVATE | ACC_STATIC | ACC_FINAL, STDOUT,
+        "Ljava/io/PrintStream;");
+
+    code.newObject(PRINT_STREAM);
+    code.op(DUP);
+    code.newObject(BUFFERED_OUTPUT);
+    code.op(DUP);
+    code.field(GETSTATIC, "java/lang/System", "out", "Ljava/io/PrintStream;");
+    code.push(OUTPUT_BUFFER);
+    code.invoke(INVOKESPECIAL, BUFFERED_OUTPUT, "<init>",
+        "(Ljava/io/OutputStream;I)V");
+    code.invoke(INVOKESPECIAL, PRINT_STREAM, "<init>",
+        "(Ljava/io/OutputStream;)V");
+    code.field(PUTSTATIC, className, STDOUT, "Ljava/io/PrintStream;");
+  }
+
+  private void flushOutput() {
+    code.field(GETSTATIC, className, STDOUT, "Ljava/io/PrintStream;");
+    code.invoke(INVOKEVIRTUAL, PRINT_STREAM, "flush", "()V");
+  }
+
+  private void loadScanner() {
+    if (split) {
+      code.field(GETSTATIC, className, SCANNER_FIELD, "L" + SCANNER + ";");
+    } else {
+      code.load(ALOAD, SCANNER_SLOT);
+    }
+  }
+
+  /**
+   * Gera os comandos ou, caso tenham sido divididos pelo Outliner,
+   * as chamadas aos métodos que os executam.
+   */
+  private void executeStatements(List<Stmt> statements,
+      List<Outliner.Method> methods) {
+    if (methods == null) {
+      for (Stmt statement : statements) {
+        execute(statement);
+      }
+      return;
+    }
+
+    for (Outliner.Method method : methods) {
+      generateMethod(statements, method);
+      code.invoke(INVOKESTATIC, className, method.name, "()V");
+    }
+  }
+
+  /**
+   * Gera um método do Outliner, sem parâmetros, cujas variáveis locais
+   * começam da posição 0.
+   */
+  private void generateMethod(List<Stmt> statements, Outliner.Method method) {
+    Code caller = code;
+    int callerSlot = nextSlot;
+    code = writer.method(ACC_PRIVATE | ACC_STATIC, method.name, "()V", 0);
+    nextSlot = 0;
+
+    if (method.calls.isEmpty()) {
+      executeStatements(statements.subList(method.from, method.to), null);
+    } else {
+      executeStatements(statements, method.calls);
+    }
+
+    code.op(RETURN);
+    code = caller;
+    nextSlot = callerSlot;
+  }
+
+  @Override
+  public Void visitBlockStmt(StmtBlock stmt) {
+    int previousSlot = nextSlot;
+    types[stmt.depth] = new Kind[stmt.locals];
+    slots[stmt.depth] = new int[stmt.locals];
+    builders[stmt.depth] = new boolean[stmt.locals];
+    fields[stmt.depth] = new String[stmt.locals];
+
+    executeStatements(stmt.statements, stmt.methods);
+
+    nextSlot = previousSlot;
+    return null;
+  }
+
+  @Override
+  public Void visitDoWhileStmt(StmtDoWhile stmt) {
+    Label start = new Label();
+    code.mark(start);
+    execute(stmt.body);
+    branch(stmt.condition, start, true);
+    return null;
+  }
+
+  @Override
+  public Void visitExpressionStmt(StmtExpression stmt) {
+    if (stmt.expression instanceof ExprAssign) {
+      assign((ExprAssign) stmt.expression, false);
+      return null;
+    }
+
+    Kind type = evaluate(stmt.expression);
+    code.op(size(type) == 2 ? POP2 : POP);
+    return null;
+  }
+
+  @Override
+  public Void visitIfStmt(StmtIf stmt) {
+    Label otherwise = new Label();
+    branch(stmt.condition, otherwise, false);
+    execute(stmt.thenBranch);
+
+    if (stmt.elseBranch != null) {
+      Label end = new Label();
+      code.jump(GOTO, end);
+      code.mark(otherwise);
+      execute(stmt.elseBranch);
+      code.mark(end);
+    } else {
+      code.mark(otherwise);
+    }
+
+    return null;
+  }
+
+  @Override
+  public Void visitPrintStmt(StmtPrint stmt) {
+    print(stmt.expression, "print");
+    return null;
+  }
+
+  @Override
+  public Void visitPrintLnStmt(StmtPrintLn stmt) {
+    print(stmt.expression, "println");
+    return null;
+  }
+
+  private void print(Expr expression, String method) {
+    if (bufferOutput) {
+      code.field(GETSTATIC, className, STDOUT, "Ljava/io/PrintStream;");
+    } else {
+      code.field(GETSTATIC, "java/lang/System", "out",
+          "Ljava/io/PrintStream;");
+    }
+    Kind type = evaluate(expression);
+
+    if (type == Kind.NULL) {
+      throw new CompileError(null, "Ambiguous print of null.");
+    }
+
+    code.invoke(INVOKEVIRTUAL, PRINT_STREAM, method,
+        "(" + descriptor(type) + ")V");
+  }
+
+  @Override
+  public Void visitValStmt(StmtVal stmt) {
+    Kind type = declaredType(stmt.type);
+    coerce(evaluate(stmt.initializer), type, stmt.name);
+
+    types[stmt.depth][stmt.slot] = type;
+    fields[stmt.depth][stmt.slot] = stmt.name.lexeme;
+
+    writer.field(ACC_PRIVATE | ACC_STATIC | ACC_FINAL, stmt.name.lexeme,
+        descriptor(type));
+    code.field(PUTSTATIC, className, stmt.name.lexeme, descriptor(type));
+    return null;
+  }
+
+  @Override
+  public Void visitVarStmt(StmtVar stmt) {
+    Kind type = declaredType(stmt.type);
+
+    if (stmt.accumulator) {
+      code.newObject(STRING_BUILDER);
+      code.op(DUP);
+      code.invoke(INVOKESPECIAL, STRING_BUILDER, "<init>", "()V");
+      append(stmt.initializer);
+    } else if (stmt.initializer != null) {
+      coerce(evaluate(stmt.initializer), type, stmt.name);
+    } else {
+      pushDefault(type);
+    }
+
+    types[stmt.depth][stmt.slot] = type;
+    builders[stmt.depth][stmt.slot] = stmt.accumulator;
+    fields[stmt.depth][stmt.slot] = stmt.field;
+
+    if (stmt.field != null) {
+      writer.field(ACC_PRIVATE | ACC_STATIC, stmt.field,
+          variableDescriptor(stmt.depth, stmt.slot));
+    } else {
+      slots[stmt.depth][stmt.slot] = nextSlot;
+      nextSlot += size(type);
+    }
+
+    storeVariable(stmt.depth, stmt.slot);
+    return null;
+  }
+
+  @Override
+  public Void visitWhileStmt(StmtWhile stmt) {
+    Label condition = new Label();
+    Label body = new Label();
+
+    code.jump(GOTO, condition);
+    code.mark(body);
+    execute(stmt.body);
+    code.mark(condition);
+    branch(stmt.condition, body, true);
+    return null;
+  }
+
+  @Override
+  public Kind visitAssignExpr(ExprAssign expr) {
+    return assign(expr, true);
+  }
+
+  /**
+   * Gera uma atribuição, mantendo o valor atribuído na pilha
+   * somente quando é usado pela expressão externa.
+   */
+  private Kind assign(ExprAssign expr, boolean keepValue) {
+    line = expr.name.line;
+    Kind type = types[expr.depth][expr.slot];
+
+    if (builders[expr.depth][expr.slot]) {
+      // Nunca é usada como expressão, então não há valor a manter.
+      assignBuilder(expr);
+      return type;
+    }
+
+    coerce(evaluate(expr.value), type, expr.name);
+
+    if (keepValue) code.op(size(type) == 2 ? DUP2 : DUP);
+    storeVariable(expr.depth, expr.slot);
+    return type;
+  }
+
+  /**
+   * Gera uma atribuição a uma variável guardada em um StringBuilder:
+   * as partes de "s = s + a + b" são acrescentadas, e nas demais
+   * atribuições o conteúdo é substituído pelo novo valor.
+   */
+  private void assignBuilder(ExprAssign expr) {
+    List<Expr> parts = AccumulatorFinder.appendedParts(expr);
+    loadVariable(expr.depth, expr.slot);
+
+    if (parts != null) {
+      for (Expr part : parts) {
+        append(part);
+      }
+    } else {
+      code.push(0);
+      loadVariable(expr.depth, expr.slot);
+      code.invoke(INVOKEVIRTUAL, STRING_BUILDER, "length", "()I");
+      evaluate(expr.value);
+      code.invoke(INVOKEVIRTUAL, STRING_BUILDER, "replace",
+          "(IILjava/lang/String;)L" + STRING_BUILDER + ";");
+    }
+
+    code.op(POP);
+  }
+
+  @Override
+  @SuppressWarnings("incomplete-switch")
+  public Kind visitBinaryExpr(ExprBinary expr) {
+    line = expr.operator.line;
+    Kind type = expr.kind;
+
+    switch (expr.operator.type) {
+      case GREATER:
+      case GREATER_EQUAL:
+      case LESS:
+      case LESS_EQUAL:
+      case BANG_EQUAL:
+      case EQUAL_EQUAL:
+        return booleanValue(expr);
+    }
+
+    if (type == Kind.STRING) {
+      code.newObject(STRING_BUILDER);
+      code.op(DUP);
+      code.invoke(INVOKESPECIAL, STRING_BUILDER, "<init>", "()V");
+      append(expr);
+      code.invoke(INVOKEVIRTUAL, STRING_BUILDER, "toString",
+          "()Ljava/lang/String;");
+      return type;
+    }
+
+    coerce(evaluate(expr.left), type, expr.operator);
+    coerce(evaluate(expr.right), type, expr.operator);
+
+    boolean real = type == Kind.DOUBLE;
+    switch (expr.operator.type) {
+      case PLUS: code.op(real ? DADD : IADD); break;
+      case MINUS: code.op(real ? DSUB : ISUB); break;
+      case TIMES: code.op(real ? DMUL : IMUL); break;
+      case SLASH: code.op(real ? DDIV : IDIV); break;
+      case REM: code.op(real ? DREM : IREM); break;
+    }
+
+    return type;
+  }
+
+  /**
+   * Adiciona os operandos de uma concatenação ao StringBuilder no
+   * topo da pilha. As concatenações aninhadas à esquerda utilizam
+   * o mesmo StringBuilder.
+   */
+  private void append(Expr expr) {
+    if (expr instanceof ExprBinary
+        && ((ExprBinary) expr).operator.type == TokenType.PLUS
+        && expr.kind == Kind.STRING) {
+      append(((ExprBinary) expr).left);
+      append(((ExprBinary) expr).right);
+      return;
+    }
+
+    if (expr instanceof ExprVariable && isBuilder((ExprVariable) expr)) {
+      // Acrescenta o conteúdo sem criar a String intermediária.
+      ExprVariable variable = (ExprVariable) expr;
+      loadVariable(variable.depth, variable.slot);
+      code.invoke(INVOKEVIRTUAL, STRING_BUILDER, "append",
+          "(Ljava/lang/CharSequence;)L" + STRING_BUILDER + ";");
+      return;
+    }
+
+    Kind type = evaluate(expr);
+    code.invoke(INVOKEVIRTUAL, STRING_BUILDER, "append",
+        "(" + descriptor(type) + ")L" + STRING_BUILDER + ";");
+  }
+
+  @Override
+  public Kind visitGroupingExpr(ExprGrouping expr) {
+    return evaluate(expr.expression);
+  }
+
+  @Override
+  public Kind visitLiteralExpr(ExprLiteral expr) {
+    Kind type = expr.kind;
+
+    switch (type) {
+      case INT:
+        code.push(((Double) expr.value).intValue());
+        break;
+      case DOUBLE:
+        code.push((double) (Double) expr.value);
+        break;
+      case BOOLEAN:
+        code.push((Boolean) expr.value ? 1 : 0);
+        break;
+      case STRING:
+        code.push(Escapes.unescape((String) expr.value));
+        break;
+      default:
+        code.op(ACONST_NULL);
+        break;
+    }
+
+    return type;
+  }
+
+  @Override
+  public Kind visitLogicalExpr(ExprLogical expr) {
+    line = expr.operator.line;
+    return booleanValue(expr);
+  }
+
+  @Override
+  public Kind visitReadExpr(ExprRead expr) {
+    if (!inMain) {
+      throw new CompileError(null, "Cannot read input in a constant.");
+    }
+
+    if (fastReader) {
+      reads.add(expr.type);
+      code.invoke(INVOKESTATIC, className, BytecodeInput.method(expr.type),
+          BytecodeInput.descriptor(expr.type));
+
+      switch (expr.type) {
+        case INT: return Kind.INT;
+        case DOUBLE: return Kind.DOUBLE;
+        case BOOLEAN: return Kind.BOOLEAN;
+        default: return Kind.STRING;
+      }
+    }
+
+    // Mostra o que já foi impresso, como uma pergunta, antes de
+    // aguardar a entrada.
+    if (bufferOutput) flushOutput();
+    loadScanner();
+
+    switch (expr.type) {
+      case INT:
+        code.invoke(INVOKEVIRTUAL, SCANNER, "nextInt", "()I");
+        return Kind.INT;
+      case DOUBLE:
+        code.invoke(INVOKEVIRTUAL, SCANNER, "nextDouble", "()D");
+        return Kind.DOUBLE;
+      case BOOLEAN:
+        code.invoke(INVOKEVIRTUAL, SCANNER, "nextBoolean", "()Z");
+        return Kind.BOOLEAN;
+      default:
+        code.invoke(INVOKEVIRTUAL, SCANNER, "nextLine",
+            "()Ljava/lang/String;");
+        return Kind.STRING;
+    }
+  }
+
+  @Override
+  public Kind visitUnaryExpr(ExprUnary expr) {
+    line = expr.operator.line;
+
+    if (expr.operator.type == TokenType.BANG) {
+      return booleanValue(expr);
+    }
+
+    Kind type = evaluate(expr.right);
+    code.op(type == Kind.DOUBLE ? DNEG : INEG);
+    return type;
+  }
+
+  @Override
+  public Kind visitVariableExpr(ExprVariable expr) {
+    line = expr.name.line;
+    Kind type = types[expr.depth][expr.slot];
+    loadVariable(expr.depth, expr.slot);
+
+    if (isBuilder(expr)) {
+      code.invoke(INVOKEVIRTUAL, STRING_BUILDER, "toString",
+          "()Ljava/lang/String;");
+    }
+
+    return type;
+  }
+
+  private boolean isBuilder(ExprVariable expr) {
+    return builders[expr.depth][expr.slot];
+  }
+
+  /**
+   * Empilha o valor de uma variável, local ou campo. As variáveis
+   * guardadas em um StringBuilder empilham o próprio StringBuilder.
+   */
+  private void loadVariable(int depth, int slot) {
+    String field = fields[depth][slot];
+
+    if (field != null) {
+      code.field(GETSTATIC, className, field, variableDescriptor(depth, slot));
+    } else {
+      code.load(load(types[depth][slot]), slots[depth][slot]);
+    }
+  }
+
+  /**
+   * Guarda o valor no topo da pilha em uma variável, local ou campo.
+   */
+  private void storeVariable(int depth, int slot) {
+    String field = fields[depth][slot];
+
+    if (field != null) {
+      code.field(PUTSTATIC, className, field, variableDescriptor(depth, slot));
+    } else {
+      code.store(store(types[depth][slot]), slots[depth][slot]);
+    }
+  }
+
+  private String variableDescriptor(int depth, int slot) {
+    return builders[depth][slot]
+        ? "L" + STRING_BUILDER + ";"
+        : descriptor(types[depth][slot]);
+  }
+
+  /**
+   * Empilha o valor booleano de uma condição.
+   */
+  private Kind booleanValue(Expr condition) {
+    Label isTrue = new Label();
+    Label end = new Label();
+
+    branch(condition, isTrue, true);
+    code.push(0);
+    code.jump(GOTO, end);
+    code.mark(isTrue);
+    code.push(1);
+    code.mark(end);
+    return Kind.BOOLEAN;
+  }
+
+  /**
+   * Desvia para o rótulo caso a condição tenha o valor informado.
+   * As comparações e os operadores lógicos desviam diretamente,
+   * sem empilhar o valor booleano.
+   *
+   * @param condition condição booleana
+   * @param target destino do desvio
+   * @param when valor da condição que causa o desvio
+   */
+  private void branch(Expr condition, Label target, boolean when) {
+    if (condition instanceof ExprGrouping) {
+      branch(((ExprGrouping) condition).expression, target, when);
+      return;
+    }
+
+    if (condition instanceof ExprUnary
+        && ((ExprUnary) condition).operator.type == TokenType.BANG) {
+      ExprUnary unary = (ExprUnary) condition;
+      branch(unary.right, target, !when);
+      return;
+    }
+
+    if (condition instanceof ExprLogical) {
+      ExprLogical logical = (ExprLogical) condition;
+
+      boolean or = logical.operator.type == TokenType.OR;
+      if (or == when) {
+        branch(logical.left, target, when);
+        branch(logical.right, target, when);
+      } else {
+        Label skip = new Label();
+        branch(logical.left, skip, !when);
+        branch(logical.right, target, when);
+        code.mark(skip);
+      }
+      return;
+    }
+
+    if (condition instanceof ExprBinary && compare((ExprBinary) condition,
+        target, when)) {
+      return;
+    }
+
+    evaluate(condition);
+    code.jump(when ? IFNE : IFEQ, target);
+  }
+
+  /**
+   * Gera o desvio de uma comparação.
+   *
+   * @return falso caso a expressão não seja uma comparação
+   */
+  @SuppressWarnings("incomplete-switch")
+  private boolean compare(ExprBinary expr, Label target, boolean when) {
+    TokenType operator = expr.operator.type;
+    int condition;
+
+    switch (operator) {
+      case EQUAL_EQUAL: condition = IFEQ; break;
+      case BANG_EQUAL: condition = IFNE; break;
+      case LESS: condition = IFLT; break;
+      case LESS_EQUAL: condition = IFLE; break;
+      case GREATER: condition = IFGT; break;
+      case GREATER_EQUAL: condition = IFGE; break;
+      default: return false;
+    }
+
+    if (!when) condition = negate(condition);
+
+    line = expr.operator.line;
+    Kind left = expr.left.kind;
+    Kind right = expr.right.kind;
+    boolean equality = operator == TokenType.EQUAL_EQUAL
+        || operator == TokenType.BANG_EQUAL;
+
+    if (left.isNumber() && right.isNumber()) {
+      Kind type = left == Kind.DOUBLE || right == Kind.DOUBLE
+          ? Kind.DOUBLE
+          : Kind.INT;
+      coerce(evaluate(expr.left), type, expr.operator);
+      coerce(evaluate(expr.right), type, expr.operator);
+
+      if (type == Kind.INT) {
+        code.jump(condition - IFEQ + IF_ICMPEQ, target);
+      } else {
+        boolean less = operator == TokenType.LESS
+            || operator == TokenType.LESS_EQUAL;
+        code.op(less ? DCMPG : DCMPL);
+        code.jump(condition, target);
+      }
+      return true;
+    }
+
+    if (equality && left == Kind.BOOLEAN && right == Kind.BOOLEAN) {
+      evaluate(expr.left);
+      evaluate(expr.right);
+      code.jump(condition - IFEQ + IF_ICMPEQ, target);
+      return true;
+    }
+
+    if (equality && left.isReference() && right.isReference()) {
+      evaluate(expr.left);
+      evaluate(expr.right);
+      code.jump(condition == IFEQ ? IF_ACMPEQ : IF_ACMPNE, target);
+      return true;
+    }
+
+    throw new CompileError(expr.operator, equality
+        ? "Incomparable types: " + left.name + " and " + right.name + "."
+        : "Operands must be numbers.");
+  }
+
+  private static int negate(int condition) {
+    switch (condition) {
+      case IFEQ: return IFNE;
+      case IFNE: return IFEQ;
+      case IFLT: return IFGE;
+      case IFGE: return IFLT;
+      case IFGT: return IFLE;
+      default: return IFGT;
+    }
+  }
+
+  /**
+   * Converte o valor no topo da pilha para o tipo esperado, ou
+   * informa um erro caso os tipos sejam incompatíveis.
+   */
+  private void coerce(Kind from, Kind to, Token token) {
+    if (from == to || (from == Kind.NULL && to == Kind.STRING)) return;
+
+    if (from == Kind.INT && to == Kind.DOUBLE) {
+      code.op(I2D);
+      return;
+    }
+
+    throw new CompileError(token, "Incompatible types: " + from.name
+        + " cannot be converted to " + to.name + ".");
+  }
+
+  private void pushDefault(Kind type) {
+    switch (type) {
+      case DOUBLE: code.push(0.0); break;
+      case STRING: code.op(ACONST_NULL); break;
+      default: code.push(0); break;
+    }
+  }
+
+  private Kind declaredType(Token type) {
+    Kind kind = Kind.declared(type);
+
+    if (kind == null) {
+      throw new CompileError(type, "The type specified doesn't exist.");
+    }
+
+    return kind;
+  }
+
+  /**
+   * Descritor do tipo na JVM. O null é uma String.
+   */
+  private static String descriptor(Kind type) {
+    switch (type) {
+      case INT: return "I";
+      case DOUBLE: return "D";
+      case BOOLEAN: return "Z";
+      default: return "Ljava/lang/String;";
+    }
+  }
+
+  /**
+   * Quantidade de posições ocupadas na pilha e nas variáveis locais.
+   */
+  private static int size(Kind type) {
+    return type == Kind.DOUBLE ? 2 : 1;
+  }
+
+  private static int load(Kind type) {
+    return type == Kind.INT || type == Kind.BOOLEAN ? ILOAD
+        : type == Kind.DOUBLE ? DLOAD : ALOAD;
+  }
+
+  private static int store(Kind type) {
+    return type == Kind.INT || type == Kind.BOOLEAN ? ISTORE
+        : type == Kind.DOUBLE ? DSTORE : ASTORE;
+  }
+
+}
@@ -0,0 +1,454 @@
+package br.edu.ufabc.microkotlin;
+
+import java.util.Set;
+import br.edu.ufabc.microkotlin.bytecode.ClassWriter;
+import br.edu.ufabc.microkotlin.bytecode.Code;
+import br.edu.ufabc.microkotlin.bytecode.Label;
+import br.edu.ufabc.microkotlin.expr.ExprRead.ReadType;
+
+import static br.edu.ufabc.microkotlin.bytecode.Opcodes.*;
+
+/**
+ * Gera, na classe do BytecodeCompiler, o leitor da entrada usado no
+ * lugar do java.util.Scanner: um buffer de bytes sobre o System.in,
+ * de onde os números são convertidos diretamente, sem expressões
+ * regulares. É o mesmo leitor escrito em Java pelo Transpiler.
+ *
+ * Cada tipo lido possui um método estático, como readInt()I, que
+ * esvazia a saída com buffer antes de aguardar a entrada. Assim como
+ * no Scanner, o separador após um valor não é consumido, e a leitura
+ * de uma String devolve o restante da linha atual.
+ */
+class BytecodeInput {
+
+  /**
+   * Campos e métodos auxiliares do leitor. O '$' não é aceito nos
+   * nomes do MicroKotlin, então eles não colidem com os do programa.
+   */
+  private static final String BUFFER = "$inputBuffer";
+  private static final String LENGTH = "$inputLength";
+  private static final String POSITION = "$inputPosition";
+  private static final String PEEK = "$peek";
+  private static final String SKIP_SPACES = "$skipSpaces";
+  private static final String TOKEN = "$token";
+  private static final int BUFFER_SIZE = 65536;
+
+  private static final String PRINT_STREAM = "java/io/PrintStream";
+  private static final String STRING_BUILDER = "java/lang/StringBuilder";
+  private static final String BYTES = "java/io/ByteArrayOutputStream";
+  private static final String MISMATCH = "java/util/InputMismatchException";
+  private static final String NO_ELEMENT = "java/util/NoSuchElementException";
+
+  private final ClassWriter writer;
+  private final String className;
+
+  /**
+   * Campo da saída com buffer, ou null caso a saída não tenha buffer.
+   */
+  private final String stdout;
+
+  private Code code;
+
+  BytecodeInput(ClassWriter writer, String className, String stdout) {
+    this.writer = writer;
+    this.className = className;
+    this.stdout = stdout;
+  }
+
+  /**
+   * Nome do método de leitura, o mesmo da função do MicroKotlin.
+   */
+  static String method(ReadType type) {
+    switch (type) {
+      case INT: return "readInt";
+      case DOUBLE: return "readDouble";
+      case BOOLEAN: return "readBoolean";
+      default: return "readString";
+    }
+  }
+
+  static String descriptor(ReadType type) {
+    switch (type) {
+      case INT: return "()I";
+      case DOUBLE: return "()D";
+      case BOOLEAN: return "()Z";
+      default: return "()Ljava/lang/String;";
+    }
+  }
+
+  /**
+   * Gera os campos do buffer e os métodos dos tipos lidos.
+   *
+   * @param clinit inicialização da classe, ainda sem o RETURN
+   * @param reads tipos lidos pelo programa
+   */
+  void generate(Code clinit, Set<ReadType> reads) {
+    writer.field(ACC_PRIVATE | ACC_STATIC | ACC_FINAL, BUFFER, "[B");
+    writer.field(ACC_PRIVATE | ACC_STATIC, LENGTH, "I");
+    writer.field(ACC_PRIVATE | ACC_STATIC, POSITION, "I");
+
+    clinit.push(BUFFER_SIZE);
+    clinit.newArray(T_BYTE);
+    clinit.field(PUTSTATIC, className, BUFFER, "[B");
+
+    peek();
+    skipSpaces();
+    if (reads.contains(ReadType.DOUBLE) || reads.contains(ReadType.BOOLEAN)) {
+      token();
+    }
+
+    for (ReadType type : reads) {
+      code = writer.method(ACC_PRIVATE | ACC_STATIC, method(type),
+          descriptor(type), 0);
+      if (stdout != null) {
+        code.field(GETSTATIC, className, stdout, "Ljava/io/PrintStream;");
+        code.invoke(INVOKEVIRTUAL, PRINT_STREAM, "flush", "()V");
+      }
+
+      switch (type) {
+        case INT: readInt(); break;
+        case DOUBLE: readDouble(); break;
+        case BOOLEAN: readBoolean(); break;
+        default: readString();
+      }
+    }
+  }
+
+  /**
+   * $peek()I: devolve o próximo byte sem consumi-lo, ou -1 ao fim da
+   * entrada, lendo mais bytes quando o buffer foi todo consumido.
+   */
+  private void peek() {
+    code = writer.method(ACC_PRIVATE | ACC_STATIC, PEEK, "()I", 0);
+    Label ready = new Label();
+
+    code.field(GETSTATIC, className, POSITION, "I");
+    code.field(GETSTATIC, className, LENGTH, "I");
+    code.jump(IF_ICMPNE, ready);
+
+    code.field(GETSTATIC, "java/lang/System", "in", "Ljava/io/InputStream;");
+    code.field(GETSTATIC, className, BUFFER, "[B");
+    code.invoke(INVOKEVIRTUAL, "java/io/InputStream", "read", "([B)I");
+    code.field(PUTSTATIC, className, LENGTH, "I");
+    code.push(0);
+    code.field(PUTSTATIC, className, POSITION, "I");
+    code.field(GETSTATIC, className, LENGTH, "I");
+    code.jump(IFGT, ready);
+    code.push(0);
+    code.field(PUTSTATIC, className, LENGTH, "I");
+    code.push(-1);
+    code.op(IRETURN);
+
+    code.mark(ready);
+    code.field(GETSTATIC, className, BUFFER, "[B");
+    code.field(GETSTATIC, className, POSITION, "I");
+    code.op(BALOAD);
+    code.push(0xFF);
+    code.op(IAND);
+    code.op(IRETURN);
+  }
+
+  /**
+   * $skipSpaces()I: consome os espaços e devolve o primeiro byte após
+   * eles, lançando NoSuchElementException ao fim da entrada.
+   */
+  private void skipSpaces() {
+    code = writer.method(ACC_PRIVATE | ACC_STATIC, SKIP_SPACES, "()I", 0);
+    Label loop = new Label();
+    Label end = new Label();
+    Label found = new Label();
+
+    nextByte(0);
+    code.mark(loop);
+    code.load(ILOAD, 0);
+    code.jump(IFLT, end);
+    code.load(ILOAD, 0);
+    code.push(' ');
+    code.jump(IF_ICMPGT, end);
+    advance(0);
+    code.jump(GOTO, loop);
+
+    code.mark(end);
+    code.load(ILOAD, 0);
+    code.jump(IFGE, found);
+    fail(NO_ELEMENT, -1);
+
+    code.mark(found);
+    code.load(ILOAD, 0);
+    code.op(IRETURN);
+  }
+
+  /**
+   * $token()Ljava/lang/String;: lê os bytes até o próximo espaço.
+   */
+  private void token() {
+    code = writer.method(ACC_PRIVATE | ACC_STATIC, TOKEN,
+        "()Ljava/lang/String;", 0);
+    Label loop = new Label();
+    Label end = new Label();
+
+    code.newObject(STRING_BUILDER);
+    code.op(DUP);
+    code.invoke(INVOKESPECIAL, STRING_BUILDER, "<init>", "()V");
+    code.store(ASTORE, 0);
+    code.invoke(INVOKESTATIC, className, SKIP_SPACES, "()I");
+    code.store(ISTORE, 1);
+
+    code.mark(loop);
+    code.load(ILOAD, 1);
+    code.push(' ');
+    code.jump(IF_ICMPLE, end);
+    code.load(ALOAD, 0);
+    code.load(ILOAD, 1);
+    code.op(I2C);
+    code.invoke(INVOKEVIRTUAL, STRING_BUILDER, "append",
+        "(C)Ljava/lang/StringBuilder;");
+    code.op(POP);
+    advance(1);
+    code.jump(GOTO, loop);
+
+    code.mark(end);
+    code.load(ALOAD, 0);
+    code.invoke(INVOKEVIRTUAL, STRING_BUILDER, "toString",
+        "()Ljava/lang/String;");
+    code.op(ARETURN);
+  }
+
+  /**
+   * Converte os dígitos acumulando o valor negativo, que alcança o
+   * Integer.MIN_VALUE, e lança InputMismatchException caso o valor
+   * não seja um Int.
+   */
+  private void readInt() {
+    // Variáveis: 0 = byte atual, 1 = negativo, 2 = valor, 3 = dígito.
+    Label notMinus = new Label();
+    Label sign = new Label();
+    Label digits = new Label();
+    Label loop = new Label();
+    Label end = new Label();
+    Label negative = new Label();
+    Label mismatch = new Label();
+
+    code.invoke(INVOKESTATIC, className, SKIP_SPACES, "()I");
+    code.store(ISTORE, 0);
+    code.push(0);
+    code.store(ISTORE, 1);
+    code.load(ILOAD, 0);
+    code.push('-');
+    code.jump(IF_ICMPNE, notMinus);
+    code.push(1);
+    code.store(ISTORE, 1);
+    code.jump(GOTO, sign);
+
+    code.mark(notMinus);
+    code.load(ILOAD, 0);
+    code.push('+');
+    code.jump(IF_ICMPNE, digits);
+    code.mark(sign);
+    advance(0);
+
+    code.mark(digits);
+    isDigit(mismatch);
+    code.push(0);
+    code.store(ISTORE, 2);
+
+    code.mark(loop);
+    isDigit(end);
+    code.load(ILOAD, 0);
+    code.push('0');
+    code.op(ISUB);
+    code.store(ISTORE, 3);
+    code.load(ILOAD, 2);
+    code.push(Integer.MIN_VALUE);
+    code.load(ILOAD, 3);
+    code.op(IADD);
+    code.push(10);
+    code.op(IDIV);
+    code.jump(IF_ICMPLT, mismatch);
+    code.load(ILOAD, 2);
+    code.push(10);
+    code.op(IMUL);
+    code.load(ILOAD, 3);
+    code.op(ISUB);
+    code.store(ISTORE, 2);
+    advance(0);
+    code.jump(GOTO, loop);
+
+    code.mark(end);
+    code.load(ILOAD, 0);
+    code.push(' ');
+    code.jump(IF_ICMPGT, mismatch);
+    code.load(ILOAD, 1);
+    code.jump(IFNE, negative);
+    code.load(ILOAD, 2);
+    code.push(Integer.MIN_VALUE);
+    code.jump(IF_ICMPEQ, mismatch);
+    code.load(ILOAD, 2);
+    code.op(INEG);
+    code.op(IRETURN);
+
+    code.mark(negative);
+    code.load(ILOAD, 2);
+    code.op(IRETURN);
+
+    code.mark(mismatch);
+    fail(MISMATCH, -1);
+  }
+
+  /**
+   * Desvia para o rótulo caso o byte atual não seja um dígito.
+   */
+  private void isDigit(Label otherwise) {
+    code.load(ILOAD, 0);
+    code.push('0');
+    code.jump(IF_ICMPLT, otherwise);
+    code.load(ILOAD, 0);
+    code.push('9');
+    code.jump(IF_ICMPGT, otherwise);
+  }
+
+  private void readDouble() {
+    Label start = new Label();
+    Label end = new Label();
+    Label handler = new Label();
+
+    code.invoke(INVOKESTATIC, className, TOKEN, "()Ljava/lang/String;");
+    code.store(ASTORE, 0);
+
+    code.mark(start);
+    code.load(ALOAD, 0);
+    code.invoke(INVOKESTATIC, "java/lang/Double", "parseDouble",
+        "(Ljava/lang/String;)D");
+    code.mark(end);
+    code.op(DRETURN);
+
+    code.catchException(start, end, handler,
+        "java/lang/NumberFormatException");
+    code.mark(handler);
+    code.op(POP);
+    fail(MISMATCH, 0);
+  }
+
+  private void readBoolean() {
+    Label notTrue = new Label();
+    Label notFalse = new Label();
+
+    code.invoke(INVOKESTATIC, className, TOKEN, "()Ljava/lang/String;");
+    code.store(ASTORE, 0);
+
+    code.load(ALOAD, 0);
+    code.push("true");
+    code.invoke(INVOKEVIRTUAL, "java/lang/String", "equalsIgnoreCase",
+        "(Ljava/lang/String;)Z");
+    code.jump(IFEQ, notTrue);
+    code.push(1);
+    code.op(IRETURN);
+
+    code.mark(notTrue);
+    code.load(ALOAD, 0);
+    code.push("false");
+    code.invoke(INVOKEVIRTUAL, "java/lang/String", "equalsIgnoreCase",
+        "(Ljava/lang/String;)Z");
+    code.jump(IFEQ, notFalse);
+    code.push(0);
+    code.op(IRETURN);
+
+    code.mark(notFalse);
+    fail(MISMATCH, 0);
+  }
+
+  /**
+   * Lê o restante da linha atual, sem o '\r' do fim das linhas do
+   * Windows, e consome a quebra de linha.
+   */
+  private void readString() {
+    // Variáveis: 0 = byte atual, 1 = bytes da linha.
+    Label found = new Label();
+    Label loop = new Label();
+    Label end = new Label();
+    Label skip = new Label();
+    Label done = new Label();
+
+    code.invoke(INVOKESTATIC, className, PEEK, "()I");
+    code.store(ISTORE, 0);
+    code.load(ILOAD, 0);
+    code.jump(IFGE, found);
+    code.newObject(NO_ELEMENT);
+    code.op(DUP);
+    code.push("No line found");
+    code.invoke(INVOKESPECIAL, NO_ELEMENT, "<init>",
+        "(Ljava/lang/String;)V");
+    code.op(ATHROW);
+
+    code.mark(found);
+    code.newObject(BYTES);
+    code.op(DUP);
+    code.invoke(INVOKESPECIAL, BYTES, "<init>", "()V");
+    code.store(ASTORE, 1);
+
+    code.mark(loop);
+    code.load(ILOAD, 0);
+    code.jump(IFLT, end);
+    code.load(ILOAD, 0);
+    code.push('\n');
+    code.jump(IF_ICMPEQ, end);
+    code.load(ILOAD, 0);
+    code.push('\r');
+    code.jump(IF_ICMPEQ, skip);
+    code.load(ALOAD, 1);
+    code.load(ILOAD, 0);
+    code.invoke(INVOKEVIRTUAL, BYTES, "write", "(I)V");
+    code.mark(skip);
+    advance(0);
+    code.jump(GOTO, loop);
+
+    code.mark(end);
+    code.load(ILOAD, 0);
+    code.jump(IFLT, done);
+    consume();
+    code.mark(done);
+    code.load(ALOAD, 1);
+    code.invoke(INVOKEVIRTUAL, BYTES, "toString", "()Ljava/lang/String;");
+    code.op(ARETURN);
+  }
+
+  /**
+   * Consome o byte atual e guarda o próximo na variável informada.
+   */
+  private void advance(int slot) {
+    consume();
+    nextByte(slot);
+  }
+
+  private void nextByte(int slot) {
+    code.invoke(INVOKESTATIC, className, PEEK, "()I");
+    code.store(ISTORE, slot);
+  }
+
+  private void consume() {
+    code.field(GETSTATIC, className, POSITION, "I");
+    code.push(1);
+    code.op(IADD);
+    code.field(PUTSTATIC, className, POSITION, "I");
+  }
+
+  /**
+   * Lança uma exceção da classe informada, com a String da variável
+   * como mensagem, ou sem mensagem caso a posição seja -1.
+   */
+  private void fail(String exception, int slot) {
+    code.newObject(exception);
+    code.op(DUP);
+
+    if (slot < 0) {
+      code.invoke(INVOKESPECIAL, exception, "<init>", "()V");
+    } else {
+      code.load(ALOAD, slot);
+      code.invoke(INVOKESPECIAL, exception, "<init>",
+          "(Ljava/lang/String;)V");
+    }
+
+    code.op(ATHROW);
+  }
+
+}
@@ -0,0 +1,977 @@
+package br.edu.ufabc.microkotlin;
+
+import java.io.BufferedReader;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.PrintStream;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.InputMismatchException;
+import java.util.List;
+import java.util.NoSuchElementException;
+import br.edu.ufabc.microkotlin.expr.*;
+import br.edu.ufabc.microkotlin.program.*;
+import br.edu.ufabc.microkotlin.stmt.*;
+
+/**
+ * Compila o programa em uma árvore de closures especializadas pelos
+ * tipos estáticos, executada em seguida sem visitar a árvore sintática.
+ *
+ * Cada nó é visitado uma única vez: a soma de dois Int, por exemplo,
+ * se torna uma closure que soma os int devolvidos pelas closures dos
+ * operandos, sem criar objetos e sem verificar os tipos durante a
+ * execução. Os laços guardam as closures já criadas da condição e do
+ * corpo, que o JIT compila como métodos comuns.
+ *
+ * As variáveis ocupam posições em vetores de int, double, boolean e
+ * String, reaproveitadas ao fim de cada bloco. Os erros de tipo são
+ * encontrados na compilação, e a semântica segue a do código gerado
+ * pelo Transpiler.
+ */
+public class ClosureCompiler implements Expr.Visitor<ClosureCompiler.Node>,
+    Stmt.Visitor<ClosureCompiler.Action>,
+    Program.Visitor<ClosureCompiler.Action> {
+
+  /**
+   * Estado de uma execução: os valores das variáveis e a entrada
+   * e a saída do programa.
+   */
+  static final class Frame {
+    final int[] ints;
+    final double[] doubles;
+    final boolean[] booleans;
+    final String[] strings;
+    final java.util.Scanner input;
+    final PrintStream out;
+
+    Frame(CompiledProgram program, InputStream in, PrintStream out) {
+      this.ints = new int[program.ints];
+      this.doubles = new double[program.doubles];
+      this.booleans = new boolean[program.booleans];
+      this.strings = new String[program.strings];
+      this.input = new java.util.Scanner(
+          new BufferedReader(new InputStreamReader(in)));
+      this.out = out;
+    }
+  }
+
+  @FunctionalInterface
+  interface Action {
+    void run(Frame f);
+  }
+
+  @FunctionalInterface
+  interface IntClosure {
+    int run(Frame f);
+  }
+
+  @FunctionalInterface
+  interface DoubleClosure {
+    double run(Frame f);
+  }
+
+  @FunctionalInterface
+  interface BooleanClosure {
+    boolean run(Frame f);
+  }
+
+  @FunctionalInterface
+  interface StringClosure {
+    String run(Frame f);
+  }
+
+  /**
+   * Parte de uma concatenação, adicionada diretamente ao StringBuilder.
+   */
+  @FunctionalInterface
+  interface Appender {
+    void append(StringBuilder builder, Frame f);
+  }
+
+  /**
+   * Expressão compilada: o seu tipo e a closure correspondente, como
+   * IntClosure para Int. As concatenações guardam também as suas
+   * partes, reaproveitadas pelas concatenações externas.
+   */
+  static final class Node {
+    final Kind kind;
+    final Object closure;
+    final List<Appender> parts;
+
+    Node(Kind kind, Object closure) {
+      this(kind, closure, null);
+    }
+
+    Node(Kind kind, Object closure, List<Appender> parts) {
+      this.kind = kind;
+      this.closure = closure;
+      this.parts = parts;
+    }
+  }
+
+  /**
+   * Programa compilado, que pode ser executado várias vezes.
+   */
+  public static final class CompiledProgram {
+    private final Action main;
+    private final int ints;
+    private final int doubles;
+    private final int booleans;
+    private final int strings;
+
+    CompiledProgram(Action main, int ints, int doubles, int booleans,
+        int strings) {
+      this.main = main;
+      this.ints = ints;
+      this.doubles = doubles;
+      this.booleans = booleans;
+      this.strings = strings;
+    }
+
+    /**
+     * Executa o programa.
+     *
+     * @param in entrada do programa
+     * @param out saída do programa
+     * @param diagnostics erros da execução
+     * @return verdadeiro caso a execução termine sem erros
+     */
+    public boolean run(InputStream in, PrintStream out,
+        Diagnostics diagnostics) {
+      try {
+        main.run(new Frame(this, in, out));
+        return true;
+      } catch (RuntimeError error) {
+        if (error.token != null) {
+          diagnostics.error(error.token, error.getMessage());
+        } else {
+          diagnostics.error(error.line, error.getMessage());
+        }
+        return false;
+      } finally {
+        out.flush();
+      }
+    }
+  }
+
+  @SuppressWarnings("serial")
+  private static class CompileError extends RuntimeException {
+    final Token token;
+
+    CompileError(Token token, String message) {
+      super(message);
+      this.token = token;
+    }
+  }
+
+  @SuppressWarnings("serial")
+  private static class RuntimeError extends RuntimeException {
+    final Token token;
+    final int line;
+
+    RuntimeError(Token token, int line, String message) {
+      super(message);
+      this.token = token;
+      this.line = line;
+    }
+  }
+
+  /**
+   * Erros da compilação.
+   */
+  private final Diagnostics diagnostics;
+
+  /**
+   * Tipo e posição de cada variável, indexados pelo escopo e pela
+   * posição definidos pelo Resolver. A posição é relativa ao vetor
+   * do tipo da variável.
+   */
+  private Kind[][] kinds;
+  private int[][] slots;
+
+  /**
+   * Próxima posição livre e quantidade máxima de posições usadas
+   * em cada vetor, na ordem int, double, boolean e String.
+   */
+  private final int[] next = new int[4];
+  private final int[] max = new int[4];
+
+  /**
+   * Determina se a entrada está disponível, o que não ocorre na
+   * inicialização das constantes.
+   */
+  private boolean inMain;
+
+  /**
+   * Linha do último token visitado, usada nos erros sem token.
+   */
+  private int line = 1;
+
+  public ClosureCompiler(Diagnostics diagnostics) {
+    this.diagnostics = diagnostics;
+  }
+
+  /**
+   * Compila o programa.
+   *
+   * @param program programa já resolvido
+   * @return programa compilado, ou null caso haja algum erro
+   */
+  public CompiledProgram compile(Program program) {
+    Arrays.fill(next, 0);
+    Arrays.fill(max, 0);
+
+    try {
+      Action main = program.accept(this);
+      return new CompiledProgram(main, max[0], max[1], max[2], max[3]);
+    } catch (CompileError error) {
+      if (error.token != null) {
+        diagnostics.error(error.token, error.getMessage());
+      } else {
+        diagnostics.error(line, error.getMessage());
+      }
+      return null;
+    }
+  }
+
+  private Node compile(Expr expr) {
+    return expr.accept(this);
+  }
+
+  private Action compile(Stmt stmt) {
+    return stmt.accept(this);
+  }
+
+  @Override
+  public Action visitProgram(Program program) {
+    kinds = new Kind[program.maxDepth + 1][];
+    slots = new int[program.maxDepth + 1][];
+    kinds[0] = new Kind[program.globals];
+    slots[0] = new int[program.globals];
+
+    List<Action> actions = new ArrayList<>();
+
+    inMain = false;
+    for (StmtVal valDecl : program.constants) {
+      actions.add(compile(valDecl));
+    }
+
+    inMain = true;
+    for (Stmt statement : program.statements) {
+      actions.add(compile(statement));
+    }
+
+    return sequence(actions);
+  }
+
+  @Override
+  public Action visitBlockStmt(StmtBlock stmt) {
+    int[] previous = next.clone();
+    kinds[stmt.depth] = new Kind[stmt.locals];
+    slots[stmt.depth] = new int[stmt.locals];
+
+    List<Action> actions = new ArrayList<>(stmt.statements.size());
+    for (Stmt statement : stmt.statements) {
+      actions.add(compile(statement));
+    }
+
+    System.arraycopy(previous, 0, next, 0, next.length);
+    return sequence(actions);
+  }
+
+  /**
+   * Junta os comandos em uma única closure, sem percorrer um vetor
+   * quando há poucos comandos.
+   */
+  private Action sequence(List<Action> actions) {
+    switch (actions.size()) {
+      case 0:
+        return f -> {};
+      case 1:
+        return actions.get(0);
+      case 2: {
+        Action first = actions.get(0);
+        Action second = actions.get(1);
+        return f -> {
+          first.run(f);
+          second.run(f);
+        };
+      }
+      case 3: {
+        Action first = actions.get(0);
+        Action second = actions.get(1);
+        Action third = actions.get(2);
+        return f -> {
+          first.run(f);
+          second.run(f);
+          third.run(f);
+        };
+      }
+      default: {
+        Action[] all = actions.toArray(new Action[0]);
+        return f -> {
+          for (Action action : all) action.run(f);
+        };
+      }
+    }
+  }
+
+  @Override
+  public Action visitDoWhileStmt(StmtDoWhile stmt) {
+    Action body = compile(stmt.body);
+    BooleanClosure condition = condition(stmt.condition);
+
+    return f -> {
+      do {
+        body.run(f);
+      } while (condition.run(f));
+    };
+  }
+
+  @Override
+  public Action visitExpressionStmt(StmtExpression stmt) {
+    if (stmt.expression instanceof ExprAssign) {
+      return store((ExprAssign) stmt.expression);
+    }
+
+    Node node = compile(stmt.expression);
+    switch (node.kind) {
+      case INT: {
+        IntClosure value = (IntClosure) node.closure;
+        return f -> value.run(f);
+      }
+      case DOUBLE: {
+        DoubleClosure value = (DoubleClosure) node.closure;
+        return f -> value.run(f);
+      }
+      case BOOLEAN: {
+        BooleanClosure value = (BooleanClosure) node.closure;
+        return f -> value.run(f);
+      }
+      default: {
+        StringClosure value = (StringClosure) node.closure;
+        return f -> value.run(f);
+      }
+    }
+  }
+
+  @Override
+  public Action visitIfStmt(StmtIf stmt) {
+    BooleanClosure condition = condition(stmt.condition);
+    Action thenBranch = compile(stmt.thenBranch);
+
+    if (stmt.elseBranch == null) {
+      return f -> {
+        if (condition.run(f)) thenBranch.run(f);
+      };
+    }
+
+    Action elseBranch = compile(stmt.elseBranch);
+    return f -> {
+      if (condition.run(f)) {
+        thenBranch.run(f);
+      } else {
+        elseBranch.run(f);
+      }
+    };
+  }
+
+  @Override
+  public Action visitPrintStmt(StmtPrint stmt) {
+    return print(stmt.expression, false);
+  }
+
+  @Override
+  public Action visitPrintLnStmt(StmtPrintLn stmt) {
+    return print(stmt.expression, true);
+  }
+
+  private Action print(Expr expression, boolean newline) {
+    Node node = compile(expression);
+
+    switch (node.kind) {
+      case INT: {
+        IntClosure value = (IntClosure) node.closure;
+        return newline
+            ? f -> f.out.println(value.run(f))
+            : f -> f.out.print(value.run(f));
+      }
+      case DOUBLE: {
+        DoubleClosure value = (DoubleClosure) node.closure;
+        return newline
+            ? f -> f.out.println(value.run(f))
+            : f -> f.out.print(value.run(f));
+      }
+      case BOOLEAN: {
+        BooleanClosure value = (BooleanClosure) node.closure;
+        return newline
+            ? f -> f.out.println(value.run(f))
+            : f -> f.out.print(value.run(f));
+      }
+      case STRING: {
+        StringClosure value = (StringClosure) node.closure;
+        return newline
+            ? f -> f.out.println(value.run(f))
+            : f -> f.out.print(value.run(f));
+      }
+      default:
+        throw new CompileError(null, "Ambiguous print of null.");
+    }
+  }
+
+  @Override
+  public Action visitValStmt(StmtVal stmt) {
+    line = stmt.name.line;
+    Kind kind = declaredKind(stmt.type);
+    Node value = compile(stmt.initializer);
+    return declare(stmt.depth, stmt.slot, kind, value, stmt.name);
+  }
+
+  @Override
+  public Action visitVarStmt(StmtVar stmt) {
+    line = stmt.name.line;
+    Kind kind = declaredKind(stmt.type);
+    Node value = stmt.initializer != null
+        ? compile(stmt.initializer)
+        : defaultValue(kind);
+    return declare(stmt.depth, stmt.slot, kind, value, stmt.name);
+  }
+
+  /**
+   * Reserva a posição de uma variável e gera a sua inicialização.
+   */
+  private Action declare(int depth, int slot, Kind kind, Node value,
+      Token name) {
+    int array = array(kind);
+    int position = next[array]++;
+    max[array] = Math.max(max[array], next[array]);
+
+    kinds[depth][slot] = kind;
+    slots[depth][slot] = position;
+    return store(kind, position, value, name);
+  }
+
+  @Override
+  public Action visitWhileStmt(StmtWhile stmt) {
+    BooleanClosure condition = condition(stmt.condition);
+    Action body = compile(stmt.body);
+
+    return f -> {
+      while (condition.run(f)) body.run(f);
+    };
+  }
+
+  @Override
+  public Node visitAssignExpr(ExprAssign expr) {
+    line = expr.name.line;
+    Kind kind = kinds[expr.depth][expr.slot];
+    int position = slots[expr.depth][expr.slot];
+    Node value = coerce(compile(expr.value), kind, expr.name);
+
+    switch (kind) {
+      case INT: {
+        IntClosure closure = (IntClosure) value.closure;
+        return new Node(kind,
+            (IntClosure) f -> f.ints[position] = closure.run(f));
+      }
+      case DOUBLE: {
+        DoubleClosure closure = (DoubleClosure) value.closure;
+        return new Node(kind,
+            (DoubleClosure) f -> f.doubles[position] = closure.run(f));
+      }
+      case BOOLEAN: {
+        BooleanClosure closure = (BooleanClosure) value.closure;
+        return new Node(kind,
+            (BooleanClosure) f -> f.booleans[position] = closure.run(f));
+      }
+      default: {
+        StringClosure closure = (StringClosure) value.closure;
+        return new Node(kind,
+            (StringClosure) f -> f.strings[position] = closure.run(f));
+      }
+    }
+  }
+
+  /**
+   * Gera uma atribuição cujo valor não é usado.
+   */
+  private Action store(ExprAssign expr) {
+    line = expr.name.line;
+    return store(kinds[expr.depth][expr.slot], slots[expr.depth][expr.slot],
+        compile(expr.value), expr.name);
+  }
+
+  private Action store(Kind kind, int position, Node value, Token name) {
+    value = coerce(value, kind, name);
+
+    switch (kind) {
+      case INT: {
+        IntClosure closure = (IntClosure) value.closure;
+        return f -> f.ints[position] = closure.run(f);
+      }
+      case DOUBLE: {
+        DoubleClosure closure = (DoubleClosure) value.closure;
+        return f -> f.doubles[position] = closure.run(f);
+      }
+      case BOOLEAN: {
+        BooleanClosure closure = (BooleanClosure) value.closure;
+        return f -> f.booleans[position] = closure.run(f);
+      }
+      default: {
+        StringClosure closure = (StringClosure) value.closure;
+        return f -> f.strings[position] = closure.run(f);
+      }
+    }
+  }
+
+  @Override
+  @SuppressWarnings("incomplete-switch")
+  public Node visitBinaryExpr(ExprBinary expr) {
+    Node left = compile(expr.left);
+    Node right = compile(expr.right);
+    line = expr.operator.line;
+    TokenType operator = expr.operator.type;
+
+    switch (operator) {
+      case EQUAL_EQUAL:
+      case BANG_EQUAL:
+        return equality(expr.operator, left, right);
+      case GREATER:
+      case GREATER_EQUAL:
+      case LESS:
+      case LESS_EQUAL:
+        return comparison(expr.operator, left, right);
+      case PLUS:
+        if (left.kind.isReference() || right.kind.isReference()) {
+          return concatenation(left, right);
+        }
+        break;
+    }
+
+    if (!left.kind.isNumber() || !right.kind.isNumber()) {
+      throw new CompileError(expr.operator, "Operands must be numbers.");
+    }
+
+    if (operator == TokenType.SLASH && isZero(expr.right)) {
+      throw new CompileError(expr.operator, "Division by zero.");
+    }
+
+    if (left.kind == Kind.INT && right.kind == Kind.INT) {
+      return new Node(Kind.INT, intArithmetic(expr.operator,
+          (IntClosure) left.closure, (IntClosure) right.closure));
+    }
+
+    return new Node(Kind.DOUBLE, doubleArithmetic(operator,
+        doubles(left), doubles(right)));
+  }
+
+  private IntClosure intArithmetic(Token operator, IntClosure left,
+      IntClosure right) {
+    switch (operator.type) {
+      case PLUS:
+        return f -> left.run(f) + right.run(f);
+      case MINUS:
+        return f -> left.run(f) - right.run(f);
+      case TIMES:
+        return f -> left.run(f) * right.run(f);
+      case SLASH:
+        return f -> {
+          int dividend = left.run(f);
+          int divisor = right.run(f);
+          if (divisor == 0) throw divisionByZero(operator);
+          return dividend / divisor;
+        };
+      default:
+        return f -> {
+          int dividend = left.run(f);
+          int divisor = right.run(f);
+          if (divisor == 0) throw divisionByZero(operator);
+          return dividend % divisor;
+        };
+    }
+  }
+
+  private static RuntimeError divisionByZero(Token operator) {
+    return new RuntimeError(operator, operator.line, "Division by zero.");
+  }
+
+  private DoubleClosure doubleArithmetic(TokenType operator,
+      DoubleClosure left, DoubleClosure right) {
+    switch (operator) {
+      case PLUS:
+        return f -> left.run(f) + right.run(f);
+      case MINUS:
+        return f -> left.run(f) - right.run(f);
+      case TIMES:
+        return f -> left.run(f) * right.run(f);
+      case SLASH:
+        return f -> left.run(f) / right.run(f);
+      default:
+        return f -> left.run(f) % right.run(f);
+    }
+  }
+
+  private Node comparison(Token operator, Node left, Node right) {
+    if (!left.kind.isNumber() || !right.kind.isNumber()) {
+      throw new CompileError(operator, "Operands must be numbers.");
+    }
+
+    if (left.kind == Kind.INT && right.kind == Kind.INT) {
+      IntClosure a = (IntClosure) left.closure;
+      IntClosure b = (IntClosure) right.closure;
+
+      switch (operator.type) {
+        case GREATER:
+          return bool(f -> a.run(f) > b.run(f));
+        case GREATER_EQUAL:
+          return bool(f -> a.run(f) >= b.run(f));
+        case LESS:
+          return bool(f -> a.run(f) < b.run(f));
+        default:
+          return bool(f -> a.run(f) <= b.run(f));
+      }
+    }
+
+    DoubleClosure a = doubles(left);
+    DoubleClosure b = doubles(right);
+
+    switch (operator.type) {
+      case GREATER:
+        return bool(f -> a.run(f) > b.run(f));
+      case GREATER_EQUAL:
+        return bool(f -> a.run(f) >= b.run(f));
+      case LESS:
+        return bool(f -> a.run(f) < b.run(f));
+      default:
+        return bool(f -> a.run(f) <= b.run(f));
+    }
+  }
+
+  /**
+   * Compara dois valores como o operador '==' do Java: os números
+   * pelo valor, promovendo o Int, e as Strings pela referência.
+   */
+  private Node equality(Token operator, Node left, Node right) {
+    boolean equal = operator.type == TokenType.EQUAL_EQUAL;
+
+    if (left.kind == Kind.INT && right.kind == Kind.INT) {
+      IntClosure a = (IntClosure) left.closure;
+      IntClosure b = (IntClosure) right.closure;
+      return equal
+          ? bool(f -> a.run(f) == b.run(f))
+          : bool(f -> a.run(f) != b.run(f));
+    }
+
+    if (left.kind.isNumber() && right.kind.isNumber()) {
+      DoubleClosure a = doubles(left);
+      DoubleClosure b = doubles(right);
+      return equal
+          ? bool(f -> a.run(f) == b.run(f))
+          : bool(f -> a.run(f) != b.run(f));
+    }
+
+    if (left.kind == Kind.BOOLEAN && right.kind == Kind.BOOLEAN) {
+      BooleanClosure a = (BooleanClosure) left.closure;
+      BooleanClosure b = (BooleanClosure) right.closure;
+      return equal
+          ? bool(f -> a.run(f) == b.run(f))
+          : bool(f -> a.run(f) != b.run(f));
+    }
+
+    if (left.kind.isReference() && right.kind.isReference()) {
+      StringClosure a = (StringClosure) left.closure;
+      StringClosure b = (StringClosure) right.closure;
+      return equal
+          ? bool(f -> a.run(f) == b.run(f))
+          : bool(f -> a.run(f) != b.run(f));
+    }
+
+    throw new CompileError(operator, "Incomparable types: " + left.kind.name
+        + " and " + right.kind.name + ".");
+  }
+
+  private static Node bool(BooleanClosure closure) {
+    return new Node(Kind.BOOLEAN, closure);
+  }
+
+  /**
+   * Gera uma concatenação, adicionando todas as partes das
+   * concatenações aninhadas ao mesmo StringBuilder.
+   */
+  private Node concatenation(Node left, Node right) {
+    List<Appender> parts = new ArrayList<>();
+    addParts(parts, left);
+    addParts(parts, right);
+
+    Appender[] all = parts.toArray(new Appender[0]);
+    StringClosure closure = f -> {
+      StringBuilder builder = new StringBuilder();
+      for (Appender part : all) part.append(builder, f);
+      return builder.toString();
+    };
+
+    return new Node(Kind.STRING, closure, parts);
+  }
+
+  private void addParts(List<Appender> parts, Node node) {
+    if (node.parts != null) {
+      parts.addAll(node.parts);
+      return;
+    }
+
+    switch (node.kind) {
+      case INT: {
+        IntClosure value = (IntClosure) node.closure;
+        parts.add((builder, f) -> builder.append(value.run(f)));
+        break;
+      }
+      case DOUBLE: {
+        DoubleClosure value = (DoubleClosure) node.closure;
+        parts.add((builder, f) -> builder.append(value.run(f)));
+        break;
+      }
+      case BOOLEAN: {
+        BooleanClosure value = (BooleanClosure) node.closure;
+        parts.add((builder, f) -> builder.append(value.run(f)));
+        break;
+      }
+      default: {
+        StringClosure value = (StringClosure) node.closure;
+        parts.add((builder, f) -> builder.append(value.run(f)));
+        break;
+      }
+    }
+  }
+
+  private boolean isZero(Expr expr) {
+    return expr instanceof ExprLiteral
+        && ((ExprLiteral) expr).value instanceof Double
+        && (Double) ((ExprLiteral) expr).value == 0.0;
+  }
+
+  @Override
+  public Node visitGroupingExpr(ExprGrouping expr) {
+    return compile(expr.expression);
+  }
+
+  @Override
+  public Node visitLiteralExpr(ExprLiteral expr) {
+    Object value = expr.value;
+
+    if (value instanceof Double) {
+      // Os literais sem parte fracionária são int no código gerado.
+      double number = (Double) value;
+      if (number == (int) number && number < 1e7) {
+        int integer = (int) number;
+        return new Node(Kind.INT, (IntClosure) f -> integer);
+      }
+      return new Node(Kind.DOUBLE, (DoubleClosure) f -> number);
+    }
+
+    if (value instanceof Boolean) {
+      boolean bool = (Boolean) value;
+      return bool((BooleanClosure) f -> bool);
+    }
+
+    if (value instanceof String) {
+      // Os literais iguais são a mesma String no código gerado.
+      String string = Escapes.unescape((String) value).intern();
+      return new Node(Kind.STRING, (StringClosure) f -> string);
+    }
+
+    return new Node(Kind.NULL, (StringClosure) f -> null);
+  }
+
+  @Override
+  public Node visitLogicalExpr(ExprLogical expr) {
+    Node left = compile(expr.left);
+    Node right = compile(expr.right);
+    line = expr.operator.line;
+
+    if (left.kind != Kind.BOOLEAN || right.kind != Kind.BOOLEAN) {
+      throw new CompileError(expr.operator, "Operands must be Booleans.");
+    }
+
+    BooleanClosure a = (BooleanClosure) left.closure;
+    BooleanClosure b = (BooleanClosure) right.closure;
+    return expr.operator.type == TokenType.OR
+        ? bool(f -> a.run(f) || b.run(f))
+        : bool(f -> a.run(f) && b.run(f));
+  }
+
+  @Override
+  public Node visitReadExpr(ExprRead expr) {
+    if (!inMain) {
+      throw new CompileError(null, "Cannot read input in a constant.");
+    }
+
+    int at = line;
+
+    switch (expr.type) {
+      case INT:
+        return new Node(Kind.INT, (IntClosure) f -> {
+          f.out.flush();
+          try {
+            return f.input.nextInt();
+          } catch (NoSuchElementException e) {
+            throw inputError(e, at);
+          }
+        });
+      case DOUBLE:
+        return new Node(Kind.DOUBLE, (DoubleClosure) f -> {
+          f.out.flush();
+          try {
+            return f.input.nextDouble();
+          } catch (NoSuchElementException e) {
+            throw inputError(e, at);
+          }
+        });
+      case BOOLEAN:
+        return bool(f -> {
+          f.out.flush();
+          try {
+            return f.input.nextBoolean();
+          } catch (NoSuchElementException e) {
+            throw inputError(e, at);
+          }
+        });
+      default:
+        return new Node(Kind.STRING, (StringClosure) f -> {
+          f.out.flush();
+          try {
+            return f.input.nextLine();
+          } catch (NoSuchElementException e) {
+            throw inputError(e, at);
+          }
+        });
+    }
+  }
+
+  private static RuntimeError inputError(NoSuchElementException e,
+      int line) {
+    return new RuntimeError(null, line, e instanceof InputMismatchException
+        ? "Invalid input."
+        : "Unexpected end of input.");
+  }
+
+  @Override
+  public Node visitUnaryExpr(ExprUnary expr) {
+    Node right = compile(expr.right);
+    line = expr.operator.line;
+
+    if (expr.operator.type == TokenType.BANG) {
+      if (right.kind != Kind.BOOLEAN) {
+        throw new CompileError(expr.operator, "Operand must be a Boolean.");
+      }
+
+      BooleanClosure value = (BooleanClosure) right.closure;
+      return bool(f -> !value.run(f));
+    }
+
+    if (right.kind == Kind.INT) {
+      IntClosure value = (IntClosure) right.closure;
+      return new Node(Kind.INT, (IntClosure) f -> -value.run(f));
+    }
+
+    if (right.kind == Kind.DOUBLE) {
+      DoubleClosure value = (DoubleClosure) right.closure;
+      return new Node(Kind.DOUBLE, (DoubleClosure) f -> -value.run(f));
+    }
+
+    throw new CompileError(expr.operator, "Operand must be a number.");
+  }
+
+  @Override
+  public Node visitVariableExpr(ExprVariable expr) {
+    line = expr.name.line;
+    Kind kind = kinds[expr.depth][expr.slot];
+    int position = slots[expr.depth][expr.slot];
+
+    switch (kind) {
+      case INT:
+        return new Node(kind, (IntClosure) f -> f.ints[position]);
+      case DOUBLE:
+        return new Node(kind, (DoubleClosure) f -> f.doubles[position]);
+      case BOOLEAN:
+        return bool(f -> f.booleans[position]);
+      default:
+        return new Node(kind, (StringClosure) f -> f.strings[position]);
+    }
+  }
+
+  /**
+   * Compila a condição de um comando.
+   */
+  private BooleanClosure condition(Expr condition) {
+    Node node = compile(condition);
+
+    if (node.kind != Kind.BOOLEAN) {
+      throw new CompileError(null, "Condition must be a Boolean.");
+    }
+
+    return (BooleanClosure) node.closure;
+  }
+
+  /**
+   * Obtém o valor de uma expressão numérica como double.
+   */
+  private DoubleClosure doubles(Node node) {
+    if (node.kind == Kind.INT) {
+      IntClosure value = (IntClosure) node.closure;
+      return f -> value.run(f);
+    }
+
+    return (DoubleClosure) node.closure;
+  }
+
+  /**
+   * Converte a expressão para o tipo esperado, ou informa um erro
+   * caso os tipos sejam incompatíveis.
+   */
+  private Node coerce(Node node, Kind kind, Token token) {
+    if (node.kind == kind) return node;
+
+    if (node.kind == Kind.NULL && kind == Kind.STRING) {
+      return new Node(kind, node.closure);
+    }
+
+    if (node.kind == Kind.INT && kind == Kind.DOUBLE) {
+      return new Node(kind, doubles(node));
+    }
+
+    throw new CompileError(token, "Incompatible types: " + node.kind.name
+        + " cannot be converted to " + kind.name + ".");
+  }
+
+  private Node defaultValue(Kind kind) {
+    switch (kind) {
+      case INT: return new Node(kind, (IntClosure) f -> 0);
+      case DOUBLE: return new Node(kind, (DoubleClosure) f -> 0.0);
+      case BOOLEAN: return bool(f -> false);
+      default: return new Node(kind, (StringClosure) f -> null);
+    }
+  }
+
+  /**
+   * Índice do vetor que guarda as variáveis do tipo informado.
+   */
+  private static int array(Kind kind) {
+    switch (kind) {
+      case INT: return 0;
+      case DOUBLE: return 1;
+      case BOOLEAN: return 2;
+      default: return 3;
+    }
+  }
+
+  private Kind declaredKind(Token type) {
+    Kind kind = Kind.declared(type);
+
+    if (kind == null) {
+      throw new CompileError(type, "The type specified doesn't exist.");
+    }
+
+    return kind;
+  }
+
+}
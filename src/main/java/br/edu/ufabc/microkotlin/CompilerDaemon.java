@@ -0,0 +1,260 @@
+package br.edu.ufabc.microkotlin;
+
+import java.io.BufferedReader;
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.PrintStream;
+import java.io.PrintWriter;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.net.SocketException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.FileSystems;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.attribute.FileAttribute;
+import java.nio.file.attribute.PosixFilePermissions;
+import java.security.MessageDigest;
+import java.security.SecureRandom;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * Servidor de compilação que mantém o transpilador residente,
+ * já carregado e otimizado pelo JIT, evitando o custo de iniciar
+ * uma JVM a cada compilação.
+ *
+ * Os pedidos chegam por uma conexão TCP local. Cada pedido é uma
+ * linha com o token do servidor, uma com o comando (COMPILE ou STOP),
+ * seguida dos argumentos, um por linha, e de uma linha vazia. A
+ * resposta traz as linhas de saída prefixadas por "> " e, por fim, o
+ * código de saída prefixado por "= ".
+ *
+ * Como qualquer usuário da máquina pode se conectar à porta local, o
+ * token, gerado aleatoriamente a cada início, é gravado em um arquivo
+ * legível somente pelo dono do servidor (tokenFile), e os pedidos sem
+ * ele são recusados. Assim, somente o próprio usuário pode encerrar o
+ * servidor ou fazê-lo ler e escrever arquivos com as suas permissões.
+ *
+ * Os pedidos com --run ou --disassemble são recusados: o programa
+ * executado usaria a entrada e a saída do servidor, compartilhadas
+ * por todos os pedidos, e não as do cliente.
+ */
+public class CompilerDaemon implements Closeable {
+
+  /**
+   * Porta utilizada quando nenhuma é informada.
+   */
+  public static final int DEFAULT_PORT = 47831;
+
+  /**
+   * Socket que recebe as conexões, somente na interface local.
+   */
+  private final ServerSocket server;
+
+  /**
+   * Token exigido em todos os pedidos e arquivo onde é gravado.
+   */
+  private final byte[] token;
+  private final Path tokenFile;
+
+  /**
+   * Threads que atendem os pedidos simultâneos.
+   */
+  private final ExecutorService workers = Executors.newCachedThreadPool();
+
+  /**
+   * Determina se o servidor continua aceitando pedidos.
+   */
+  private volatile boolean running = true;
+
+  /**
+   * Cria o servidor na porta informada, ou em uma porta livre
+   * qualquer caso seja zero.
+   *
+   * @param port porta local do servidor
+   * @throws IOException caso a porta não possa ser utilizada
+   */
+  public CompilerDaemon(int port) throws IOException {
+    this.server = new ServerSocket(port, 50, InetAddress.getLoopbackAddress());
+    this.tokenFile = tokenFile(port());
+
+    byte[] random = new byte[32];
+    new SecureRandom().nextBytes(random);
+    StringBuilder hex = new StringBuilder(64);
+    for (byte b : random) {
+      hex.append(Character.forDigit((b >> 4) & 0xF, 16));
+      hex.append(Character.forDigit(b & 0xF, 16));
+    }
+    this.token = hex.toString().getBytes(StandardCharsets.UTF_8);
+
+    try {
+      writeToken();
+    } catch (IOException e) {
+      server.close();
+      throw e;
+    }
+  }
+
+  /**
+   * Arquivo com o token do servidor de uma porta, na pasta do usuário.
+   *
+   * @param port porta local do servidor
+   * @return caminho do arquivo
+   */
+  public static Path tokenFile(int port) {
+    return Paths.get(System.getProperty("user.home"), ".microkotlin",
+        "daemon-" + port + ".token");
+  }
+
+  /**
+   * Grava o token em um arquivo novo, criado já com permissão de
+   * leitura e escrita somente para o dono, quando o sistema possui
+   * permissões POSIX.
+   */
+  private void writeToken() throws IOException {
+    boolean posix = FileSystems.getDefault().supportedFileAttributeViews()
+        .contains("posix");
+
+    if (posix) {
+      Files.createDirectories(tokenFile.getParent(), permissions("rwx------"));
+    } else {
+      Files.createDirectories(tokenFile.getParent());
+    }
+
+    Files.deleteIfExists(tokenFile);
+    if (posix) {
+      Files.createFile(tokenFile, permissions("rw-------"));
+    } else {
+      Files.createFile(tokenFile);
+    }
+
+    Files.write(tokenFile, token);
+  }
+
+  private static FileAttribute<?> permissions(String permissions) {
+    return PosixFilePermissions.asFileAttribute(
+        PosixFilePermissions.fromString(permissions));
+  }
+
+  /**
+   * Retorna a porta em que o servidor está aguardando.
+   *
+   * @return porta local do servidor
+   */
+  public int port() {
+    return server.getLocalPort();
+  }
+
+  /**
+   * Atende os pedidos até que o servidor seja encerrado.
+   *
+   * @throws IOException caso haja algum erro ao aceitar conexões
+   */
+  public void serve() throws IOException {
+    System.err.println("MicroKotlin daemon listening on port " + port() + ".");
+
+    try {
+      while (running) {
+        Socket socket;
+        try {
+          socket = server.accept();
+        } catch (SocketException e) {
+          if (!running) break;
+          throw e;
+        }
+
+        workers.execute(() -> handle(socket));
+      }
+    } finally {
+      workers.shutdown();
+      close();
+    }
+  }
+
+  /**
+   * Atende um pedido.
+   *
+   * @param socket conexão do cliente
+   */
+  private void handle(Socket socket) {
+    try (Socket client = socket;
+        BufferedReader in = new BufferedReader(new InputStreamReader(
+            client.getInputStream(), StandardCharsets.UTF_8));
+        PrintWriter out = new PrintWriter(new OutputStreamWriter(
+            client.getOutputStream(), StandardCharsets.UTF_8))) {
+      String received = in.readLine();
+      if (received == null || !MessageDigest.isEqual(token,
+          received.getBytes(StandardCharsets.UTF_8))) {
+        out.println("> Invalid daemon token.");
+        out.println("= 1");
+        return;
+      }
+
+      String command = in.readLine();
+      List<String> args = new ArrayList<>();
+
+      String line;
+      while ((line = in.readLine()) != null && !line.isEmpty()) {
+        args.add(line);
+      }
+
+      if ("STOP".equals(command)) {
+        out.println("= 0");
+        out.flush();
+        close();
+        return;
+      }
+
+      if (!"COMPILE".equals(command)) {
+        out.println("> Unknown command '" + command + "'.");
+        out.println("= 1");
+        return;
+      }
+
+      if (args.contains("--run") || args.contains("--disassemble")) {
+        out.println("> The daemon does not run programs; "
+            + "use --run without --client.");
+        out.println("= 1");
+        return;
+      }
+
+      ByteArrayOutputStream buffer = new ByteArrayOutputStream();
+      int status;
+      try (PrintStream err = new PrintStream(buffer, true, "UTF-8")) {
+        status = MicroKotlin.run(args, err);
+      } catch (RuntimeException e) {
+        buffer.write(("Error: " + e).getBytes(StandardCharsets.UTF_8));
+        status = 1;
+      }
+
+      for (String output : buffer.toString("UTF-8").split("\\r?\\n")) {
+        if (!output.isEmpty()) out.println("> " + output);
+      }
+      out.println("= " + status);
+    } catch (IOException e) {
+      System.err.println("Daemon request failed: " + e.getMessage());
+    }
+  }
+
+  /**
+   * Encerra o servidor e remove o arquivo do token. Os pedidos em
+   * andamento são concluídos.
+   *
+   * @throws IOException caso haja algum erro ao fechar o socket
+   */
+  @Override
+  public void close() throws IOException {
+    running = false;
+    server.close();
+    Files.deleteIfExists(tokenFile);
+  }
+
+}
@@ -0,0 +1,474 @@
+package br.edu.ufabc.microkotlin;
+
+import java.util.ArrayList;
+import java.util.List;
+import br.edu.ufabc.microkotlin.expr.*;
+import br.edu.ufabc.microkotlin.program.*;
+import br.edu.ufabc.microkotlin.stmt.*;
+
+/**
+ * Calcula as expressões constantes durante a compilação, gerando uma
+ * nova árvore sintática a partir da árvore já resolvida.
+ *
+ * São calculadas as operações aritméticas, as comparações, as operações
+ * lógicas e as concatenações cujos operandos são literais, e cada uso
+ * de uma constante (val) com valor literal é substituído pelo valor.
+ * Os resultados seguem o código Java gerado: a aritmética de Int é de
+ * 32 bits, o Int é promovido a Double quando o outro operando é Double
+ * e a divisão por zero continua sendo avaliada na execução.
+ *
+ * Como o tipo de um literal numérico depende do seu valor, um resultado
+ * só é substituído quando o literal gerado tem o mesmo tipo: um Double
+ * sem parte fracionária, por exemplo, seria lido como Int. As novas
+ * expressões recebem o tipo definido pelo TypeChecker, que deve ser
+ * executado antes.
+ */
+public class ConstantFolder implements
+    Expr.Visitor<Expr>, Stmt.Visitor<Stmt>, Program.Visitor<Program> {
+
+  /**
+   * Valor constante do literal null.
+   */
+  private static final Object NULL = new Object();
+
+  /**
+   * Valor de cada constante, indexado pelo escopo e pela posição
+   * definidos pelo Resolver, ou null caso a constante não possa ser
+   * substituída.
+   */
+  private Object[][] values;
+
+  /**
+   * Calcula as expressões constantes do programa.
+   *
+   * @param program programa já resolvido e verificado, sem erros
+   * @return novo programa, com as mesmas anotações do Resolver e do
+   *         TypeChecker
+   */
+  public Program fold(Program program) {
+    return program.accept(this);
+  }
+
+  private Expr fold(Expr expr) {
+    return expr.accept(this);
+  }
+
+  private Stmt fold(Stmt stmt) {
+    return stmt.accept(this);
+  }
+
+  @Override
+  public Program visitProgram(Program program) {
+    values = new Object[program.maxDepth + 1][];
+    values[0] = new Object[program.globals];
+
+    List<StmtVal> constants = new ArrayList<>(program.constants.size());
+    for (StmtVal valDecl : program.constants) {
+      constants.add((StmtVal) fold(valDecl));
+    }
+
+    List<Stmt> statements = new ArrayList<>(program.statements.size());
+    for (Stmt statement : program.statements) {
+      statements.add(fold(statement));
+    }
+
+    Program result = new Program(constants, statements);
+    result.globals = program.globals;
+    result.maxDepth = program.maxDepth;
+    return result;
+  }
+
+  @Override
+  public Stmt visitBlockStmt(StmtBlock stmt) {
+    values[stmt.depth] = new Object[stmt.locals];
+
+    List<Stmt> statements = new ArrayList<>(stmt.statements.size());
+    for (Stmt statement : stmt.statements) {
+      statements.add(fold(statement));
+    }
+
+    StmtBlock block = new StmtBlock(statements);
+    block.depth = stmt.depth;
+    block.locals = stmt.locals;
+    return block;
+  }
+
+  @Override
+  public Stmt visitDoWhileStmt(StmtDoWhile stmt) {
+    return new StmtDoWhile(fold(stmt.condition), fold(stmt.body));
+  }
+
+  @Override
+  public Stmt visitExpressionStmt(StmtExpression stmt) {
+    return new StmtExpression(fold(stmt.expression));
+  }
+
+  @Override
+  public Stmt visitIfStmt(StmtIf stmt) {
+    return new StmtIf(fold(stmt.condition), fold(stmt.thenBranch),
+        stmt.elseBranch != null ? fold(stmt.elseBranch) : null);
+  }
+
+  @Override
+  public Stmt visitPrintStmt(StmtPrint stmt) {
+    return new StmtPrint(fold(stmt.expression));
+  }
+
+  @Override
+  public Stmt visitPrintLnStmt(StmtPrintLn stmt) {
+    return new StmtPrintLn(fold(stmt.expression));
+  }
+
+  @Override
+  public Stmt visitValStmt(StmtVal stmt) {
+    Expr initializer = fold(stmt.initializer);
+
+    // O null não é propagado, pois print(null) é um erro.
+    Object value = constant(initializer);
+    values[stmt.depth][stmt.slot] =
+        value != null && kindOf(value) == Kind.declared(stmt.type)
+        ? value
+        : null;
+
+    StmtVal result = new StmtVal(stmt.name, stmt.type, initializer);
+    result.depth = stmt.depth;
+    result.slot = stmt.slot;
+    return result;
+  }
+
+  @Override
+  public Stmt visitVarStmt(StmtVar stmt) {
+    // A posição pode ter pertencido a uma constante de outro bloco.
+    values[stmt.depth][stmt.slot] = null;
+
+    StmtVar result = new StmtVar(stmt.name, stmt.type,
+        stmt.initializer != null ? fold(stmt.initializer) : null);
+    result.depth = stmt.depth;
+    result.slot = stmt.slot;
+    return result;
+  }
+
+  @Override
+  public Stmt visitWhileStmt(StmtWhile stmt) {
+    return new StmtWhile(fold(stmt.condition), fold(stmt.body));
+  }
+
+  @Override
+  public Expr visitAssignExpr(ExprAssign expr) {
+    Expr value = fold(expr.value);
+    if (value == expr.value) return expr;
+
+    ExprAssign result = new ExprAssign(expr.name, value);
+    result.depth = expr.depth;
+    result.slot = expr.slot;
+    result.kind = expr.kind;
+    return result;
+  }
+
+  @Override
+  public Expr visitBinaryExpr(ExprBinary expr) {
+    Expr left = fold(expr.left);
+    Expr right = fold(expr.right);
+    TokenType operator = expr.operator.type;
+
+    if ((operator == TokenType.SLASH || operator == TokenType.REM)
+        && isZero(constant(right))) {
+      // Um divisor literal zero seria um erro de compilação, então o
+      // divisor original é mantido e a divisão ocorre na execução.
+      return rebuild(expr, left, expr.right);
+    }
+
+    Object a = constant(left);
+    Object b = constant(right);
+    Expr result = a != null && b != null
+        ? literal(binary(operator, a, b), expr.operator)
+        : null;
+
+    return result != null ? result : rebuild(expr, left, right);
+  }
+
+  private Expr rebuild(ExprBinary expr, Expr left, Expr right) {
+    if (left == expr.left && right == expr.right) return expr;
+    return typed(new ExprBinary(left, expr.operator, right), expr.kind);
+  }
+
+  /**
+   * Calcula uma operação binária entre constantes. Também é usada pelo
+   * DefiniteAssignment, que reconhece as condições constantes.
+   *
+   * @param operator operador
+   * @param a operando esquerdo: Integer, Double, Boolean, String ou NULL
+   * @param b operando direito, dos mesmos tipos
+   * @return resultado, ou null caso não possa ser calculado
+   */
+  static Object binary(TokenType operator, Object a, Object b) {
+    boolean numbers = isNumber(a) && isNumber(b);
+    boolean ints = a instanceof Integer && b instanceof Integer;
+
+    switch (operator) {
+      case PLUS:
+        if (a instanceof String || b instanceof String) {
+          // Como no Java, a concatenação com null não é constante.
+          if (a == NULL || b == NULL) return null;
+          // Os literais guardam os escapes do código fonte, que não
+          // podem ser simplesmente concatenados: "\1" + "01" não é "\101".
+          return Escapes.escape(value(a) + value(b));
+        }
+        if (!numbers) return null;
+        return ints
+            ? (Object) ((Integer) a + (Integer) b)
+            : (Object) (number(a) + number(b));
+      case MINUS:
+        if (!numbers) return null;
+        return ints
+            ? (Object) ((Integer) a - (Integer) b)
+            : (Object) (number(a) - number(b));
+      case TIMES:
+        if (!numbers) return null;
+        return ints
+            ? (Object) ((Integer) a * (Integer) b)
+            : (Object) (number(a) * number(b));
+      case SLASH:
+        if (!numbers) return null;
+        return ints
+            ? (Object) ((Integer) a / (Integer) b)
+            : (Object) (number(a) / number(b));
+      case REM:
+        if (!numbers) return null;
+        return ints
+            ? (Object) ((Integer) a % (Integer) b)
+            : (Object) (number(a) % number(b));
+      case GREATER:
+        return numbers ? (Object) (compare(a, b) > 0) : null;
+      case GREATER_EQUAL:
+        return numbers ? (Object) (compare(a, b) >= 0) : null;
+      case LESS:
+        return numbers ? (Object) (compare(a, b) < 0) : null;
+      case LESS_EQUAL:
+        return numbers ? (Object) (compare(a, b) <= 0) : null;
+      case EQUAL_EQUAL:
+      case BANG_EQUAL:
+        Boolean equal = equal(a, b);
+        if (equal == null) return null;
+        return operator == TokenType.EQUAL_EQUAL ? equal : !equal;
+      default:
+        return null;
+    }
+  }
+
+  /**
+   * Compara dois números, promovendo o Int caso o outro seja Double.
+   */
+  private static int compare(Object a, Object b) {
+    if (a instanceof Integer && b instanceof Integer) {
+      return Integer.compare((Integer) a, (Integer) b);
+    }
+
+    double x = number(a);
+    double y = number(b);
+    return x < y ? -1 : x > y ? 1 : 0;
+  }
+
+  /**
+   * Compara a igualdade de duas constantes de tipos comparáveis.
+   * Os literais String são internados, então a comparação das
+   * referências equivale à do conteúdo.
+   *
+   * @return o resultado, ou null caso os tipos não sejam comparáveis
+   */
+  private static Boolean equal(Object a, Object b) {
+    if (isNumber(a) && isNumber(b)) {
+      return a instanceof Integer && b instanceof Integer
+          ? a.equals(b)
+          : number(a) == number(b);
+    }
+
+    if (a instanceof Boolean && b instanceof Boolean) return a.equals(b);
+
+    if (a instanceof String && b instanceof String) {
+      return value(a).equals(value(b));
+    }
+
+    if (isReference(a) && isReference(b)) return a.equals(b);
+
+    return null;
+  }
+
+  @Override
+  public Expr visitGroupingExpr(ExprGrouping expr) {
+    Expr expression = fold(expr.expression);
+
+    // Os parênteses só são necessários se a expressão não é um literal.
+    if (expression instanceof ExprLiteral) return expression;
+    if (expression == expr.expression) return expr;
+    return typed(new ExprGrouping(expression), expr.kind);
+  }
+
+  @Override
+  public Expr visitLiteralExpr(ExprLiteral expr) {
+    return expr;
+  }
+
+  @Override
+  public Expr visitLogicalExpr(ExprLogical expr) {
+    Expr left = fold(expr.left);
+    Expr right = fold(expr.right);
+    Object a = constant(left);
+    Object b = constant(right);
+
+    if (a instanceof Boolean && b instanceof Boolean) {
+      return typed(new ExprLiteral(expr.operator.type == TokenType.OR
+          ? (Boolean) a || (Boolean) b
+          : (Boolean) a && (Boolean) b), Kind.BOOLEAN);
+    }
+
+    if (left == expr.left && right == expr.right) return expr;
+    return typed(new ExprLogical(left, expr.operator, right), Kind.BOOLEAN);
+  }
+
+  @Override
+  public Expr visitReadExpr(ExprRead expr) {
+    return expr;
+  }
+
+  @Override
+  public Expr visitUnaryExpr(ExprUnary expr) {
+    Expr right = fold(expr.right);
+    Object value = constant(right);
+
+    if (expr.operator.type == TokenType.BANG && value instanceof Boolean) {
+      return typed(new ExprLiteral(!(Boolean) value), Kind.BOOLEAN);
+    }
+
+    if (expr.operator.type == TokenType.MINUS
+        && (value instanceof Integer || value instanceof Double)) {
+      Expr result = literal(value instanceof Integer
+          ? (Object) (-(Integer) value)
+          : (Object) (-(Double) value), expr.operator);
+      // Um literal negado já está na forma mais simples.
+      if (result instanceof ExprLiteral) return result;
+    }
+
+    if (right == expr.right) return expr;
+    return typed(new ExprUnary(expr.operator, right), expr.kind);
+  }
+
+  @Override
+  public Expr visitVariableExpr(ExprVariable expr) {
+    Object value = values[expr.depth][expr.slot];
+    return value != null ? literal(value, expr.name) : expr;
+  }
+
+  /**
+   * Obtém o valor de uma expressão constante: um literal, um número
+   * negado ou uma delas entre parênteses.
+   *
+   * @return Integer, Double, Boolean, String ou NULL, ou null caso
+   *         a expressão não seja constante
+   */
+  private Object constant(Expr expr) {
+    if (expr instanceof ExprGrouping) {
+      return constant(((ExprGrouping) expr).expression);
+    }
+
+    if (expr instanceof ExprLiteral) {
+      Object value = ((ExprLiteral) expr).value;
+      if (value == null) return NULL;
+      if (value instanceof Double) {
+        double number = (Double) value;
+        return Kind.literal(number) == Kind.INT ? (Object) (int) number : value;
+      }
+      return value;
+    }
+
+    if (expr instanceof ExprUnary
+        && ((ExprUnary) expr).operator.type == TokenType.MINUS) {
+      Object value = constant(((ExprUnary) expr).right);
+      if (value instanceof Integer) return -(Integer) value;
+      if (value instanceof Double) return -(Double) value;
+    }
+
+    return null;
+  }
+
+  /**
+   * Cria a expressão de um valor constante. Os números negativos são
+   * representados pela negação de um literal, como no código-fonte.
+   *
+   * @param value valor, ou null
+   * @param token token da operação, usado na negação
+   * @return expressão com o mesmo tipo do valor, ou null caso não
+   *         possa ser representada por um literal
+   */
+  private Expr literal(Object value, Token token) {
+    if (value == null) return null;
+    if (value == NULL) return typed(new ExprLiteral(null), Kind.NULL);
+
+    if (value instanceof Integer) {
+      int number = (Integer) value;
+      if (number >= 1e7 || number <= -1e7) return null;
+      return negate(Math.abs(number), number < 0, token);
+    }
+
+    if (value instanceof Double) {
+      double number = (Double) value;
+      double magnitude = Math.abs(number);
+      if (Double.isNaN(number) || Double.isInfinite(number)
+          || Kind.literal(magnitude) != Kind.DOUBLE) {
+        return null;
+      }
+      return negate(magnitude, number < 0, token);
+    }
+
+    return typed(new ExprLiteral(value), kindOf(value));
+  }
+
+  private Expr negate(double magnitude, boolean negative, Token token) {
+    Kind kind = Kind.literal(magnitude);
+    Expr literal = typed(new ExprLiteral(magnitude), kind);
+    if (!negative) return literal;
+
+    return typed(new ExprUnary(
+        new Token(TokenType.MINUS, "-", null, token.line), literal), kind);
+  }
+
+  private static Expr typed(Expr expr, Kind kind) {
+    expr.kind = kind;
+    return expr;
+  }
+
+  private static Kind kindOf(Object value) {
+    if (value instanceof Integer) return Kind.INT;
+    if (value instanceof Double) return Kind.DOUBLE;
+    if (value instanceof Boolean) return Kind.BOOLEAN;
+    if (value instanceof String) return Kind.STRING;
+    return Kind.NULL;
+  }
+
+  private static boolean isNumber(Object value) {
+    return value instanceof Integer || value instanceof Double;
+  }
+
+  private static boolean isReference(Object value) {
+    return value instanceof String || value == NULL;
+  }
+
+  /**
+   * Obtém o valor de uma constante como é concatenado a uma String,
+   * com os escapes dos literais já convertidos.
+   */
+  private static String value(Object constant) {
+    return constant instanceof String
+        ? Escapes.unescape((String) constant)
+        : String.valueOf(constant);
+  }
+
+  private static boolean isZero(Object value) {
+    return isNumber(value) && number(value) == 0.0;
+  }
+
+  private static double number(Object value) {
+    return ((Number) value).doubleValue();
+  }
+
+}
@@ -0,0 +1,122 @@
+package br.edu.ufabc.microkotlin;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.PrintStream;
+import java.io.PrintWriter;
+import java.net.ConnectException;
+import java.net.InetAddress;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Cliente do CompilerDaemon, que somente repassa os argumentos
+ * e mostra a resposta do servidor.
+ *
+ * Com --run ou --disassemble, o programa é executado no próprio
+ * cliente, sem o servidor, para que use a entrada e a saída do
+ * terminal do cliente.
+ */
+public class DaemonClient {
+
+  private DaemonClient() {}
+
+  /**
+   * Pede ao servidor a compilação das entradas. Os caminhos, inclusive
+   * o da pasta do cache, são convertidos para absolutos, já que o
+   * servidor pode estar em outra pasta. Com --run ou --disassemble,
+   * executa o programa localmente.
+   *
+   * @param port porta local do servidor
+   * @param args opções e arquivos de entrada
+   * @param err saída dos erros
+   * @return código de saída da compilação
+   * @throws IOException caso haja algum erro de comunicação
+   */
+  public static int compile(int port, List<String> args, PrintStream err)
+      throws IOException {
+    if (args.contains("--run") || args.contains("--disassemble")) {
+      return MicroKotlin.run(args, err);
+    }
+
+    List<String> request = new ArrayList<>(args.size());
+
+    boolean cacheDir = false;
+
+    for (String arg : args) {
+      if (arg.startsWith("--cache-dir=")) {
+        String dir = arg.substring("--cache-dir=".length());
+        request.add("--cache-dir=" + new File(dir).getAbsolutePath());
+        cacheDir = true;
+      } else {
+        request.add(arg.startsWith("--") ? arg : new File(arg).getAbsolutePath());
+      }
+    }
+
+    if (!cacheDir) {
+      Options defaults = new Options();
+      request.add("--cache-dir=" + new File(defaults.cacheDir).getAbsolutePath());
+    }
+
+    return send(port, "COMPILE", request, err);
+  }
+
+  /**
+   * Pede o encerramento do servidor.
+   *
+   * @param port porta local do servidor
+   * @return código de saída
+   * @throws IOException caso haja algum erro de comunicação
+   */
+  public static int stop(int port) throws IOException {
+    return send(port, "STOP", Collections.emptyList(), System.err);
+  }
+
+  private static int send(int port, String command, List<String> args,
+      PrintStream err) throws IOException {
+    String token;
+    try {
+      token = new String(Files.readAllBytes(CompilerDaemon.tokenFile(port)),
+          StandardCharsets.UTF_8);
+    } catch (NoSuchFileException e) {
+      err.println("No MicroKotlin daemon running on port " + port + ".");
+      return 1;
+    }
+
+    try (Socket socket = new Socket(InetAddress.getLoopbackAddress(), port);
+        BufferedReader in = new BufferedReader(new InputStreamReader(
+            socket.getInputStream(), StandardCharsets.UTF_8));
+        PrintWriter out = new PrintWriter(new OutputStreamWriter(
+            socket.getOutputStream(), StandardCharsets.UTF_8))) {
+      out.println(token);
+      out.println(command);
+      args.forEach(out::println);
+      out.println();
+      out.flush();
+
+      String line;
+      while ((line = in.readLine()) != null) {
+        if (line.startsWith("> ")) {
+          err.println(line.substring(2));
+        } else if (line.startsWith("= ")) {
+          return Integer.parseInt(line.substring(2));
+        }
+      }
+
+      err.println("The daemon closed the connection unexpectedly.");
+      return 1;
+    } catch (ConnectException e) {
+      err.println("No MicroKotlin daemon running on port " + port + ".");
+      return 1;
+    }
+  }
+
+}
@@ -0,0 +1,387 @@
+package br.edu.ufabc.microkotlin;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Set;
+import br.edu.ufabc.microkotlin.expr.*;
+import br.edu.ufabc.microkotlin.program.*;
+import br.edu.ufabc.microkotlin.stmt.*;
+
+/**
+ * Remove o código que nunca é executado ou cujo resultado nunca é
+ * usado, gerando uma nova árvore sintática. Deve ser executado após o
+ * ConstantFolder, que transforma as condições constantes em literais.
+ *
+ * São removidos os desvios de um if com condição constante, os laços
+ * while com condição falsa, e as variáveis e constantes que nunca são
+ * lidas nem atribuídas, desde que a inicialização não tenha efeitos:
+ * uma leitura da entrada, uma atribuição ou uma divisão que pode ser
+ * por zero. Um do-while com condição falsa é substituído pelo corpo,
+ * e um if cujos desvios ficaram vazios é removido caso a condição não
+ * tenha efeitos.
+ *
+ * Como remover uma declaração pode deixar outra sem usos, a remoção é
+ * repetida até que nenhum nó seja removido.
+ */
+public class DeadCodeEliminator implements
+    Stmt.Visitor<Stmt>, Program.Visitor<Program> {
+
+  /**
+   * Declarações que não são usadas, encontradas antes de cada
+   * remoção.
+   */
+  private Set<Stmt> unused;
+
+  /**
+   * Escopo do bloco atual e maior escopo do novo programa, que
+   * aumenta caso um bloco vazio seja criado.
+   */
+  private int depth;
+  private int maxDepth;
+
+  /**
+   * Quantidade de nós removidos na última execução.
+   */
+  private int removed;
+
+  /**
+   * Remove o código morto do programa.
+   *
+   * @param program programa já resolvido e sem erros
+   * @return novo programa, com as mesmas anotações do Resolver
+   */
+  public Program eliminate(Program program) {
+    int before = NodeCounter.count(program);
+    int count = before;
+
+    while (true) {
+      unused = Usages.unused(program);
+      Program result = program.accept(this);
+      int after = NodeCounter.count(result);
+
+      program = result;
+      if (after == count) break;
+      count = after;
+    }
+
+    removed = before - count;
+    return program;
+  }
+
+  /**
+   * Quantidade de nós da árvore removidos pela última chamada
+   * de eliminate.
+   *
+   * @return quantidade de nós removidos
+   */
+  public int removed() {
+    return removed;
+  }
+
+  @Override
+  public Program visitProgram(Program program) {
+    depth = 0;
+    maxDepth = program.maxDepth;
+
+    List<StmtVal> constants = new ArrayList<>(program.constants.size());
+    for (StmtVal valDecl : program.constants) {
+      if (!unused.contains(valDecl)) constants.add(valDecl);
+    }
+
+    Program result = new Program(constants, eliminate(program.statements));
+    result.globals = program.globals;
+    result.maxDepth = maxDepth;
+    return result;
+  }
+
+  /**
+   * Remove o código morto de uma lista de comandos.
+   */
+  private List<Stmt> eliminate(List<Stmt> statements) {
+    List<Stmt> result = new ArrayList<>(statements.size());
+
+    for (Stmt statement : statements) {
+      Stmt stmt = statement.accept(this);
+      if (stmt != null) result.add(stmt);
+    }
+
+    return result;
+  }
+
+  /**
+   * Remove o código morto de um comando que não faz parte de uma
+   * lista, como o corpo de um laço, substituindo-o por um bloco vazio
+   * caso seja removido por inteiro.
+   */
+  private Stmt eliminate(Stmt stmt) {
+    Stmt result = stmt.accept(this);
+    if (result != null) return result;
+
+    StmtBlock empty = new StmtBlock(new ArrayList<>());
+    empty.depth = depth + 1;
+    maxDepth = Math.max(maxDepth, empty.depth);
+    return empty;
+  }
+
+  @Override
+  public Stmt visitBlockStmt(StmtBlock stmt) {
+    int enclosing = depth;
+    depth = stmt.depth;
+
+    StmtBlock block = new StmtBlock(eliminate(stmt.statements));
+    block.depth = stmt.depth;
+    block.locals = stmt.locals;
+
+    depth = enclosing;
+    return block;
+  }
+
+  @Override
+  public Stmt visitDoWhileStmt(StmtDoWhile stmt) {
+    // O corpo é executado uma única vez.
+    if (isConstant(stmt.condition, false)) return eliminate(stmt.body);
+
+    return new StmtDoWhile(stmt.condition, eliminate(stmt.body));
+  }
+
+  @Override
+  public Stmt visitExpressionStmt(StmtExpression stmt) {
+    return stmt;
+  }
+
+  @Override
+  public Stmt visitIfStmt(StmtIf stmt) {
+    if (isConstant(stmt.condition, true)) {
+      return stmt.thenBranch.accept(this);
+    }
+
+    if (isConstant(stmt.condition, false)) {
+      return stmt.elseBranch != null ? stmt.elseBranch.accept(this) : null;
+    }
+
+    Stmt thenBranch = eliminate(stmt.thenBranch);
+    Stmt elseBranch = stmt.elseBranch != null
+        ? stmt.elseBranch.accept(this)
+        : null;
+
+    if (isEmpty(thenBranch) && (elseBranch == null || isEmpty(elseBranch))
+        && isPure(stmt.condition)) {
+      return null;
+    }
+
+    return new StmtIf(stmt.condition, thenBranch, elseBranch);
+  }
+
+  @Override
+  public Stmt visitPrintStmt(StmtPrint stmt) {
+    return stmt;
+  }
+
+  @Override
+  public Stmt visitPrintLnStmt(StmtPrintLn stmt) {
+    return stmt;
+  }
+
+  @Override
+  public Stmt visitValStmt(StmtVal stmt) {
+    return unused.contains(stmt) ? null : stmt;
+  }
+
+  @Override
+  public Stmt visitVarStmt(StmtVar stmt) {
+    return unused.contains(stmt) ? null : stmt;
+  }
+
+  @Override
+  public Stmt visitWhileStmt(StmtWhile stmt) {
+    if (isConstant(stmt.condition, false)) return null;
+
+    return new StmtWhile(stmt.condition, eliminate(stmt.body));
+  }
+
+  private static boolean isEmpty(Stmt stmt) {
+    return stmt instanceof StmtBlock
+        && ((StmtBlock) stmt).statements.isEmpty();
+  }
+
+  private static boolean isConstant(Expr condition, boolean value) {
+    return condition instanceof ExprLiteral
+        && Boolean.valueOf(value).equals(((ExprLiteral) condition).value);
+  }
+
+  /**
+   * Verifica se a avaliação da expressão não tem efeitos além do
+   * seu valor.
+   */
+  private static boolean isPure(Expr expr) {
+    if (expr instanceof ExprAssign || expr instanceof ExprRead) {
+      return false;
+    }
+
+    if (expr instanceof ExprBinary) {
+      ExprBinary binary = (ExprBinary) expr;
+      TokenType operator = binary.operator.type;
+      if ((operator == TokenType.SLASH || operator == TokenType.REM)
+          && !isNonZero(binary.right)) {
+        return false;
+      }
+      return isPure(binary.left) && isPure(binary.right);
+    }
+
+    if (expr instanceof ExprLogical) {
+      return isPure(((ExprLogical) expr).left)
+          && isPure(((ExprLogical) expr).right);
+    }
+
+    if (expr instanceof ExprGrouping) {
+      return isPure(((ExprGrouping) expr).expression);
+    }
+
+    if (expr instanceof ExprUnary) {
+      return isPure(((ExprUnary) expr).right);
+    }
+
+    return true;
+  }
+
+  private static boolean isNonZero(Expr expr) {
+    return expr instanceof ExprLiteral
+        && ((ExprLiteral) expr).value instanceof Double
+        && (Double) ((ExprLiteral) expr).value != 0.0;
+  }
+
+  /**
+   * Encontra as declarações que nunca são lidas nem atribuídas e cuja
+   * inicialização não tem efeitos.
+   */
+  private static class Usages implements Stmt.Visitor<Void> {
+
+    /**
+     * Declaração atual de cada escopo e posição. Uma posição pode ser
+     * reaproveitada por outro bloco do mesmo escopo.
+     */
+    private final Stmt[][] declarations;
+
+    private final Set<Stmt> used =
+        Collections.newSetFromMap(new IdentityHashMap<>());
+    private final Set<Stmt> candidates =
+        Collections.newSetFromMap(new IdentityHashMap<>());
+
+    private Usages(Program program) {
+      declarations = new Stmt[program.maxDepth + 1][];
+      declarations[0] = new Stmt[program.globals];
+    }
+
+    static Set<Stmt> unused(Program program) {
+      Usages usages = new Usages(program);
+
+      for (StmtVal valDecl : program.constants) {
+        valDecl.accept(usages);
+      }
+
+      for (Stmt statement : program.statements) {
+        statement.accept(usages);
+      }
+
+      usages.candidates.removeAll(usages.used);
+      return usages.candidates;
+    }
+
+    @Override
+    public Void visitBlockStmt(StmtBlock stmt) {
+      declarations[stmt.depth] = new Stmt[stmt.locals];
+
+      for (Stmt statement : stmt.statements) {
+        statement.accept(this);
+      }
+
+      return null;
+    }
+
+    @Override
+    public Void visitDoWhileStmt(StmtDoWhile stmt) {
+      stmt.body.accept(this);
+      use(stmt.condition);
+      return null;
+    }
+
+    @Override
+    public Void visitExpressionStmt(StmtExpression stmt) {
+      use(stmt.expression);
+      return null;
+    }
+
+    @Override
+    public Void visitIfStmt(StmtIf stmt) {
+      use(stmt.condition);
+      stmt.thenBranch.accept(this);
+      if (stmt.elseBranch != null) stmt.elseBranch.accept(this);
+      return null;
+    }
+
+    @Override
+    public Void visitPrintStmt(StmtPrint stmt) {
+      use(stmt.expression);
+      return null;
+    }
+
+    @Override
+    public Void visitPrintLnStmt(StmtPrintLn stmt) {
+      use(stmt.expression);
+      return null;
+    }
+
+    @Override
+    public Void visitValStmt(StmtVal stmt) {
+      declare(stmt, stmt.depth, stmt.slot, stmt.initializer);
+      return null;
+    }
+
+    @Override
+    public Void visitVarStmt(StmtVar stmt) {
+      declare(stmt, stmt.depth, stmt.slot, stmt.initializer);
+      return null;
+    }
+
+    @Override
+    public Void visitWhileStmt(StmtWhile stmt) {
+      use(stmt.condition);
+      stmt.body.accept(this);
+      return null;
+    }
+
+    private void declare(Stmt stmt, int depth, int slot, Expr initializer) {
+      if (initializer != null) use(initializer);
+      if (initializer == null || isPure(initializer)) candidates.add(stmt);
+      declarations[depth][slot] = stmt;
+    }
+
+    /**
+     * Marca as variáveis lidas ou atribuídas por uma expressão.
+     */
+    private void use(Expr expr) {
+      if (expr instanceof ExprVariable) {
+        ExprVariable variable = (ExprVariable) expr;
+        used.add(declarations[variable.depth][variable.slot]);
+      } else if (expr instanceof ExprAssign) {
+        ExprAssign assign = (ExprAssign) expr;
+        used.add(declarations[assign.depth][assign.slot]);
+        use(assign.value);
+      } else if (expr instanceof ExprBinary) {
+        use(((ExprBinary) expr).left);
+        use(((ExprBinary) expr).right);
+      } else if (expr instanceof ExprLogical) {
+        use(((ExprLogical) expr).left);
+        use(((ExprLogical) expr).right);
+      } else if (expr instanceof ExprGrouping) {
+        use(((ExprGrouping) expr).expression);
+      } else if (expr instanceof ExprUnary) {
+        use(((ExprUnary) expr).right);
+      }
+    }
+
+  }
+
+}
@@ -0,0 +1,392 @@
+package br.edu.ufabc.microkotlin;
+
+import java.util.BitSet;
+import br.edu.ufabc.microkotlin.expr.*;
+import br.edu.ufabc.microkotlin.program.*;
+import br.edu.ufabc.microkotlin.stmt.*;
+
+/**
+ * Verifica se toda variável recebe um valor antes de ser lida, com as
+ * regras de atribuição definida do Java (JLS, capítulo 16), de modo
+ * que todos os backends recusem os programas que o javac recusaria.
+ *
+ * O conjunto de variáveis atribuídas é propagado em ordem, e as
+ * condições produzem um conjunto para quando são verdadeiras e outro
+ * para quando são falsas, o que trata o curto-circuito do && e do ||.
+ * Como no Java, uma condição constante nunca é falsa (ou verdadeira):
+ * o conjunto desse caso contém todas as variáveis, representado por
+ * null, de modo que um while (true) atribui todas as variáveis. São
+ * constantes as expressões formadas por literais, por operadores e
+ * pelas constantes (val) com valor constante, mas não pelo null.
+ *
+ * Executada pelo TypeChecker, depois que os tipos estão corretos.
+ */
+class DefiniteAssignment implements
+    Expr.Visitor<Void>, Stmt.Visitor<Void>, Program.Visitor<Void> {
+
+  /**
+   * Conjuntos de variáveis atribuídas quando uma condição é verdadeira
+   * e quando é falsa.
+   */
+  private static class Branches {
+    final BitSet whenTrue;
+    final BitSet whenFalse;
+
+    Branches(BitSet whenTrue, BitSet whenFalse) {
+      this.whenTrue = whenTrue;
+      this.whenFalse = whenFalse;
+    }
+  }
+
+  /**
+   * Número de cada variável declarada, indexado pelo escopo e pela
+   * posição definidos pelo Resolver.
+   */
+  private int[][] ids;
+
+  /**
+   * Valor de cada constante com valor constante, ou null.
+   */
+  private Object[][] values;
+
+  /**
+   * Quantidade de variáveis declaradas até o momento.
+   */
+  private int declared;
+
+  /**
+   * Variáveis atribuídas no ponto atual, ou null caso o ponto não
+   * possa ser alcançado e todas sejam consideradas atribuídas.
+   */
+  private BitSet assigned;
+
+  /**
+   * Erros da compilação.
+   */
+  private final Diagnostics diagnostics;
+
+  DefiniteAssignment(Diagnostics diagnostics) {
+    this.diagnostics = diagnostics;
+  }
+
+  /**
+   * Verifica as leituras do programa.
+   *
+   * @param program programa já resolvido e com os tipos corretos
+   */
+  void check(Program program) {
+    program.accept(this);
+  }
+
+  private void check(Expr expr) {
+    expr.accept(this);
+  }
+
+  private void check(Stmt stmt) {
+    stmt.accept(this);
+  }
+
+  @Override
+  public Void visitProgram(Program program) {
+    ids = new int[program.maxDepth + 1][];
+    ids[0] = new int[program.globals];
+    values = new Object[program.maxDepth + 1][];
+    values[0] = new Object[program.globals];
+    declared = 0;
+    assigned = new BitSet();
+
+    for (StmtVal valDecl : program.constants) {
+      check(valDecl);
+    }
+
+    for (Stmt statement : program.statements) {
+      check(statement);
+    }
+
+    return null;
+  }
+
+  @Override
+  public Void visitBlockStmt(StmtBlock stmt) {
+    ids[stmt.depth] = new int[stmt.locals];
+    values[stmt.depth] = new Object[stmt.locals];
+
+    for (Stmt statement : stmt.statements) {
+      check(statement);
+    }
+
+    return null;
+  }
+
+  @Override
+  public Void visitDoWhileStmt(StmtDoWhile stmt) {
+    check(stmt.body);
+    assigned = condition(stmt.condition).whenFalse;
+    return null;
+  }
+
+  @Override
+  public Void visitExpressionStmt(StmtExpression stmt) {
+    check(stmt.expression);
+    return null;
+  }
+
+  @Override
+  public Void visitIfStmt(StmtIf stmt) {
+    Branches branches = condition(stmt.condition);
+
+    assigned = branches.whenTrue;
+    check(stmt.thenBranch);
+    BitSet afterThen = assigned;
+
+    assigned = branches.whenFalse;
+    if (stmt.elseBranch != null) check(stmt.elseBranch);
+
+    assigned = intersection(afterThen, assigned);
+    return null;
+  }
+
+  @Override
+  public Void visitPrintStmt(StmtPrint stmt) {
+    check(stmt.expression);
+    return null;
+  }
+
+  @Override
+  public Void visitPrintLnStmt(StmtPrintLn stmt) {
+    check(stmt.expression);
+    return null;
+  }
+
+  @Override
+  public Void visitValStmt(StmtVal stmt) {
+    check(stmt.initializer);
+    declare(stmt.depth, stmt.slot, true);
+
+    // Como no Java, a constante Int declarada como Double é um double.
+    Object value = constant(stmt.initializer);
+    if (value instanceof Integer && Kind.declared(stmt.type) == Kind.DOUBLE) {
+      value = (double) (Integer) value;
+    }
+    values[stmt.depth][stmt.slot] = value;
+    return null;
+  }
+
+  @Override
+  public Void visitVarStmt(StmtVar stmt) {
+    if (stmt.initializer != null) check(stmt.initializer);
+    declare(stmt.depth, stmt.slot, stmt.initializer != null);
+    return null;
+  }
+
+  @Override
+  public Void visitWhileStmt(StmtWhile stmt) {
+    Branches branches = condition(stmt.condition);
+
+    assigned = branches.whenTrue;
+    check(stmt.body);
+
+    assigned = branches.whenFalse;
+    return null;
+  }
+
+  @Override
+  public Void visitAssignExpr(ExprAssign expr) {
+    check(expr.value);
+    if (assigned != null) assigned.set(ids[expr.depth][expr.slot]);
+    return null;
+  }
+
+  @Override
+  public Void visitBinaryExpr(ExprBinary expr) {
+    check(expr.left);
+    check(expr.right);
+    return null;
+  }
+
+  @Override
+  public Void visitGroupingExpr(ExprGrouping expr) {
+    check(expr.expression);
+    return null;
+  }
+
+  @Override
+  public Void visitLiteralExpr(ExprLiteral expr) {
+    return null;
+  }
+
+  @Override
+  public Void visitLogicalExpr(ExprLogical expr) {
+    value(expr);
+    return null;
+  }
+
+  @Override
+  public Void visitReadExpr(ExprRead expr) {
+    return null;
+  }
+
+  @Override
+  public Void visitUnaryExpr(ExprUnary expr) {
+    if (expr.operator.type == TokenType.BANG) {
+      value(expr);
+    } else {
+      check(expr.right);
+    }
+    return null;
+  }
+
+  @Override
+  public Void visitVariableExpr(ExprVariable expr) {
+    if (assigned != null && !assigned.get(ids[expr.depth][expr.slot])) {
+      diagnostics.error(expr.name,
+          "Variable might not have been initialized.");
+    }
+    return null;
+  }
+
+  /**
+   * Numera uma nova variável, que pode ocupar a posição de outra de
+   * um bloco já encerrado.
+   */
+  private void declare(int depth, int slot, boolean initialized) {
+    int id = declared++;
+    ids[depth][slot] = id;
+    values[depth][slot] = null;
+    if (initialized && assigned != null) assigned.set(id);
+  }
+
+  /**
+   * Verifica uma expressão Boolean usada como valor, atribuída depois
+   * de ser verdadeira e de ser falsa.
+   */
+  private void value(Expr expr) {
+    Branches branches = condition(expr);
+    assigned = intersection(branches.whenTrue, branches.whenFalse);
+  }
+
+  /**
+   * Verifica uma condição, obtendo as variáveis atribuídas quando ela
+   * é verdadeira e quando é falsa. Nenhum dos conjuntos é o atual, de
+   * modo que podem ser alterados pelos comandos seguintes.
+   */
+  private Branches condition(Expr expr) {
+    Object value = constant(expr);
+    if (Boolean.TRUE.equals(value)) return new Branches(copy(assigned), null);
+    if (Boolean.FALSE.equals(value)) return new Branches(null, copy(assigned));
+
+    if (expr instanceof ExprGrouping) {
+      return condition(((ExprGrouping) expr).expression);
+    }
+
+    if (expr instanceof ExprUnary
+        && ((ExprUnary) expr).operator.type == TokenType.BANG) {
+      Branches right = condition(((ExprUnary) expr).right);
+      return new Branches(right.whenFalse, right.whenTrue);
+    }
+
+    if (expr instanceof ExprLogical) {
+      ExprLogical logical = (ExprLogical) expr;
+      Branches left = condition(logical.left);
+
+      if (logical.operator.type == TokenType.AND) {
+        assigned = left.whenTrue;
+        Branches right = condition(logical.right);
+        return new Branches(right.whenTrue,
+            intersection(left.whenFalse, right.whenFalse));
+      }
+
+      assigned = left.whenFalse;
+      Branches right = condition(logical.right);
+      return new Branches(intersection(left.whenTrue, right.whenTrue),
+          right.whenFalse);
+    }
+
+    check(expr);
+    return new Branches(copy(assigned), copy(assigned));
+  }
+
+  /**
+   * Obtém o valor de uma expressão constante, como definida pelo Java.
+   *
+   * @return Integer, Double, Boolean ou String, ou null caso a
+   *         expressão não seja constante
+   */
+  private Object constant(Expr expr) {
+    if (expr instanceof ExprGrouping) {
+      return constant(((ExprGrouping) expr).expression);
+    }
+
+    if (expr instanceof ExprLiteral) {
+      Object value = ((ExprLiteral) expr).value;
+      if (value instanceof Double) {
+        double number = (Double) value;
+        return Kind.literal(number) == Kind.INT ? (Object) (int) number : value;
+      }
+      return value;
+    }
+
+    if (expr instanceof ExprVariable) {
+      ExprVariable variable = (ExprVariable) expr;
+      return values[variable.depth][variable.slot];
+    }
+
+    if (expr instanceof ExprUnary) {
+      ExprUnary unary = (ExprUnary) expr;
+      Object value = constant(unary.right);
+      if (unary.operator.type == TokenType.BANG) {
+        return value instanceof Boolean ? !(Boolean) value : null;
+      }
+      if (value instanceof Integer) return -(Integer) value;
+      if (value instanceof Double) return -(Double) value;
+      return null;
+    }
+
+    if (expr instanceof ExprLogical) {
+      ExprLogical logical = (ExprLogical) expr;
+      Object a = constant(logical.left);
+      Object b = constant(logical.right);
+      if (!(a instanceof Boolean) || !(b instanceof Boolean)) return null;
+      return logical.operator.type == TokenType.AND
+          ? (Boolean) a && (Boolean) b
+          : (Boolean) a || (Boolean) b;
+    }
+
+    if (expr instanceof ExprBinary) {
+      ExprBinary binary = (ExprBinary) expr;
+      Object a = constant(binary.left);
+      Object b = constant(binary.right);
+      if (a == null || b == null) return null;
+
+      // A divisão por zero não é uma expressão constante.
+      TokenType operator = binary.operator.type;
+      if ((operator == TokenType.SLASH || operator == TokenType.REM)
+          && (b instanceof Integer || b instanceof Double)
+          && ((Number) b).doubleValue() == 0.0) {
+        return null;
+      }
+
+      return ConstantFolder.binary(operator, a, b);
+    }
+
+    return null;
+  }
+
+  private static BitSet copy(BitSet set) {
+    return set == null ? null : (BitSet) set.clone();
+  }
+
+  /**
+   * Variáveis atribuídas nos dois caminhos. O null, de um caminho que
+   * não pode ser alcançado, contém todas as variáveis.
+   */
+  private static BitSet intersection(BitSet a, BitSet b) {
+    if (a == null) return copy(b);
+    if (b == null) return copy(a);
+
+    BitSet result = copy(a);
+    result.and(b);
+    return result;
+  }
+
+}
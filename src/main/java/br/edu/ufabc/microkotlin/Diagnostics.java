@@ -0,0 +1,154 @@
+package br.edu.ufabc.microkotlin;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Erros de uma compilação, recebidos por cada uma das fases.
+ *
+ * Cada compilação possui os seus próprios erros, de modo que várias
+ * compilações possam ocorrer ao mesmo tempo no mesmo processo. São
+ * guardados no máximo limit erros, e as mensagens só são formatadas
+ * quando pedidas, permitindo mostrá-las todas de uma vez.
+ */
+public class Diagnostics {
+
+  /**
+   * Quantidade máxima padrão de erros guardados.
+   */
+  public static final int DEFAULT_LIMIT = 100;
+
+  /**
+   * Erro ainda não formatado.
+   */
+  private static class Diagnostic {
+    final int line;
+    final Token token;
+    final String where;
+    final String message;
+
+    Diagnostic(int line, Token token, String where, String message) {
+      this.line = line;
+      this.token = token;
+      this.where = where;
+      this.message = message;
+    }
+
+    @Override
+    public String toString() {
+      String where = this.where;
+
+      if (token != null) {
+        where = token.type == TokenType.EOF
+            ? "at end"
+            : "at '" + token.lexeme + "'";
+      }
+
+      return String.format("(%d) Error %s: %s", line, where, message);
+    }
+  }
+
+  /**
+   * Quantidade máxima de erros guardados.
+   */
+  private final int limit;
+
+  /**
+   * Erros guardados, no máximo limit.
+   */
+  private final List<Diagnostic> diagnostics = new ArrayList<>();
+
+  /**
+   * Quantidade total de erros, inclusive os não guardados.
+   */
+  private int count = 0;
+
+  public Diagnostics() {
+    this(DEFAULT_LIMIT);
+  }
+
+  public Diagnostics(int limit) {
+    this.limit = limit;
+  }
+
+  /**
+   * Informa um erro na análise do código fonte, especificando
+   * a linha e mostrando a mensagem informada.
+   *
+   * @param line linha onde o erro ocorreu
+   * @param message mensagem do erro
+   */
+  public void error(int line, String message) {
+    report(line, null, "", message);
+  }
+
+  /**
+   * Informa um erro em um lexema de uma linha, como os da
+   * VirtualMachine, que não guarda os tokens do código fonte.
+   *
+   * @param line linha onde o erro ocorreu
+   * @param lexeme lexema com erro
+   * @param message mensagem do erro
+   */
+  public void error(int line, String lexeme, String message) {
+    report(line, null, "at '" + lexeme + "'", message);
+  }
+
+  /**
+   * Informa um erro em um token.
+   *
+   * @param token token com erro
+   * @param message mensagem de erro
+   */
+  public void error(Token token, String message) {
+    report(token.line, token, null, message);
+  }
+
+  private void report(int line, Token token, String where, String message) {
+    count++;
+
+    if (diagnostics.size() < limit) {
+      diagnostics.add(new Diagnostic(line, token, where, message));
+    }
+  }
+
+  /**
+   * Informa se houve algum erro.
+   *
+   * @return verdadeiro se houve algum erro
+   */
+  public boolean hasErrors() {
+    return count > 0;
+  }
+
+  /**
+   * Retorna a quantidade total de erros, inclusive os não guardados.
+   *
+   * @return quantidade de erros
+   */
+  public int count() {
+    return count;
+  }
+
+  /**
+   * Formata as mensagens dos erros guardados, indicando ao fim
+   * quantos erros não foram guardados.
+   *
+   * @return mensagens dos erros
+   */
+  public List<String> messages() {
+    List<String> messages = new ArrayList<>(diagnostics.size() + 1);
+
+    for (Diagnostic diagnostic : diagnostics) {
+      messages.add(diagnostic.toString());
+    }
+
+    if (count > diagnostics.size()) {
+      messages.add(String.format("Too many errors, %d more not shown.",
+          count - diagnostics.size()));
+    }
+
+    return messages;
+  }
+
+}
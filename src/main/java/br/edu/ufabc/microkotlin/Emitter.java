@@ -0,0 +1,166 @@
+package br.edu.ufabc.microkotlin;
+
+import java.io.Flushable;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.io.Writer;
+
+/**
+ * Destino do código gerado, escrito conforme os visitantes percorrem
+ * o programa, sem montar a saída inteira em memória.
+ *
+ * A indentação é somente um contador de níveis, aplicado no início
+ * de cada linha, de modo que o código aninhado não precise ser
+ * copiado novamente a cada nível e o custo seja linear na saída.
+ * Os erros de escrita são lançados como UncheckedIOException, já que
+ * os visitantes não podem lançar exceções verificadas.
+ */
+public class Emitter implements Flushable {
+
+  /**
+   * Indentação de cada nível.
+   */
+  private static final String INDENT = "  ";
+
+  /**
+   * Destino da saída.
+   */
+  private final Writer out;
+
+  /**
+   * Nível atual de indentação.
+   */
+  private int depth = 0;
+
+  /**
+   * Indentação de cada nível já utilizado, criada uma única vez.
+   */
+  private String[] indentations = {""};
+
+  /**
+   * Determina se a próxima escrita inicia uma nova linha.
+   */
+  private boolean atLineStart = true;
+
+  public Emitter(Writer out) {
+    this.out = out;
+  }
+
+  /**
+   * Escreve um trecho na linha atual, indentando-o caso seja
+   * o início da linha.
+   *
+   * @param text trecho a ser escrito
+   * @return o próprio Emitter
+   */
+  public Emitter print(String text) {
+    try {
+      if (atLineStart) {
+        out.write(indentation(depth));
+        atLineStart = false;
+      }
+
+      out.write(text);
+      return this;
+    } catch (IOException e) {
+      throw new UncheckedIOException(e);
+    }
+  }
+
+  /**
+   * Escreve um trecho e termina a linha.
+   *
+   * @param text trecho a ser escrito
+   * @return o próprio Emitter
+   */
+  public Emitter println(String text) {
+    return print(text).newline();
+  }
+
+  /**
+   * Termina a linha atual.
+   *
+   * @return o próprio Emitter
+   */
+  public Emitter newline() {
+    try {
+      out.write('\n');
+      atLineStart = true;
+      return this;
+    } catch (IOException e) {
+      throw new UncheckedIOException(e);
+    }
+  }
+
+  /**
+   * Termina a linha atual, caso algo já tenha sido escrito nela.
+   *
+   * @return o próprio Emitter
+   */
+  public Emitter endLine() {
+    return atLineStart ? this : newline();
+  }
+
+  /**
+   * Escreve linhas já indentadas, como as geradas por outro Emitter,
+   * a partir do início de uma linha.
+   *
+   * @param code linhas terminadas por uma quebra de linha
+   * @return o próprio Emitter
+   */
+  public Emitter printLines(CharSequence code) {
+    try {
+      endLine();
+      out.append(code);
+      return this;
+    } catch (IOException e) {
+      throw new UncheckedIOException(e);
+    }
+  }
+
+  /**
+   * Aumenta a indentação das próximas linhas.
+   *
+   * @return o próprio Emitter
+   */
+  public Emitter indent() {
+    depth++;
+    return this;
+  }
+
+  /**
+   * Diminui a indentação das próximas linhas.
+   *
+   * @return o próprio Emitter
+   */
+  public Emitter dedent() {
+    depth--;
+    return this;
+  }
+
+  /**
+   * Obtém a indentação de um nível, criando-a caso ainda não exista.
+   *
+   * @param level nível de indentação
+   * @return espaços da indentação
+   */
+  private String indentation(int level) {
+    if (level >= indentations.length) {
+      String[] grown = new String[Math.max(level + 1, indentations.length * 2)];
+      System.arraycopy(indentations, 0, grown, 0, indentations.length);
+      indentations = grown;
+    }
+
+    if (indentations[level] == null) {
+      indentations[level] = indentation(level - 1) + INDENT;
+    }
+
+    return indentations[level];
+  }
+
+  @Override
+  public void flush() throws IOException {
+    out.flush();
+  }
+
+}
@@ -0,0 +1,178 @@
+package br.edu.ufabc.microkotlin;
+
+/**
+ * Sequências de escape dos literais String, as mesmas do Java.
+ *
+ * O Token guarda o conteúdo do literal como escrito no código fonte,
+ * que o Transpiler copia sem alterações para o código Java. Os demais
+ * backends guardam o valor do literal, obtido com unescape, de modo
+ * que todos mostrem os mesmos caracteres.
+ */
+public final class Escapes {
+
+  private Escapes() {}
+
+  /**
+   * Converte as sequências de escape de um literal nos caracteres que
+   * representam: \b, \t, \n, \f, \r, \", \', \\, os escapes octais e
+   * os escapes Unicode. Como no Java, os escapes Unicode são
+   * convertidos antes dos demais, de modo que o escape Unicode da
+   * barra seguido de um n também é uma quebra de linha.
+   *
+   * @param text conteúdo do literal, sem as aspas
+   * @return valor do literal
+   * @throws IllegalArgumentException caso haja um escape inválido
+   */
+  public static String unescape(String text) {
+    if (text.indexOf('\\') < 0) return text;
+    return escapes(unicode(text));
+  }
+
+  /**
+   * Checa se todas as sequências de escape de um literal são válidas.
+   *
+   * @param text conteúdo do literal, sem as aspas
+   * @return verdadeiro se o literal pode ser convertido por unescape
+   */
+  public static boolean isValid(String text) {
+    try {
+      unescape(text);
+      return true;
+    } catch (IllegalArgumentException e) {
+      return false;
+    }
+  }
+
+  /**
+   * Escreve um valor como o conteúdo de um literal, o inverso de
+   * unescape. Os caracteres de controle são escritos como escapes
+   * octais, e não Unicode, pois o javac converteria o escape Unicode
+   * de uma quebra de linha antes de ler o literal.
+   *
+   * @param value valor do literal
+   * @return conteúdo do literal, sem as aspas
+   */
+  public static String escape(String value) {
+    StringBuilder text = new StringBuilder(value.length());
+
+    for (int i = 0; i < value.length(); i++) {
+      char c = value.charAt(i);
+      switch (c) {
+        case '\b': text.append("\\b"); break;
+        case '\t': text.append("\\t"); break;
+        case '\n': text.append("\\n"); break;
+        case '\f': text.append("\\f"); break;
+        case '\r': text.append("\\r"); break;
+        case '"': text.append("\\\""); break;
+        case '\\': text.append("\\\\"); break;
+        default:
+          if (c < ' ' || c == 0x7F) {
+            text.append('\\').append(Integer.toOctalString(c | 0x200), 1, 4);
+          } else {
+            text.append(c);
+          }
+      }
+    }
+
+    return text.toString();
+  }
+
+  /**
+   * Converte os escapes Unicode. Como no Java, uma barra só inicia um
+   * escape se for precedida por uma quantidade par de barras, e o
+   * caractere obtido não inicia outro escape Unicode.
+   */
+  private static String unicode(String text) {
+    if (text.indexOf("\\u") < 0) return text;
+
+    StringBuilder result = new StringBuilder(text.length());
+    int length = text.length();
+    int i = 0;
+
+    while (i < length) {
+      char c = text.charAt(i);
+
+      if (c == '\\' && i + 1 < length && text.charAt(i + 1) == '\\') {
+        // A segunda barra do par não pode iniciar um escape Unicode.
+        result.append("\\\\");
+        i += 2;
+      } else if (c == '\\' && i + 1 < length && text.charAt(i + 1) == 'u') {
+        int digits = i + 1;
+        while (digits < length && text.charAt(digits) == 'u') digits++;
+
+        if (digits + 4 > length) throw invalid();
+
+        int value = 0;
+        for (int j = digits; j < digits + 4; j++) {
+          int digit = Character.digit(text.charAt(j), 16);
+          if (digit < 0) throw invalid();
+          value = value * 16 + digit;
+        }
+
+        result.append((char) value);
+        i = digits + 4;
+      } else {
+        result.append(c);
+        i++;
+      }
+    }
+
+    return result.toString();
+  }
+
+  /**
+   * Converte os demais escapes, depois dos escapes Unicode.
+   */
+  private static String escapes(String text) {
+    StringBuilder result = new StringBuilder(text.length());
+    int length = text.length();
+
+    for (int i = 0; i < length; i++) {
+      char c = text.charAt(i);
+
+      if (c != '\\') {
+        result.append(c);
+        continue;
+      }
+
+      if (++i == length) throw invalid();
+
+      c = text.charAt(i);
+      switch (c) {
+        case 'b': result.append('\b'); break;
+        case 't': result.append('\t'); break;
+        case 'n': result.append('\n'); break;
+        case 'f': result.append('\f'); break;
+        case 'r': result.append('\r'); break;
+        case '"':
+        case '\'':
+        case '\\':
+          result.append(c);
+          break;
+        default:
+          if (!isOctal(c)) throw invalid();
+
+          // Até três dígitos, desde que o valor não passe de \377.
+          int value = c - '0';
+          int more = c <= '3' ? 2 : 1;
+          while (more-- > 0 && i + 1 < length
+              && isOctal(text.charAt(i + 1))) {
+            value = value * 8 + text.charAt(++i) - '0';
+          }
+
+          result.append((char) value);
+      }
+    }
+
+    return result.toString();
+  }
+
+  private static boolean isOctal(char c) {
+    return c >= '0' && c <= '7';
+  }
+
+  private static IllegalArgumentException invalid() {
+    return new IllegalArgumentException("Invalid escape sequence.");
+  }
+
+}
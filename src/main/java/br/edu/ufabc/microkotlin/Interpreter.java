@@ -0,0 +1,499 @@
+package br.edu.ufabc.microkotlin;
+
+import java.io.BufferedReader;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.PrintStream;
+import java.util.InputMismatchException;
+import java.util.NoSuchElementException;
+import br.edu.ufabc.microkotlin.expr.*;
+import br.edu.ufabc.microkotlin.program.*;
+import br.edu.ufabc.microkotlin.stmt.*;
+
+/**
+ * Executa o programa percorrendo diretamente a árvore sintática,
+ * sem gerar código e sem depender do javac.
+ *
+ * Os valores ficam em um vetor por escopo, indexados pelas posições
+ * definidas pelo Resolver. Como a linguagem não possui funções, há no
+ * máximo um bloco ativo em cada profundidade, e o vetor de cada
+ * profundidade é reaproveitado pelos blocos seguintes.
+ *
+ * A semântica segue a do código gerado pelo Transpiler: os literais
+ * inteiros são Int, as operações com Double promovem o Int, o '+' com
+ * uma String concatena e a entrada é lida por um java.util.Scanner.
+ * Os erros de tipo só são encontrados quando a expressão é executada.
+ */
+public class Interpreter implements
+    Expr.Visitor<Object>, Stmt.Visitor<Void>, Program.Visitor<Void> {
+
+  @SuppressWarnings("serial")
+  private static class RuntimeError extends RuntimeException {
+    final Token token;
+
+    RuntimeError(Token token, String message) {
+      super(message);
+      this.token = token;
+    }
+  }
+
+  /**
+   * Erros da execução.
+   */
+  private final Diagnostics diagnostics;
+
+  /**
+   * Entrada e saída do programa.
+   */
+  private final InputStream in;
+  private final PrintStream out;
+
+  /**
+   * Leitor da entrada, criado a cada execução.
+   */
+  private java.util.Scanner input;
+
+  /**
+   * Valores e tipos declarados das variáveis, indexados pelo escopo
+   * e pela posição definidos pelo Resolver.
+   */
+  private Object[][] values;
+  private Class<?>[][] types;
+
+  /**
+   * Determina se a entrada está disponível, o que não ocorre na
+   * inicialização das constantes.
+   */
+  private boolean inMain;
+
+  /**
+   * Linha do último token visitado, usada nos erros sem token.
+   */
+  private int line = 1;
+
+  public Interpreter(Diagnostics diagnostics) {
+    this(diagnostics, System.in, System.out);
+  }
+
+  public Interpreter(Diagnostics diagnostics, InputStream in,
+      PrintStream out) {
+    this.diagnostics = diagnostics;
+    this.in = in;
+    this.out = out;
+  }
+
+  /**
+   * Executa o programa.
+   *
+   * @param program programa já resolvido
+   * @return verdadeiro caso a execução termine sem erros
+   */
+  public boolean interpret(Program program) {
+    input = new java.util.Scanner(
+        new BufferedReader(new InputStreamReader(in)));
+
+    try {
+      program.accept(this);
+      return true;
+    } catch (RuntimeError error) {
+      if (error.token != null) {
+        diagnostics.error(error.token, error.getMessage());
+      } else {
+        diagnostics.error(line, error.getMessage());
+      }
+      return false;
+    } finally {
+      out.flush();
+    }
+  }
+
+  private Object evaluate(Expr expr) {
+    return expr.accept(this);
+  }
+
+  private void execute(Stmt stmt) {
+    stmt.accept(this);
+  }
+
+  @Override
+  public Void visitProgram(Program program) {
+    values = new Object[program.maxDepth + 1][];
+    types = new Class<?>[program.maxDepth + 1][];
+    values[0] = new Object[program.globals];
+    types[0] = new Class<?>[program.globals];
+
+    inMain = false;
+    for (StmtVal valDecl : program.constants) {
+      execute(valDecl);
+    }
+
+    inMain = true;
+    for (Stmt statement : program.statements) {
+      execute(statement);
+    }
+
+    return null;
+  }
+
+  @Override
+  public Void visitBlockStmt(StmtBlock stmt) {
+    // Cada variável é atribuída na declaração antes de ser lida, então
+    // os valores deixados por um bloco anterior nunca são observados.
+    if (values[stmt.depth] == null
+        || values[stmt.depth].length < stmt.locals) {
+      values[stmt.depth] = new Object[stmt.locals];
+      types[stmt.depth] = new Class<?>[stmt.locals];
+    }
+
+    for (Stmt statement : stmt.statements) {
+      execute(statement);
+    }
+
+    return null;
+  }
+
+  @Override
+  public Void visitDoWhileStmt(StmtDoWhile stmt) {
+    do {
+      execute(stmt.body);
+    } while (condition(stmt.condition));
+
+    return null;
+  }
+
+  @Override
+  public Void visitExpressionStmt(StmtExpression stmt) {
+    evaluate(stmt.expression);
+    return null;
+  }
+
+  @Override
+  public Void visitIfStmt(StmtIf stmt) {
+    if (condition(stmt.condition)) {
+      execute(stmt.thenBranch);
+    } else if (stmt.elseBranch != null) {
+      execute(stmt.elseBranch);
+    }
+
+    return null;
+  }
+
+  @Override
+  public Void visitPrintStmt(StmtPrint stmt) {
+    out.print(printable(stmt.expression));
+    return null;
+  }
+
+  @Override
+  public Void visitPrintLnStmt(StmtPrintLn stmt) {
+    out.println(printable(stmt.expression));
+    return null;
+  }
+
+  private String printable(Expr expression) {
+    if (expression instanceof ExprLiteral
+        && ((ExprLiteral) expression).value == null) {
+      throw new RuntimeError(null, "Ambiguous print of null.");
+    }
+
+    return String.valueOf(evaluate(expression));
+  }
+
+  @Override
+  public Void visitValStmt(StmtVal stmt) {
+    line = stmt.name.line;
+    Class<?> type = declaredType(stmt.type);
+    declare(stmt.depth, stmt.slot, type, stmt.name,
+        evaluate(stmt.initializer));
+    return null;
+  }
+
+  @Override
+  public Void visitVarStmt(StmtVar stmt) {
+    line = stmt.name.line;
+    Class<?> type = declaredType(stmt.type);
+    Object value = stmt.initializer != null
+        ? evaluate(stmt.initializer)
+        : defaultValue(type);
+
+    declare(stmt.depth, stmt.slot, type, stmt.name, value);
+    return null;
+  }
+
+  private void declare(int depth, int slot, Class<?> type, Token name,
+      Object value) {
+    types[depth][slot] = type;
+    values[depth][slot] = coerce(value, type, name);
+  }
+
+  @Override
+  public Void visitWhileStmt(StmtWhile stmt) {
+    while (condition(stmt.condition)) {
+      execute(stmt.body);
+    }
+
+    return null;
+  }
+
+  @Override
+  public Object visitAssignExpr(ExprAssign expr) {
+    line = expr.name.line;
+    Object value = coerce(evaluate(expr.value),
+        types[expr.depth][expr.slot], expr.name);
+
+    values[expr.depth][expr.slot] = value;
+    return value;
+  }
+
+  @Override
+  @SuppressWarnings("incomplete-switch")
+  public Object visitBinaryExpr(ExprBinary expr) {
+    Object left = evaluate(expr.left);
+    Object right = evaluate(expr.right);
+    line = expr.operator.line;
+
+    switch (expr.operator.type) {
+      case EQUAL_EQUAL:
+        return equal(expr.operator, left, right);
+      case BANG_EQUAL:
+        return !equal(expr.operator, left, right);
+      case PLUS:
+        if (isReference(left) || isReference(right)) {
+          return String.valueOf(left) + right;
+        }
+        break;
+    }
+
+    if (!(left instanceof Number) || !(right instanceof Number)) {
+      throw new RuntimeError(expr.operator, "Operands must be numbers.");
+    }
+
+    if (left instanceof Integer && right instanceof Integer) {
+      return arithmetic(expr, (Integer) left, (Integer) right);
+    }
+
+    return arithmetic(expr, ((Number) left).doubleValue(),
+        ((Number) right).doubleValue());
+  }
+
+  @SuppressWarnings("incomplete-switch")
+  private Object arithmetic(ExprBinary expr, int left, int right) {
+    switch (expr.operator.type) {
+      case GREATER: return left > right;
+      case GREATER_EQUAL: return left >= right;
+      case LESS: return left < right;
+      case LESS_EQUAL: return left <= right;
+      case PLUS: return left + right;
+      case MINUS: return left - right;
+      case TIMES: return left * right;
+    }
+
+    if (right == 0) {
+      throw new RuntimeError(expr.operator, "Division by zero.");
+    }
+
+    return expr.operator.type == TokenType.SLASH
+        ? left / right
+        : left % right;
+  }
+
+  @SuppressWarnings("incomplete-switch")
+  private Object arithmetic(ExprBinary expr, double left, double right) {
+    switch (expr.operator.type) {
+      case GREATER: return left > right;
+      case GREATER_EQUAL: return left >= right;
+      case LESS: return left < right;
+      case LESS_EQUAL: return left <= right;
+      case PLUS: return left + right;
+      case MINUS: return left - right;
+      case TIMES: return left * right;
+      case REM: return left % right;
+    }
+
+    if (isZero(expr.right)) {
+      throw new RuntimeError(expr.operator, "Division by zero.");
+    }
+
+    return left / right;
+  }
+
+  /**
+   * Compara dois valores como o operador '==' do Java: os números
+   * pelo valor, promovendo o Int, e as Strings pela referência.
+   */
+  private boolean equal(Token operator, Object left, Object right) {
+    if (left instanceof Number && right instanceof Number) {
+      if (left instanceof Integer && right instanceof Integer) {
+        return ((Integer) left).intValue() == (Integer) right;
+      }
+
+      return ((Number) left).doubleValue() == ((Number) right).doubleValue();
+    }
+
+    if (left instanceof Boolean && right instanceof Boolean) {
+      return left.equals(right);
+    }
+
+    if (isReference(left) && isReference(right)) {
+      return left == right;
+    }
+
+    throw new RuntimeError(operator, "Incomparable types: " + typeName(left)
+        + " and " + typeName(right) + ".");
+  }
+
+  private boolean isReference(Object value) {
+    return value == null || value instanceof String;
+  }
+
+  private boolean isZero(Expr expr) {
+    return expr instanceof ExprLiteral
+        && ((ExprLiteral) expr).value instanceof Double
+        && (Double) ((ExprLiteral) expr).value == 0.0;
+  }
+
+  @Override
+  public Object visitGroupingExpr(ExprGrouping expr) {
+    return evaluate(expr.expression);
+  }
+
+  @Override
+  public Object visitLiteralExpr(ExprLiteral expr) {
+    Object value = expr.value;
+
+    if (value instanceof Double) {
+      // Os literais sem parte fracionária são int no código gerado.
+      double number = (Double) value;
+      if (number == (int) number && number < 1e7) return (int) number;
+    } else if (value instanceof String) {
+      // Os literais iguais são a mesma String no código gerado.
+      return Escapes.unescape((String) value).intern();
+    }
+
+    return value;
+  }
+
+  @Override
+  public Object visitLogicalExpr(ExprLogical expr) {
+    line = expr.operator.line;
+    boolean left = requireBoolean(evaluate(expr.left), expr.operator);
+
+    if (expr.operator.type == TokenType.OR ? left : !left) return left;
+
+    return requireBoolean(evaluate(expr.right), expr.operator);
+  }
+
+  @Override
+  public Object visitReadExpr(ExprRead expr) {
+    if (!inMain) {
+      throw new RuntimeError(null, "Cannot read input in a constant.");
+    }
+
+    out.flush();
+
+    try {
+      switch (expr.type) {
+        case INT:
+          return input.nextInt();
+        case DOUBLE:
+          return input.nextDouble();
+        case BOOLEAN:
+          return input.nextBoolean();
+        default:
+          return input.nextLine();
+      }
+    } catch (InputMismatchException e) {
+      throw new RuntimeError(null, "Invalid input.");
+    } catch (NoSuchElementException e) {
+      throw new RuntimeError(null, "Unexpected end of input.");
+    }
+  }
+
+  @Override
+  public Object visitUnaryExpr(ExprUnary expr) {
+    Object right = evaluate(expr.right);
+    line = expr.operator.line;
+
+    if (expr.operator.type == TokenType.BANG) {
+      if (!(right instanceof Boolean)) {
+        throw new RuntimeError(expr.operator, "Operand must be a Boolean.");
+      }
+      return !(Boolean) right;
+    }
+
+    if (right instanceof Integer) return -(Integer) right;
+    if (right instanceof Double) return -(Double) right;
+
+    throw new RuntimeError(expr.operator, "Operand must be a number.");
+  }
+
+  @Override
+  public Object visitVariableExpr(ExprVariable expr) {
+    return values[expr.depth][expr.slot];
+  }
+
+  /**
+   * Avalia a condição de um comando.
+   */
+  private boolean condition(Expr condition) {
+    Object value = evaluate(condition);
+
+    if (!(value instanceof Boolean)) {
+      throw new RuntimeError(null, "Condition must be a Boolean.");
+    }
+
+    return (Boolean) value;
+  }
+
+  private boolean requireBoolean(Object value, Token operator) {
+    if (!(value instanceof Boolean)) {
+      throw new RuntimeError(operator, "Operands must be Booleans.");
+    }
+
+    return (Boolean) value;
+  }
+
+  /**
+   * Converte o valor para o tipo declarado, ou informa um erro caso
+   * os tipos sejam incompatíveis.
+   */
+  private Object coerce(Object value, Class<?> type, Token token) {
+    if (type.isInstance(value) || (value == null && type == String.class)) {
+      return value;
+    }
+
+    if (value instanceof Integer && type == Double.class) {
+      return ((Integer) value).doubleValue();
+    }
+
+    throw new RuntimeError(token, "Incompatible types: " + typeName(value)
+        + " cannot be converted to " + typeName(type) + ".");
+  }
+
+  private Object defaultValue(Class<?> type) {
+    if (type == Integer.class) return 0;
+    if (type == Double.class) return 0.0;
+    if (type == Boolean.class) return false;
+    return null;
+  }
+
+  private Class<?> declaredType(Token type) {
+    switch (type.lexeme) {
+      case "Int": return Integer.class;
+      case "Double": return Double.class;
+      case "Boolean": return Boolean.class;
+      case "String": return String.class;
+      default:
+        throw new RuntimeError(type, "The type specified doesn't exist.");
+    }
+  }
+
+  private String typeName(Object value) {
+    return value == null ? "null" : typeName(value.getClass());
+  }
+
+  private String typeName(Class<?> type) {
+    return type == Integer.class ? "Int" : type.getSimpleName();
+  }
+
+}
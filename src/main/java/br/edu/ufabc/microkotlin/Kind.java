@@ -0,0 +1,59 @@
+package br.edu.ufabc.microkotlin;
+
+/**
+ * Tipos estáticos das expressões, usados pelas fases que especializam
+ * o código gerado pelo tipo de cada valor.
+ */
+public enum Kind {
+  INT("Int"),
+  DOUBLE("Double"),
+  BOOLEAN("Boolean"),
+  STRING("String"),
+  NULL("null");
+
+  /**
+   * Nome do tipo na linguagem, usado nas mensagens de erro.
+   */
+  public final String name;
+
+  Kind(String name) {
+    this.name = name;
+  }
+
+  public boolean isNumber() {
+    return this == INT || this == DOUBLE;
+  }
+
+  public boolean isReference() {
+    return this == STRING || this == NULL;
+  }
+
+  /**
+   * Obtém o tipo de um literal numérico não negativo: os valores sem
+   * parte fracionária menores que 10^7 são Int, como no código Java
+   * gerado, e os demais são Double.
+   *
+   * @param number valor do literal
+   * @return INT ou DOUBLE
+   */
+  public static Kind literal(double number) {
+    return number == (int) number && number < 1e7 ? INT : DOUBLE;
+  }
+
+  /**
+   * Obtém o tipo declarado de uma variável ou constante.
+   *
+   * @param type token do tipo
+   * @return o tipo, ou null caso não exista
+   */
+  public static Kind declared(Token type) {
+    switch (type.lexeme) {
+      case "Int": return INT;
+      case "Double": return DOUBLE;
+      case "Boolean": return BOOLEAN;
+      case "String": return STRING;
+      default: return null;
+    }
+  }
+
+}
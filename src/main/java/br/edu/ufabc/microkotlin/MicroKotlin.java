@@ -1,9 +1,16 @@
 package br.edu.ufabc.microkotlin;
 
 import java.io.IOException;
-import java.nio.charset.Charset;
+import java.io.PrintStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
 import java.nio.file.Files;
+import java.nio.file.Path;
 import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.List;
 import br.edu.ufabc.microkotlin.program.Program;
 
@@ -12,94 +19,274 @@ import br.edu.ufabc.microkotlin.program.Program;
  * O arquivo de entrada é informado como um dos argumentos
  * de execução, e o de saída será gerado na mesma localização.
  *
+ * Quando são informados vários arquivos, pastas ou padrões glob,
+ * todos são transpilados em paralelo pelo BatchTranspiler.
+ *
+ * Com a opção --daemon, o transpilador permanece em execução,
+ * atendendo os pedidos feitos através da opção --client, sem pagar
+ * o custo de iniciar a JVM a cada arquivo.
+ *
+ * Opções:
+ *   --lexer=table  utiliza o analisador léxico dirigido por tabelas
+ *   --backend=B    gera código Java (java), o .class (bytecode) ou as
+ *                  instruções da VirtualMachine (vm), ou executa com
+ *                  --run pelo interpretador (interpreter) ou por
+ *                  closures (closures)
+ *   --run          executa o programa na própria JVM, sem gerar arquivos;
+ *                  com --backend=vm, aceita também um arquivo .mkbc
+ *   --disassemble  mostra as instruções da VirtualMachine
+ *   --no-optimize  não calcula as expressões constantes, não remove
+ *                  o código morto e não usa StringBuilder nas Strings
+ *                  acumuladas em laços
+ *   --unbuffered   o programa gerado imprime diretamente no System.out,
+ *                  sem o buffer da saída
+ *   --reader=R     o programa gerado lê a entrada pelo leitor próprio
+ *                  (fast) ou pelo java.util.Scanner (scanner)
+ *   --no-split     não divide o main dos programas grandes em métodos
+ *   --jobs=N       quantidade de threads do modo em lote
+ *   --max-errors=N quantidade máxima de erros por arquivo
+ *   --daemon       inicia o servidor de compilação
+ *   --client       envia a compilação para o servidor
+ *   --stop         encerra o servidor
+ *   --port=N       porta local do servidor
+ *   --incremental  ignora as entradas que não mudaram
+ *   --cache-dir=D  pasta do cache da compilação incremental
+ *
  * A implementação em parte é baseada no livro Crafting Interpreters.
  */
 public class MicroKotlin {
 
   /**
-   * Determina o estado, informando se houve algum erro em
-   * alguma das análises realizadas.
+   * Versão do transpilador, que invalida o cache incremental.
    */
-  public static boolean hadError = false;
+  public static final String VERSION = "1.7.2";
 
   public static void main(String[] args) throws IOException {
-    if (args.length != 1) {
-      System.err.println("You need to specify the input file.");
+    List<String> arguments = new ArrayList<>(Arrays.asList(args));
+    int port = CompilerDaemon.DEFAULT_PORT;
+
+    for (String arg : args) {
+      if (arg.startsWith("--port=")) {
+        port = Integer.parseInt(arg.substring("--port=".length()));
+        arguments.remove(arg);
+      }
+    }
+
+    if (arguments.remove("--daemon")) {
+      new CompilerDaemon(port).serve();
       return;
     }
 
-    transpileFile(args[0]);
+    if (arguments.remove("--stop")) {
+      System.exit(DaemonClient.stop(port));
+    }
+
+    if (arguments.remove("--client")) {
+      System.exit(DaemonClient.compile(port, arguments, System.err));
+    }
+
+    System.exit(run(arguments, System.err));
   }
 
   /**
-   * Efetua a leitura do arquivo informado, obtendo todo seu
-   * conteúdo em uma String que será avaliada posteriormente.
+   * Executa o transpilador com os argumentos informados.
    *
-   * @param file caminho do arquivo de entrada
-   * @throws IOException caso haja algum erro de leitura
+   * @param args opções e arquivos de entrada
+   * @param err saída dos erros
+   * @return código de saída, diferente de zero em caso de erro
+   * @throws IOException caso haja algum erro de leitura ou escrita
    */
-  private static void transpileFile(String file) throws IOException {
-    byte[] bytes = Files.readAllBytes(Paths.get(file));
-    transpile(new String(bytes, Charset.defaultCharset()), file);
+  static int run(List<String> args, PrintStream err) throws IOException {
+    Options options;
+    try {
+      options = Options.parse(args);
+    } catch (IllegalArgumentException e) {
+      err.println(e.getMessage());
+      return 1;
+    }
+
+    if (options.run || options.disassemble) {
+      if (options.inputs.size() != 1
+          || !Files.isRegularFile(Paths.get(options.inputs.get(0)))) {
+        err.println("The " + (options.run ? "--run" : "--disassemble")
+            + " option expects a single file.");
+        return 1;
+      }
 
-    if (hadError) {
-      System.exit(1);
+      return new ProgramRunner(options, err).run(options.inputs.get(0));
+    }
+
+    BuildCache cache = null;
+    if (options.incremental) {
+      cache = new BuildCache(Paths.get(options.cacheDir), options);
+    }
+
+    try {
+      String first = options.inputs.get(0);
+      if (options.inputs.size() == 1 && Files.isRegularFile(Paths.get(first))) {
+        List<String> fileErrors = transpileFile(first, options, cache);
+        if (!fileErrors.isEmpty()) {
+          err.print(String.join(System.lineSeparator(), fileErrors)
+              + System.lineSeparator());
+        }
+        return fileErrors.isEmpty() ? 0 : 1;
+      }
+
+      BatchTranspiler batch = new BatchTranspiler(options, cache, err);
+      return batch.transpile(options.inputs) ? 0 : 1;
+    } finally {
+      if (cache != null) cache.save();
     }
   }
 
   /**
-   * Efetua a tradução do código passado como parâmetro.
+   * Mapeia o arquivo informado em memória, cujo conteúdo em UTF-8
+   * é lido diretamente pelo Scanner, sem decodificação prévia.
+   *
+   * Com o cache incremental, a entrada que não mudou desde a última
+   * compilação é ignorada, e a saída só é reescrita caso mude.
    *
-   * @param sourceCode código-fonte na linguagem MicroKotlin
+   * @param file caminho do arquivo de entrada
+   * @param options opções da execução
+   * @param cache cache incremental, ou null para sempre transpilar
+   * @return erros encontrados, vazio caso não haja nenhum
+   * @throws IOException caso haja algum erro de leitura
    */
-  private static void transpile(String sourceCode, String inputFile) throws IOException {
-    Scanner scanner = new Scanner(sourceCode);
-    List<Token> tokens = scanner.scanTokens();
-    Parser parser = new Parser(tokens);
-    Program program = parser.parse();
+  static List<String> transpileFile(String file, Options options,
+      BuildCache cache) throws IOException {
+    Path input = Paths.get(file);
+    String outputFile = outputFile(file, options);
+    Path output = Paths.get(outputFile);
 
-    if (hadError) return;
+    BasicFileAttributes attributes = null;
+    if (cache != null) {
+      attributes = cache.attributes(input);
+      if (cache.isUpToDate(input, output, attributes)) {
+        return new ArrayList<>();
+      }
+    }
 
-    String outputFile = inputFile.replace(".kt", ".java");
-    Transpiler transpiler = new Transpiler(outputFile);
-    transpiler.transpile(program);
+    ByteBuffer bytes;
+    try (FileChannel channel = FileChannel.open(input, StandardOpenOption.READ)) {
+      bytes = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+    }
+
+    String hash = null;
+    if (cache != null) {
+      hash = cache.hash(bytes);
+      if (cache.isUpToDate(input, output, attributes, hash)) {
+        return new ArrayList<>();
+      }
+    }
+
+    Diagnostics diagnostics = new Diagnostics(options.maxErrors);
+    transpile(bytes, outputFile, options, cache != null, diagnostics);
+
+    if (cache != null) {
+      if (diagnostics.hasErrors()) {
+        cache.invalidate(input);
+      } else {
+        cache.update(input, attributes, hash);
+      }
+    }
+
+    return diagnostics.messages();
   }
 
   /**
-   * Informa um erro na análise do código fonte, especificando
-   * a linha e mostrando a mensagem informada.
+   * Obtém o arquivo de saída de uma entrada.
    *
-   * @param line linha onde o erro ocorreu
-   * @param message mensagem do erro
+   * @param inputFile arquivo de entrada
+   * @param options opções da execução
+   * @return arquivo de saída
    */
-  public static void error(int line, String message) {
-    report(line, "", message);
+  private static String outputFile(String inputFile, Options options) {
+    if (options.backend == Options.Backend.BYTECODE) {
+      return inputFile.replace(".kt", ".class");
+    }
+
+    if (options.backend == Options.Backend.VM) {
+      return inputFile.replace(".kt", ".mkbc");
+    }
+
+    return inputFile.replace(".kt", ".java");
   }
 
   /**
-   * Reporta um erro geral do transpilador.
+   * Aplica ao programa as fases entre o Parser e o backend: a
+   * resolução dos nomes, a checagem dos tipos, as otimizações e a
+   * divisão do main em métodos, conforme as opções.
    *
-   * @param line linha onde o erro ocorreu
-   * @param where onde o erro ocorreu
-   * @param message mensagem de erro
+   * @param program programa obtido pelo Parser, sem erros
+   * @param options opções da execução
+   * @param diagnostics erros da compilação
+   * @return programa pronto para o backend, ou null caso haja erros
    */
-  public static void report(int line, String where, String message) {
-    System.err.printf("(%d) Error %s: %s%n", line, where, message);
-    hadError = true;
+  public static Program analyze(Program program, Options options,
+      Diagnostics diagnostics) {
+    new Resolver(diagnostics).resolve(program);
+
+    if (diagnostics.hasErrors()) return null;
+
+    new TypeChecker(diagnostics).check(program);
+
+    if (diagnostics.hasErrors()) return null;
+
+    if (options.optimize) {
+      program = new ConstantFolder().fold(program);
+      program = new DeadCodeEliminator().eliminate(program);
+      new AccumulatorFinder().find(program);
+    }
+
+    if (options.splitMethods && options.backend != Options.Backend.VM) {
+      new Outliner().outline(program);
+    }
+
+    return program;
   }
 
   /**
-   * Reporta um erro do Parser.
+   * Efetua a tradução do código passado como parâmetro.
    *
-   * @param token token com erro
-   * @param message mensagem de erro
+   * @param sourceCode código-fonte na linguagem MicroKotlin, em UTF-8
+   * @param outputFile arquivo de saída
+   * @param options opções da execução
+   * @param onlyIfChanged não reescreve a saída caso seja idêntica
+   * @param diagnostics erros da compilação
    */
-  public static void error(Token token, String message) {
-    if (token.type == TokenType.EOF) {
-      report(token.line, "at end", message);
-    } else {
-      report(token.line, "at '" + token.lexeme + "'", message);
+  private static void transpile(ByteBuffer sourceCode, String outputFile,
+      Options options, boolean onlyIfChanged, Diagnostics diagnostics)
+      throws IOException {
+    Scanner scanner = options.tableLexer
+        ? new TableScanner(sourceCode, diagnostics)
+        : new Scanner(sourceCode, diagnostics);
+    Parser parser = new Parser(new ScannerTokenStream(scanner), diagnostics);
+    Program program = parser.parse();
+
+    if (diagnostics.hasErrors()) return;
+
+    program = analyze(program, options, diagnostics);
+
+    if (program == null) return;
+
+    if (options.backend == Options.Backend.BYTECODE) {
+      BytecodeCompiler compiler = new BytecodeCompiler(outputFile, diagnostics);
+      compiler.bufferOutput(options.bufferOutput);
+      compiler.fastReader(options.fastReader);
+      compiler.compile(program, onlyIfChanged);
+      return;
+    }
+
+    if (options.backend == Options.Backend.VM) {
+      VmCompiler compiler = new VmCompiler(outputFile, diagnostics);
+      compiler.compile(program, onlyIfChanged);
+      return;
     }
+
+    Transpiler transpiler = new Transpiler(outputFile, diagnostics);
+    transpiler.bufferOutput(options.bufferOutput);
+    transpiler.fastReader(options.fastReader);
+    transpiler.transpile(program, onlyIfChanged);
   }
 
 }
@@ -0,0 +1,125 @@
+package br.edu.ufabc.microkotlin;
+
+import java.util.List;
+import br.edu.ufabc.microkotlin.expr.*;
+import br.edu.ufabc.microkotlin.program.*;
+import br.edu.ufabc.microkotlin.stmt.*;
+
+/**
+ * Conta a quantidade de nós da árvore sintática de um programa.
+ */
+public class NodeCounter implements
+    Expr.Visitor<Integer>, Stmt.Visitor<Integer>, Program.Visitor<Integer> {
+
+  public static int count(Program program) {
+    return program.accept(new NodeCounter());
+  }
+
+  private int count(Expr expr) {
+    return expr == null ? 0 : expr.accept(this);
+  }
+
+  private int count(Stmt stmt) {
+    return stmt == null ? 0 : stmt.accept(this);
+  }
+
+  private int count(List<? extends Stmt> statements) {
+    int total = 0;
+    for (Stmt statement : statements) {
+      total += count(statement);
+    }
+    return total;
+  }
+
+  @Override
+  public Integer visitProgram(Program program) {
+    return 1 + count(program.constants) + count(program.statements);
+  }
+
+  @Override
+  public Integer visitBlockStmt(StmtBlock stmt) {
+    return 1 + count(stmt.statements);
+  }
+
+  @Override
+  public Integer visitDoWhileStmt(StmtDoWhile stmt) {
+    return 1 + count(stmt.condition) + count(stmt.body);
+  }
+
+  @Override
+  public Integer visitExpressionStmt(StmtExpression stmt) {
+    return 1 + count(stmt.expression);
+  }
+
+  @Override
+  public Integer visitIfStmt(StmtIf stmt) {
+    return 1 + count(stmt.condition)
+        + count(stmt.thenBranch) + count(stmt.elseBranch);
+  }
+
+  @Override
+  public Integer visitPrintStmt(StmtPrint stmt) {
+    return 1 + count(stmt.expression);
+  }
+
+  @Override
+  public Integer visitPrintLnStmt(StmtPrintLn stmt) {
+    return 1 + count(stmt.expression);
+  }
+
+  @Override
+  public Integer visitValStmt(StmtVal stmt) {
+    return 1 + count(stmt.initializer);
+  }
+
+  @Override
+  public Integer visitVarStmt(StmtVar stmt) {
+    return 1 + count(stmt.initializer);
+  }
+
+  @Override
+  public Integer visitWhileStmt(StmtWhile stmt) {
+    return 1 + count(stmt.condition) + count(stmt.body);
+  }
+
+  @Override
+  public Integer visitAssignExpr(ExprAssign expr) {
+    return 1 + count(expr.value);
+  }
+
+  @Override
+  public Integer visitBinaryExpr(ExprBinary expr) {
+    return 1 + count(expr.left) + count(expr.right);
+  }
+
+  @Override
+  public Integer visitGroupingExpr(ExprGrouping expr) {
+    return 1 + count(expr.expression);
+  }
+
+  @Override
+  public Integer visitLiteralExpr(ExprLiteral expr) {
+    return 1;
+  }
+
+  @Override
+  public Integer visitLogicalExpr(ExprLogical expr) {
+    return 1 + count(expr.left) + count(expr.right);
+  }
+
+  @Override
+  public Integer visitReadExpr(ExprRead expr) {
+    return 1;
+  }
+
+  @Override
+  public Integer visitUnaryExpr(ExprUnary expr) {
+    return 1 + count(expr.right);
+  }
+
+  @Override
+  public Integer visitVariableExpr(ExprVariable expr) {
+    return 1;
+  }
+
+}
@@ -0,0 +1,206 @@
+package br.edu.ufabc.microkotlin;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Opções de uma execução do transpilador, obtidas dos argumentos.
+ */
+public class Options {
+
+  /**
+   * Determina se o analisador léxico dirigido por tabelas
+   * deve ser utilizado no lugar do Scanner.
+   */
+  public boolean tableLexer = false;
+
+  /**
+   * Quantidade de threads do modo em lote.
+   */
+  public int jobs = Runtime.getRuntime().availableProcessors();
+
+  /**
+   * Formas de saída do compilador.
+   */
+  public static enum Backend {
+    /** Código-fonte Java, compilado em seguida pelo javac. */
+    JAVA,
+    /** Arquivo .class gerado diretamente. */
+    BYTECODE,
+    /** Interpretação da árvore sintática, somente com --run. */
+    INTERPRETER,
+    /** Árvore de closures especializadas, somente com --run. */
+    CLOSURES,
+    /** Instruções da VirtualMachine, gravadas em um arquivo .mkbc. */
+    VM
+  }
+
+  /**
+   * Forma de saída do compilador.
+   */
+  public Backend backend = Backend.JAVA;
+
+  /**
+   * Determina se o programa deve ser executado na própria JVM,
+   * sem escrever a saída em disco.
+   */
+  public boolean run = false;
+
+  /**
+   * Determina se a listagem das instruções da VirtualMachine deve
+   * ser mostrada no lugar da execução.
+   */
+  public boolean disassemble = false;
+
+  /**
+   * Determina se as otimizações sobre a árvore sintática, o cálculo
+   * das expressões constantes, a remoção do código morto e a marcação
+   * das Strings acumuladas em laços, devem ser aplicadas.
+   */
+  public boolean optimize = true;
+
+  /**
+   * Determina se os programas gerados pelos backends java e bytecode
+   * escrevem a saída em um buffer, em vez de diretamente no System.out.
+   */
+  public boolean bufferOutput = true;
+
+  /**
+   * Determina se os programas gerados pelos backends java e bytecode
+   * leem a entrada por um leitor próprio, em vez do java.util.Scanner.
+   */
+  public boolean fastReader = true;
+
+  /**
+   * Determina se o main dos programas grandes gerados pelos backends
+   * java e bytecode é dividido em métodos menores pelo Outliner.
+   */
+  public boolean splitMethods = true;
+
+  /**
+   * Quantidade máxima de erros mostrados por arquivo.
+   */
+  public int maxErrors = Diagnostics.DEFAULT_LIMIT;
+
+  /**
+   * Determina se as entradas que não mudaram desde a última
+   * compilação devem ser ignoradas.
+   */
+  public boolean incremental = false;
+
+  /**
+   * Pasta do cache da compilação incremental.
+   */
+  public String cacheDir = ".microkotlin-cache";
+
+  /**
+   * Arquivos, pastas ou padrões glob de entrada.
+   */
+  public final List<String> inputs = new ArrayList<>();
+
+  /**
+   * Interpreta os argumentos de execução.
+   *
+   * @param args argumentos de execução
+   * @return opções informadas
+   * @throws IllegalArgumentException caso algum argumento seja inválido
+   */
+  public static Options parse(List<String> args) {
+    Options options = new Options();
+
+    for (String arg : args) {
+      if (arg.equals("--lexer=table")) {
+        options.tableLexer = true;
+      } else if (arg.equals("--lexer=default")) {
+        options.tableLexer = false;
+      } else if (arg.startsWith("--jobs=")) {
+        options.jobs = parsePositive(arg, "--jobs=");
+      } else if (arg.equals("--backend=java")) {
+        options.backend = Backend.JAVA;
+      } else if (arg.equals("--backend=bytecode")) {
+        options.backend = Backend.BYTECODE;
+      } else if (arg.equals("--backend=interpreter")) {
+        options.backend = Backend.INTERPRETER;
+      } else if (arg.equals("--backend=closures")) {
+        options.backend = Backend.CLOSURES;
+      } else if (arg.equals("--backend=vm")) {
+        options.backend = Backend.VM;
+      } else if (arg.equals("--run")) {
+        options.run = true;
+      } else if (arg.equals("--disassemble")) {
+        options.disassemble = true;
+      } else if (arg.equals("--no-optimize")) {
+        options.optimize = false;
+      } else if (arg.equals("--unbuffered")) {
+        options.bufferOutput = false;
+      } else if (arg.equals("--reader=scanner")) {
+        options.fastReader = false;
+      } else if (arg.equals("--reader=fast")) {
+        options.fastReader = true;
+      } else if (arg.equals("--no-split")) {
+        options.splitMethods = false;
+      } else if (arg.startsWith("--max-errors=")) {
+        options.maxErrors = parsePositive(arg, "--max-errors=");
+      } else if (arg.equals("--incremental")) {
+        options.incremental = true;
+      } else if (arg.startsWith("--cache-dir=")) {
+        options.cacheDir = arg.substring("--cache-dir=".length());
+      } else if (arg.startsWith("--")) {
+        throw new IllegalArgumentException("Unknown option '" + arg + "'.");
+      } else {
+        options.inputs.add(arg);
+      }
+    }
+
+    if (options.inputs.isEmpty()) {
+      throw new IllegalArgumentException("You need to specify the input file.");
+    }
+
+    if ((options.backend == Backend.INTERPRETER
+        || options.backend == Backend.CLOSURES) && !options.run) {
+      throw new IllegalArgumentException(
+          "The " + options.backend.name().toLowerCase()
+          + " backend requires --run.");
+    }
+
+    if (options.disassemble && options.backend != Backend.VM) {
+      throw new IllegalArgumentException(
+          "The --disassemble option requires --backend=vm.");
+    }
+
+    return options;
+  }
+
+  /**
+   * Descreve as opções que alteram o código gerado, de modo que
+   * uma saída em cache só seja reaproveitada com as mesmas opções.
+   * Não contém espaços, pois é guardada no índice do BuildCache.
+   *
+   * @return descrição das opções que alteram a saída
+   */
+  public String fingerprint() {
+    return "backend=" + backend + ",optimize=" + optimize
+        + ",bufferOutput=" + bufferOutput + ",fastReader=" + fastReader
+        + ",splitMethods=" + splitMethods;
+  }
+
+  /**
+   * Obtém o valor inteiro e positivo de uma opção.
+   *
+   * @param arg argumento com a opção
+   * @param prefix nome da opção, incluindo o "="
+   * @return valor da opção
+   * @throws IllegalArgumentException caso o valor seja inválido
+   */
+  private static int parsePositive(String arg, String prefix) {
+    try {
+      int value = Integer.parseInt(arg.substring(prefix.length()));
+      if (value > 0) return value;
+    } catch (NumberFormatException e) {
+      // Reportado abaixo.
+    }
+
+    throw new IllegalArgumentException("Invalid value in '" + arg + "'.");
+  }
+
+}
@@ -0,0 +1,515 @@
+package br.edu.ufabc.microkotlin;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import br.edu.ufabc.microkotlin.expr.*;
+import br.edu.ufabc.microkotlin.program.*;
+import br.edu.ufabc.microkotlin.stmt.*;
+
+/**
+ * Divide o main dos programas grandes em métodos estáticos auxiliares,
+ * que os backends java e bytecode geram no lugar de um único método.
+ *
+ * A JVM não compila pelo JIT os métodos com mais de 8000 bytes de
+ * bytecode (HugeMethodLimit), que são sempre interpretados, e não
+ * aceita métodos com mais de 64 KB. O tamanho de cada comando é
+ * estimado e, quando uma lista de comandos passa do limite, ela é
+ * dividida em trechos consecutivos, cada um movido para um método
+ * (Program.methods e StmtBlock.methods). Um comando que sozinho passa
+ * do limite, como um laço com um corpo grande, tem os seus blocos
+ * movidos para métodos, e muitos trechos são agrupados em métodos que
+ * chamam outros métodos.
+ *
+ * As variáveis usadas por um método diferente daquele em que foram
+ * declaradas se tornam campos estáticos (StmtVar.field), já que os
+ * métodos gerados não recebem parâmetros. As demais continuam locais.
+ * Os usos são encontrados pelo nome, sem depender do Resolver, pois o
+ * MicroKotlin não permite esconder uma variável visível.
+ *
+ * Deve ser executado por último, após as otimizações.
+ */
+public class Outliner implements Expr.Visitor<Integer>, Stmt.Visitor<Integer> {
+
+  /**
+   * Tamanho estimado máximo de cada método, em bytes. É metade do
+   * HugeMethodLimit, pois a estimativa é aproximada.
+   */
+  public static final int METHOD_SIZE = 4000;
+
+  /**
+   * Tamanho estimado de uma chamada a um método gerado.
+   */
+  private static final int CALL_SIZE = 3;
+
+  /**
+   * Tamanho mínimo de um bloco movido para um método por fazer parte
+   * de um comando grande demais.
+   */
+  private static final int MIN_SIZE = 256;
+
+  /**
+   * Método gerado, que executa um trecho [from, to) de uma lista de
+   * comandos ou, caso calls não seja vazia, chama outros métodos que
+   * executam o trecho. Os nomes seguem a ordem das chamadas.
+   */
+  public static class Method {
+    public String name;
+    public final int from;
+    public final int to;
+    public final List<Method> calls;
+
+    Method(int from, int to, List<Method> calls) {
+      this.from = from;
+      this.to = to;
+      this.calls = calls;
+    }
+  }
+
+  private final int methodSize;
+
+  /**
+   * Tamanho estimado de cada comando, calculado uma única vez.
+   */
+  private final Map<Stmt, Integer> sizes = new IdentityHashMap<>();
+
+  /**
+   * Quantidade de métodos criados, usada nos seus nomes.
+   */
+  private int methods;
+
+  public Outliner() {
+    this(METHOD_SIZE);
+  }
+
+  public Outliner(int methodSize) {
+    this.methodSize = methodSize;
+  }
+
+  /**
+   * Divide o main do programa, caso seja grande demais.
+   *
+   * @param program programa sem erros
+   * @return quantidade de métodos criados
+   */
+  public int outline(Program program) {
+    sizes.clear();
+    methods = 0;
+
+    program.methods = null;
+    split(program.statements, false, methods -> program.methods = methods);
+    if (methods > 0) new Uses(program).promote();
+
+    sizes.clear();
+    return methods;
+  }
+
+  /**
+   * Destino da divisão de uma lista de comandos.
+   */
+  private interface Target {
+    void set(List<Method> methods);
+  }
+
+  /**
+   * Divide uma lista de comandos que passa do limite, ou que deve ser
+   * movida para um método por fazer parte de um comando grande demais.
+   *
+   * @return tamanho estimado da lista após a divisão
+   */
+  private int split(List<Stmt> statements, boolean force, Target target) {
+    int total = 0;
+    for (Stmt statement : statements) {
+      total += size(statement);
+    }
+
+    if (total <= methodSize) {
+      if (!force || total < MIN_SIZE) return total;
+
+      target.set(Collections.singletonList(
+          method(0, statements.size(), Collections.emptyList())));
+      return CALL_SIZE;
+    }
+
+    List<Method> parts = new ArrayList<>();
+    int from = 0;
+    int partSize = 0;
+
+    for (int i = 0; i < statements.size(); i++) {
+      Stmt statement = statements.get(i);
+      int size = size(statement);
+      if (size > methodSize) size = reduce(statement);
+
+      if (i > from && partSize + size > methodSize) {
+        parts.add(method(from, i, Collections.emptyList()));
+        from = i;
+        partSize = 0;
+      }
+      partSize += size;
+    }
+    parts.add(method(from, statements.size(), Collections.emptyList()));
+
+    // Agrupa os trechos até que as chamadas caibam em um método.
+    int perMethod = Math.max(2, methodSize / CALL_SIZE);
+    while (parts.size() * CALL_SIZE > methodSize) {
+      List<Method> groups = new ArrayList<>();
+      for (int i = 0; i < parts.size(); i += perMethod) {
+        List<Method> calls =
+            parts.subList(i, Math.min(i + perMethod, parts.size()));
+        groups.add(method(calls.get(0).from, calls.get(calls.size() - 1).to,
+            new ArrayList<>(calls)));
+      }
+      parts = groups;
+    }
+
+    target.set(parts);
+    return parts.size() * CALL_SIZE;
+  }
+
+  private Method method(int from, int to, List<Method> calls) {
+    methods++;
+    return new Method(from, to, calls);
+  }
+
+  /**
+   * Move os blocos de um comando grande demais para métodos.
+   *
+   * @return tamanho estimado do comando após a divisão
+   */
+  private int reduce(Stmt stmt) {
+    if (stmt instanceof StmtBlock) {
+      StmtBlock block = (StmtBlock) stmt;
+      block.methods = null;
+      return split(block.statements, true, methods -> block.methods = methods);
+    }
+
+    if (stmt instanceof StmtIf) {
+      StmtIf ifStmt = (StmtIf) stmt;
+      return size(ifStmt.condition) + reduceBranch(ifStmt.thenBranch)
+          + reduceBranch(ifStmt.elseBranch) + 6;
+    }
+
+    if (stmt instanceof StmtWhile) {
+      StmtWhile whileStmt = (StmtWhile) stmt;
+      return size(whileStmt.condition) + reduceBranch(whileStmt.body) + 6;
+    }
+
+    if (stmt instanceof StmtDoWhile) {
+      StmtDoWhile doWhile = (StmtDoWhile) stmt;
+      return size(doWhile.condition) + reduceBranch(doWhile.body) + 6;
+    }
+
+    // Uma expressão grande não pode ser dividida.
+    return size(stmt);
+  }
+
+  private int reduceBranch(Stmt stmt) {
+    if (stmt == null) return 0;
+    if (stmt instanceof StmtBlock || size(stmt) > methodSize) {
+      return reduce(stmt);
+    }
+    return size(stmt);
+  }
+
+  private int size(Stmt stmt) {
+    Integer size = sizes.get(stmt);
+    if (size == null) {
+      size = stmt.accept(this);
+      sizes.put(stmt, size);
+    }
+    return size;
+  }
+
+  private int size(Expr expr) {
+    return expr.accept(this);
+  }
+
+  // Os tamanhos estimam o bytecode gerado pelo javac e pelo
+  // BytecodeCompiler, com alguma folga.
+
+  @Override
+  public Integer visitBlockStmt(StmtBlock stmt) {
+    int total = 0;
+    for (Stmt statement : stmt.statements) {
+      total += size(statement);
+    }
+    return total;
+  }
+
+  @Override
+  public Integer visitDoWhileStmt(StmtDoWhile stmt) {
+    return size(stmt.condition) + size(stmt.body) + 6;
+  }
+
+  @Override
+  public Integer visitExpressionStmt(StmtExpression stmt) {
+    return size(stmt.expression) + 1;
+  }
+
+  @Override
+  public Integer visitIfStmt(StmtIf stmt) {
+    return size(stmt.condition) + size(stmt.thenBranch)
+        + (stmt.elseBranch != null ? size(stmt.elseBranch) : 0) + 6;
+  }
+
+  @Override
+  public Integer visitPrintStmt(StmtPrint stmt) {
+    return size(stmt.expression) + 6;
+  }
+
+  @Override
+  public Integer visitPrintLnStmt(StmtPrintLn stmt) {
+    return size(stmt.expression) + 6;
+  }
+
+  @Override
+  public Integer visitValStmt(StmtVal stmt) {
+    return size(stmt.initializer) + 4;
+  }
+
+  @Override
+  public Integer visitVarStmt(StmtVar stmt) {
+    int size = stmt.initializer != null ? size(stmt.initializer) : 2;
+    return size + (stmt.accumulator ? 12 : 4);
+  }
+
+  @Override
+  public Integer visitWhileStmt(StmtWhile stmt) {
+    return size(stmt.condition) + size(stmt.body) + 6;
+  }
+
+  @Override
+  public Integer visitAssignExpr(ExprAssign expr) {
+    return size(expr.value) + 4;
+  }
+
+  @Override
+  public Integer visitBinaryExpr(ExprBinary expr) {
+    return size(expr.left) + size(expr.right) + 6;
+  }
+
+  @Override
+  public Integer visitGroupingExpr(ExprGrouping expr) {
+    return size(expr.expression);
+  }
+
+  @Override
+  public Integer visitLiteralExpr(ExprLiteral expr) {
+    return 3;
+  }
+
+  @Override
+  public Integer visitLogicalExpr(ExprLogical expr) {
+    return size(expr.left) + size(expr.right) + 8;
+  }
+
+  @Override
+  public Integer visitReadExpr(ExprRead expr) {
+    return 3;
+  }
+
+  @Override
+  public Integer visitUnaryExpr(ExprUnary expr) {
+    return size(expr.right) + 4;
+  }
+
+  @Override
+  public Integer visitVariableExpr(ExprVariable expr) {
+    return 3;
+  }
+
+  /**
+   * Percorre os métodos na ordem das chamadas, nomeando-os, e encontra
+   * as variáveis usadas por um método diferente daquele em que foram
+   * declaradas, definindo o nome dos seus campos.
+   */
+  private static class Uses implements Stmt.Visitor<Void> {
+
+    private final Program program;
+
+    /**
+     * Método atual, e o main, que não é um método gerado.
+     */
+    private final Method main = new Method(0, 0, Collections.emptyList());
+    private Method current = main;
+    private int names;
+
+    /**
+     * Declaração visível de cada nome e método em que cada variável
+     * foi declarada.
+     */
+    private final Map<String, StmtVar> visible = new HashMap<>();
+    private final Map<StmtVar, Method> declaredIn = new IdentityHashMap<>();
+
+    private final Set<StmtVar> promoted =
+        Collections.newSetFromMap(new IdentityHashMap<>());
+    private final List<StmtVar> order = new ArrayList<>();
+
+    Uses(Program program) {
+      this.program = program;
+    }
+
+    /**
+     * Marca as variáveis que se tornam campos, com nomes distintos
+     * entre si e das constantes.
+     */
+    void promote() {
+      execute(program.statements, program.methods);
+
+      Set<String> taken = new HashSet<>();
+      for (StmtVal valDecl : program.constants) {
+        taken.add(valDecl.name.lexeme);
+      }
+
+      for (StmtVar varDecl : order) {
+        if (!promoted.contains(varDecl)) continue;
+
+        String name = varDecl.name.lexeme;
+        // O '$' não é aceito nos nomes do MicroKotlin.
+        for (int i = 2; taken.contains(name); i++) {
+          name = varDecl.name.lexeme + "$" + i;
+        }
+
+        taken.add(name);
+        varDecl.field = name;
+      }
+    }
+
+    private void execute(List<Stmt> statements, List<Method> methods) {
+      if (methods == null) {
+        for (Stmt statement : statements) {
+          statement.accept(this);
+        }
+        return;
+      }
+
+      for (Method method : methods) {
+        execute(statements, method);
+      }
+    }
+
+    private void execute(List<Stmt> statements, Method method) {
+      Method caller = current;
+      current = method;
+      method.name = "main" + (++names);
+
+      if (method.calls.isEmpty()) {
+        for (int i = method.from; i < method.to; i++) {
+          statements.get(i).accept(this);
+        }
+      } else {
+        for (Method call : method.calls) {
+          execute(statements, call);
+        }
+      }
+
+      current = caller;
+    }
+
+    @Override
+    public Void visitBlockStmt(StmtBlock stmt) {
+      execute(stmt.statements, stmt.methods);
+
+      for (Stmt statement : stmt.statements) {
+        if (statement instanceof StmtVar) {
+          visible.remove(((StmtVar) statement).name.lexeme);
+        }
+      }
+
+      return null;
+    }
+
+    @Override
+    public Void visitDoWhileStmt(StmtDoWhile stmt) {
+      stmt.body.accept(this);
+      use(stmt.condition);
+      return null;
+    }
+
+    @Override
+    public Void visitExpressionStmt(StmtExpression stmt) {
+      use(stmt.expression);
+      return null;
+    }
+
+    @Override
+    public Void visitIfStmt(StmtIf stmt) {
+      use(stmt.condition);
+      stmt.thenBranch.accept(this);
+      if (stmt.elseBranch != null) stmt.elseBranch.accept(this);
+      return null;
+    }
+
+    @Override
+    public Void visitPrintStmt(StmtPrint stmt) {
+      use(stmt.expression);
+      return null;
+    }
+
+    @Override
+    public Void visitPrintLnStmt(StmtPrintLn stmt) {
+      use(stmt.expression);
+      return null;
+    }
+
+    @Override
+    public Void visitValStmt(StmtVal stmt) {
+      use(stmt.initializer);
+      return null;
+    }
+
+    @Override
+    public Void visitVarStmt(StmtVar stmt) {
+      stmt.field = null;
+      if (stmt.initializer != null) use(stmt.initializer);
+
+      visible.put(stmt.name.lexeme, stmt);
+      declaredIn.put(stmt, current);
+      order.add(stmt);
+      return null;
+    }
+
+    @Override
+    public Void visitWhileStmt(StmtWhile stmt) {
+      use(stmt.condition);
+      stmt.body.accept(this);
+      return null;
+    }
+
+    private void use(Token name) {
+      StmtVar varDecl = visible.get(name.lexeme);
+      if (varDecl != null && declaredIn.get(varDecl) != current) {
+        promoted.add(varDecl);
+      }
+    }
+
+    /**
+     * Verifica as variáveis lidas ou atribuídas por uma expressão.
+     */
+    private void use(Expr expr) {
+      if (expr instanceof ExprVariable) {
+        use(((ExprVariable) expr).name);
+      } else if (expr instanceof ExprAssign) {
+        use(((ExprAssign) expr).name);
+        use(((ExprAssign) expr).value);
+      } else if (expr instanceof ExprBinary) {
+        use(((ExprBinary) expr).left);
+        use(((ExprBinary) expr).right);
+      } else if (expr instanceof ExprLogical) {
+        use(((ExprLogical) expr).left);
+        use(((ExprLogical) expr).right);
+      } else if (expr instanceof ExprGrouping) {
+        use(((ExprGrouping) expr).expression);
+      } else if (expr instanceof ExprUnary) {
+        use(((ExprUnary) expr).right);
+      }
+    }
+
+  }
+
+}
@@ -19,17 +19,22 @@ public class Parser {
   private static class ParseError extends RuntimeException {}
 
   /**
-   * Tokens obtidos através do Scanner.
+   * Tokens obtidos sob demanda através do Scanner.
    */
-  private final List<Token> tokens;
+  private final TokenStream tokens;
 
   /**
-   * Índice de controle do token atual.
+   * Erros da compilação.
    */
-  private int current = 0;
+  private final Diagnostics diagnostics;
 
-  public Parser(List<Token> tokens) {
+  public Parser(List<Token> tokens, Diagnostics diagnostics) {
+    this(new TokenList(tokens), diagnostics);
+  }
+
+  public Parser(TokenStream tokens, Diagnostics diagnostics) {
     this.tokens = tokens;
+    this.diagnostics = diagnostics;
   }
 
   /**
@@ -60,7 +65,8 @@ public class Parser {
    */
   public List<Stmt> main() {
     consume(FUN, "Expect 'fun' after constants.");
-    Token main = consume(IDENTIFIER, "Expect function name.");
+    consume(IDENTIFIER, "Expect function name.");
+    Token main = previous();
 
     if (!main.lexeme.equals("main")) {
       error(main, "Expect the function name to be 'main'.");
@@ -210,16 +216,22 @@ public class Parser {
   /**
    * Avaliação da declaração de constante.
    *
-   * constant → "val" identifier ":" type ["=" expr] ";"
+   * constant → "val" identifier ":" type "=" expr ";"
    */
   private Stmt valDeclaration() {
-    Token name = consume(IDENTIFIER, "Expect constant name.");
+    consume(IDENTIFIER, "Expect constant name.");
+    Token name = previous();
     consume(COLLON, "Expect ':' after constant name.");
-    Token type = consume(IDENTIFIER, "Expect constant type.");
+    consume(IDENTIFIER, "Expect constant type.");
+    Token type = previous();
 
+    // Reportado sem interromper a análise, pois o restante da
+    // declaração é válido. As fases seguintes contam com o valor.
     Expr initializer = null;
     if (match(EQUAL)) {
       initializer = expression();
+    } else {
+      error(name, "Constant must be initialized.");
     }
 
     consume(SEMICOLON, "Expect ';' after variable declaration.");
@@ -232,9 +244,11 @@ public class Parser {
    * variable → "var" identifier ":" type ["=" expr] ";"
    */
   private Stmt varDeclaration() {
-    Token name = consume(IDENTIFIER, "Expect variable name.");
+    consume(IDENTIFIER, "Expect variable name.");
+    Token name = previous();
     consume(COLLON, "Expect ':' after variable name.");
-    Token type = consume(IDENTIFIER, "Expect variable type.");
+    consume(IDENTIFIER, "Expect variable type.");
+    Token type = previous();
 
     Expr initializer = null;
     if (match(EQUAL)) {
@@ -428,15 +442,14 @@ public class Parser {
     }
 
     if (match(IDENTIFIER)) {
-      Token ident = previous();
-
-      if (ident.lexeme.matches("read(Int|String|Double|Boolean)")) {
-        return read(ident);
-      }
-
-      return new ExprVariable(ident);
+      return new ExprVariable(previous());
     }
 
+    if (match(READ_INT)) return read(ExprRead.ReadType.INT);
+    if (match(READ_DOUBLE)) return read(ExprRead.ReadType.DOUBLE);
+    if (match(READ_STRING)) return read(ExprRead.ReadType.STRING);
+    if (match(READ_BOOLEAN)) return read(ExprRead.ReadType.BOOLEAN);
+
     if (match(LEFT_PAREN)) {
       Expr expr = expression();
       consume(RIGHT_PAREN, "Expect ')' after expression.");
@@ -488,8 +501,7 @@ public class Parser {
    *
    * readExpr → "read" type "(" ")"
    */
-  private Expr read(Token token) {
-    String type = token.lexeme.replace("read", "");
+  private Expr read(ExprRead.ReadType type) {
     consume(LEFT_PAREN, "Expect '(' after 'read'.");
     consume(RIGHT_PAREN, "Expect ')' for 'read'.");
 
@@ -515,14 +527,17 @@ public class Parser {
 
   /**
    * Consome um token do tipo se é igual ao atual,
-   * ou reporta um erro caso não seja.
+   * ou reporta um erro caso não seja. O token consumido
+   * fica disponível em previous.
    *
    * @param type    tipo esperado
    * @param message mensagem de erro
-   * @return token avançado
    */
-  private Token consume(TokenType type, String message) {
-    if (check(type)) return advance();
+  private void consume(TokenType type, String message) {
+    if (check(type)) {
+      advance();
+      return;
+    }
 
     throw error(peek(), message);
   }
@@ -535,17 +550,14 @@ public class Parser {
    */
   private boolean check(TokenType type) {
     if (isAtEnd()) return false;
-    return peek().type == type;
+    return tokens.peekType() == type;
   }
 
   /**
-   * Avança em um token.
-   *
-   * @return token anterior
+   * Avança em um token, sem criar o objeto do token consumido.
    */
-  private Token advance() {
-    if (!isAtEnd()) current++;
-    return previous();
+  private void advance() {
+    if (!isAtEnd()) tokens.advance();
   }
 
   /**
@@ -554,7 +566,7 @@ public class Parser {
    * @return verdadeiro se chegou
    */
   private boolean isAtEnd() {
-    return peek().type == EOF;
+    return tokens.peekType() == EOF;
   }
 
   /**
@@ -563,7 +575,7 @@ public class Parser {
    * @return o token atual
    */
   private Token peek() {
-    return tokens.get(current);
+    return tokens.peek();
   }
 
   /**
@@ -572,7 +584,7 @@ public class Parser {
    * @return o token anterior
    */
   private Token previous() {
-    return tokens.get(current - 1);
+    return tokens.previous();
   }
 
   /**
@@ -583,7 +595,7 @@ public class Parser {
    * @return erro de runtime
    */
   private ParseError error(Token token, String message) {
-    MicroKotlin.error(token, message);
+    diagnostics.error(token, message);
     return new ParseError();
   }
 
@@ -597,7 +609,7 @@ public class Parser {
     while (!isAtEnd()) {
       if (previous().type == SEMICOLON) return;
 
-      switch (peek().type) {
+      switch (tokens.peekType()) {
         case VAL:
         case VAR:
         case FUN:
@@ -0,0 +1,493 @@
+package br.edu.ufabc.microkotlin;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.io.StringWriter;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.net.URI;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import javax.tools.Diagnostic;
+import javax.tools.DiagnosticCollector;
+import javax.tools.FileObject;
+import javax.tools.ForwardingJavaFileManager;
+import javax.tools.JavaCompiler;
+import javax.tools.JavaFileObject;
+import javax.tools.SimpleJavaFileObject;
+import javax.tools.StandardJavaFileManager;
+import javax.tools.ToolProvider;
+import br.edu.ufabc.microkotlin.program.Program;
+import br.edu.ufabc.microkotlin.vm.Chunk;
+import br.edu.ufabc.microkotlin.vm.Disassembler;
+import br.edu.ufabc.microkotlin.vm.VirtualMachine;
+
+/**
+ * Executa um programa MicroKotlin na própria JVM, sem escrever
+ * arquivos em disco e sem iniciar o javac e o java separadamente.
+ *
+ * O código Java gerado pelo Transpiler é compilado em memória pelo
+ * javax.tools.JavaCompiler, cuja instância e gerenciador de arquivos
+ * são reaproveitados entre as execuções. As classes resultantes são
+ * carregadas por um ClassLoader próprio e o main é invocado. Com o
+ * backend de bytecode, a classe gerada é carregada diretamente, e com
+ * o interpretador, as closures e a VirtualMachine nenhuma classe é
+ * gerada. A VirtualMachine também executa um arquivo .mkbc já
+ * compilado, sem repetir a análise do código-fonte.
+ *
+ * Ao fim, é mostrado o tempo de cada fase.
+ */
+public class ProgramRunner {
+
+  /**
+   * Compilador Java, ou null caso a JVM não possua um.
+   */
+  private static final JavaCompiler COMPILER =
+      ToolProvider.getSystemJavaCompiler();
+
+  /**
+   * Gerenciador de arquivos padrão, criado na primeira compilação.
+   * Não pode ser usado por duas compilações ao mesmo tempo.
+   */
+  private static StandardJavaFileManager standardFileManager;
+
+  /**
+   * Opções do compilador Java.
+   */
+  private static final List<String> JAVAC_OPTIONS =
+      Arrays.asList("-proc:none", "-nowarn", "-g:source,lines");
+
+  /**
+   * Código-fonte Java mantido em memória.
+   */
+  private static class SourceFile extends SimpleJavaFileObject {
+    private final String code;
+
+    SourceFile(String className, String code) {
+      super(URI.create("string:///" + className + Kind.SOURCE.extension),
+          Kind.SOURCE);
+      this.code = code;
+    }
+
+    @Override
+    public CharSequence getCharContent(boolean ignoreEncodingErrors) {
+      return code;
+    }
+  }
+
+  /**
+   * Gerenciador de arquivos que guarda as classes geradas em memória.
+   */
+  private static class MemoryFileManager
+      extends ForwardingJavaFileManager<StandardJavaFileManager> {
+    final Map<String, ByteArrayOutputStream> classes = new HashMap<>();
+
+    MemoryFileManager(StandardJavaFileManager fileManager) {
+      super(fileManager);
+    }
+
+    @Override
+    public JavaFileObject getJavaFileForOutput(Location location,
+        String className, JavaFileObject.Kind kind, FileObject sibling) {
+      URI uri = URI.create("mem:///" + className.replace('.', '/')
+          + kind.extension);
+
+      return new SimpleJavaFileObject(uri, kind) {
+        @Override
+        public OutputStream openOutputStream() {
+          ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+          classes.put(className, bytes);
+          return bytes;
+        }
+      };
+    }
+  }
+
+  /**
+   * ClassLoader das classes compiladas em memória.
+   */
+  private static class MemoryClassLoader extends ClassLoader {
+    private final Map<String, byte[]> classes;
+
+    MemoryClassLoader(Map<String, byte[]> classes) {
+      super(ProgramRunner.class.getClassLoader());
+      this.classes = classes;
+    }
+
+    @Override
+    protected Class<?> findClass(String name) throws ClassNotFoundException {
+      byte[] bytes = classes.get(name);
+      if (bytes == null) throw new ClassNotFoundException(name);
+      return defineClass(name, bytes, 0, bytes.length);
+    }
+  }
+
+  /**
+   * Opções da execução.
+   */
+  private final Options options;
+
+  /**
+   * Saída dos erros e dos tempos.
+   */
+  private final PrintStream err;
+
+  /**
+   * Nome e duração, em nanossegundos, de cada fase já concluída.
+   */
+  private final List<String> phases = new ArrayList<>();
+  private final List<Long> durations = new ArrayList<>();
+
+  private long phaseStart;
+
+  /**
+   * Quantidade de nós removidos pelo DeadCodeEliminator, ou -1 caso
+   * as otimizações não tenham sido aplicadas.
+   */
+  private int removedNodes = -1;
+
+  public ProgramRunner(Options options, PrintStream err) {
+    this.options = options;
+    this.err = err;
+  }
+
+  /**
+   * Compila e executa o programa do arquivo informado.
+   *
+   * @param file arquivo de entrada
+   * @return 0 caso o programa seja executado com sucesso
+   * @throws IOException caso haja algum erro de leitura
+   */
+  public int run(String file) throws IOException {
+    Path input = Paths.get(file);
+    String name = input.getFileName().toString();
+    String className = name.endsWith(".kt")
+        ? name.substring(0, name.length() - ".kt".length())
+        : name;
+
+    if (options.backend == Options.Backend.JAVA && COMPILER == null) {
+      err.println("No Java compiler available, use --backend=bytecode.");
+      return 1;
+    }
+
+    Diagnostics diagnostics = new Diagnostics(options.maxErrors);
+    phaseStart = System.nanoTime();
+
+    if (name.endsWith(".mkbc")) {
+      if (options.backend != Options.Backend.VM) {
+        err.println("A .mkbc file requires --backend=vm.");
+        return 1;
+      }
+
+      Chunk chunk;
+      try (InputStream in = Files.newInputStream(input)) {
+        chunk = Chunk.read(in);
+      } catch (IOException e) {
+        err.println(file + ": " + e.getMessage());
+        return 1;
+      }
+      phase("load");
+
+      return runChunk(chunk, diagnostics);
+    }
+
+    ByteBuffer bytes;
+    try (FileChannel channel =
+        FileChannel.open(input, StandardOpenOption.READ)) {
+      bytes = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+    }
+
+    Scanner scanner = options.tableLexer
+        ? new TableScanner(bytes, diagnostics)
+        : new Scanner(bytes, diagnostics);
+    Program program =
+        new Parser(new ScannerTokenStream(scanner), diagnostics).parse();
+    phase("parse");
+
+    if (!diagnostics.hasErrors()) {
+      new Resolver(diagnostics).resolve(program);
+      phase("resolve");
+    }
+
+    if (!diagnostics.hasErrors()) {
+      new TypeChecker(diagnostics).check(program);
+      phase("check");
+    }
+
+    if (!diagnostics.hasErrors() && options.optimize) {
+      program = new ConstantFolder().fold(program);
+      DeadCodeEliminator eliminator = new DeadCodeEliminator();
+      program = eliminator.eliminate(program);
+      removedNodes = eliminator.removed();
+      new AccumulatorFinder().find(program);
+      phase("optimize");
+    }
+
+    if (!diagnostics.hasErrors()
+        && options.backend == Options.Backend.INTERPRETER) {
+      return interpret(program, diagnostics);
+    }
+
+    if (!diagnostics.hasErrors()
+        && options.backend == Options.Backend.CLOSURES) {
+      return runClosures(program, diagnostics);
+    }
+
+    if (!diagnostics.hasErrors() && options.backend == Options.Backend.VM) {
+      Chunk chunk = new VmCompiler(className + ".mkbc", diagnostics)
+          .compile(program);
+      phase("vm");
+
+      if (chunk == null) {
+        report(diagnostics);
+        return 1;
+      }
+
+      return runChunk(chunk, diagnostics);
+    }
+
+    Map<String, byte[]> classes = null;
+    if (!diagnostics.hasErrors()) {
+      classes = options.backend == Options.Backend.BYTECODE
+          ? generate(program, className, diagnostics)
+          : compile(program, className, diagnostics);
+    }
+
+    if (diagnostics.hasErrors()) {
+      report(diagnostics);
+      return 1;
+    }
+
+    int status = execute(classes, className);
+    err.println(timings());
+    return status;
+  }
+
+  /**
+   * Executa o programa pelo interpretador, sem gerar classes.
+   */
+  private int interpret(Program program, Diagnostics diagnostics) {
+    boolean success = new Interpreter(diagnostics).interpret(program);
+    phase("run");
+
+    if (!success) {
+      report(diagnostics);
+      return 1;
+    }
+
+    err.println(timings());
+    return 0;
+  }
+
+  /**
+   * Compila o programa em closures e o executa, sem gerar classes.
+   */
+  private int runClosures(Program program, Diagnostics diagnostics) {
+    ClosureCompiler.CompiledProgram compiled =
+        new ClosureCompiler(diagnostics).compile(program);
+    phase("closures");
+
+    if (compiled == null) {
+      report(diagnostics);
+      return 1;
+    }
+
+    boolean success = compiled.run(System.in, System.out, diagnostics);
+    phase("run");
+
+    if (!success) {
+      report(diagnostics);
+      return 1;
+    }
+
+    err.println(timings());
+    return 0;
+  }
+
+  /**
+   * Executa o programa na VirtualMachine, ou mostra a listagem das
+   * suas instruções com a opção --disassemble.
+   */
+  private int runChunk(Chunk chunk, Diagnostics diagnostics) {
+    if (options.disassemble) {
+      System.out.print(Disassembler.disassemble(chunk));
+      System.out.flush();
+      return 0;
+    }
+
+    try {
+      new VirtualMachine(System.in, System.out).run(chunk);
+    } catch (VirtualMachine.VmException e) {
+      if (e.operator != null) {
+        diagnostics.error(e.line, e.operator, e.getMessage());
+      } else {
+        diagnostics.error(e.line, e.getMessage());
+      }
+    }
+    phase("run");
+
+    if (diagnostics.hasErrors()) {
+      report(diagnostics);
+      return 1;
+    }
+
+    err.println(timings());
+    return 0;
+  }
+
+  private void report(Diagnostics diagnostics) {
+    err.print(String.join(System.lineSeparator(), diagnostics.messages())
+        + System.lineSeparator());
+  }
+
+  /**
+   * Divide o main em métodos, caso seja grande demais para o JIT.
+   */
+  private void outline(Program program) {
+    if (!options.splitMethods) return;
+
+    new Outliner().outline(program);
+    phase("outline");
+  }
+
+  /**
+   * Gera a classe diretamente pelo backend de bytecode.
+   */
+  private Map<String, byte[]> generate(Program program, String className,
+      Diagnostics diagnostics) {
+    outline(program);
+    BytecodeCompiler compiler =
+        new BytecodeCompiler(className + ".class", diagnostics);
+    compiler.bufferOutput(options.bufferOutput);
+    compiler.fastReader(options.fastReader);
+    byte[] bytes = compiler.compile(program);
+    phase("bytecode");
+
+    return Collections.singletonMap(className, bytes);
+  }
+
+  /**
+   * Gera o código Java e o compila em memória.
+   */
+  private Map<String, byte[]> compile(Program program, String className,
+      Diagnostics diagnostics) throws IOException {
+    outline(program);
+    StringWriter source = new StringWriter();
+    Transpiler transpiler = new Transpiler(className + ".java", diagnostics);
+    transpiler.bufferOutput(options.bufferOutput);
+    transpiler.fastReader(options.fastReader);
+    transpiler.transpile(program, source);
+    phase("transpile");
+
+    if (diagnostics.hasErrors()) return null;
+
+    DiagnosticCollector<JavaFileObject> collector =
+        new DiagnosticCollector<>();
+    Map<String, byte[]> classes = new HashMap<>();
+
+    synchronized (ProgramRunner.class) {
+      if (standardFileManager == null) {
+        standardFileManager =
+            COMPILER.getStandardFileManager(null, null, null);
+      }
+
+      MemoryFileManager fileManager =
+          new MemoryFileManager(standardFileManager);
+      boolean success = COMPILER.getTask(null, fileManager, collector,
+          JAVAC_OPTIONS, null,
+          Collections.singletonList(
+              new SourceFile(className, source.toString()))).call();
+
+      if (success) {
+        for (Map.Entry<String, ByteArrayOutputStream> entry
+            : fileManager.classes.entrySet()) {
+          classes.put(entry.getKey(), entry.getValue().toByteArray());
+        }
+      }
+    }
+
+    for (Diagnostic<? extends JavaFileObject> diagnostic
+        : collector.getDiagnostics()) {
+      if (diagnostic.getKind() == Diagnostic.Kind.ERROR) {
+        diagnostics.error((int) diagnostic.getLineNumber(),
+            "Generated Java: " + diagnostic.getMessage(Locale.ROOT));
+      }
+    }
+
+    phase("javac");
+    return classes;
+  }
+
+  /**
+   * Carrega as classes e invoca o main do programa.
+   */
+  private int execute(Map<String, byte[]> classes, String className) {
+    Method main;
+    try {
+      ClassLoader loader = new MemoryClassLoader(classes);
+      main = loader.loadClass(className).getMethod("main", String[].class);
+    } catch (ReflectiveOperationException e) {
+      err.println("Cannot load the program: " + e);
+      return 1;
+    }
+    phase("load");
+
+    try {
+      main.invoke(null, (Object) new String[0]);
+      return 0;
+    } catch (InvocationTargetException e) {
+      e.getCause().printStackTrace(err);
+      return 1;
+    } catch (IllegalAccessException e) {
+      err.println("Cannot run the program: " + e);
+      return 1;
+    } finally {
+      System.out.flush();
+      phase("run");
+    }
+  }
+
+  /**
+   * Encerra a fase atual, registrando a sua duração.
+   */
+  private void phase(String name) {
+    long now = System.nanoTime();
+    phases.add(name);
+    durations.add(now - phaseStart);
+    phaseStart = now;
+  }
+
+  /**
+   * Formata a duração de cada fase.
+   */
+  private String timings() {
+    StringBuilder builder = new StringBuilder("Timings:");
+
+    for (int i = 0; i < phases.size(); i++) {
+      double milliseconds = durations.get(i) / 1e6;
+      builder.append(i == 0 ? " " : ", ").append(phases.get(i))
+          .append(String.format(Locale.ROOT, " %.2f ms", milliseconds));
+    }
+
+    if (removedNodes >= 0) {
+      builder.append("; ").append(removedNodes).append(" dead nodes removed");
+    }
+
+    return builder.toString();
+  }
+
+}
@@ -0,0 +1,285 @@
+package br.edu.ufabc.microkotlin;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import br.edu.ufabc.microkotlin.expr.*;
+import br.edu.ufabc.microkotlin.program.*;
+import br.edu.ufabc.microkotlin.stmt.*;
+
+/**
+ * Resolve os nomes do programa uma única vez, logo após a análise
+ * sintática.
+ *
+ * Cada uso de variável ou constante é ligado a um par (escopo, posição):
+ * o escopo é a profundidade absoluta do bloco onde a variável foi
+ * declarada, sendo 0 o escopo global, e a posição é o índice da
+ * variável dentro do bloco. Assim, as fases seguintes podem guardar
+ * cada escopo em um vetor e acessar as variáveis em tempo constante,
+ * sem calcular o hash dos nomes.
+ *
+ * Também verifica se as variáveis foram declaradas antes do uso, se
+ * não há declarações repetidas e se as constantes não são reatribuídas.
+ */
+public class Resolver implements
+    Expr.Visitor<Void>, Stmt.Visitor<Void>, Program.Visitor<Void> {
+
+  /**
+   * Declaração de uma variável ou constante visível.
+   */
+  private static class Binding {
+    final int depth;
+    final int slot;
+    final boolean constant;
+
+    Binding(int depth, int slot, boolean constant) {
+      this.depth = depth;
+      this.slot = slot;
+      this.constant = constant;
+    }
+  }
+
+  /**
+   * Declarações visíveis no ponto atual. Como a linguagem não permite
+   * ocultar uma variável de um escopo externo, cada nome possui no
+   * máximo uma declaração visível.
+   */
+  private final Map<String, Binding> visible = new HashMap<>();
+
+  /**
+   * Nomes declarados em cada escopo aberto, removidos ao fechá-lo.
+   */
+  private final List<List<String>> scopes = new ArrayList<>();
+
+  /**
+   * Programa sendo resolvido.
+   */
+  private Program program;
+
+  /**
+   * Erros da compilação.
+   */
+  private final Diagnostics diagnostics;
+
+  public Resolver(Diagnostics diagnostics) {
+    this.diagnostics = diagnostics;
+  }
+
+  /**
+   * Resolve os nomes do programa, anotando os nós da árvore.
+   *
+   * @param program programa a ser resolvido
+   */
+  public void resolve(Program program) {
+    program.accept(this);
+  }
+
+  private void resolve(Expr expr) {
+    expr.accept(this);
+  }
+
+  private void resolve(Stmt stmt) {
+    stmt.accept(this);
+  }
+
+  @Override
+  public Void visitProgram(Program program) {
+    this.program = program;
+    program.maxDepth = 0;
+    visible.clear();
+    scopes.clear();
+    scopes.add(new ArrayList<>());
+
+    for (StmtVal valDecl : program.constants) {
+      resolve(valDecl);
+    }
+
+    for (Stmt statement : program.statements) {
+      resolve(statement);
+    }
+
+    program.globals = scopes.get(0).size();
+    return null;
+  }
+
+  @Override
+  public Void visitBlockStmt(StmtBlock stmt) {
+    List<String> scope = new ArrayList<>();
+    scopes.add(scope);
+    stmt.depth = scopes.size() - 1;
+    program.maxDepth = Math.max(program.maxDepth, stmt.depth);
+
+    try {
+      for (Stmt statement : stmt.statements) {
+        resolve(statement);
+      }
+    } finally {
+      for (String name : scope) visible.remove(name);
+      scopes.remove(scopes.size() - 1);
+    }
+
+    stmt.locals = scope.size();
+    return null;
+  }
+
+  @Override
+  public Void visitDoWhileStmt(StmtDoWhile stmt) {
+    resolve(stmt.body);
+    resolve(stmt.condition);
+    return null;
+  }
+
+  @Override
+  public Void visitExpressionStmt(StmtExpression stmt) {
+    resolve(stmt.expression);
+    return null;
+  }
+
+  @Override
+  public Void visitIfStmt(StmtIf stmt) {
+    resolve(stmt.condition);
+    resolve(stmt.thenBranch);
+    if (stmt.elseBranch != null) resolve(stmt.elseBranch);
+    return null;
+  }
+
+  @Override
+  public Void visitPrintStmt(StmtPrint stmt) {
+    resolve(stmt.expression);
+    return null;
+  }
+
+  @Override
+  public Void visitPrintLnStmt(StmtPrintLn stmt) {
+    resolve(stmt.expression);
+    return null;
+  }
+
+  @Override
+  public Void visitValStmt(StmtVal stmt) {
+    resolve(stmt.initializer);
+    Binding binding = declare(stmt.name, true);
+    stmt.depth = binding.depth;
+    stmt.slot = binding.slot;
+    return null;
+  }
+
+  @Override
+  public Void visitVarStmt(StmtVar stmt) {
+    if (stmt.initializer != null) resolve(stmt.initializer);
+    Binding binding = declare(stmt.name, false);
+    stmt.depth = binding.depth;
+    stmt.slot = binding.slot;
+    return null;
+  }
+
+  @Override
+  public Void visitWhileStmt(StmtWhile stmt) {
+    resolve(stmt.condition);
+    resolve(stmt.body);
+    return null;
+  }
+
+  @Override
+  public Void visitAssignExpr(ExprAssign expr) {
+    resolve(expr.value);
+
+    Binding binding = lookup(expr.name);
+    if (binding == null) return null;
+
+    if (binding.constant) {
+      diagnostics.error(expr.name, "Cannot reassign a value to the constant '"
+          + expr.name.lexeme + "'.");
+    }
+
+    expr.depth = binding.depth;
+    expr.slot = binding.slot;
+    return null;
+  }
+
+  @Override
+  public Void visitBinaryExpr(ExprBinary expr) {
+    resolve(expr.left);
+    resolve(expr.right);
+    return null;
+  }
+
+  @Override
+  public Void visitGroupingExpr(ExprGrouping expr) {
+    resolve(expr.expression);
+    return null;
+  }
+
+  @Override
+  public Void visitLiteralExpr(ExprLiteral expr) {
+    return null;
+  }
+
+  @Override
+  public Void visitLogicalExpr(ExprLogical expr) {
+    resolve(expr.left);
+    resolve(expr.right);
+    return null;
+  }
+
+  @Override
+  public Void visitReadExpr(ExprRead expr) {
+    return null;
+  }
+
+  @Override
+  public Void visitUnaryExpr(ExprUnary expr) {
+    resolve(expr.right);
+    return null;
+  }
+
+  @Override
+  public Void visitVariableExpr(ExprVariable expr) {
+    Binding binding = lookup(expr.name);
+    if (binding == null) return null;
+
+    expr.depth = binding.depth;
+    expr.slot = binding.slot;
+    return null;
+  }
+
+  /**
+   * Declara uma variável ou constante no escopo atual.
+   *
+   * @param name nome da declaração
+   * @param constant verdadeiro se é uma constante
+   * @return a ligação da declaração
+   */
+  private Binding declare(Token name, boolean constant) {
+    List<String> scope = scopes.get(scopes.size() - 1);
+    Binding binding = new Binding(scopes.size() - 1, scope.size(), constant);
+
+    if (visible.containsKey(name.lexeme)) {
+      diagnostics.error(name,
+          "A variable with the name '" + name.lexeme + "' already exists.");
+      return binding;
+    }
+
+    visible.put(name.lexeme, binding);
+    scope.add(name.lexeme);
+    return binding;
+  }
+
+  /**
+   * Procura a declaração visível de um nome.
+   *
+   * @param name nome utilizado
+   * @return a ligação da declaração, ou null se não existe
+   */
+  private Binding lookup(Token name) {
+    Binding binding = visible.get(name.lexeme);
+
+    if (binding == null) {
+      diagnostics.error(name, "Undefined variable '" + name.lexeme + "'.");
+    }
+
+    return binding;
+  }
+
+}
@@ -1,5 +1,8 @@
 package br.edu.ufabc.microkotlin;
 
+import java.nio.ByteBuffer;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
 import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.List;
@@ -9,35 +12,55 @@ import static br.edu.ufabc.microkotlin.TokenType.*;
 
 /**
  * Classe responsável pela análise léxica do código-fonte.
+ *
+ * A leitura é feita diretamente sobre os bytes em UTF-8 da entrada,
+ * que pode ser um arquivo mapeado em memória. Como todos os tokens,
+ * exceto o conteúdo das strings e comentários, são ASCII, somente os
+ * lexemas efetivamente criados são decodificados.
+ *
+ * Os tokens podem ser obtidos todos de uma vez, através de scanTokens
+ * ou scanTokenBuffer, ou um de cada vez, através de nextToken. Um token
+ * é descrito apenas pelo seu tipo, posições e linha; o lexema e o valor
+ * literal são criados somente quando pedidos.
  */
 public class Scanner {
 
   /**
-   * Código-fonte de entrada.
+   * Código-fonte de entrada, em UTF-8.
    */
-  private final String sourceCode;
+  private final ByteBuffer sourceCode;
 
   /**
-   * Lista de tokens criados.
+   * Tamanho em bytes do código-fonte.
    */
-  private final List<Token> tokens = new ArrayList<>();
+  private final int length;
+
+  /**
+   * Erros da compilação.
+   */
+  protected final Diagnostics diagnostics;
+
+  /**
+   * Tipo do último token lido por scanToken.
+   */
+  private TokenType type;
 
   /**
    * Índice de ínicio do lexema atual.
    */
-  private int start = 0;
+  protected int start = 0;
 
   /**
    * Índice do caractere atual.
    */
-  private int current = 0;
+  protected int current = 0;
 
   /**
    * Linha atual.
    */
-  private int line = 1;
+  protected int line = 1;
 
-  private static final Map<String, TokenType> keywords;
+  static final Map<String, TokenType> keywords;
 
   static {
     keywords = new HashMap<>();
@@ -55,10 +78,29 @@ public class Scanner {
     keywords.put("val", VAL);
     keywords.put("var", VAR);
     keywords.put("while", WHILE);
+    keywords.put("readInt", READ_INT);
+    keywords.put("readDouble", READ_DOUBLE);
+    keywords.put("readString", READ_STRING);
+    keywords.put("readBoolean", READ_BOOLEAN);
+  }
+
+  public Scanner(String sourceCode, Diagnostics diagnostics) {
+    this(ByteBuffer.wrap(sourceCode.getBytes(StandardCharsets.UTF_8)),
+        diagnostics);
   }
 
-  public Scanner(String sourceCode) {
-    this.sourceCode = sourceCode;
+  /**
+   * Cria o Scanner sobre os bytes restantes do buffer, que devem
+   * estar em UTF-8. O buffer pode ser um MappedByteBuffer, evitando
+   * copiar o arquivo para a memória.
+   *
+   * @param sourceCode código-fonte em UTF-8
+   * @param diagnostics erros da compilação
+   */
+  public Scanner(ByteBuffer sourceCode, Diagnostics diagnostics) {
+    this.sourceCode = sourceCode.slice();
+    this.length = this.sourceCode.limit();
+    this.diagnostics = diagnostics;
   }
 
   /**
@@ -67,19 +109,143 @@ public class Scanner {
    * @return lista de todos os tokens
    */
   public List<Token> scanTokens() {
-    while (!isAtEnd()) {
+    List<Token> tokens = new ArrayList<>();
+    Token token;
+
+    do {
+      token = nextToken();
+      tokens.add(token);
+    } while (token.type != EOF);
+
+    return tokens;
+  }
+
+  /**
+   * Efetua a criação dos tokens do código-fonte em um buffer
+   * compacto, sem criar os objetos dos tokens.
+   *
+   * @return buffer com todos os tokens
+   */
+  public TokenBuffer scanTokenBuffer() {
+    TokenBuffer tokens = new TokenBuffer(this, length / 8);
+    TokenType type;
+
+    do {
+      type = scanNext();
+      tokens.add(type, start, current, line);
+    } while (type != EOF);
+
+    return tokens;
+  }
+
+  /**
+   * Efetua a leitura até que o próximo token seja criado,
+   * ignorando espaços em branco e comentários.
+   *
+   * @return o próximo token ou EOF ao fim da entrada
+   */
+  public Token nextToken() {
+    TokenType type = scanNext();
+    return token(type, start, current, line);
+  }
+
+  /**
+   * Efetua a leitura do próximo token sem criá-lo. Ao retornar,
+   * o lexema está entre start e current, na linha atual.
+   *
+   * @return tipo do próximo token ou EOF ao fim da entrada
+   */
+  TokenType scanNext() {
+    type = null;
+
+    while (type == null && !isAtEnd()) {
       start = current;
       scanToken();
     }
 
-    tokens.add(new Token(EOF, "", null, line));
-    return tokens;
+    if (type == null) {
+      start = current;
+      return EOF;
+    }
+
+    return type;
+  }
+
+  /**
+   * Retorna a posição inicial do último token lido por scanNext.
+   *
+   * @return posição inicial do lexema
+   */
+  int tokenStart() {
+    return start;
+  }
+
+  /**
+   * Retorna a posição final do último token lido por scanNext.
+   *
+   * @return posição final, exclusiva, do lexema
+   */
+  int tokenEnd() {
+    return current;
+  }
+
+  /**
+   * Retorna a linha do último token lido por scanNext.
+   *
+   * @return linha de origem
+   */
+  int tokenLine() {
+    return line;
+  }
+
+  /**
+   * Cria o objeto de um token a partir da sua posição.
+   *
+   * @param type tipo do token
+   * @param start posição inicial do lexema
+   * @param end posição final, exclusiva, do lexema
+   * @param line linha de origem
+   * @return o token
+   */
+  Token token(TokenType type, int start, int end, int line) {
+    return new Token(type, lexeme(start, end), value(type, start, end), line);
+  }
+
+  /**
+   * Decodifica o lexema de um token.
+   *
+   * @param start posição inicial do lexema
+   * @param end posição final, exclusiva, do lexema
+   * @return o lexema
+   */
+  String lexeme(int start, int end) {
+    return text(start, end, StandardCharsets.UTF_8);
+  }
+
+  /**
+   * Obtém o valor literal de um token.
+   *
+   * @param type tipo do token
+   * @param start posição inicial do lexema
+   * @param end posição final, exclusiva, do lexema
+   * @return o valor, ou null caso não seja um literal
+   */
+  Object value(TokenType type, int start, int end) {
+    if (type == NUMBER) {
+      return Double.parseDouble(text(start, end, StandardCharsets.US_ASCII));
+    }
+
+    if (type == STRING) {
+      return text(start + 1, end - 1, StandardCharsets.UTF_8);
+    }
+
+    return null;
   }
 
   /**
    * Cria o próximo token.
    */
-  private void scanToken() {
+  protected void scanToken() {
     char c = advance();
     switch (c) {
       case '(': addToken(LEFT_PAREN); break;
@@ -100,15 +266,7 @@ public class Scanner {
       case '<': addToken(match('=') ? LESS_EQUAL : LESS); break;
       case '>': addToken(match('=') ? GREATER_EQUAL : GREATER); break;
 
-      case '/':
-        if (match('/')) {
-          while (peek() != '\n' && !isAtEnd()) advance();
-        } else if (match('*')) {
-          skipBlockComment();
-        } else {
-          addToken(SLASH);
-        }
-        break;
+      case '/': slash(); break;
 
       case ' ':
       case '\r':
@@ -127,19 +285,42 @@ public class Scanner {
         } else if (isAlpha(c)) {
           identifier();
         } else {
-          MicroKotlin.error(line, "Unexpected character");
+          unexpectedCharacter();
         }
         break;
     }
   }
 
+  /**
+   * Efetua a leitura de uma barra, que pode ser uma divisão
+   * ou o início de um comentário.
+   */
+  protected void slash() {
+    if (match('/')) {
+      while (peek() != '\n' && !isAtEnd()) advance();
+    } else if (match('*')) {
+      skipBlockComment();
+    } else {
+      addToken(SLASH);
+    }
+  }
+
+  /**
+   * Reporta um caractere inesperado.
+   */
+  protected void unexpectedCharacter() {
+    // Ignora o restante de um caractere UTF-8 com vários bytes.
+    while (isContinuation(peek())) advance();
+    diagnostics.error(line, "Unexpected character");
+  }
+
   /**
    * Efetua a leitura de um identificador.
    */
   private void identifier() {
     while (isAlphaNumeric(peek())) advance();
 
-    String text = sourceCode.substring(start, current);
+    String text = text(start, current, StandardCharsets.US_ASCII);
 
     TokenType type = keywords.get(text);
     if (type == null) type = IDENTIFIER;
@@ -150,7 +331,7 @@ public class Scanner {
   /**
    * Efetua a leitura de um número.
    */
-  private void number() {
+  protected void number() {
     while (isDigit(peek())) advance();
 
     if (peek() == '.' && isDigit(peekNext())) {
@@ -158,29 +339,42 @@ public class Scanner {
       while (isDigit(peek())) advance();
     }
 
-    double value = Double.parseDouble(sourceCode.substring(start, current));
-    addToken(NUMBER, value);
+    addToken(NUMBER);
   }
 
   /**
-   * Efetua a leitura de uma string.
+   * Efetua a leitura de uma string. O caractere após uma barra nunca
+   * fecha a string, e as sequências de escape, as mesmas do Java, são
+   * checadas aqui, para que todos os backends recusem as inválidas.
    */
-  private void string() {
-    while ((peek() != '"' || peekPrevious() == '\\') && !isAtEnd()) {
+  protected void string() {
+    boolean escaped = false;
+
+    while (peek() != '"' && !isAtEnd()) {
+      if (peek() == '\\') {
+        escaped = true;
+        advance();
+        if (isAtEnd()) break;
+      }
+
       if (peek() == '\n') line++;
       advance();
     }
 
     if (isAtEnd()) {
-      MicroKotlin.error(line, "Unterminated string.");
+      diagnostics.error(line, "Unterminated string.");
       return;
     }
 
     // O caractere " que fecha a string.
     advance();
 
-    String value = sourceCode.substring(start + 1, current - 1);
-    addToken(STRING, value);
+    if (escaped && !Escapes.isValid(
+        text(start + 1, current - 1, StandardCharsets.UTF_8))) {
+      diagnostics.error(line, "Invalid escape sequence.");
+    }
+
+    addToken(STRING);
   }
 
   /**
@@ -190,7 +384,7 @@ public class Scanner {
     int level = 1;
     while (level > 0) {
       if (peek() == '\0') {
-        MicroKotlin.error(line, "Unterminated block comment.");
+        diagnostics.error(line, "Unterminated block comment.");
         return;
       }
 
@@ -225,9 +419,9 @@ public class Scanner {
    * @param expected caractere esperado
    * @return verdadeiro se é o esperado
    */
-  private boolean match(char expected) {
+  protected boolean match(char expected) {
     if (isAtEnd()) return false;
-    if (sourceCode.charAt(current) != expected) return false;
+    if (charAt(current) != expected) return false;
 
     current++;
     return true;
@@ -238,9 +432,9 @@ public class Scanner {
    *
    * @return o caractere atual
    */
-  private char peek() {
+  protected char peek() {
     if (isAtEnd()) return '\0';
-    return sourceCode.charAt(current);
+    return charAt(current);
   }
 
   /**
@@ -249,17 +443,49 @@ public class Scanner {
    * @return o próximo caractere.
    */
   private char peekNext() {
-    if (current + 1 >= sourceCode.length()) return '\0';
-    return sourceCode.charAt(current + 1);
+    if (current + 1 >= length) return '\0';
+    return charAt(current + 1);
   }
 
   /**
-   * Retorna o caractere anterior.
+   * Retorna o byte da posição informada como um caractere,
+   * sem efetuar a decodificação do UTF-8.
    *
-   * @return o caractere anterior.
+   * @param index posição no código-fonte
+   * @return o byte como caractere
    */
-  private char peekPrevious() {
-    return sourceCode.charAt(current - 1);
+  protected char charAt(int index) {
+    return (char) (sourceCode.get(index) & 0xFF);
+  }
+
+  /**
+   * Decodifica um trecho do código-fonte.
+   *
+   * @param from posição inicial, inclusiva
+   * @param to posição final, exclusiva
+   * @param charset codificação do trecho
+   * @return o trecho decodificado
+   */
+  private String text(int from, int to, Charset charset) {
+    if (sourceCode.hasArray()) {
+      int offset = sourceCode.arrayOffset() + from;
+      return new String(sourceCode.array(), offset, to - from, charset);
+    }
+
+    byte[] bytes = new byte[to - from];
+    ByteBuffer view = sourceCode.duplicate();
+    view.position(from);
+    view.get(bytes);
+    return new String(bytes, charset);
+  }
+
+  /**
+   * Checa se o caractere é um byte de continuação do UTF-8.
+   *
+   * @return verdadeiro se é um byte de continuação
+   */
+  private boolean isContinuation(char c) {
+    return (c & 0xC0) == 0x80;
   }
 
   /**
@@ -295,7 +521,7 @@ public class Scanner {
    * @return verdadeiro se foi completamente lido
    */
   private boolean isAtEnd() {
-    return current >= sourceCode.length();
+    return current >= length;
   }
 
   /**
@@ -303,28 +529,17 @@ public class Scanner {
    *
    * @return o caractere atual
    */
-  private char advance() {
+  protected char advance() {
     current++;
-    return sourceCode.charAt(current - 1);
-  }
-
-  /**
-   * Adiciona um token na lista.
-   *
-   * @param type tipo do token
-   */
-  private void addToken(TokenType type) {
-    addToken(type, null);
+    return charAt(current - 1);
   }
 
   /**
-   * Adiciona um token na lista com valor literal.
+   * Marca o token lido, cujo lexema está entre start e current.
    *
    * @param type tipo do token
-   * @param value valor do literal
    */
-  private void addToken(TokenType type, Object value) {
-    String text = sourceCode.substring(start, current);
-    tokens.add(new Token(type, text, value, line));
+  protected void addToken(TokenType type) {
+    this.type = type;
   }
 }
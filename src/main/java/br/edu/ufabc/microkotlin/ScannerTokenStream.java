@@ -0,0 +1,74 @@
+package br.edu.ufabc.microkotlin;
+
+/**
+ * Fluxo de tokens criados sob demanda pelo Scanner, de modo
+ * que a análise léxica avança junto com a sintática e somente
+ * o token atual e o anterior são mantidos em memória.
+ *
+ * Os tokens são guardados apenas como tipo, posições e linha;
+ * os objetos são criados somente quando pedidos pelo Parser.
+ */
+public class ScannerTokenStream implements TokenStream {
+
+  /**
+   * Scanner incremental da entrada.
+   */
+  private final Scanner scanner;
+
+  /**
+   * Token atual, lido somente quando necessário.
+   */
+  private TokenType currentType;
+  private int currentStart;
+  private int currentEnd;
+  private int currentLine;
+
+  /**
+   * Último token consumido.
+   */
+  private TokenType previousType;
+  private int previousStart;
+  private int previousEnd;
+  private int previousLine;
+
+  public ScannerTokenStream(Scanner scanner) {
+    this.scanner = scanner;
+  }
+
+  @Override
+  public TokenType peekType() {
+    if (currentType == null) {
+      currentType = scanner.scanNext();
+      currentStart = scanner.tokenStart();
+      currentEnd = scanner.tokenEnd();
+      currentLine = scanner.tokenLine();
+    }
+
+    return currentType;
+  }
+
+  @Override
+  public Token peek() {
+    TokenType type = peekType();
+    return scanner.token(type, currentStart, currentEnd, currentLine);
+  }
+
+  @Override
+  public Token previous() {
+    if (previousType == null) return null;
+    return scanner.token(previousType, previousStart, previousEnd,
+        previousLine);
+  }
+
+  @Override
+  public void advance() {
+    if (peekType() == TokenType.EOF) return;
+
+    previousType = currentType;
+    previousStart = currentStart;
+    previousEnd = currentEnd;
+    previousLine = currentLine;
+    currentType = null;
+  }
+
+}
@@ -0,0 +1,233 @@
+package br.edu.ufabc.microkotlin;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.Map;
+
+import static br.edu.ufabc.microkotlin.TokenType.*;
+
+/**
+ * Analisador léxico dirigido por tabelas.
+ *
+ * Cada byte da entrada é classificado por uma tabela de classes de
+ * caracteres, e as palavras reservadas são reconhecidas através de
+ * um hash perfeito calculado sobre os próprios bytes da entrada,
+ * sem criar nenhuma String. Produz exatamente os mesmos tokens do
+ * Scanner, podendo substituí-lo em qualquer ponto.
+ */
+public class TableScanner extends Scanner {
+
+  /**
+   * Classes de caracteres.
+   */
+  private static final byte OTHER = 0;
+  private static final byte SPACE = 1;
+  private static final byte NEWLINE = 2;
+  private static final byte DIGIT = 3;
+  private static final byte ALPHA = 4;
+  private static final byte QUOTE = 5;
+  private static final byte SLASH_CHAR = 6;
+  private static final byte SINGLE = 7;
+  private static final byte PAIR = 8;
+
+  /**
+   * Classe de cada byte da entrada.
+   */
+  private static final byte[] CLASSES = new byte[256];
+
+  /**
+   * Tipo do token de um caractere. Para os operadores que podem
+   * ser seguidos de '=', é o tipo sem o '='.
+   */
+  private static final TokenType[] SINGLES = new TokenType[256];
+
+  /**
+   * Tipo dos operadores seguidos de '='.
+   */
+  private static final TokenType[] PAIRS = new TokenType[256];
+
+  /**
+   * Tamanho da tabela de palavras reservadas, potência de dois.
+   */
+  private static final int HASH_SIZE = 64;
+
+  /**
+   * Bytes de cada palavra reservada, na posição do seu hash.
+   */
+  private static final byte[][] KEYWORDS = new byte[HASH_SIZE][];
+
+  /**
+   * Tipo de cada palavra reservada, na posição do seu hash.
+   */
+  private static final TokenType[] KEYWORD_TYPES = new TokenType[HASH_SIZE];
+
+  /**
+   * Multiplicador do hash, escolhido de forma que não haja colisões.
+   */
+  private static final int MULTIPLIER;
+
+  private static final int MIN_KEYWORD_LENGTH;
+  private static final int MAX_KEYWORD_LENGTH;
+
+  static {
+    for (char c = 'a'; c <= 'z'; c++) CLASSES[c] = ALPHA;
+    for (char c = 'A'; c <= 'Z'; c++) CLASSES[c] = ALPHA;
+    for (char c = '0'; c <= '9'; c++) CLASSES[c] = DIGIT;
+    CLASSES['_'] = ALPHA;
+    CLASSES[' '] = SPACE;
+    CLASSES['\r'] = SPACE;
+    CLASSES['\t'] = SPACE;
+    CLASSES['\n'] = NEWLINE;
+    CLASSES['"'] = QUOTE;
+    CLASSES['/'] = SLASH_CHAR;
+
+    single('(', LEFT_PAREN);
+    single(')', RIGHT_PAREN);
+    single('{', LEFT_BRACE);
+    single('}', RIGHT_BRACE);
+    single(',', COMMA);
+    single('.', DOT);
+    single('-', MINUS);
+    single('+', PLUS);
+    single('*', TIMES);
+    single('%', REM);
+    single(':', COLLON);
+    single(';', SEMICOLON);
+
+    pair('!', BANG, BANG_EQUAL);
+    pair('=', EQUAL, EQUAL_EQUAL);
+    pair('<', LESS, LESS_EQUAL);
+    pair('>', GREATER, GREATER_EQUAL);
+
+    int min = Integer.MAX_VALUE;
+    int max = 0;
+    for (String keyword : keywords.keySet()) {
+      min = Math.min(min, keyword.length());
+      max = Math.max(max, keyword.length());
+    }
+    MIN_KEYWORD_LENGTH = min;
+    MAX_KEYWORD_LENGTH = max;
+    MULTIPLIER = findMultiplier();
+
+    for (Map.Entry<String, TokenType> entry : keywords.entrySet()) {
+      byte[] word = entry.getKey().getBytes(StandardCharsets.US_ASCII);
+      int slot = hash(MULTIPLIER, word[0], word[1], word[word.length - 1],
+          word.length);
+      KEYWORDS[slot] = word;
+      KEYWORD_TYPES[slot] = entry.getValue();
+    }
+  }
+
+  private static void single(char c, TokenType type) {
+    CLASSES[c] = SINGLE;
+    SINGLES[c] = type;
+  }
+
+  private static void pair(char c, TokenType type, TokenType withEqual) {
+    CLASSES[c] = PAIR;
+    SINGLES[c] = type;
+    PAIRS[c] = withEqual;
+  }
+
+  /**
+   * Procura um multiplicador que leve cada palavra reservada
+   * a uma posição diferente da tabela.
+   *
+   * @return o multiplicador do hash perfeito
+   */
+  private static int findMultiplier() {
+    for (int multiplier = 1; multiplier < 1 << 16; multiplier++) {
+      boolean[] used = new boolean[HASH_SIZE];
+      boolean perfect = true;
+
+      for (String keyword : keywords.keySet()) {
+        int slot = hash(multiplier, keyword.charAt(0), keyword.charAt(1),
+            keyword.charAt(keyword.length() - 1), keyword.length());
+
+        if (used[slot]) {
+          perfect = false;
+          break;
+        }
+
+        used[slot] = true;
+      }
+
+      if (perfect) return multiplier;
+    }
+
+    throw new IllegalStateException("No perfect hash for the keywords.");
+  }
+
+  private static int hash(int multiplier, int first, int second, int last,
+      int length) {
+    return (first * multiplier + second * 31 + last + length)
+        & (HASH_SIZE - 1);
+  }
+
+  public TableScanner(ByteBuffer sourceCode, Diagnostics diagnostics) {
+    super(sourceCode, diagnostics);
+  }
+
+  @Override
+  protected void scanToken() {
+    char c = advance();
+
+    switch (CLASSES[c]) {
+      case SPACE: break;
+      case NEWLINE: line++; break;
+      case SINGLE: addToken(SINGLES[c]); break;
+      case PAIR: addToken(match('=') ? PAIRS[c] : SINGLES[c]); break;
+      case SLASH_CHAR: slash(); break;
+      case QUOTE: string(); break;
+      case DIGIT: number(); break;
+      case ALPHA: identifier(); break;
+      default: unexpectedCharacter(); break;
+    }
+  }
+
+  /**
+   * Efetua a leitura de um identificador ou palavra reservada.
+   */
+  private void identifier() {
+    while (isIdentifierPart(peek())) current++;
+    addToken(keyword(start, current));
+  }
+
+  /**
+   * Reconhece uma palavra reservada através do hash perfeito,
+   * comparando somente os bytes da única candidata possível.
+   *
+   * @param from posição inicial do identificador
+   * @param to posição final, exclusiva, do identificador
+   * @return o tipo da palavra reservada ou IDENTIFIER
+   */
+  private TokenType keyword(int from, int to) {
+    int length = to - from;
+    if (length < MIN_KEYWORD_LENGTH || length > MAX_KEYWORD_LENGTH) {
+      return IDENTIFIER;
+    }
+
+    int slot = hash(MULTIPLIER, charAt(from), charAt(from + 1),
+        charAt(to - 1), length);
+    byte[] word = KEYWORDS[slot];
+
+    if (word == null || word.length != length) return IDENTIFIER;
+
+    for (int i = 0; i < length; i++) {
+      if (charAt(from + i) != word[i]) return IDENTIFIER;
+    }
+
+    return KEYWORD_TYPES[slot];
+  }
+
+  /**
+   * Checa se o caractere pode fazer parte de um identificador.
+   *
+   * @return verdadeiro se é uma letra, dígito ou underscore
+   */
+  private boolean isIdentifierPart(char c) {
+    byte type = CLASSES[c];
+    return type == ALPHA || type == DIGIT;
+  }
+
+}
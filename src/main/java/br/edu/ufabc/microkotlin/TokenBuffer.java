@@ -0,0 +1,172 @@
+package br.edu.ufabc.microkotlin;
+
+import java.util.Arrays;
+
+/**
+ * Armazenamento compacto dos tokens de um código-fonte.
+ *
+ * Cada token ocupa uma posição em vetores paralelos de tipo, início,
+ * fim e linha, em vez de um objeto com o lexema e o valor. Os objetos
+ * dos tokens são criados somente quando o Parser ou os diagnósticos
+ * os pedem, a partir do código-fonte mantido pelo Scanner.
+ */
+public class TokenBuffer implements TokenStream {
+
+  private static final TokenType[] TYPES = TokenType.values();
+
+  /**
+   * Scanner de origem, usado para obter os lexemas e valores.
+   */
+  private final Scanner scanner;
+
+  /**
+   * Ordinal do tipo de cada token.
+   */
+  private byte[] types;
+
+  /**
+   * Posição inicial de cada lexema.
+   */
+  private int[] starts;
+
+  /**
+   * Posição final, exclusiva, de cada lexema.
+   */
+  private int[] ends;
+
+  /**
+   * Linha de origem de cada token.
+   */
+  private int[] lines;
+
+  /**
+   * Quantidade de tokens armazenados.
+   */
+  private int size = 0;
+
+  /**
+   * Índice de controle do token atual, para o TokenStream.
+   */
+  private int current = 0;
+
+  TokenBuffer(Scanner scanner, int capacity) {
+    this.scanner = scanner;
+    capacity = Math.max(capacity, 16);
+    this.types = new byte[capacity];
+    this.starts = new int[capacity];
+    this.ends = new int[capacity];
+    this.lines = new int[capacity];
+  }
+
+  /**
+   * Adiciona um token ao fim do buffer.
+   *
+   * @param type tipo do token
+   * @param start posição inicial do lexema
+   * @param end posição final, exclusiva, do lexema
+   * @param line linha de origem
+   */
+  void add(TokenType type, int start, int end, int line) {
+    if (size == types.length) {
+      int capacity = size + (size >> 1);
+      types = Arrays.copyOf(types, capacity);
+      starts = Arrays.copyOf(starts, capacity);
+      ends = Arrays.copyOf(ends, capacity);
+      lines = Arrays.copyOf(lines, capacity);
+    }
+
+    types[size] = (byte) type.ordinal();
+    starts[size] = start;
+    ends[size] = end;
+    lines[size] = line;
+    size++;
+  }
+
+  /**
+   * Retorna a quantidade de tokens, incluindo o EOF.
+   *
+   * @return quantidade de tokens
+   */
+  public int size() {
+    return size;
+  }
+
+  /**
+   * Retorna o tipo de um token.
+   *
+   * @param index índice do token
+   * @return tipo do token
+   */
+  public TokenType type(int index) {
+    return TYPES[types[index]];
+  }
+
+  /**
+   * Retorna a linha de origem de um token.
+   *
+   * @param index índice do token
+   * @return linha do token
+   */
+  public int line(int index) {
+    return lines[index];
+  }
+
+  /**
+   * Decodifica o lexema de um token.
+   *
+   * @param index índice do token
+   * @return lexema do token
+   */
+  public String lexeme(int index) {
+    return scanner.lexeme(starts[index], ends[index]);
+  }
+
+  /**
+   * Obtém o valor literal de um token.
+   *
+   * @param index índice do token
+   * @return valor, ou null caso não seja um literal
+   */
+  public Object value(int index) {
+    return scanner.value(type(index), starts[index], ends[index]);
+  }
+
+  /**
+   * Cria o objeto de um token.
+   *
+   * @param index índice do token
+   * @return o token
+   */
+  public Token token(int index) {
+    return scanner.token(type(index), starts[index], ends[index], lines[index]);
+  }
+
+  /**
+   * Volta o TokenStream para o primeiro token.
+   */
+  public void rewind() {
+    current = 0;
+  }
+
+  @Override
+  public TokenType peekType() {
+    return type(current);
+  }
+
+  @Override
+  public Token peek() {
+    return token(current);
+  }
+
+  @Override
+  public Token previous() {
+    return token(current - 1);
+  }
+
+  @Override
+  public void advance() {
+    if (peekType() == TokenType.EOF) return;
+    current++;
+  }
+
+}
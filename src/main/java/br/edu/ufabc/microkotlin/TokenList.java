@@ -0,0 +1,45 @@
+package br.edu.ufabc.microkotlin;
+
+import java.util.List;
+
+/**
+ * Fluxo de tokens sobre uma lista já criada pelo Scanner.
+ */
+public class TokenList implements TokenStream {
+
+  /**
+   * Tokens da entrada, terminados por EOF.
+   */
+  private final List<Token> tokens;
+
+  /**
+   * Índice de controle do token atual.
+   */
+  private int current = 0;
+
+  public TokenList(List<Token> tokens) {
+    this.tokens = tokens;
+  }
+
+  @Override
+  public TokenType peekType() {
+    return peek().type;
+  }
+
+  @Override
+  public Token peek() {
+    return tokens.get(current);
+  }
+
+  @Override
+  public Token previous() {
+    return tokens.get(current - 1);
+  }
+
+  @Override
+  public void advance() {
+    if (peekType() == TokenType.EOF) return;
+    current++;
+  }
+
+}
@@ -0,0 +1,39 @@
+package br.edu.ufabc.microkotlin;
+
+/**
+ * Fluxo de tokens consumido sob demanda pelo Parser.
+ *
+ * Somente o token atual e o anterior precisam estar disponíveis,
+ * permitindo que a análise léxica ocorra junto com a sintática e
+ * com memória limitada, independente do tamanho da entrada.
+ */
+public interface TokenStream {
+
+  /**
+   * Retorna o tipo do token atual, sem consumi-lo.
+   *
+   * @return tipo do token atual
+   */
+  TokenType peekType();
+
+  /**
+   * Retorna o token atual, sem consumi-lo. Ao fim da entrada,
+   * retorna sempre o token EOF.
+   *
+   * @return o token atual
+   */
+  Token peek();
+
+  /**
+   * Retorna o último token consumido.
+   *
+   * @return o token anterior
+   */
+  Token previous();
+
+  /**
+   * Consome o token atual, avançando para o próximo.
+   */
+  void advance();
+
+}
@@ -20,5 +20,7 @@ public enum TokenType {
   BREAK, DO, ELSE, FALSE, FUN, IF, NULL, PRINT, PRINTLN,
   RETURN, TRUE, VAL, VAR, WHILE,
 
+  READ_INT, READ_DOUBLE, READ_STRING, READ_BOOLEAN,
+
   EOF
 }
@@ -1,23 +1,48 @@
 package br.edu.ufabc.microkotlin;
 
 import java.io.IOException;
-import java.io.PrintWriter;
-import java.util.Arrays;
+import java.io.InputStream;
+import java.io.StringWriter;
+import java.io.UncheckedIOException;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.FileSystems;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.EnumSet;
 import java.util.HashMap;
+import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
-import java.util.stream.Collectors;
+import java.util.Set;
 import br.edu.ufabc.microkotlin.expr.*;
 import br.edu.ufabc.microkotlin.program.*;
 import br.edu.ufabc.microkotlin.stmt.*;
 
-import static br.edu.ufabc.microkotlin.Variable.VariableProperty.*;
-
 /**
  * Efetua a tradução do código em MicroKotlin para Java.
+ *
+ * Os tipos das operações são verificados antes pelo TypeChecker, então
+ * o código gerado usa os tipos primitivos declarados e os operadores do
+ * Java diretamente. As Strings acumuladas em laços, marcadas pelo
+ * AccumulatorFinder, são declaradas como StringBuilder.
+ *
+ * A saída é escrita em um buffer, esvaziado quando fica cheio, antes
+ * de cada leitura, para que as perguntas apareçam, e ao fim do main,
+ * mesmo que uma exceção seja lançada. A entrada é lida de um buffer
+ * de bytes, sem o java.util.Scanner, por métodos gerados somente para
+ * os tipos lidos pelo programa.
+ *
+ * Nos programas divididos pelo Outliner, os trechos do main são
+ * gerados como métodos estáticos, escritos após o main, e as
+ * variáveis usadas por mais de um método se tornam campos estáticos.
  */
 public class Transpiler implements
-    Expr.Visitor<String>, Stmt.Visitor<String>, Program.Visitor<String> {
+    Expr.Visitor<String>, Stmt.Visitor<Void>, Program.Visitor<Void> {
 
   @SuppressWarnings("serial")
   private static class RuntimeError extends RuntimeException {
@@ -43,9 +68,28 @@ public class Transpiler implements
   }
 
   /**
-   * Tabela de símbolos para as variáveis e constantes.
+   * Tipos Java devolvidos pelos métodos de leitura.
    */
-  private SymbolTable symbolTable = new SymbolTable();
+  private static final Map<ExprRead.ReadType, String> READ_TYPES;
+
+  static {
+    READ_TYPES = new HashMap<>();
+    READ_TYPES.put(ExprRead.ReadType.INT, "int");
+    READ_TYPES.put(ExprRead.ReadType.DOUBLE, "double");
+    READ_TYPES.put(ExprRead.ReadType.BOOLEAN, "boolean");
+    READ_TYPES.put(ExprRead.ReadType.STRING, "String");
+  }
+
+  /**
+   * Campo da saída com buffer. O '$' não é aceito nos nomes do
+   * MicroKotlin, então o campo não colide com as variáveis.
+   */
+  private static final String STDOUT = "$stdout";
+
+  /**
+   * Destino do código gerado.
+   */
+  private Emitter emitter;
 
   /**
    * Arquivo de saída do tradutor.
@@ -57,9 +101,52 @@ public class Transpiler implements
    */
   private String outputClass;
 
-  public Transpiler(String outputFile) {
+  /**
+   * Nomes das variáveis visíveis declaradas como StringBuilder.
+   */
+  private final Set<String> builders = new HashSet<>();
+
+  /**
+   * Campos das variáveis usadas por mais de um método gerado,
+   * pelo nome das variáveis visíveis.
+   */
+  private final Map<String, String> fields = new HashMap<>();
+
+  /**
+   * Declarações dos campos e métodos gerados pelo Outliner, escritas
+   * após o main, os métodos na ordem das chamadas.
+   */
+  private Emitter fieldEmitter;
+  private StringWriter fieldCode;
+  private final List<StringWriter> methodCode = new ArrayList<>();
+
+  /**
+   * Determina se a saída é escrita em um buffer, em vez de
+   * diretamente no System.out.
+   */
+  private boolean bufferOutput = true;
+
+  /**
+   * Determina se a entrada é lida pelo leitor de bytes gerado, em vez
+   * do java.util.Scanner.
+   */
+  private boolean fastReader = true;
+
+  /**
+   * Tipos lidos pelo programa, que precisam de um método de leitura.
+   */
+  private final Set<ExprRead.ReadType> reads =
+      EnumSet.noneOf(ExprRead.ReadType.class);
+
+  /**
+   * Erros da compilação.
+   */
+  private final Diagnostics diagnostics;
+
+  public Transpiler(String outputFile, Diagnostics diagnostics) {
     this.outputFile = outputFile;
     this.outputClass = generateClassName(outputFile);
+    this.diagnostics = diagnostics;
   }
 
   private String generateClassName(String outputFile) {
@@ -73,167 +160,598 @@ public class Transpiler implements
     return className;
   }
 
+  /**
+   * Define se a saída do programa gerado é escrita em um buffer,
+   * esvaziado antes de cada leitura, ao fim da execução e quando
+   * fica cheio, ou diretamente no System.out, a cada impressão.
+   *
+   * @param bufferOutput verdadeiro para usar o buffer (padrão)
+   */
+  public void bufferOutput(boolean bufferOutput) {
+    this.bufferOutput = bufferOutput;
+  }
+
+  /**
+   * Define se o programa gerado lê a entrada por um leitor próprio,
+   * que converte os números diretamente de um buffer de bytes, ou
+   * pelo java.util.Scanner.
+   *
+   * @param fastReader verdadeiro para usar o leitor próprio (padrão)
+   */
+  public void fastReader(boolean fastReader) {
+    this.fastReader = fastReader;
+  }
+
   public void transpile(Program program) throws IOException {
-    PrintWriter writer = new PrintWriter(outputFile, "UTF-8");
+    transpile(program, false);
+  }
+
+  /**
+   * Efetua a tradução do programa para o arquivo de saída. O código
+   * é escrito em um arquivo temporário conforme é gerado, que só
+   * substitui a saída caso a tradução termine sem erros.
+   *
+   * O arquivo temporário, oculto ao lado da saída, tem sempre o mesmo
+   * nome, de modo que o deixado por uma execução interrompida seja
+   * substituído na próxima. É criado com as permissões padrão, como a
+   * saída, e recebe as permissões da saída existente antes de
+   * substituí-la.
+   *
+   * @param program programa a ser traduzido
+   * @param onlyIfChanged não reescreve o arquivo caso o conteúdo seja
+   *                      idêntico, preservando sua data de modificação
+   * @throws IOException caso haja algum erro de escrita
+   */
+  public void transpile(Program program, boolean onlyIfChanged)
+      throws IOException {
+    Path path = Paths.get(outputFile).toAbsolutePath();
+    Path temporary = path.resolveSibling("." + path.getFileName() + ".tmp");
+    Files.deleteIfExists(temporary);
+
+    try {
+      boolean translated;
+      try (Writer writer = Files.newBufferedWriter(temporary,
+          StandardCharsets.UTF_8, StandardOpenOption.CREATE_NEW,
+          StandardOpenOption.WRITE)) {
+        translated = transpile(program, writer);
+      }
+
+      if (translated && !(onlyIfChanged && sameContent(path, temporary))) {
+        if (Files.exists(path) && FileSystems.getDefault()
+            .supportedFileAttributeViews().contains("posix")) {
+          Files.setPosixFilePermissions(temporary,
+              Files.getPosixFilePermissions(path));
+        }
+
+        Files.move(temporary, path, StandardCopyOption.REPLACE_EXISTING);
+      }
+    } finally {
+      Files.deleteIfExists(temporary);
+    }
+  }
+
+  /**
+   * Efetua a tradução do programa, escrevendo o código gerado
+   * no destino informado conforme o programa é percorrido.
+   *
+   * @param program programa a ser traduzido
+   * @param writer destino do código gerado
+   * @return verdadeiro caso a tradução termine sem erros
+   * @throws IOException caso haja algum erro de escrita
+   */
+  public boolean transpile(Program program, Writer writer) throws IOException {
+    emitter = new Emitter(writer);
 
     try {
-      writer.print(translate(program));
-      writer.close();
+      program.accept(this);
+      emitter.flush();
+      return true;
     } catch (RuntimeError error) {
-      MicroKotlin.error(error.token, error.getMessage());
+      diagnostics.error(error.token, error.getMessage());
+      return false;
+    } catch (UncheckedIOException e) {
+      throw e.getCause();
     }
   }
 
-  private String translate(Program program) {
-    return program.accept(this);
+  /**
+   * Compara o conteúdo de dois arquivos por partes, sem lê-los
+   * inteiros em memória.
+   *
+   * @return verdadeiro caso ambos existam e sejam idênticos
+   */
+  private static boolean sameContent(Path first, Path second)
+      throws IOException {
+    if (!Files.exists(first) || Files.size(first) != Files.size(second)) {
+      return false;
+    }
+
+    try (InputStream a = Files.newInputStream(first);
+        InputStream b = Files.newInputStream(second)) {
+      byte[] bufferA = new byte[8192];
+      byte[] bufferB = new byte[8192];
+
+      int read;
+      while ((read = a.read(bufferA)) > 0) {
+        int total = 0;
+        while (total < read) {
+          int count = b.read(bufferB, total, read - total);
+          if (count < 0) return false;
+          total += count;
+        }
+
+        for (int i = 0; i < read; i++) {
+          if (bufferA[i] != bufferB[i]) return false;
+        }
+      }
+
+      return b.read() < 0;
+    }
   }
 
   private String evaluate(Expr expr) {
     return expr.accept(this);
   }
 
-  private String execute(Stmt stmt) {
-    return stmt.accept(this);
+  private void execute(Stmt stmt) {
+    stmt.accept(this);
   }
 
   @Override
-  public String visitProgram(Program program) {
-    StringBuilder builder = new StringBuilder();
-    builder.append("import java.util.Scanner;\n\n");
-    builder.append("public class " + outputClass + " {\n");
+  public Void visitProgram(Program program) {
+    reads.clear();
+    fields.clear();
+    fieldCode = new StringWriter();
+    fieldEmitter = new Emitter(fieldCode).indent();
+    methodCode.clear();
+
+    // Os métodos gerados não enxergam as variáveis locais do main.
+    boolean split = program.methods != null;
+
+    if (bufferOutput) {
+      emitter.println("import java.io.BufferedOutputStream;");
+      emitter.println("import java.io.PrintStream;");
+    }
+    if (!fastReader) emitter.println("import java.util.Scanner;");
+    if (bufferOutput || !fastReader) emitter.newline();
+    emitter.println("public class " + outputClass + " {").indent();
+
+    if (bufferOutput) {
+      emitter.println("private static final PrintStream " + STDOUT + " =");
+      emitter.indent().indent();
+      emitter.println("new PrintStream("
+          + "new BufferedOutputStream(System.out, 65536));");
+      emitter.dedent().dedent();
+    }
+    if (!fastReader && split) {
+      emitter.println("private static final Scanner $scanner = "
+          + "new Scanner(System.in);");
+    }
 
     for (StmtVal valDecl : program.constants) {
-      builder.append("  " + execute(valDecl) + "\n");
+      execute(valDecl);
+      emitter.endLine();
     }
 
-    builder.append("\n  public static void main(String[] args) {\n");
-    builder.append("    Scanner scanner = new Scanner(System.in);\n");
+    emitter.newline();
+    emitter.println("public static void main(String[] args) {").indent();
+    if (!fastReader && !split) {
+      emitter.println("Scanner $scanner = new Scanner(System.in);");
+    }
 
-    for (Stmt statement : program.statements) {
-      String[] statementLines = execute(statement).split("\n");
+    if (bufferOutput) {
+      emitter.println("try {");
+      executeBlock(program.statements, program.methods);
+      if (!fastReader) emitter.indent().println("$scanner.close();").dedent();
+      emitter.println("} finally {");
+      emitter.indent().println(STDOUT + ".flush();").dedent();
+      emitter.println("}");
+    } else {
+      executeStatements(program.statements, program.methods);
+      if (!fastReader) emitter.println("$scanner.close();");
+    }
 
-      for (String line : statementLines) {
-        builder.append("    " + line + "\n");
-      }
+    emitter.dedent().println("}");
+
+    if (fieldCode.getBuffer().length() > 0) {
+      emitter.newline().printLines(fieldCode.getBuffer());
+    }
+    for (StringWriter code : methodCode) {
+      emitter.printLines(code.getBuffer());
+    }
+
+    if (fastReader && !reads.isEmpty()) emitInput();
+
+    for (ExprRead.ReadType type : reads) {
+      emitReadMethod(type);
     }
 
-    builder.append("    scanner.close();\n");
-    builder.append("  }\n\n");
-    builder.append("}\n");
-    return builder.toString();
+    emitter.newline();
+    emitter.dedent().println("}");
+    return null;
   }
 
-  private String executeBlock(List<Stmt> statements, SymbolTable symbolTable) {
-    SymbolTable previous = this.symbolTable;
-    StringBuilder builder = new StringBuilder();
+  /**
+   * Escreve o método de leitura de um tipo, que esvazia a saída antes
+   * de aguardar a entrada.
+   */
+  private void emitReadMethod(ExprRead.ReadType type) {
+    String name = readMethod(type);
+    emitter.newline();
+
+    if (!fastReader) {
+      emitter.println("private static " + READ_TYPES.get(type) + " "
+          + name + "(Scanner $scanner) {").indent();
+      emitter.println(STDOUT + ".flush();");
+      emitter.println("return " + scannerRead(type) + ";");
+      emitter.dedent().println("}");
+      return;
+    }
 
-    try {
-      this.symbolTable = symbolTable;
+    emitter.println("private static " + READ_TYPES.get(type) + " "
+        + name + "() {").indent();
+    if (bufferOutput) emitter.println(STDOUT + ".flush();");
+
+    switch (type) {
+      case INT:
+        emitLines(
+            "int c = $skipSpaces();",
+            "boolean negative = c == '-';",
+            "if (negative || c == '+') {",
+            "  $inputPosition++;",
+            "  c = $peek();",
+            "}",
+            "if (c < '0' || c > '9') {",
+            "  throw new java.util.InputMismatchException();",
+            "}",
+            "int value = 0;",
+            "while (c >= '0' && c <= '9') {",
+            "  int digit = c - '0';",
+            "  if (value < (Integer.MIN_VALUE + digit) / 10) {",
+            "    throw new java.util.InputMismatchException();",
+            "  }",
+            "  value = value * 10 - digit;",
+            "  $inputPosition++;",
+            "  c = $peek();",
+            "}",
+            "if (c > ' ' || (!negative && value == Integer.MIN_VALUE)) {",
+            "  throw new java.util.InputMismatchException();",
+            "}",
+            "return negative ? value : -value;");
+        break;
+      case DOUBLE:
+        emitLines(
+            "String token = $token();",
+            "try {",
+            "  return Double.parseDouble(token);",
+            "} catch (NumberFormatException e) {",
+            "  throw new java.util.InputMismatchException(token);",
+            "}");
+        break;
+      case BOOLEAN:
+        emitLines(
+            "String token = $token();",
+            "if (token.equalsIgnoreCase(\"true\")) return true;",
+            "if (token.equalsIgnoreCase(\"false\")) return false;",
+            "throw new java.util.InputMismatchException(token);");
+        break;
+      default:
+        emitLines(
+            "int c = $peek();",
+            "if (c < 0) {",
+            "  throw new java.util.NoSuchElementException(\"No line found\");",
+            "}",
+            "java.io.ByteArrayOutputStream line =",
+            "    new java.io.ByteArrayOutputStream();",
+            "while (c >= 0 && c != '\\n') {",
+            "  if (c != '\\r') line.write(c);",
+            "  $inputPosition++;",
+            "  c = $peek();",
+            "}",
+            "if (c >= 0) $inputPosition++;",
+            "return line.toString();");
+    }
 
-      for (Stmt statement : statements) {
-        if (statement instanceof StmtBlock
-            || statement instanceof StmtDoWhile
-            || statement instanceof StmtWhile
-            || statement instanceof StmtIf) {
-          String out = execute(statement);
-          String outInd = Arrays.asList(out.split("\n")).stream()
-              .map(l -> "  " + l)
-              .collect(Collectors.joining("\n"));
-          builder.append(outInd + "\n");
-          continue;
-        }
+    emitter.dedent().println("}");
+  }
+
+  /**
+   * Escreve o leitor da entrada: um buffer de bytes sobre o System.in,
+   * de onde os números são convertidos diretamente, sem as expressões
+   * regulares do java.util.Scanner.
+   */
+  private void emitInput() {
+    emitter.newline();
+    emitLines(
+        "private static final byte[] $inputBuffer = new byte[65536];",
+        "private static int $inputLength = 0;",
+        "private static int $inputPosition = 0;");
+    emitter.newline();
+    emitLines(
+        "private static int $peek() {",
+        "  if ($inputPosition == $inputLength) {",
+        "    try {",
+        "      $inputLength = System.in.read($inputBuffer);",
+        "    } catch (java.io.IOException e) {",
+        "      throw new java.io.UncheckedIOException(e);",
+        "    }",
+        "    $inputPosition = 0;",
+        "    if ($inputLength <= 0) {",
+        "      $inputLength = 0;",
+        "      return -1;",
+        "    }",
+        "  }",
+        "  return $inputBuffer[$inputPosition] & 0xFF;",
+        "}");
+    emitter.newline();
+    emitLines(
+        "private static int $skipSpaces() {",
+        "  int c = $peek();",
+        "  while (c >= 0 && c <= ' ') {",
+        "    $inputPosition++;",
+        "    c = $peek();",
+        "  }",
+        "  if (c < 0) throw new java.util.NoSuchElementException();",
+        "  return c;",
+        "}");
+
+    if (reads.contains(ExprRead.ReadType.DOUBLE)
+        || reads.contains(ExprRead.ReadType.BOOLEAN)) {
+      emitter.newline();
+      emitLines(
+          "private static String $token() {",
+          "  StringBuilder token = new StringBuilder();",
+          "  int c = $skipSpaces();",
+          "  while (c > ' ') {",
+          "    token.append((char) c);",
+          "    $inputPosition++;",
+          "    c = $peek();",
+          "  }",
+          "  return token.toString();",
+          "}");
+    }
+  }
 
-        builder.append("  " + execute(statement) + "\n");
+  private void emitLines(String... lines) {
+    for (String line : lines) {
+      emitter.println(line);
+    }
+  }
+
+  private void executeBlock(List<Stmt> statements,
+      List<Outliner.Method> methods) {
+    emitter.indent();
+    executeStatements(statements, methods);
+    emitter.dedent();
+  }
+
+  /**
+   * Escreve os comandos ou, caso tenham sido divididos pelo Outliner,
+   * as chamadas aos métodos que os executam.
+   */
+  private void executeStatements(List<Stmt> statements,
+      List<Outliner.Method> methods) {
+    if (methods == null) {
+      for (Stmt statement : statements) {
+        execute(statement);
+        emitter.endLine();
       }
-    } finally {
-      this.symbolTable = previous;
+      return;
     }
 
-    return builder.toString();
+    for (Outliner.Method method : methods) {
+      emitter.println(method.name + "();");
+      emitMethod(statements, method);
+    }
+  }
+
+  /**
+   * Escreve um método gerado pelo Outliner. Os comandos são traduzidos
+   * na ordem do programa, como os demais, mas em um destino separado,
+   * escrito após o main.
+   */
+  private void emitMethod(List<Stmt> statements, Outliner.Method method) {
+    Emitter caller = emitter;
+    StringWriter code = new StringWriter();
+    methodCode.add(code);
+    emitter = new Emitter(code).indent();
+
+    emitter.newline();
+    emitter.println("private static void " + method.name + "() {");
+    emitter.indent();
+
+    if (method.calls.isEmpty()) {
+      executeStatements(statements.subList(method.from, method.to), null);
+    } else {
+      executeStatements(statements, method.calls);
+    }
+
+    emitter.dedent().println("}");
+    emitter = caller;
   }
 
   @Override
-  public String visitBlockStmt(StmtBlock stmt) {
-    return "{\n" + executeBlock(stmt.statements, new SymbolTable(symbolTable)) + "}";
+  public Void visitBlockStmt(StmtBlock stmt) {
+    emitter.println("{");
+    executeBlock(stmt.statements, stmt.methods);
+    emitter.print("}");
+
+    for (Stmt statement : stmt.statements) {
+      if (statement instanceof StmtVar) {
+        builders.remove(((StmtVar) statement).name.lexeme);
+        fields.remove(((StmtVar) statement).name.lexeme);
+      }
+    }
+
+    return null;
   }
 
   @Override
-  public String visitDoWhileStmt(StmtDoWhile stmt) {
-    StringBuilder builder = new StringBuilder();
-    builder.append("do ");
-    builder.append(execute(stmt.body));
-    builder.append("while (" + evaluate(stmt.condition) + ");\n");
-    return builder.toString();
+  public Void visitDoWhileStmt(StmtDoWhile stmt) {
+    emitter.print("do ");
+    execute(stmt.body);
+    emitter.print("while (" + evaluate(stmt.condition) + ");").endLine();
+    return null;
   }
 
   @Override
-  public String visitExpressionStmt(StmtExpression stmt) {
-    return evaluate(stmt.expression) + ";";
+  public Void visitExpressionStmt(StmtExpression stmt) {
+    if (stmt.expression instanceof ExprAssign
+        && builders.contains(((ExprAssign) stmt.expression).name.lexeme)) {
+      emitter.print(assignBuilder((ExprAssign) stmt.expression) + ";");
+      return null;
+    }
+
+    emitter.print(evaluate(stmt.expression) + ";");
+    return null;
+  }
+
+  /**
+   * Traduz uma atribuição a uma variável declarada como StringBuilder:
+   * as partes de "s = s + a + b" são acrescentadas, e nas demais
+   * atribuições o conteúdo é substituído pelo novo valor.
+   */
+  private String assignBuilder(ExprAssign expr) {
+    String name = variable(expr.name);
+    List<Expr> parts = AccumulatorFinder.appendedParts(expr);
+
+    if (parts != null) {
+      StringBuilder code = new StringBuilder(name);
+      for (Expr part : parts) {
+        code.append(".append(").append(appendArgument(part)).append(")");
+      }
+      return code.toString();
+    }
+
+    if ("".equals(literalValue(expr.value))) {
+      return name + ".setLength(0)";
+    }
+
+    return name + ".replace(0, " + name + ".length(), "
+        + evaluate(expr.value) + ")";
+  }
+
+  /**
+   * Traduz o argumento de um append. O null precisa de uma conversão,
+   * pois o append possui várias versões que aceitam uma referência.
+   */
+  private String appendArgument(Expr expr) {
+    return expr.kind == Kind.NULL ? "(String) null" : evaluate(expr);
+  }
+
+  private static Object literalValue(Expr expr) {
+    return expr instanceof ExprLiteral ? ((ExprLiteral) expr).value : null;
   }
 
   @Override
-  public String visitIfStmt(StmtIf stmt) {
-    StringBuilder builder = new StringBuilder();
-    builder.append("if (" + evaluate(stmt.condition) + ") ");
-    builder.append(execute(stmt.thenBranch));
+  public Void visitIfStmt(StmtIf stmt) {
+    emitter.print("if (" + evaluate(stmt.condition) + ") ");
+    execute(stmt.thenBranch);
 
     if (stmt.elseBranch != null) {
-      builder.append("else ");
-      builder.append(execute(stmt.elseBranch));
+      emitter.print("else ");
+      execute(stmt.elseBranch);
     }
 
-    builder.append("\n");
-    return builder.toString();
+    emitter.endLine();
+    return null;
   }
 
   @Override
-  public String visitPrintStmt(StmtPrint stmt) {
-    return "System.out.print(" + evaluate(stmt.expression) + ");";
+  public Void visitPrintStmt(StmtPrint stmt) {
+    emitter.print(output() + ".print(" + evaluate(stmt.expression) + ");");
+    return null;
   }
 
   @Override
-  public String visitPrintLnStmt(StmtPrintLn stmt) {
-    return "System.out.println(" + evaluate(stmt.expression) + ");";
+  public Void visitPrintLnStmt(StmtPrintLn stmt) {
+    emitter.print(output() + ".println(" + evaluate(stmt.expression) + ");");
+    return null;
+  }
+
+  private String output() {
+    return bufferOutput ? STDOUT : "System.out";
   }
 
   @Override
-  public String visitValStmt(StmtVal stmt) {
+  public Void visitValStmt(StmtVal stmt) {
     String value = evaluate(stmt.initializer);
     String type = transformType(stmt.type);
 
-    symbolTable.define(stmt.name, CONSTANT, value);
-    return "private static final " + type + " " +
-        stmt.name.lexeme + " = " + value + ";";
+    emitter.print("private static final " + type + " " +
+        stmt.name.lexeme + " = " + value + ";");
+    return null;
   }
 
   @Override
-  public String visitVarStmt(StmtVar stmt) {
+  public Void visitVarStmt(StmtVar stmt) {
+    if (stmt.field != null) {
+      fields.put(stmt.name.lexeme, stmt.field);
+      fieldEmitter.println("private static "
+          + (stmt.accumulator ? "StringBuilder" : transformType(stmt.type))
+          + " " + stmt.field + ";");
+    }
+
+    if (stmt.accumulator) {
+      builders.add(stmt.name.lexeme);
+
+      // O construtor não aceita null, então só recebe os valores que
+      // nunca são null: um literal ou uma concatenação.
+      String value = evaluate(stmt.initializer);
+      boolean nonNull = stmt.initializer instanceof ExprLiteral
+          || stmt.initializer instanceof ExprBinary;
+      emitter.print(declaration(stmt, "StringBuilder") + " = "
+          + ("".equals(literalValue(stmt.initializer))
+              ? "new StringBuilder()"
+              : nonNull
+              ? "new StringBuilder(" + value + ")"
+              : "new StringBuilder().append(" + value + ")") + ";");
+      return null;
+    }
+
     String type = transformType(stmt.type);
     String value = null;
     if (stmt.initializer != null) {
       value = evaluate(stmt.initializer);
     }
 
-    symbolTable.define(stmt.name, VARIABLE, value);
-    return type + " " + stmt.name.lexeme +
-      (value != null ? " = " + value : "") + ";";
+    // Um campo sem valor inicial não precisa ser declarado no método.
+    if (stmt.field != null && value == null) return null;
+
+    emitter.print(declaration(stmt, type) +
+      (value != null ? " = " + value : "") + ";");
+    return null;
+  }
+
+  /**
+   * Início da declaração de uma variável, ou somente o nome do seu
+   * campo, caso ela seja usada por mais de um método gerado.
+   */
+  private static String declaration(StmtVar stmt, String type) {
+    return stmt.field != null ? stmt.field : type + " " + stmt.name.lexeme;
+  }
+
+  /**
+   * Nome de uma variável no código gerado, o do seu campo caso ela seja
+   * usada por mais de um método gerado.
+   */
+  private String variable(Token name) {
+    String field = fields.get(name.lexeme);
+    return field != null ? field : name.lexeme;
   }
 
   @Override
-  public String visitWhileStmt(StmtWhile stmt) {
-    StringBuilder builder = new StringBuilder();
-    builder.append("while (" + evaluate(stmt.condition) + ") ");
-    builder.append(execute(stmt.body));
-    builder.append("\n");
-    return builder.toString();
+  public Void visitWhileStmt(StmtWhile stmt) {
+    emitter.print("while (" + evaluate(stmt.condition) + ") ");
+    execute(stmt.body);
+    emitter.endLine();
+    return null;
   }
 
   @Override
   public String visitAssignExpr(ExprAssign expr) {
     String value = evaluate(expr.value);
-
-    symbolTable.assign(expr.name, value);
-    return expr.name.lexeme + " = " + value;
+    return variable(expr.name) + " = " + value;
   }
 
   private String transformType(Token type) {
@@ -258,7 +776,6 @@ public class Transpiler implements
       case BANG:
         return "!" + right;
       case MINUS:
-        // checkNumberOperand(expr.operator, right);
         return "-" + right;
     }
 
@@ -268,35 +785,11 @@ public class Transpiler implements
 
   @Override
   public String visitVariableExpr(ExprVariable expr) {
-    symbolTable.get(expr.name);
-    return expr.name.lexeme;
-  }
-
-  private void checkNumberOperand(Token operator, String operand) {
-    if (isNumber(operand)) return;
-    throw new RuntimeError(operator, "Operand must be a number.");
-  }
-
-  private void checkNumberOperands(Token operator, String left, String right) {
-    if (isNumber(left) && isNumber(right)) return;
-    throw new RuntimeError(operator, "Operands must be numbers.");
-  }
-
-  private boolean isNumber(String object) {
-    try {
-      Double.parseDouble(object);
-      return true;
-    } catch (NumberFormatException e) {
-      return isVariable(object);
+    if (builders.contains(expr.name.lexeme)) {
+      return variable(expr.name) + ".toString()";
     }
-  }
 
-  private boolean isString(String object) {
-    return isVariable(object) || (object.startsWith("\"") && object.endsWith("\""));
-  }
-
-  private boolean isVariable(String object) {
-    return symbolTable.contains(object);
+    return variable(expr.name);
   }
 
   private String stringify(Object object) {
@@ -342,52 +835,30 @@ public class Transpiler implements
 
     switch (expr.operator.type) {
       case GREATER:
-        // checkNumberOperands(expr.operator, left, right);
         return left + " > " + right;
       case GREATER_EQUAL:
-        // checkNumberOperands(expr.operator, left, right);
         return left + " >= " + right;
       case LESS:
-        // checkNumberOperands(expr.operator, left, right);
         return left + " < " + right;
       case LESS_EQUAL:
-        // checkNumberOperands(expr.operator, left, right);
         return left + " <= " + right;
       case BANG_EQUAL:
         return left + " != " + right;
       case EQUAL_EQUAL:
         return left + " == " + right;
       case MINUS:
-        // checkNumberOperands(expr.operator, left, right);
         return left + " - " + right;
       case PLUS:
-        // Idealmente se faria a verificação dos tipos, mas não é o escopo
-        // do projeto isso, como definido na especificação:
-        // "Não é necessário verificar se é possível realizar as operações,
-        // devido aos tipos das variáveis."
         return left + " + " + right;
-
-        // if (isString(left) || isString(right)) {
-        //   return left + " + " + right;
-        // }
-
-        // if (isNumber(left) && isNumber(right)) {
-        //   return left + " + " + right;
-        // }
-
-        // throw new RuntimeError(expr.operator, "Operands must be two numbers or two strings.");
       case SLASH:
-        // checkNumberOperands(expr.operator, left, right);
         if (right.equals("0")) {
           throw new RuntimeError(expr.operator, "Division by zero.");
         }
 
         return left + " / " + right;
       case TIMES:
-        // checkNumberOperands(expr.operator, left, right);
         return left + " * " + right;
       case REM:
-        // checkNumberOperands(expr.operator, left, right);
         return left + " % " + right;
     }
 
@@ -397,11 +868,44 @@ public class Transpiler implements
 
   @Override
   public String visitReadExpr(ExprRead expr) {
-    if ("String".equals(expr.type)) {
-      return "scanner.nextLine()";
+    if (fastReader) {
+      reads.add(expr.type);
+      return readMethod(expr.type) + "()";
     }
 
-    return "scanner.next" + expr.type + "()";
+    if (!bufferOutput) return scannerRead(expr.type);
+
+    reads.add(expr.type);
+    return readMethod(expr.type) + "($scanner)";
+  }
+
+  private static String scannerRead(ExprRead.ReadType type) {
+    switch (type) {
+      case INT:
+        return "$scanner.nextInt()";
+      case DOUBLE:
+        return "$scanner.nextDouble()";
+      case BOOLEAN:
+        return "$scanner.nextBoolean()";
+      default:
+        return "$scanner.nextLine()";
+    }
+  }
+
+  /**
+   * Nome do método de leitura gerado, o mesmo da função do MicroKotlin.
+   */
+  private static String readMethod(ExprRead.ReadType type) {
+    switch (type) {
+      case INT:
+        return "readInt";
+      case DOUBLE:
+        return "readDouble";
+      case BOOLEAN:
+        return "readBoolean";
+      default:
+        return "readString";
+    }
   }
 
 }
@@ -0,0 +1,340 @@
+package br.edu.ufabc.microkotlin;
+
+import br.edu.ufabc.microkotlin.expr.*;
+import br.edu.ufabc.microkotlin.program.*;
+import br.edu.ufabc.microkotlin.stmt.*;
+
+/**
+ * Verifica os tipos do programa logo após o Resolver, definindo o tipo
+ * estático (Expr.kind) de cada expressão.
+ *
+ * Os tipos seguem o código Java gerado: os literais numéricos sem parte
+ * fracionária são Int, mesmo que o Scanner guarde todos os números como
+ * Double, o Int é promovido a Double quando o outro operando é Double e
+ * a soma com uma String ou com null é uma concatenação. Assim, as fases
+ * seguintes escolhem a aritmética de int ou de double, e as operações
+ * sobre valores primitivos, sem verificar os tipos novamente.
+ *
+ * Uma expressão com erro fica sem tipo (null), e as expressões que a
+ * contêm não informam outros erros.
+ */
+public class TypeChecker implements
+    Expr.Visitor<Kind>, Stmt.Visitor<Void>, Program.Visitor<Void> {
+
+  /**
+   * Tipo declarado de cada variável ou constante, indexado pelo escopo
+   * e pela posição definidos pelo Resolver.
+   */
+  private Kind[][] kinds;
+
+  /**
+   * Indica se o programa principal está sendo verificado, e não as
+   * constantes, que não podem ler a entrada.
+   */
+  private boolean inMain;
+
+  /**
+   * Linha do último token visto, usada nos erros sem um token.
+   */
+  private int line;
+
+  /**
+   * Erros da compilação.
+   */
+  private final Diagnostics diagnostics;
+
+  public TypeChecker(Diagnostics diagnostics) {
+    this.diagnostics = diagnostics;
+  }
+
+  /**
+   * Verifica os tipos do programa, anotando as expressões, e se as
+   * variáveis recebem um valor antes de serem lidas.
+   *
+   * @param program programa já resolvido e sem erros
+   */
+  public void check(Program program) {
+    program.accept(this);
+
+    if (!diagnostics.hasErrors()) {
+      new DefiniteAssignment(diagnostics).check(program);
+    }
+  }
+
+  private Kind check(Expr expr) {
+    Kind kind = expr.accept(this);
+    expr.kind = kind;
+    return kind;
+  }
+
+  private void check(Stmt stmt) {
+    stmt.accept(this);
+  }
+
+  @Override
+  public Void visitProgram(Program program) {
+    kinds = new Kind[program.maxDepth + 1][];
+    kinds[0] = new Kind[program.globals];
+    line = 1;
+
+    inMain = false;
+    for (StmtVal valDecl : program.constants) {
+      check(valDecl);
+    }
+
+    inMain = true;
+    for (Stmt statement : program.statements) {
+      check(statement);
+    }
+
+    return null;
+  }
+
+  @Override
+  public Void visitBlockStmt(StmtBlock stmt) {
+    kinds[stmt.depth] = new Kind[stmt.locals];
+
+    for (Stmt statement : stmt.statements) {
+      check(statement);
+    }
+
+    return null;
+  }
+
+  @Override
+  public Void visitDoWhileStmt(StmtDoWhile stmt) {
+    check(stmt.body);
+    condition(stmt.condition);
+    return null;
+  }
+
+  @Override
+  public Void visitExpressionStmt(StmtExpression stmt) {
+    check(stmt.expression);
+    return null;
+  }
+
+  @Override
+  public Void visitIfStmt(StmtIf stmt) {
+    condition(stmt.condition);
+    check(stmt.thenBranch);
+    if (stmt.elseBranch != null) check(stmt.elseBranch);
+    return null;
+  }
+
+  @Override
+  public Void visitPrintStmt(StmtPrint stmt) {
+    print(stmt.expression);
+    return null;
+  }
+
+  @Override
+  public Void visitPrintLnStmt(StmtPrintLn stmt) {
+    print(stmt.expression);
+    return null;
+  }
+
+  private void print(Expr expression) {
+    if (check(expression) == Kind.NULL) {
+      diagnostics.error(line, "Ambiguous print of null.");
+    }
+  }
+
+  @Override
+  public Void visitValStmt(StmtVal stmt) {
+    Kind kind = declared(stmt.type);
+    Kind value = check(stmt.initializer);
+    if (kind != null) assignable(value, kind, stmt.name);
+
+    kinds[stmt.depth][stmt.slot] = kind;
+    return null;
+  }
+
+  @Override
+  public Void visitVarStmt(StmtVar stmt) {
+    Kind kind = declared(stmt.type);
+
+    if (stmt.initializer != null) {
+      Kind value = check(stmt.initializer);
+      if (kind != null) assignable(value, kind, stmt.name);
+    }
+
+    kinds[stmt.depth][stmt.slot] = kind;
+    return null;
+  }
+
+  @Override
+  public Void visitWhileStmt(StmtWhile stmt) {
+    condition(stmt.condition);
+    check(stmt.body);
+    return null;
+  }
+
+  @Override
+  public Kind visitAssignExpr(ExprAssign expr) {
+    Kind value = check(expr.value);
+    line = expr.name.line;
+
+    Kind kind = kinds[expr.depth][expr.slot];
+    if (kind == null) return null;
+
+    assignable(value, kind, expr.name);
+    return kind;
+  }
+
+  @Override
+  @SuppressWarnings("incomplete-switch")
+  public Kind visitBinaryExpr(ExprBinary expr) {
+    Kind left = check(expr.left);
+    Kind right = check(expr.right);
+    line = expr.operator.line;
+
+    if (left == null || right == null) return null;
+
+    switch (expr.operator.type) {
+      case EQUAL_EQUAL:
+      case BANG_EQUAL:
+        if ((left.isNumber() && right.isNumber())
+            || (left == Kind.BOOLEAN && right == Kind.BOOLEAN)
+            || (left.isReference() && right.isReference())) {
+          return Kind.BOOLEAN;
+        }
+        return error(expr.operator, "Incomparable types: " + left.name
+            + " and " + right.name + ".");
+      case GREATER:
+      case GREATER_EQUAL:
+      case LESS:
+      case LESS_EQUAL:
+        if (left.isNumber() && right.isNumber()) return Kind.BOOLEAN;
+        return error(expr.operator, "Operands must be numbers.");
+      case PLUS:
+        if (left.isReference() || right.isReference()) return Kind.STRING;
+        break;
+    }
+
+    if (!left.isNumber() || !right.isNumber()) {
+      return error(expr.operator, "Operands must be numbers.");
+    }
+
+    if (expr.operator.type == TokenType.SLASH && isZero(expr.right)) {
+      return error(expr.operator, "Division by zero.");
+    }
+
+    return left == Kind.DOUBLE || right == Kind.DOUBLE
+        ? Kind.DOUBLE
+        : Kind.INT;
+  }
+
+  @Override
+  public Kind visitGroupingExpr(ExprGrouping expr) {
+    return check(expr.expression);
+  }
+
+  @Override
+  public Kind visitLiteralExpr(ExprLiteral expr) {
+    Object value = expr.value;
+
+    if (value instanceof Double) return Kind.literal((Double) value);
+    if (value instanceof Boolean) return Kind.BOOLEAN;
+    if (value instanceof String) return Kind.STRING;
+    return Kind.NULL;
+  }
+
+  @Override
+  public Kind visitLogicalExpr(ExprLogical expr) {
+    Kind left = check(expr.left);
+    Kind right = check(expr.right);
+    line = expr.operator.line;
+
+    if (left == null || right == null) return null;
+
+    if (left != Kind.BOOLEAN || right != Kind.BOOLEAN) {
+      return error(expr.operator, "Operands must be Booleans.");
+    }
+
+    return Kind.BOOLEAN;
+  }
+
+  @Override
+  public Kind visitReadExpr(ExprRead expr) {
+    if (!inMain) {
+      diagnostics.error(line, "Cannot read input in a constant.");
+      return null;
+    }
+
+    switch (expr.type) {
+      case INT: return Kind.INT;
+      case DOUBLE: return Kind.DOUBLE;
+      case BOOLEAN: return Kind.BOOLEAN;
+      default: return Kind.STRING;
+    }
+  }
+
+  @Override
+  public Kind visitUnaryExpr(ExprUnary expr) {
+    Kind right = check(expr.right);
+    line = expr.operator.line;
+
+    if (right == null) return null;
+
+    if (expr.operator.type == TokenType.BANG) {
+      if (right == Kind.BOOLEAN) return right;
+      return error(expr.operator, "Operand must be a Boolean.");
+    }
+
+    if (right.isNumber()) return right;
+    return error(expr.operator, "Operand must be a number.");
+  }
+
+  @Override
+  public Kind visitVariableExpr(ExprVariable expr) {
+    line = expr.name.line;
+    return kinds[expr.depth][expr.slot];
+  }
+
+  /**
+   * Verifica a condição de um comando.
+   */
+  private void condition(Expr condition) {
+    Kind kind = check(condition);
+
+    if (kind != null && kind != Kind.BOOLEAN) {
+      diagnostics.error(line, "Condition must be a Boolean.");
+    }
+  }
+
+  /**
+   * Verifica se um valor pode ser guardado em uma variável do tipo
+   * informado: o null em uma String e o Int em um Double.
+   */
+  private void assignable(Kind from, Kind to, Token token) {
+    if (from == null || from == to) return;
+    if (from == Kind.NULL && to == Kind.STRING) return;
+    if (from == Kind.INT && to == Kind.DOUBLE) return;
+
+    diagnostics.error(token, "Incompatible types: " + from.name
+        + " cannot be converted to " + to.name + ".");
+  }
+
+  private Kind declared(Token type) {
+    Kind kind = Kind.declared(type);
+
+    if (kind == null) {
+      diagnostics.error(type, "The type specified doesn't exist.");
+    }
+
+    return kind;
+  }
+
+  private Kind error(Token token, String message) {
+    diagnostics.error(token, message);
+    return null;
+  }
+
+  private static boolean isZero(Expr expr) {
+    return expr instanceof ExprLiteral
+        && ((ExprLiteral) expr).value instanceof Double
+        && (Double) ((ExprLiteral) expr).value == 0.0;
+  }
+
+}
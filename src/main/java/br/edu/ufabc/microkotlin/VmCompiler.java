@@ -0,0 +1,713 @@
+package br.edu.ufabc.microkotlin;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.Arrays;
+import br.edu.ufabc.microkotlin.expr.*;
+import br.edu.ufabc.microkotlin.program.*;
+import br.edu.ufabc.microkotlin.stmt.*;
+import br.edu.ufabc.microkotlin.vm.Assembler;
+import br.edu.ufabc.microkotlin.vm.Chunk;
+import br.edu.ufabc.microkotlin.vm.Label;
+
+import static br.edu.ufabc.microkotlin.vm.Op.*;
+
+/**
+ * Compila o programa para as instruções da VirtualMachine, gravadas
+ * em um arquivo .mkbc ou executadas diretamente.
+ *
+ * As instruções são especializadas pelo tipo estático de cada
+ * expressão, definido pelo TypeChecker, e as variáveis ocupam posições nos vetores de Int e
+ * Boolean, de Double e de String, reaproveitadas ao fim de cada bloco.
+ * Os laços e condicionais são desvios diretos, e as comparações entre
+ * Int nas condições desviam sem criar o valor booleano intermediário.
+ * A semântica segue a do código gerado pelo Transpiler.
+ */
+public class VmCompiler implements
+    Expr.Visitor<Kind>, Stmt.Visitor<Void>, Program.Visitor<Void> {
+
+  @SuppressWarnings("serial")
+  private static class CompileError extends RuntimeException {
+    final Token token;
+
+    CompileError(Token token, String message) {
+      super(message);
+      this.token = token;
+    }
+  }
+
+  /**
+   * Arquivo de saída.
+   */
+  private final String outputFile;
+
+  /**
+   * Erros da compilação.
+   */
+  private final Diagnostics diagnostics;
+
+  /**
+   * Instruções sendo geradas.
+   */
+  private Assembler code;
+
+  /**
+   * Determina se a entrada está disponível, o que não ocorre na
+   * inicialização das constantes.
+   */
+  private boolean inMain;
+
+  /**
+   * Tipo e posição de cada variável, indexados pelo escopo e pela
+   * posição definidos pelo Resolver. A posição é relativa ao vetor
+   * do tipo da variável.
+   */
+  private Kind[][] kinds;
+  private int[][] slots;
+
+  /**
+   * Próxima posição livre e quantidade máxima de posições usadas
+   * em cada vetor, na ordem Int e Boolean, Double e String.
+   */
+  private final int[] next = new int[3];
+  private final int[] max = new int[3];
+
+  /**
+   * Linha do último token visitado, usada nos erros sem token.
+   */
+  private int line = 1;
+
+  public VmCompiler(String outputFile, Diagnostics diagnostics) {
+    this.outputFile = outputFile;
+    this.diagnostics = diagnostics;
+  }
+
+  /**
+   * Compila o programa e o grava no arquivo de saída.
+   *
+   * @param program programa já resolvido e verificado
+   * @param onlyIfChanged não reescreve o arquivo caso o conteúdo seja
+   *                      idêntico, preservando sua data de modificação
+   * @return programa compilado, ou null caso haja algum erro
+   * @throws IOException caso haja algum erro de escrita
+   */
+  public Chunk compile(Program program, boolean onlyIfChanged)
+      throws IOException {
+    Chunk chunk = compile(program);
+    if (chunk == null) return null;
+
+    byte[] bytes = chunk.toByteArray();
+    Path path = Paths.get(outputFile);
+    if (onlyIfChanged && Files.exists(path) && Files.size(path) == bytes.length
+        && Arrays.equals(Files.readAllBytes(path), bytes)) {
+      return chunk;
+    }
+
+    Files.write(path, bytes);
+    return chunk;
+  }
+
+  /**
+   * Compila o programa.
+   *
+   * @param program programa já resolvido e verificado
+   * @return programa compilado, ou null caso haja algum erro
+   */
+  public Chunk compile(Program program) {
+    code = new Assembler();
+    Arrays.fill(next, 0);
+    Arrays.fill(max, 0);
+
+    try {
+      program.accept(this);
+      return code.finish(max[0], max[1], max[2]);
+    } catch (CompileError error) {
+      if (error.token != null) {
+        diagnostics.error(error.token, error.getMessage());
+      } else {
+        diagnostics.error(line, error.getMessage());
+      }
+    }
+
+    return null;
+  }
+
+  private Kind evaluate(Expr expr) {
+    return expr.accept(this);
+  }
+
+  private void execute(Stmt stmt) {
+    stmt.accept(this);
+  }
+
+  @Override
+  public Void visitProgram(Program program) {
+    kinds = new Kind[program.maxDepth + 1][];
+    slots = new int[program.maxDepth + 1][];
+    kinds[0] = new Kind[program.globals];
+    slots[0] = new int[program.globals];
+
+    inMain = false;
+    for (StmtVal valDecl : program.constants) {
+      execute(valDecl);
+    }
+
+    inMain = true;
+    for (Stmt statement : program.statements) {
+      execute(statement);
+    }
+
+    return null;
+  }
+
+  @Override
+  public Void visitBlockStmt(StmtBlock stmt) {
+    int[] previous = next.clone();
+    kinds[stmt.depth] = new Kind[stmt.locals];
+    slots[stmt.depth] = new int[stmt.locals];
+
+    for (Stmt statement : stmt.statements) {
+      execute(statement);
+    }
+
+    System.arraycopy(previous, 0, next, 0, next.length);
+    return null;
+  }
+
+  @Override
+  public Void visitDoWhileStmt(StmtDoWhile stmt) {
+    Label start = new Label();
+    code.mark(start);
+    execute(stmt.body);
+    branch(stmt.condition, start, true);
+    return null;
+  }
+
+  @Override
+  public Void visitExpressionStmt(StmtExpression stmt) {
+    if (stmt.expression instanceof ExprAssign) {
+      assign((ExprAssign) stmt.expression, false);
+      return null;
+    }
+
+    Kind kind = evaluate(stmt.expression);
+    code.op(kind == Kind.INT || kind == Kind.BOOLEAN ? IPOP
+        : kind == Kind.DOUBLE ? DPOP : SPOP);
+    return null;
+  }
+
+  @Override
+  public Void visitIfStmt(StmtIf stmt) {
+    Label otherwise = new Label();
+    branch(stmt.condition, otherwise, false);
+    execute(stmt.thenBranch);
+
+    if (stmt.elseBranch != null) {
+      Label end = new Label();
+      code.jump(JUMP, end);
+      code.mark(otherwise);
+      execute(stmt.elseBranch);
+      code.mark(end);
+    } else {
+      code.mark(otherwise);
+    }
+
+    return null;
+  }
+
+  @Override
+  public Void visitPrintStmt(StmtPrint stmt) {
+    print(stmt.expression, 0);
+    return null;
+  }
+
+  @Override
+  public Void visitPrintLnStmt(StmtPrintLn stmt) {
+    print(stmt.expression, 1);
+    return null;
+  }
+
+  private void print(Expr expression, int newline) {
+    switch (evaluate(expression)) {
+      case INT: code.op(PRINTI, newline); break;
+      case DOUBLE: code.op(PRINTD, newline); break;
+      case BOOLEAN: code.op(PRINTZ, newline); break;
+      case STRING: code.op(PRINTS, newline); break;
+      default: throw new CompileError(null, "Ambiguous print of null.");
+    }
+  }
+
+  @Override
+  public Void visitValStmt(StmtVal stmt) {
+    line = stmt.name.line;
+    code.line(line);
+    Kind kind = declaredKind(stmt.type);
+    coerce(evaluate(stmt.initializer), kind, stmt.name);
+    declare(stmt.depth, stmt.slot, kind);
+    return null;
+  }
+
+  @Override
+  public Void visitVarStmt(StmtVar stmt) {
+    line = stmt.name.line;
+    code.line(line);
+    Kind kind = declaredKind(stmt.type);
+
+    if (stmt.initializer != null) {
+      coerce(evaluate(stmt.initializer), kind, stmt.name);
+    } else {
+      pushDefault(kind);
+    }
+
+    declare(stmt.depth, stmt.slot, kind);
+    return null;
+  }
+
+  /**
+   * Reserva a posição de uma variável e guarda nela o valor no topo
+   * da pilha.
+   */
+  private void declare(int depth, int slot, Kind kind) {
+    int array = array(kind);
+    int position = next[array]++;
+    max[array] = Math.max(max[array], next[array]);
+
+    kinds[depth][slot] = kind;
+    slots[depth][slot] = position;
+    code.op(store(kind), position);
+  }
+
+  @Override
+  public Void visitWhileStmt(StmtWhile stmt) {
+    Label condition = new Label();
+    Label body = new Label();
+
+    code.jump(JUMP, condition);
+    code.mark(body);
+    execute(stmt.body);
+    code.mark(condition);
+    branch(stmt.condition, body, true);
+    return null;
+  }
+
+  @Override
+  public Kind visitAssignExpr(ExprAssign expr) {
+    return assign(expr, true);
+  }
+
+  /**
+   * Gera uma atribuição, mantendo o valor atribuído na pilha
+   * somente quando é usado pela expressão externa.
+   */
+  private Kind assign(ExprAssign expr, boolean keepValue) {
+    line = expr.name.line;
+    code.line(line);
+    Kind kind = kinds[expr.depth][expr.slot];
+    int position = slots[expr.depth][expr.slot];
+
+    if (!keepValue && kind == Kind.INT && increment(expr, position)) {
+      return kind;
+    }
+
+    coerce(evaluate(expr.value), kind, expr.name);
+
+    if (keepValue) {
+      code.op(kind == Kind.INT || kind == Kind.BOOLEAN ? IDUP
+          : kind == Kind.DOUBLE ? DDUP : SDUP);
+    }
+    code.op(store(kind), position);
+    return kind;
+  }
+
+  /**
+   * Gera a instrução iinc para as atribuições na forma "x = x + k"
+   * ou "x = x - k", com k um literal inteiro.
+   *
+   * @return falso caso a atribuição não tenha essa forma
+   */
+  private boolean increment(ExprAssign expr, int position) {
+    if (!(expr.value instanceof ExprBinary)) return false;
+
+    ExprBinary binary = (ExprBinary) expr.value;
+    TokenType operator = binary.operator.type;
+    if (operator != TokenType.PLUS && operator != TokenType.MINUS) {
+      return false;
+    }
+
+    if (!(binary.left instanceof ExprVariable)
+        || !(binary.right instanceof ExprLiteral)
+        || binary.right.kind != Kind.INT) {
+      return false;
+    }
+
+    ExprVariable variable = (ExprVariable) binary.left;
+    if (variable.depth != expr.depth || variable.slot != expr.slot) {
+      return false;
+    }
+
+    int amount = ((Double) ((ExprLiteral) binary.right).value).intValue();
+    code.op(IINC, position, operator == TokenType.PLUS ? amount : -amount);
+    return true;
+  }
+
+  @Override
+  @SuppressWarnings("incomplete-switch")
+  public Kind visitBinaryExpr(ExprBinary expr) {
+    line = expr.operator.line;
+    code.line(line);
+    Kind kind = expr.kind;
+
+    switch (expr.operator.type) {
+      case GREATER:
+      case GREATER_EQUAL:
+      case LESS:
+      case LESS_EQUAL:
+      case BANG_EQUAL:
+      case EQUAL_EQUAL:
+        compare(expr);
+        return Kind.BOOLEAN;
+    }
+
+    if (kind == Kind.STRING) {
+      code.op(SBNEW);
+      append(expr);
+      code.op(SBEND);
+      return kind;
+    }
+
+    coerce(evaluate(expr.left), kind, expr.operator);
+    coerce(evaluate(expr.right), kind, expr.operator);
+    code.line(expr.operator.line);
+
+    boolean real = kind == Kind.DOUBLE;
+    switch (expr.operator.type) {
+      case PLUS: code.op(real ? DADD : IADD); break;
+      case MINUS: code.op(real ? DSUB : ISUB); break;
+      case TIMES: code.op(real ? DMUL : IMUL); break;
+      case SLASH: code.op(real ? DDIV : IDIV); break;
+      case REM: code.op(real ? DREM : IREM); break;
+    }
+
+    return kind;
+  }
+
+  /**
+   * Adiciona os operandos de uma concatenação ao StringBuilder no
+   * topo da pilha. As concatenações aninhadas à esquerda utilizam
+   * o mesmo StringBuilder.
+   */
+  private void append(Expr expr) {
+    if (expr instanceof ExprBinary
+        && ((ExprBinary) expr).operator.type == TokenType.PLUS
+        && expr.kind == Kind.STRING) {
+      append(((ExprBinary) expr).left);
+      append(((ExprBinary) expr).right);
+      return;
+    }
+
+    switch (evaluate(expr)) {
+      case INT: code.op(SBI); break;
+      case DOUBLE: code.op(SBD); break;
+      case BOOLEAN: code.op(SBZ); break;
+      default: code.op(SBS); break;
+    }
+  }
+
+  /**
+   * Empilha o resultado de uma comparação, 1 ou 0.
+   */
+  private void compare(ExprBinary expr) {
+    Kind left = expr.left.kind;
+    Kind right = expr.right.kind;
+    TokenType operator = expr.operator.type;
+    boolean equality = operator == TokenType.EQUAL_EQUAL
+        || operator == TokenType.BANG_EQUAL;
+    boolean equal = operator == TokenType.EQUAL_EQUAL;
+
+    if (left.isNumber() && right.isNumber()) {
+      Kind kind = operands(expr, left, right);
+      boolean real = kind == Kind.DOUBLE;
+
+      switch (operator) {
+        case EQUAL_EQUAL: code.op(real ? DEQ : IEQ); break;
+        case BANG_EQUAL: code.op(real ? DNE : INE); break;
+        case LESS: code.op(real ? DLT : ILT); break;
+        case LESS_EQUAL: code.op(real ? DLE : ILE); break;
+        case GREATER: code.op(real ? DGT : IGT); break;
+        default: code.op(real ? DGE : IGE); break;
+      }
+      return;
+    }
+
+    if (equality && left == Kind.BOOLEAN && right == Kind.BOOLEAN) {
+      evaluate(expr.left);
+      evaluate(expr.right);
+      code.op(equal ? IEQ : INE);
+      return;
+    }
+
+    if (equality && left.isReference() && right.isReference()) {
+      evaluate(expr.left);
+      evaluate(expr.right);
+      code.op(equal ? SEQ : SNE);
+      return;
+    }
+
+    throw new CompileError(expr.operator, equality
+        ? "Incomparable types: " + left.name + " and " + right.name + "."
+        : "Operands must be numbers.");
+  }
+
+  /**
+   * Empilha os operandos numéricos de uma comparação, promovendo
+   * o Int caso o outro operando seja Double.
+   *
+   * @return tipo dos operandos empilhados
+   */
+  private Kind operands(ExprBinary expr, Kind left, Kind right) {
+    Kind kind = left == Kind.DOUBLE || right == Kind.DOUBLE
+        ? Kind.DOUBLE
+        : Kind.INT;
+    coerce(evaluate(expr.left), kind, expr.operator);
+    coerce(evaluate(expr.right), kind, expr.operator);
+    code.line(expr.operator.line);
+    return kind;
+  }
+
+  @Override
+  public Kind visitGroupingExpr(ExprGrouping expr) {
+    return evaluate(expr.expression);
+  }
+
+  @Override
+  public Kind visitLiteralExpr(ExprLiteral expr) {
+    Kind kind = expr.kind;
+
+    switch (kind) {
+      case INT:
+        code.op(ICONST, ((Double) expr.value).intValue());
+        break;
+      case DOUBLE:
+        code.pushDouble((Double) expr.value);
+        break;
+      case BOOLEAN:
+        code.op(ICONST, (Boolean) expr.value ? 1 : 0);
+        break;
+      default:
+        // O literal null também é empilhado por pushString.
+        String value = (String) expr.value;
+        code.pushString(value == null ? null : Escapes.unescape(value));
+        break;
+    }
+
+    return kind;
+  }
+
+  @Override
+  public Kind visitLogicalExpr(ExprLogical expr) {
+    line = expr.operator.line;
+    return booleanValue(expr);
+  }
+
+  @Override
+  public Kind visitReadExpr(ExprRead expr) {
+    if (!inMain) {
+      throw new CompileError(null, "Cannot read input in a constant.");
+    }
+
+    switch (expr.type) {
+      case INT:
+        code.op(READI);
+        return Kind.INT;
+      case DOUBLE:
+        code.op(READD);
+        return Kind.DOUBLE;
+      case BOOLEAN:
+        code.op(READZ);
+        return Kind.BOOLEAN;
+      default:
+        code.op(READS);
+        return Kind.STRING;
+    }
+  }
+
+  @Override
+  public Kind visitUnaryExpr(ExprUnary expr) {
+    line = expr.operator.line;
+
+    if (expr.operator.type == TokenType.BANG) {
+      evaluate(expr.right);
+      code.op(NOT);
+      return Kind.BOOLEAN;
+    }
+
+    Kind kind = evaluate(expr.right);
+    code.op(kind == Kind.DOUBLE ? DNEG : INEG);
+    return kind;
+  }
+
+  @Override
+  public Kind visitVariableExpr(ExprVariable expr) {
+    line = expr.name.line;
+    code.line(line);
+    Kind kind = kinds[expr.depth][expr.slot];
+    code.op(load(kind), slots[expr.depth][expr.slot]);
+    return kind;
+  }
+
+  /**
+   * Empilha o valor booleano de uma condição.
+   */
+  private Kind booleanValue(Expr condition) {
+    Label isTrue = new Label();
+    Label end = new Label();
+
+    branch(condition, isTrue, true);
+    code.op(ICONST, 0);
+    code.jump(JUMP, end);
+    code.mark(isTrue);
+    code.op(ICONST, 1);
+    code.mark(end);
+    return Kind.BOOLEAN;
+  }
+
+  /**
+   * Desvia para o rótulo caso a condição tenha o valor informado.
+   * As comparações entre Int e os operadores lógicos desviam
+   * diretamente, sem empilhar o valor booleano.
+   *
+   * @param condition condição booleana
+   * @param target destino do desvio
+   * @param when valor da condição que causa o desvio
+   */
+  private void branch(Expr condition, Label target, boolean when) {
+    if (condition instanceof ExprGrouping) {
+      branch(((ExprGrouping) condition).expression, target, when);
+      return;
+    }
+
+    if (condition instanceof ExprUnary
+        && ((ExprUnary) condition).operator.type == TokenType.BANG) {
+      ExprUnary unary = (ExprUnary) condition;
+      branch(unary.right, target, !when);
+      return;
+    }
+
+    if (condition instanceof ExprLogical) {
+      ExprLogical logical = (ExprLogical) condition;
+
+      boolean or = logical.operator.type == TokenType.OR;
+      if (or == when) {
+        branch(logical.left, target, when);
+        branch(logical.right, target, when);
+      } else {
+        Label skip = new Label();
+        branch(logical.left, skip, !when);
+        branch(logical.right, target, when);
+        code.mark(skip);
+      }
+      return;
+    }
+
+    if (condition instanceof ExprBinary
+        && intJump((ExprBinary) condition, target, when)) {
+      return;
+    }
+
+    evaluate(condition);
+    code.jump(when ? JUMPT : JUMPF, target);
+  }
+
+  /**
+   * Gera o desvio de uma comparação entre dois Int.
+   *
+   * @return falso caso a expressão não seja uma comparação entre Int
+   */
+  private boolean intJump(ExprBinary expr, Label target, boolean when) {
+    int jump;
+
+    switch (expr.operator.type) {
+      case EQUAL_EQUAL: jump = when ? JEQ : JNE; break;
+      case BANG_EQUAL: jump = when ? JNE : JEQ; break;
+      case LESS: jump = when ? JLT : JGE; break;
+      case LESS_EQUAL: jump = when ? JLE : JGT; break;
+      case GREATER: jump = when ? JGT : JLE; break;
+      case GREATER_EQUAL: jump = when ? JGE : JLT; break;
+      default: return false;
+    }
+
+    if (expr.left.kind != Kind.INT || expr.right.kind != Kind.INT) {
+      return false;
+    }
+
+    line = expr.operator.line;
+    code.line(line);
+    evaluate(expr.left);
+    evaluate(expr.right);
+    code.line(expr.operator.line);
+    code.jump(jump, target);
+    return true;
+  }
+
+  /**
+   * Converte o valor no topo da pilha para o tipo esperado, ou
+   * informa um erro caso os tipos sejam incompatíveis.
+   */
+  private void coerce(Kind from, Kind to, Token token) {
+    if (from == to || (from == Kind.NULL && to == Kind.STRING)) return;
+
+    if (from == Kind.INT && to == Kind.DOUBLE) {
+      code.op(I2D);
+      return;
+    }
+
+    throw new CompileError(token, "Incompatible types: " + from.name
+        + " cannot be converted to " + to.name + ".");
+  }
+
+  private void pushDefault(Kind kind) {
+    switch (kind) {
+      case DOUBLE: code.pushDouble(0.0); break;
+      case STRING: code.pushString(null); break;
+      default: code.op(ICONST, 0); break;
+    }
+  }
+
+  /**
+   * Índice do vetor que guarda as variáveis do tipo informado.
+   */
+  private static int array(Kind kind) {
+    switch (kind) {
+      case INT:
+      case BOOLEAN:
+        return 0;
+      case DOUBLE:
+        return 1;
+      default:
+        return 2;
+    }
+  }
+
+  private static int load(Kind kind) {
+    int array = array(kind);
+    return array == 0 ? ILOAD : array == 1 ? DLOAD : SLOAD;
+  }
+
+  private static int store(Kind kind) {
+    int array = array(kind);
+    return array == 0 ? ISTORE : array == 1 ? DSTORE : SSTORE;
+  }
+
+  private Kind declaredKind(Token type) {
+    Kind kind = Kind.declared(type);
+
+    if (kind == null) {
+      throw new CompileError(type, "The type specified doesn't exist.");
+    }
+
+    return kind;
+  }
+
+}
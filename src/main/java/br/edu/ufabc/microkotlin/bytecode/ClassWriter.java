@@ -0,0 +1,149 @@
+package br.edu.ufabc.microkotlin.bytecode;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Escritor mínimo de arquivos .class.
+ *
+ * Gera classes na versão 49 (Java 5), que são verificadas por
+ * inferência de tipos e, portanto, não precisam do atributo
+ * StackMapTable, mas continuam executando nas JVMs atuais.
+ */
+public class ClassWriter {
+
+  /**
+   * Versão do formato do arquivo .class.
+   */
+  private static final int VERSION = 49;
+
+  private final ConstantPool pool = new ConstantPool();
+  private final String name;
+  private final String superName;
+  private String sourceFile;
+
+  /**
+   * Campos declarados, como (acesso, nome, descritor).
+   */
+  private final List<int[]> fields = new ArrayList<>();
+
+  /**
+   * Métodos declarados e os seus corpos.
+   */
+  private final List<int[]> methods = new ArrayList<>();
+  private final List<Code> codes = new ArrayList<>();
+
+  /**
+   * Cria uma classe pública.
+   *
+   * @param name nome interno da classe, como "pacote/Classe"
+   * @param superName nome interno da superclasse
+   */
+  public ClassWriter(String name, String superName) {
+    this.name = name;
+    this.superName = superName;
+  }
+
+  /**
+   * Informa o arquivo de origem, mostrado nos rastros de pilha.
+   *
+   * @param sourceFile nome do arquivo de origem
+   */
+  public void sourceFile(String sourceFile) {
+    this.sourceFile = sourceFile;
+  }
+
+  /**
+   * Declara um campo.
+   *
+   * @param access flags de acesso
+   * @param name nome do campo
+   * @param descriptor descritor do tipo do campo
+   */
+  public void field(int access, String name, String descriptor) {
+    fields.add(new int[] {access, pool.utf8(name), pool.utf8(descriptor)});
+  }
+
+  /**
+   * Declara um método, devolvendo o seu corpo a ser preenchido.
+   *
+   * @param access flags de acesso
+   * @param name nome do método
+   * @param descriptor descritor do método
+   * @param arguments espaço ocupado pelos argumentos nas variáveis locais
+   * @return corpo do método
+   */
+  public Code method(int access, String name, String descriptor,
+      int arguments) {
+    methods.add(new int[] {access, pool.utf8(name), pool.utf8(descriptor)});
+    Code code = new Code(pool, arguments);
+    codes.add(code);
+    return code;
+  }
+
+  /**
+   * Gera o conteúdo do arquivo .class.
+   *
+   * @return bytes da classe
+   */
+  public byte[] toByteArray() {
+    try {
+      int thisClass = pool.classRef(name);
+      int superClass = pool.classRef(superName);
+      int sourceName = sourceFile != null ? pool.utf8("SourceFile") : 0;
+      int sourceValue = sourceFile != null ? pool.utf8(sourceFile) : 0;
+
+      ByteArrayOutputStream body = new ByteArrayOutputStream();
+      DataOutputStream out = new DataOutputStream(body);
+
+      out.writeShort(Opcodes.ACC_PUBLIC | Opcodes.ACC_SUPER);
+      out.writeShort(thisClass);
+      out.writeShort(superClass);
+      out.writeShort(0);
+
+      out.writeShort(fields.size());
+      for (int[] field : fields) {
+        out.writeShort(field[0]);
+        out.writeShort(field[1]);
+        out.writeShort(field[2]);
+        out.writeShort(0);
+      }
+
+      out.writeShort(methods.size());
+      for (int i = 0; i < methods.size(); i++) {
+        int[] method = methods.get(i);
+        out.writeShort(method[0]);
+        out.writeShort(method[1]);
+        out.writeShort(method[2]);
+        out.writeShort(1);
+        codes.get(i).writeTo(out);
+      }
+
+      if (sourceFile != null) {
+        out.writeShort(1);
+        out.writeShort(sourceName);
+        out.writeInt(2);
+        out.writeShort(sourceValue);
+      } else {
+        out.writeShort(0);
+      }
+
+      ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+      DataOutputStream header = new DataOutputStream(bytes);
+      header.writeInt(0xCAFEBABE);
+      header.writeShort(0);
+      header.writeShort(VERSION);
+      pool.writeTo(header);
+      body.writeTo(header);
+      header.flush();
+      return bytes.toByteArray();
+    } catch (IOException e) {
+      throw new UncheckedIOException(e);
+    }
+  }
+
+}
@@ -0,0 +1,436 @@
+package br.edu.ufabc.microkotlin.bytecode;
+
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static br.edu.ufabc.microkotlin.bytecode.Opcodes.*;
+
+/**
+ * Corpo de um método em construção.
+ *
+ * Acompanha a altura da pilha de operandos a cada instrução e os
+ * índices das variáveis locais utilizadas, calculando o max_stack
+ * e o max_locals do atributo Code. Os desvios para posições ainda
+ * não conhecidas são corrigidos quando o rótulo é marcado, assim como
+ * os trechos protegidos da tabela de exceções.
+ */
+public class Code {
+
+  /**
+   * Tamanho máximo do código de um método.
+   */
+  private static final int MAX_LENGTH = 0xFFFF;
+
+  private final ConstantPool pool;
+
+  private byte[] bytes = new byte[256];
+  private int length = 0;
+
+  /**
+   * Altura atual da pilha, ou -1 após um desvio incondicional.
+   */
+  private int stack = 0;
+  private int maxStack = 0;
+  private int maxLocals;
+
+  /**
+   * Trechos protegidos, como (início, fim, tratador), e a classe
+   * capturada por cada um, ou 0 para qualquer exceção.
+   */
+  private final List<Label[]> handlers = new ArrayList<>();
+  private final List<Integer> catchTypes = new ArrayList<>();
+
+  Code(ConstantPool pool, int maxLocals) {
+    this.pool = pool;
+    this.maxLocals = maxLocals;
+  }
+
+  /**
+   * Adiciona uma instrução sem operandos.
+   *
+   * @param opcode instrução
+   */
+  public void op(int opcode) {
+    write(opcode);
+    stack(effect(opcode));
+    switch (opcode) {
+      case IRETURN:
+      case DRETURN:
+      case ARETURN:
+      case RETURN:
+      case ATHROW:
+        stack = -1;
+    }
+  }
+
+  /**
+   * Empilha uma constante inteira com a menor instrução possível.
+   *
+   * @param value valor da constante
+   */
+  public void push(int value) {
+    if (value >= -1 && value <= 5) {
+      write(ICONST_0 + value);
+    } else if (value >= Byte.MIN_VALUE && value <= Byte.MAX_VALUE) {
+      write(BIPUSH);
+      write(value);
+    } else if (value >= Short.MIN_VALUE && value <= Short.MAX_VALUE) {
+      write(SIPUSH);
+      writeShort(value);
+    } else {
+      constant(pool.integer(value));
+      return;
+    }
+
+    stack(1);
+  }
+
+  /**
+   * Empilha uma constante real.
+   *
+   * @param value valor da constante
+   */
+  public void push(double value) {
+    if (Double.doubleToRawLongBits(value) == 0L) {
+      write(DCONST_0);
+    } else if (value == 1.0) {
+      write(DCONST_1);
+    } else {
+      write(LDC2_W);
+      writeShort(pool.doubleValue(value));
+    }
+
+    stack(2);
+  }
+
+  /**
+   * Empilha uma constante String.
+   *
+   * @param value valor da constante
+   */
+  public void push(String value) {
+    constant(pool.string(value));
+  }
+
+  private void constant(int index) {
+    if (index <= 0xFF) {
+      write(LDC);
+      write(index);
+    } else {
+      write(LDC_W);
+      writeShort(index);
+    }
+
+    stack(1);
+  }
+
+  /**
+   * Empilha o valor de uma variável local.
+   *
+   * @param opcode ILOAD, DLOAD ou ALOAD
+   * @param slot índice da variável
+   */
+  public void load(int opcode, int slot) {
+    local(opcode, slot);
+    stack(opcode == DLOAD ? 2 : 1);
+  }
+
+  /**
+   * Desempilha um valor para uma variável local.
+   *
+   * @param opcode ISTORE, DSTORE ou ASTORE
+   * @param slot índice da variável
+   */
+  public void store(int opcode, int slot) {
+    local(opcode, slot);
+    stack(opcode == DSTORE ? -2 : -1);
+  }
+
+  private void local(int opcode, int slot) {
+    if (slot > 0xFF) {
+      write(WIDE);
+      write(opcode);
+      writeShort(slot);
+    } else {
+      write(opcode);
+      write(slot);
+    }
+
+    int size = opcode == DLOAD || opcode == DSTORE ? 2 : 1;
+    maxLocals = Math.max(maxLocals, slot + size);
+  }
+
+  /**
+   * Acessa um campo estático.
+   *
+   * @param opcode GETSTATIC ou PUTSTATIC
+   * @param owner classe do campo
+   * @param name nome do campo
+   * @param descriptor descritor do tipo do campo
+   */
+  public void field(int opcode, String owner, String name,
+      String descriptor) {
+    write(opcode);
+    writeShort(pool.fieldRef(owner, name, descriptor));
+    int size = size(descriptor.charAt(0));
+    stack(opcode == GETSTATIC ? size : -size);
+  }
+
+  /**
+   * Invoca um método.
+   *
+   * @param opcode INVOKEVIRTUAL, INVOKESPECIAL ou INVOKESTATIC
+   * @param owner classe do método
+   * @param name nome do método
+   * @param descriptor descritor do método
+   */
+  public void invoke(int opcode, String owner, String name,
+      String descriptor) {
+    write(opcode);
+    writeShort(pool.methodRef(owner, name, descriptor));
+
+    int arguments = 0;
+    int i = 1;
+    while (descriptor.charAt(i) != ')') {
+      char c = descriptor.charAt(i);
+      arguments += size(c);
+      if (c == 'L') i = descriptor.indexOf(';', i);
+      i++;
+    }
+
+    int receiver = opcode == INVOKESTATIC ? 0 : 1;
+    stack(size(descriptor.charAt(i + 1)) - arguments - receiver);
+  }
+
+  /**
+   * Cria um objeto, ainda não inicializado.
+   *
+   * @param className nome interno da classe
+   */
+  public void newObject(String className) {
+    write(NEW);
+    writeShort(pool.classRef(className));
+    stack(1);
+  }
+
+  /**
+   * Cria um array de tipo primitivo, com o tamanho no topo da pilha.
+   *
+   * @param type tipo dos elementos, como T_BYTE
+   */
+  public void newArray(int type) {
+    write(NEWARRAY);
+    write(type);
+  }
+
+  /**
+   * Adiciona um desvio para o rótulo.
+   *
+   * @param opcode instrução de desvio
+   * @param label destino do desvio
+   */
+  public void jump(int opcode, Label label) {
+    int position = length;
+    write(opcode);
+    writeShort(0);
+    stack(effect(opcode));
+
+    if (label.stack < 0) label.stack = stack;
+
+    if (label.position >= 0) {
+      patch(position, position + 1, label.position);
+    } else {
+      label.fixups.add(new int[] {position, position + 1});
+    }
+
+    if (opcode == GOTO) stack = -1;
+  }
+
+  /**
+   * Desvia qualquer exceção lançada entre os rótulos início, incluso,
+   * e fim, excluso, para o tratador, que começa com a exceção na pilha.
+   *
+   * @param start início do trecho protegido
+   * @param end fim do trecho protegido
+   * @param handler início do tratador
+   */
+  public void catchAll(Label start, Label end, Label handler) {
+    catchException(start, end, handler, null);
+  }
+
+  /**
+   * Desvia as exceções da classe informada lançadas entre os rótulos
+   * início, incluso, e fim, excluso, para o tratador.
+   *
+   * @param start início do trecho protegido
+   * @param end fim do trecho protegido
+   * @param handler início do tratador
+   * @param className nome interno da classe capturada, ou null para
+   *                  qualquer exceção
+   */
+  public void catchException(Label start, Label end, Label handler,
+      String className) {
+    handlers.add(new Label[] {start, end, handler});
+    catchTypes.add(className != null ? pool.classRef(className) : 0);
+    handler.stack = 1;
+  }
+
+  /**
+   * Marca a posição atual como destino do rótulo.
+   *
+   * @param label rótulo a ser marcado
+   */
+  public void mark(Label label) {
+    label.position = length;
+
+    if (stack < 0) {
+      stack = Math.max(label.stack, 0);
+    } else if (label.stack < 0) {
+      label.stack = stack;
+    }
+
+    for (int[] fixup : label.fixups) {
+      patch(fixup[0], fixup[1], label.position);
+    }
+    label.fixups.clear();
+  }
+
+  /**
+   * Retorna o tamanho atual do código, em bytes.
+   *
+   * @return tamanho do código
+   */
+  public int length() {
+    return length;
+  }
+
+  private void patch(int instruction, int at, int target) {
+    int offset = target - instruction;
+    if (offset < Short.MIN_VALUE || offset > Short.MAX_VALUE) {
+      throw new IllegalStateException("Method code too large.");
+    }
+
+    bytes[at] = (byte) (offset >> 8);
+    bytes[at + 1] = (byte) offset;
+  }
+
+  private void stack(int delta) {
+    if (stack < 0) stack = 0;
+    stack += delta;
+    maxStack = Math.max(maxStack, stack);
+  }
+
+  private void write(int value) {
+    if (length == bytes.length) {
+      if (length >= MAX_LENGTH) {
+        throw new IllegalStateException("Method code too large.");
+      }
+      bytes = Arrays.copyOf(bytes, length * 2);
+    }
+
+    bytes[length++] = (byte) value;
+  }
+
+  private void writeShort(int value) {
+    write(value >> 8);
+    write(value);
+  }
+
+  /**
+   * Escreve o atributo Code, com a tabela de exceções.
+   */
+  void writeTo(DataOutputStream out) throws IOException {
+    if (length > MAX_LENGTH) {
+      throw new IllegalStateException("Method code too large.");
+    }
+
+    out.writeShort(pool.utf8("Code"));
+    out.writeInt(12 + length + 8 * handlers.size());
+    out.writeShort(maxStack);
+    out.writeShort(maxLocals);
+    out.writeInt(length);
+    out.write(bytes, 0, length);
+
+    out.writeShort(handlers.size());
+    for (int i = 0; i < handlers.size(); i++) {
+      for (Label label : handlers.get(i)) {
+        if (label.position < 0) {
+          throw new IllegalStateException("Unmarked exception handler label.");
+        }
+        out.writeShort(label.position);
+      }
+      out.writeShort(catchTypes.get(i));
+    }
+
+    out.writeShort(0);
+  }
+
+  private static int size(char type) {
+    switch (type) {
+      case 'V': return 0;
+      case 'D':
+      case 'J': return 2;
+      default: return 1;
+    }
+  }
+
+  /**
+   * Efeito na altura da pilha das instruções sem operandos
+   * e dos desvios.
+   */
+  private static int effect(int opcode) {
+    switch (opcode) {
+      case ACONST_NULL:
+      case DUP:
+        return 1;
+      case DUP2:
+        return 2;
+      case POP:
+      case ATHROW:
+      case IRETURN:
+      case ARETURN:
+      case BALOAD:
+      case IAND:
+      case IADD:
+      case ISUB:
+      case IMUL:
+      case IDIV:
+      case IREM:
+      case IXOR:
+      case IFEQ:
+      case IFNE:
+      case IFLT:
+      case IFGE:
+      case IFGT:
+      case IFLE:
+        return -1;
+      case POP2:
+      case DRETURN:
+      case DADD:
+      case DSUB:
+      case DMUL:
+      case DDIV:
+      case DREM:
+      case IF_ICMPEQ:
+      case IF_ICMPNE:
+      case IF_ICMPLT:
+      case IF_ICMPGE:
+      case IF_ICMPGT:
+      case IF_ICMPLE:
+      case IF_ACMPEQ:
+      case IF_ACMPNE:
+        return -2;
+      case DCMPL:
+      case DCMPG:
+        return -3;
+      case I2D:
+        return 1;
+      default:
+        return 0;
+    }
+  }
+
+}
@@ -0,0 +1,163 @@
+package br.edu.ufabc.microkotlin.bytecode;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Tabela de constantes de uma classe. Cada constante é adicionada
+ * uma única vez, e as repetidas reutilizam o mesmo índice.
+ */
+class ConstantPool {
+
+  private static final int UTF8 = 1;
+  private static final int INTEGER = 3;
+  private static final int DOUBLE = 6;
+  private static final int CLASS = 7;
+  private static final int STRING = 8;
+  private static final int FIELDREF = 9;
+  private static final int METHODREF = 10;
+  private static final int NAME_AND_TYPE = 12;
+
+  /**
+   * Índice de cada constante já adicionada.
+   */
+  private final Map<String, Integer> indexes = new HashMap<>();
+
+  private final ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+  private final DataOutputStream out = new DataOutputStream(bytes);
+
+  /**
+   * Próximo índice livre; o índice 0 não é utilizado.
+   */
+  private int next = 1;
+
+  int utf8(String value) {
+    Integer index = indexes.get("U" + value);
+    if (index != null) return index;
+
+    try {
+      out.writeByte(UTF8);
+      out.writeUTF(value);
+    } catch (IOException e) {
+      throw new UncheckedIOException(e);
+    }
+
+    return add("U" + value, 1);
+  }
+
+  int integer(int value) {
+    Integer index = indexes.get("I" + value);
+    if (index != null) return index;
+
+    try {
+      out.writeByte(INTEGER);
+      out.writeInt(value);
+    } catch (IOException e) {
+      throw new UncheckedIOException(e);
+    }
+
+    return add("I" + value, 1);
+  }
+
+  int doubleValue(double value) {
+    String key = "D" + Double.doubleToRawLongBits(value);
+    Integer index = indexes.get(key);
+    if (index != null) return index;
+
+    try {
+      out.writeByte(DOUBLE);
+      out.writeDouble(value);
+    } catch (IOException e) {
+      throw new UncheckedIOException(e);
+    }
+
+    return add(key, 2);
+  }
+
+  int classRef(String name) {
+    return reference(CLASS, "C" + name, utf8(name));
+  }
+
+  int string(String value) {
+    return reference(STRING, "S" + value, utf8(value));
+  }
+
+  int fieldRef(String owner, String name, String descriptor) {
+    return member(FIELDREF, owner, name, descriptor);
+  }
+
+  int methodRef(String owner, String name, String descriptor) {
+    return member(METHODREF, owner, name, descriptor);
+  }
+
+  private int member(int tag, String owner, String name, String descriptor) {
+    String key = tag + owner + "." + name + ":" + descriptor;
+    Integer index = indexes.get(key);
+    if (index != null) return index;
+
+    int classIndex = classRef(owner);
+    int nameAndType = nameAndType(name, descriptor);
+    write(tag, classIndex, nameAndType);
+    return add(key, 1);
+  }
+
+  private int nameAndType(String name, String descriptor) {
+    String key = "N" + name + ":" + descriptor;
+    Integer index = indexes.get(key);
+    if (index != null) return index;
+
+    int nameIndex = utf8(name);
+    int descriptorIndex = utf8(descriptor);
+    write(NAME_AND_TYPE, nameIndex, descriptorIndex);
+    return add(key, 1);
+  }
+
+  private int reference(int tag, String key, int target) {
+    Integer index = indexes.get(key);
+    if (index != null) return index;
+
+    try {
+      out.writeByte(tag);
+      out.writeShort(target);
+    } catch (IOException e) {
+      throw new UncheckedIOException(e);
+    }
+
+    return add(key, 1);
+  }
+
+  private void write(int tag, int first, int second) {
+    try {
+      out.writeByte(tag);
+      out.writeShort(first);
+      out.writeShort(second);
+    } catch (IOException e) {
+      throw new UncheckedIOException(e);
+    }
+  }
+
+  private int add(String key, int size) {
+    int index = next;
+    next += size;
+
+    if (next > 0xFFFF) {
+      throw new IllegalStateException("Too many constants in the class.");
+    }
+
+    indexes.put(key, index);
+    return index;
+  }
+
+  /**
+   * Escreve a quantidade de constantes seguida das constantes.
+   */
+  void writeTo(DataOutputStream output) throws IOException {
+    output.writeShort(next);
+    bytes.writeTo(output);
+  }
+
+}
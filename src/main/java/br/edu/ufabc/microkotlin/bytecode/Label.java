@@ -0,0 +1,26 @@
+package br.edu.ufabc.microkotlin.bytecode;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Posição no código de um método, destino de desvios.
+ */
+public class Label {
+
+  /**
+   * Posição no código, ou -1 se ainda não foi marcada.
+   */
+  int position = -1;
+
+  /**
+   * Altura da pilha de operandos neste ponto, ou -1 se desconhecida.
+   */
+  int stack = -1;
+
+  /**
+   * Desvios ainda não resolvidos, como pares (instrução, deslocamento).
+   */
+  final List<int[]> fixups = new ArrayList<>();
+
+}
@@ -0,0 +1,87 @@
+package br.edu.ufabc.microkotlin.bytecode;
+
+/**
+ * Instruções da JVM utilizadas pelo gerador de bytecode e
+ * flags de acesso de classes, campos e métodos.
+ */
+public interface Opcodes {
+
+  int ACC_PUBLIC = 0x0001;
+  int ACC_PRIVATE = 0x0002;
+  int ACC_STATIC = 0x0008;
+  int ACC_FINAL = 0x0010;
+  int ACC_SUPER = 0x0020;
+
+  int ACONST_NULL = 1;
+  int ICONST_M1 = 2;
+  int ICONST_0 = 3;
+  int ICONST_1 = 4;
+  int ICONST_5 = 8;
+  int DCONST_0 = 14;
+  int DCONST_1 = 15;
+  int BIPUSH = 16;
+  int SIPUSH = 17;
+  int LDC = 18;
+  int LDC_W = 19;
+  int LDC2_W = 20;
+  int ILOAD = 21;
+  int DLOAD = 24;
+  int ALOAD = 25;
+  int ISTORE = 54;
+  int DSTORE = 57;
+  int BALOAD = 51;
+  int ASTORE = 58;
+  int POP = 87;
+  int POP2 = 88;
+  int DUP = 89;
+  int DUP2 = 92;
+  int IADD = 96;
+  int DADD = 99;
+  int ISUB = 100;
+  int DSUB = 103;
+  int IMUL = 104;
+  int DMUL = 107;
+  int IDIV = 108;
+  int DDIV = 111;
+  int IREM = 112;
+  int DREM = 115;
+  int INEG = 116;
+  int DNEG = 119;
+  int IAND = 126;
+  int IXOR = 130;
+  int I2D = 135;
+  int I2C = 146;
+  int DCMPL = 151;
+  int DCMPG = 152;
+  int IFEQ = 153;
+  int IFNE = 154;
+  int IFLT = 155;
+  int IFGE = 156;
+  int IFGT = 157;
+  int IFLE = 158;
+  int IF_ICMPEQ = 159;
+  int IF_ICMPNE = 160;
+  int IF_ICMPLT = 161;
+  int IF_ICMPGE = 162;
+  int IF_ICMPGT = 163;
+  int IF_ICMPLE = 164;
+  int IF_ACMPEQ = 165;
+  int IF_ACMPNE = 166;
+  int GOTO = 167;
+  int IRETURN = 172;
+  int DRETURN = 175;
+  int ARETURN = 176;
+  int RETURN = 177;
+  int GETSTATIC = 178;
+  int PUTSTATIC = 179;
+  int INVOKEVIRTUAL = 182;
+  int INVOKESPECIAL = 183;
+  int INVOKESTATIC = 184;
+  int NEW = 187;
+  int NEWARRAY = 188;
+  int ATHROW = 191;
+  int WIDE = 196;
+
+  int T_BYTE = 8;
+
+}
@@ -1,5 +1,7 @@
 package br.edu.ufabc.microkotlin.expr;
 
+import br.edu.ufabc.microkotlin.Kind;
+
 /**
  * Representa as expressões.
  *
@@ -18,6 +20,11 @@ public abstract class Expr {
     R visitVariableExpr(ExprVariable expr);
   }
 
+  /**
+   * Tipo estático da expressão, definido pelo TypeChecker.
+   */
+  public Kind kind;
+
   public abstract <R> R accept(Visitor<R> visitor);
 
 }
@@ -7,6 +7,12 @@ public class ExprAssign extends Expr {
   public Token name;
   public Expr value;
 
+  /**
+   * Escopo e posição da variável, definidos pelo Resolver.
+   */
+  public int depth = -1;
+  public int slot = -1;
+
   public ExprAssign(Token name, Expr value) {
     this.name = name;
     this.value = value;
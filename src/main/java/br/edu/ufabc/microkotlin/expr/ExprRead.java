@@ -2,9 +2,16 @@ package br.edu.ufabc.microkotlin.expr;
 
 public class ExprRead extends Expr {
 
-  public String type;
+  /**
+   * Tipos que podem ser lidos do teclado.
+   */
+  public static enum ReadType {
+    INT, DOUBLE, STRING, BOOLEAN
+  }
+
+  public ReadType type;
 
-  public ExprRead(String type) {
+  public ExprRead(ReadType type) {
     this.type = type;
   }
 
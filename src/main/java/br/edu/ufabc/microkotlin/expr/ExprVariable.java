@@ -6,6 +6,12 @@ public class ExprVariable extends Expr {
 
   public Token name;
 
+  /**
+   * Escopo e posição da variável, definidos pelo Resolver.
+   */
+  public int depth = -1;
+  public int slot = -1;
+
   public ExprVariable(Token name) {
     this.name = name;
   }
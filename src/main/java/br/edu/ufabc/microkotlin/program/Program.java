@@ -1,6 +1,7 @@
 package br.edu.ufabc.microkotlin.program;
 
 import java.util.List;
+import br.edu.ufabc.microkotlin.Outliner;
 import br.edu.ufabc.microkotlin.stmt.Stmt;
 import br.edu.ufabc.microkotlin.stmt.StmtVal;
 
@@ -18,6 +19,19 @@ public class Program {
   public final List<StmtVal> constants;
   public final List<Stmt> statements;
 
+  /**
+   * Quantidade de constantes e variáveis do escopo global e
+   * profundidade máxima dos escopos, definidas pelo Resolver.
+   */
+  public int globals = 0;
+  public int maxDepth = 0;
+
+  /**
+   * Métodos gerados que executam os comandos do main, ou null caso
+   * eles fiquem no próprio main. Definidos pelo Outliner.
+   */
+  public List<Outliner.Method> methods;
+
   public Program(List<StmtVal> constants, List<Stmt> statements) {
     this.constants = constants;
     this.statements = statements;
@@ -1,11 +1,25 @@
 package br.edu.ufabc.microkotlin.stmt;
 
 import java.util.List;
+import br.edu.ufabc.microkotlin.Outliner;
 
 public class StmtBlock extends Stmt {
 
   public final List<Stmt> statements;
 
+  /**
+   * Escopo do bloco e quantidade de variáveis declaradas
+   * diretamente nele, definidos pelo Resolver.
+   */
+  public int depth = -1;
+  public int locals = 0;
+
+  /**
+   * Métodos gerados que executam os comandos do bloco, ou null caso
+   * eles fiquem no próprio bloco. Definidos pelo Outliner.
+   */
+  public List<Outliner.Method> methods;
+
   public StmtBlock(List<Stmt> statements) {
     this.statements = statements;
   }
@@ -9,6 +9,12 @@ public class StmtVal extends Stmt {
   public final Token type;
   public final Expr initializer;
 
+  /**
+   * Escopo e posição da variável, definidos pelo Resolver.
+   */
+  public int depth = -1;
+  public int slot = -1;
+
   public StmtVal(Token name, Token type, Expr initializer) {
     this.name = name;
     this.type = type;
@@ -9,6 +9,26 @@ public class StmtVar extends Stmt {
   public final Token type;
   public final Expr initializer;
 
+  /**
+   * Escopo e posição da variável, definidos pelo Resolver.
+   */
+  public int depth = -1;
+  public int slot = -1;
+
+  /**
+   * Indica se a variável é uma String acumulada em um laço, que os
+   * backends guardam em um StringBuilder. Definido pelo
+   * AccumulatorFinder.
+   */
+  public boolean accumulator;
+
+  /**
+   * Nome do campo estático que guarda a variável, caso ela seja usada
+   * por um método gerado diferente daquele em que foi declarada.
+   * Definido pelo Outliner.
+   */
+  public String field;
+
   public StmtVar(Token name, Token type, Expr initializer) {
     this.name = name;
     this.type = type;
@@ -0,0 +1,200 @@
+package br.edu.ufabc.microkotlin.vm;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Monta o vetor de instruções de um Chunk, guardando as constantes
+ * sem repetição, resolvendo os desvios e calculando a altura máxima
+ * de cada pilha.
+ */
+public class Assembler {
+
+  private int[] code = new int[256];
+  private int length = 0;
+
+  private int[] lines = new int[32];
+  private int lineCount = 0;
+  private int line = 0;
+
+  private final Map<Double, Integer> numberIndexes = new HashMap<>();
+  private final Map<String, Integer> stringIndexes = new HashMap<>();
+  private double[] numbers = new double[8];
+  private String[] strings = new String[8];
+
+  /**
+   * Altura atual e máxima das pilhas de int, de double e de objetos.
+   * Após um desvio incondicional, a altura atual é desconhecida até
+   * a marcação do próximo rótulo.
+   */
+  private final int[] stacks = new int[3];
+  private final int[] maxStacks = new int[3];
+  private boolean reachable = true;
+
+  /**
+   * Define a linha do código-fonte das próximas instruções.
+   *
+   * @param line linha do código-fonte
+   */
+  public void line(int line) {
+    this.line = line;
+  }
+
+  /**
+   * Adiciona uma instrução.
+   *
+   * @param op instrução
+   * @param operands operandos da instrução
+   */
+  public void op(int op, int... operands) {
+    if (operands.length != Op.operands(op)) {
+      throw new IllegalArgumentException("Wrong operands for " + Op.name(op));
+    }
+
+    if (lineCount == 0 || lines[lineCount - 1] != line) {
+      if (lineCount + 2 > lines.length) {
+        lines = Arrays.copyOf(lines, lines.length * 2);
+      }
+      lines[lineCount++] = length;
+      lines[lineCount++] = line;
+    }
+
+    emit(op);
+    for (int operand : operands) emit(operand);
+
+    if (!reachable) {
+      Arrays.fill(stacks, 0);
+      reachable = true;
+    }
+
+    for (int i = 0; i < stacks.length; i++) {
+      stacks[i] += Op.effect(op, i);
+      maxStacks[i] = Math.max(maxStacks[i], stacks[i]);
+    }
+
+    if (op == Op.JUMP || op == Op.HALT) reachable = false;
+  }
+
+  private void emit(int value) {
+    if (length == code.length) code = Arrays.copyOf(code, length * 2);
+    code[length++] = value;
+  }
+
+  /**
+   * Empilha uma constante Double.
+   *
+   * @param value valor da constante
+   */
+  public void pushDouble(double value) {
+    Integer index = numberIndexes.get(value);
+
+    if (index == null) {
+      index = numberIndexes.size();
+      if (index == numbers.length) {
+        numbers = Arrays.copyOf(numbers, index * 2);
+      }
+      numbers[index] = value;
+      numberIndexes.put(value, index);
+    }
+
+    op(Op.DCONST, index);
+  }
+
+  /**
+   * Empilha uma constante String, ou null.
+   *
+   * @param value valor da constante
+   */
+  public void pushString(String value) {
+    if (value == null) {
+      op(Op.NULL);
+      return;
+    }
+
+    Integer index = stringIndexes.get(value);
+
+    if (index == null) {
+      index = stringIndexes.size();
+      if (index == strings.length) {
+        strings = Arrays.copyOf(strings, index * 2);
+      }
+      // Os literais iguais são a mesma String, como no código Java.
+      strings[index] = value.intern();
+      stringIndexes.put(value, index);
+    }
+
+    op(Op.SCONST, index);
+  }
+
+  /**
+   * Adiciona um desvio para o rótulo, ainda que não tenha sido marcado.
+   *
+   * @param op instrução de desvio
+   * @param label destino do desvio
+   */
+  public void jump(int op, Label label) {
+    if (!Op.isJump(op)) {
+      throw new IllegalArgumentException(Op.name(op) + " is not a jump");
+    }
+
+    op(op, Math.max(label.position, 0));
+
+    if (label.position < 0) label.fixups.add(length - 1);
+    if (label.stacks == null) label.stacks = stacks.clone();
+  }
+
+  /**
+   * Marca a posição atual como destino do rótulo.
+   *
+   * @param label rótulo a ser marcado
+   */
+  public void mark(Label label) {
+    label.position = length;
+
+    for (int fixup : label.fixups) {
+      code[fixup] = length;
+    }
+    label.fixups.clear();
+
+    if (!reachable) {
+      if (label.stacks != null) {
+        System.arraycopy(label.stacks, 0, stacks, 0, stacks.length);
+      } else {
+        Arrays.fill(stacks, 0);
+      }
+      reachable = true;
+    } else if (label.stacks == null) {
+      label.stacks = stacks.clone();
+    }
+  }
+
+  /**
+   * Posição da próxima instrução.
+   *
+   * @return tamanho atual do código
+   */
+  public int length() {
+    return length;
+  }
+
+  /**
+   * Encerra o programa com a instrução halt e cria o Chunk.
+   *
+   * @param intLocals posições locais de Int e Boolean
+   * @param doubleLocals posições locais de Double
+   * @param stringLocals posições locais de String
+   * @return programa montado
+   */
+  public Chunk finish(int intLocals, int doubleLocals, int stringLocals) {
+    op(Op.HALT);
+
+    return new Chunk(Arrays.copyOf(code, length),
+        Arrays.copyOf(lines, lineCount),
+        Arrays.copyOf(numbers, numberIndexes.size()),
+        Arrays.copyOf(strings, stringIndexes.size()),
+        intLocals, doubleLocals, stringLocals,
+        maxStacks[0], maxStacks[1], maxStacks[2]);
+  }
+
+}
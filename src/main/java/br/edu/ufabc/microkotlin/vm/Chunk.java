@@ -0,0 +1,280 @@
+package br.edu.ufabc.microkotlin.vm;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Programa compilado para a máquina virtual: o vetor de instruções,
+ * as constantes, a tabela de linhas e a quantidade de posições locais
+ * e de pilha de cada tipo.
+ *
+ * Pode ser gravado em um arquivo .mkbc e lido novamente, sem repetir
+ * a compilação. Ao ler, as instruções e os seus operandos são
+ * verificados, de modo que um arquivo corrompido seja rejeitado antes
+ * da execução.
+ */
+public final class Chunk {
+
+  /**
+   * Início dos arquivos, "MKBC".
+   */
+  private static final int MAGIC = 0x4D4B4243;
+
+  /**
+   * Versão do formato, alterada a cada mudança nas instruções.
+   */
+  public static final int VERSION = 1;
+
+  final int[] code;
+
+  /**
+   * Pares (posição no código, linha), em ordem crescente de posição.
+   */
+  final int[] lines;
+
+  final double[] numbers;
+  final String[] strings;
+
+  /**
+   * Quantidade de posições locais de Int e Boolean, de Double e de
+   * String.
+   */
+  final int intLocals;
+  final int doubleLocals;
+  final int stringLocals;
+
+  /**
+   * Altura máxima das pilhas de int, de double e de objetos.
+   */
+  final int intStack;
+  final int doubleStack;
+  final int objectStack;
+
+  Chunk(int[] code, int[] lines, double[] numbers, String[] strings,
+      int intLocals, int doubleLocals, int stringLocals, int intStack,
+      int doubleStack, int objectStack) {
+    this.code = code;
+    this.lines = lines;
+    this.numbers = numbers;
+    this.strings = strings;
+    this.intLocals = intLocals;
+    this.doubleLocals = doubleLocals;
+    this.stringLocals = stringLocals;
+    this.intStack = intStack;
+    this.doubleStack = doubleStack;
+    this.objectStack = objectStack;
+  }
+
+  /**
+   * Quantidade de posições do vetor de código.
+   *
+   * @return tamanho do código
+   */
+  public int length() {
+    return code.length;
+  }
+
+  /**
+   * Obtém a linha do código-fonte de uma instrução.
+   *
+   * @param pc posição da instrução
+   * @return linha da instrução, ou 0 se desconhecida
+   */
+  public int line(int pc) {
+    int line = 0;
+
+    for (int i = 0; i < lines.length && lines[i] <= pc; i += 2) {
+      line = lines[i + 1];
+    }
+
+    return line;
+  }
+
+  /**
+   * Grava o programa no formato .mkbc.
+   *
+   * @param output destino
+   * @throws IOException caso haja algum erro de escrita
+   */
+  public void write(OutputStream output) throws IOException {
+    DataOutputStream out = new DataOutputStream(output);
+    out.writeInt(MAGIC);
+    out.writeInt(VERSION);
+
+    out.writeInt(intLocals);
+    out.writeInt(doubleLocals);
+    out.writeInt(stringLocals);
+    out.writeInt(intStack);
+    out.writeInt(doubleStack);
+    out.writeInt(objectStack);
+
+    out.writeInt(numbers.length);
+    for (double number : numbers) out.writeDouble(number);
+
+    out.writeInt(strings.length);
+    for (String string : strings) {
+      byte[] bytes = string.getBytes(StandardCharsets.UTF_8);
+      out.writeInt(bytes.length);
+      out.write(bytes);
+    }
+
+    out.writeInt(lines.length);
+    for (int value : lines) out.writeInt(value);
+
+    out.writeInt(code.length);
+    for (int value : code) out.writeInt(value);
+
+    out.flush();
+  }
+
+  /**
+   * Grava o programa no formato .mkbc em memória.
+   *
+   * @return bytes do programa
+   */
+  public byte[] toByteArray() {
+    ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+
+    try {
+      write(bytes);
+    } catch (IOException e) {
+      throw new IllegalStateException(e);
+    }
+
+    return bytes.toByteArray();
+  }
+
+  /**
+   * Lê e verifica um programa no formato .mkbc.
+   *
+   * @param input origem
+   * @return programa lido
+   * @throws IOException caso o arquivo seja inválido ou haja algum
+   *                     erro de leitura
+   */
+  public static Chunk read(InputStream input) throws IOException {
+    try {
+      return readChunk(new DataInputStream(input));
+    } catch (EOFException e) {
+      throw new IOException("Truncated bytecode file.");
+    }
+  }
+
+  private static Chunk readChunk(DataInputStream in) throws IOException {
+    if (in.readInt() != MAGIC) {
+      throw new IOException("Not a MicroKotlin bytecode file.");
+    }
+
+    int version = in.readInt();
+    if (version != VERSION) {
+      throw new IOException("Unsupported bytecode version " + version + ".");
+    }
+
+    int intLocals = count(in);
+    int doubleLocals = count(in);
+    int stringLocals = count(in);
+    int intStack = count(in);
+    int doubleStack = count(in);
+    int objectStack = count(in);
+
+    double[] numbers = new double[count(in)];
+    for (int i = 0; i < numbers.length; i++) numbers[i] = in.readDouble();
+
+    String[] strings = new String[count(in)];
+    for (int i = 0; i < strings.length; i++) {
+      byte[] bytes = new byte[count(in)];
+      in.readFully(bytes);
+      // Os literais iguais são a mesma String, como no código Java.
+      strings[i] = new String(bytes, StandardCharsets.UTF_8).intern();
+    }
+
+    int[] lines = new int[count(in)];
+    for (int i = 0; i < lines.length; i++) lines[i] = in.readInt();
+
+    int[] code = new int[count(in)];
+    for (int i = 0; i < code.length; i++) code[i] = in.readInt();
+
+    Chunk chunk = new Chunk(code, lines, numbers, strings, intLocals,
+        doubleLocals, stringLocals, intStack, doubleStack, objectStack);
+    chunk.verify();
+    return chunk;
+  }
+
+  private static int count(DataInputStream in) throws IOException {
+    int value = in.readInt();
+    if (value < 0) throw new IOException("Invalid bytecode file.");
+    return value;
+  }
+
+  /**
+   * Verifica se as instruções e os operandos são válidos. As alturas
+   * das pilhas não são verificadas; um acesso fora delas é informado
+   * como erro pela VirtualMachine.
+   *
+   * @throws IOException caso alguma instrução seja inválida
+   */
+  private void verify() throws IOException {
+    boolean[] starts = new boolean[code.length];
+    int pc = 0;
+
+    while (pc < code.length) {
+      int op = code[pc];
+      if (!Op.isValid(op) || pc + Op.operands(op) >= code.length) {
+        throw invalid(pc);
+      }
+
+      starts[pc] = true;
+      pc += 1 + Op.operands(op);
+    }
+
+    if (code.length == 0 || !starts[code.length - 1]
+        || code[code.length - 1] != Op.HALT) {
+      throw new IOException("Invalid bytecode: missing halt.");
+    }
+
+    for (pc = 0; pc < code.length; pc += 1 + Op.operands(code[pc])) {
+      int op = code[pc];
+      int operand = Op.operands(op) > 0 ? code[pc + 1] : 0;
+      boolean valid;
+
+      switch (op) {
+        case Op.DCONST:
+          valid = operand >= 0 && operand < numbers.length;
+          break;
+        case Op.SCONST:
+          valid = operand >= 0 && operand < strings.length;
+          break;
+        case Op.ILOAD:
+        case Op.ISTORE:
+        case Op.IINC:
+          valid = operand >= 0 && operand < intLocals;
+          break;
+        case Op.DLOAD:
+        case Op.DSTORE:
+          valid = operand >= 0 && operand < doubleLocals;
+          break;
+        case Op.SLOAD:
+        case Op.SSTORE:
+          valid = operand >= 0 && operand < stringLocals;
+          break;
+        default:
+          valid = !Op.isJump(op)
+              || operand >= 0 && operand < code.length && starts[operand];
+          break;
+      }
+
+      if (!valid) throw invalid(pc);
+    }
+  }
+
+  private static IOException invalid(int pc) {
+    return new IOException("Invalid bytecode at " + pc + ".");
+  }
+
+}
@@ -0,0 +1,57 @@
+package br.edu.ufabc.microkotlin.vm;
+
+/**
+ * Gera a listagem legível de um Chunk: uma instrução por linha, com a
+ * posição, a linha do código-fonte quando muda, o nome e os operandos,
+ * e o valor das constantes como comentário.
+ */
+public final class Disassembler {
+
+  private Disassembler() {}
+
+  /**
+   * Gera a listagem do programa.
+   *
+   * @param chunk programa compilado
+   * @return listagem, terminada por uma nova linha
+   */
+  public static String disassemble(Chunk chunk) {
+    StringBuilder builder = new StringBuilder();
+    builder.append(String.format(
+        "; locals: int %d, double %d, String %d%n",
+        chunk.intLocals, chunk.doubleLocals, chunk.stringLocals));
+    builder.append(String.format(
+        "; stacks: int %d, double %d, object %d%n",
+        chunk.intStack, chunk.doubleStack, chunk.objectStack));
+
+    int line = -1;
+    for (int pc = 0; pc < chunk.code.length;) {
+      int op = chunk.code[pc];
+      int current = chunk.line(pc);
+
+      builder.append(String.format("%04d ", pc));
+      builder.append(current != line
+          ? String.format("%4d ", current)
+          : "   | ");
+      line = current;
+
+      builder.append(Op.name(op));
+      for (int i = 1; i <= Op.operands(op); i++) {
+        builder.append(' ').append(chunk.code[pc + i]);
+      }
+
+      if (op == Op.DCONST) {
+        builder.append("  ; ").append(chunk.numbers[chunk.code[pc + 1]]);
+      } else if (op == Op.SCONST) {
+        builder.append("  ; \"").append(chunk.strings[chunk.code[pc + 1]])
+            .append('"');
+      }
+
+      builder.append(System.lineSeparator());
+      pc += 1 + Op.operands(op);
+    }
+
+    return builder.toString();
+  }
+
+}
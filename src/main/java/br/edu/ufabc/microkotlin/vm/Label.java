@@ -0,0 +1,27 @@
+package br.edu.ufabc.microkotlin.vm;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Posição no código, destino de desvios.
+ */
+public class Label {
+
+  /**
+   * Posição no código, ou -1 se ainda não foi marcada.
+   */
+  int position = -1;
+
+  /**
+   * Altura das pilhas de int, de double e de objetos neste ponto,
+   * ou null se desconhecida.
+   */
+  int[] stacks;
+
+  /**
+   * Posições dos operandos dos desvios ainda não resolvidos.
+   */
+  final List<Integer> fixups = new ArrayList<>();
+
+}
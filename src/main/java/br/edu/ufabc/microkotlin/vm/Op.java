@@ -0,0 +1,252 @@
+package br.edu.ufabc.microkotlin.vm;
+
+/**
+ * Instruções da máquina virtual.
+ *
+ * Cada instrução ocupa uma posição do vetor de código, seguida dos
+ * seus operandos inteiros. Os valores Int e Boolean ficam na pilha de
+ * int, os Double na pilha de double e as Strings e os StringBuilder
+ * das concatenações na pilha de objetos, de modo que as instruções
+ * são especializadas pelo tipo e não precisam verificá-lo.
+ */
+public final class Op {
+
+  public static final int HALT = 0;
+
+  /** Empilha o operando. */
+  public static final int ICONST = 1;
+  /** Empilham a constante do índice informado. */
+  public static final int DCONST = 2;
+  public static final int SCONST = 3;
+  public static final int NULL = 4;
+
+  /** Empilham ou desempilham a variável da posição informada. */
+  public static final int ILOAD = 5;
+  public static final int DLOAD = 6;
+  public static final int SLOAD = 7;
+  public static final int ISTORE = 8;
+  public static final int DSTORE = 9;
+  public static final int SSTORE = 10;
+
+  /** Soma o segundo operando à variável Int da posição informada. */
+  public static final int IINC = 11;
+
+  public static final int IDUP = 12;
+  public static final int DDUP = 13;
+  public static final int SDUP = 14;
+  public static final int IPOP = 15;
+  public static final int DPOP = 16;
+  public static final int SPOP = 17;
+
+  public static final int IADD = 18;
+  public static final int ISUB = 19;
+  public static final int IMUL = 20;
+  public static final int IDIV = 21;
+  public static final int IREM = 22;
+  public static final int INEG = 23;
+  public static final int DADD = 24;
+  public static final int DSUB = 25;
+  public static final int DMUL = 26;
+  public static final int DDIV = 27;
+  public static final int DREM = 28;
+  public static final int DNEG = 29;
+  public static final int I2D = 30;
+
+  /** Comparações, que empilham 1 ou 0 na pilha de int. */
+  public static final int IEQ = 31;
+  public static final int INE = 32;
+  public static final int ILT = 33;
+  public static final int ILE = 34;
+  public static final int IGT = 35;
+  public static final int IGE = 36;
+  public static final int DEQ = 37;
+  public static final int DNE = 38;
+  public static final int DLT = 39;
+  public static final int DLE = 40;
+  public static final int DGT = 41;
+  public static final int DGE = 42;
+  public static final int SEQ = 43;
+  public static final int SNE = 44;
+  public static final int NOT = 45;
+
+  /** Desvios para a posição informada. */
+  public static final int JUMP = 46;
+  public static final int JUMPF = 47;
+  public static final int JUMPT = 48;
+
+  /** Comparam dois Int e desviam caso a comparação seja verdadeira. */
+  public static final int JEQ = 49;
+  public static final int JNE = 50;
+  public static final int JLT = 51;
+  public static final int JLE = 52;
+  public static final int JGT = 53;
+  public static final int JGE = 54;
+
+  /** Imprimem o valor, seguido de uma nova linha se o operando é 1. */
+  public static final int PRINTI = 55;
+  public static final int PRINTD = 56;
+  public static final int PRINTZ = 57;
+  public static final int PRINTS = 58;
+
+  /** Concatenação: cria o StringBuilder, adiciona os valores e o
+   *  converte para String. */
+  public static final int SBNEW = 59;
+  public static final int SBI = 60;
+  public static final int SBD = 61;
+  public static final int SBZ = 62;
+  public static final int SBS = 63;
+  public static final int SBEND = 64;
+
+  public static final int READI = 65;
+  public static final int READD = 66;
+  public static final int READZ = 67;
+  public static final int READS = 68;
+
+  /**
+   * Quantidade de instruções.
+   */
+  public static final int COUNT = 69;
+
+  private static final String[] NAMES = new String[COUNT];
+  private static final int[] OPERANDS = new int[COUNT];
+
+  /**
+   * Efeito de cada instrução na altura das pilhas de int, de double
+   * e de objetos.
+   */
+  private static final int[][] EFFECTS = new int[COUNT][];
+
+  static {
+    define(HALT, "halt", 0, 0, 0, 0);
+    define(ICONST, "iconst", 1, 1, 0, 0);
+    define(DCONST, "dconst", 1, 0, 1, 0);
+    define(SCONST, "sconst", 1, 0, 0, 1);
+    define(NULL, "null", 0, 0, 0, 1);
+    define(ILOAD, "iload", 1, 1, 0, 0);
+    define(DLOAD, "dload", 1, 0, 1, 0);
+    define(SLOAD, "sload", 1, 0, 0, 1);
+    define(ISTORE, "istore", 1, -1, 0, 0);
+    define(DSTORE, "dstore", 1, 0, -1, 0);
+    define(SSTORE, "sstore", 1, 0, 0, -1);
+    define(IINC, "iinc", 2, 0, 0, 0);
+    define(IDUP, "idup", 0, 1, 0, 0);
+    define(DDUP, "ddup", 0, 0, 1, 0);
+    define(SDUP, "sdup", 0, 0, 0, 1);
+    define(IPOP, "ipop", 0, -1, 0, 0);
+    define(DPOP, "dpop", 0, 0, -1, 0);
+    define(SPOP, "spop", 0, 0, 0, -1);
+    define(IADD, "iadd", 0, -1, 0, 0);
+    define(ISUB, "isub", 0, -1, 0, 0);
+    define(IMUL, "imul", 0, -1, 0, 0);
+    define(IDIV, "idiv", 0, -1, 0, 0);
+    define(IREM, "irem", 0, -1, 0, 0);
+    define(INEG, "ineg", 0, 0, 0, 0);
+    define(DADD, "dadd", 0, 0, -1, 0);
+    define(DSUB, "dsub", 0, 0, -1, 0);
+    define(DMUL, "dmul", 0, 0, -1, 0);
+    define(DDIV, "ddiv", 0, 0, -1, 0);
+    define(DREM, "drem", 0, 0, -1, 0);
+    define(DNEG, "dneg", 0, 0, 0, 0);
+    define(I2D, "i2d", 0, -1, 1, 0);
+    define(IEQ, "ieq", 0, -1, 0, 0);
+    define(INE, "ine", 0, -1, 0, 0);
+    define(ILT, "ilt", 0, -1, 0, 0);
+    define(ILE, "ile", 0, -1, 0, 0);
+    define(IGT, "igt", 0, -1, 0, 0);
+    define(IGE, "ige", 0, -1, 0, 0);
+    define(DEQ, "deq", 0, 1, -2, 0);
+    define(DNE, "dne", 0, 1, -2, 0);
+    define(DLT, "dlt", 0, 1, -2, 0);
+    define(DLE, "dle", 0, 1, -2, 0);
+    define(DGT, "dgt", 0, 1, -2, 0);
+    define(DGE, "dge", 0, 1, -2, 0);
+    define(SEQ, "seq", 0, 1, 0, -2);
+    define(SNE, "sne", 0, 1, 0, -2);
+    define(NOT, "not", 0, 0, 0, 0);
+    define(JUMP, "jump", 1, 0, 0, 0);
+    define(JUMPF, "jumpf", 1, -1, 0, 0);
+    define(JUMPT, "jumpt", 1, -1, 0, 0);
+    define(JEQ, "jeq", 1, -2, 0, 0);
+    define(JNE, "jne", 1, -2, 0, 0);
+    define(JLT, "jlt", 1, -2, 0, 0);
+    define(JLE, "jle", 1, -2, 0, 0);
+    define(JGT, "jgt", 1, -2, 0, 0);
+    define(JGE, "jge", 1, -2, 0, 0);
+    define(PRINTI, "printi", 1, -1, 0, 0);
+    define(PRINTD, "printd", 1, 0, -1, 0);
+    define(PRINTZ, "printz", 1, -1, 0, 0);
+    define(PRINTS, "prints", 1, 0, 0, -1);
+    define(SBNEW, "sbnew", 0, 0, 0, 1);
+    define(SBI, "sbi", 0, -1, 0, 0);
+    define(SBD, "sbd", 0, 0, -1, 0);
+    define(SBZ, "sbz", 0, -1, 0, 0);
+    define(SBS, "sbs", 0, 0, 0, -1);
+    define(SBEND, "sbend", 0, 0, 0, 0);
+    define(READI, "readi", 0, 1, 0, 0);
+    define(READD, "readd", 0, 0, 1, 0);
+    define(READZ, "readz", 0, 1, 0, 0);
+    define(READS, "reads", 0, 0, 0, 1);
+  }
+
+  private Op() {}
+
+  private static void define(int op, String name, int operands,
+      int ints, int doubles, int objects) {
+    NAMES[op] = name;
+    OPERANDS[op] = operands;
+    EFFECTS[op] = new int[] {ints, doubles, objects};
+  }
+
+  /**
+   * Nome da instrução, usado pelo Disassembler.
+   *
+   * @param op instrução
+   * @return nome da instrução
+   */
+  public static String name(int op) {
+    return NAMES[op];
+  }
+
+  /**
+   * Quantidade de operandos que seguem a instrução.
+   *
+   * @param op instrução
+   * @return quantidade de operandos
+   */
+  public static int operands(int op) {
+    return OPERANDS[op];
+  }
+
+  /**
+   * Efeito da instrução na altura de uma das pilhas.
+   *
+   * @param op instrução
+   * @param stack 0 para a pilha de int, 1 para a de double e 2 para
+   *              a de objetos
+   * @return variação da altura da pilha
+   */
+  public static int effect(int op, int stack) {
+    return EFFECTS[op][stack];
+  }
+
+  /**
+   * Determina se a instrução é um desvio, cujo operando é o destino.
+   *
+   * @param op instrução
+   * @return verdadeiro se a instrução é um desvio
+   */
+  public static boolean isJump(int op) {
+    return op >= JUMP && op <= JGE;
+  }
+
+  /**
+   * Determina se a instrução é válida.
+   *
+   * @param op instrução
+   * @return verdadeiro se a instrução existe
+   */
+  public static boolean isValid(int op) {
+    return op >= 0 && op < COUNT;
+  }
+
+}
@@ -0,0 +1,382 @@
+package br.edu.ufabc.microkotlin.vm;
+
+import java.io.BufferedReader;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.PrintStream;
+import java.util.InputMismatchException;
+import java.util.NoSuchElementException;
+
+/**
+ * Executa um Chunk em um único laço de despacho.
+ *
+ * As variáveis e as pilhas são vetores de int, de double e de objetos,
+ * guardados em variáveis locais do laço, de modo que os valores Int e
+ * Double nunca são convertidos em objetos. Os vetores são criados com
+ * as alturas máximas calculadas pelo Assembler.
+ */
+public class VirtualMachine {
+
+  /**
+   * Erro na execução do programa, com a linha do código-fonte e, quando
+   * causado por um operador, o seu lexema, deduzido da instrução.
+   */
+  @SuppressWarnings("serial")
+  public static class VmException extends RuntimeException {
+    public final int line;
+    public final String operator;
+
+    VmException(int line, String message) {
+      this(line, null, message);
+    }
+
+    VmException(int line, String operator, String message) {
+      super(message);
+      this.line = line;
+      this.operator = operator;
+    }
+  }
+
+  private final InputStream in;
+  private final PrintStream out;
+
+  public VirtualMachine(InputStream in, PrintStream out) {
+    this.in = in;
+    this.out = out;
+  }
+
+  /**
+   * Executa o programa.
+   *
+   * @param chunk programa a ser executado
+   * @throws VmException caso haja algum erro na execução
+   */
+  public void run(Chunk chunk) {
+    try {
+      execute(chunk);
+    } catch (ArrayIndexOutOfBoundsException | ClassCastException e) {
+      // Só ocorre com um arquivo .mkbc montado incorretamente.
+      throw new VmException(0, "Invalid bytecode.");
+    } finally {
+      out.flush();
+    }
+  }
+
+  /**
+   * Laço de despacho.
+   */
+  private void execute(Chunk chunk) {
+    final int[] code = chunk.code;
+    final double[] numbers = chunk.numbers;
+    final String[] strings = chunk.strings;
+
+    final int[] ilocals = new int[chunk.intLocals];
+    final double[] dlocals = new double[chunk.doubleLocals];
+    final String[] slocals = new String[chunk.stringLocals];
+
+    final int[] istack = new int[chunk.intStack];
+    final double[] dstack = new double[chunk.doubleStack];
+    final Object[] ostack = new Object[chunk.objectStack];
+    int isp = 0;
+    int dsp = 0;
+    int osp = 0;
+
+    java.util.Scanner input = null;
+    int pc = 0;
+
+    for (;;) {
+      int start = pc;
+
+      switch (code[pc++]) {
+        case Op.HALT:
+          return;
+
+        case Op.ICONST:
+          istack[isp++] = code[pc++];
+          break;
+        case Op.DCONST:
+          dstack[dsp++] = numbers[code[pc++]];
+          break;
+        case Op.SCONST:
+          ostack[osp++] = strings[code[pc++]];
+          break;
+        case Op.NULL:
+          ostack[osp++] = null;
+          break;
+
+        case Op.ILOAD:
+          istack[isp++] = ilocals[code[pc++]];
+          break;
+        case Op.DLOAD:
+          dstack[dsp++] = dlocals[code[pc++]];
+          break;
+        case Op.SLOAD:
+          ostack[osp++] = slocals[code[pc++]];
+          break;
+        case Op.ISTORE:
+          ilocals[code[pc++]] = istack[--isp];
+          break;
+        case Op.DSTORE:
+          dlocals[code[pc++]] = dstack[--dsp];
+          break;
+        case Op.SSTORE:
+          slocals[code[pc++]] = (String) ostack[--osp];
+          ostack[osp] = null;
+          break;
+        case Op.IINC:
+          ilocals[code[pc]] += code[pc + 1];
+          pc += 2;
+          break;
+
+        case Op.IDUP:
+          istack[isp] = istack[isp - 1];
+          isp++;
+          break;
+        case Op.DDUP:
+          dstack[dsp] = dstack[dsp - 1];
+          dsp++;
+          break;
+        case Op.SDUP:
+          ostack[osp] = ostack[osp - 1];
+          osp++;
+          break;
+        case Op.IPOP:
+          isp--;
+          break;
+        case Op.DPOP:
+          dsp--;
+          break;
+        case Op.SPOP:
+          ostack[--osp] = null;
+          break;
+
+        case Op.IADD:
+          isp--;
+          istack[isp - 1] += istack[isp];
+          break;
+        case Op.ISUB:
+          isp--;
+          istack[isp - 1] -= istack[isp];
+          break;
+        case Op.IMUL:
+          isp--;
+          istack[isp - 1] *= istack[isp];
+          break;
+        case Op.IDIV:
+          isp--;
+          if (istack[isp] == 0) {
+            throw new VmException(chunk.line(start), "/",
+                "Division by zero.");
+          }
+          istack[isp - 1] /= istack[isp];
+          break;
+        case Op.IREM:
+          isp--;
+          if (istack[isp] == 0) {
+            throw new VmException(chunk.line(start), "%",
+                "Division by zero.");
+          }
+          istack[isp - 1] %= istack[isp];
+          break;
+        case Op.INEG:
+          istack[isp - 1] = -istack[isp - 1];
+          break;
+        case Op.DADD:
+          dsp--;
+          dstack[dsp - 1] += dstack[dsp];
+          break;
+        case Op.DSUB:
+          dsp--;
+          dstack[dsp - 1] -= dstack[dsp];
+          break;
+        case Op.DMUL:
+          dsp--;
+          dstack[dsp - 1] *= dstack[dsp];
+          break;
+        case Op.DDIV:
+          dsp--;
+          dstack[dsp - 1] /= dstack[dsp];
+          break;
+        case Op.DREM:
+          dsp--;
+          dstack[dsp - 1] %= dstack[dsp];
+          break;
+        case Op.DNEG:
+          dstack[dsp - 1] = -dstack[dsp - 1];
+          break;
+        case Op.I2D:
+          dstack[dsp++] = istack[--isp];
+          break;
+
+        case Op.IEQ:
+          isp--;
+          istack[isp - 1] = istack[isp - 1] == istack[isp] ? 1 : 0;
+          break;
+        case Op.INE:
+          isp--;
+          istack[isp - 1] = istack[isp - 1] != istack[isp] ? 1 : 0;
+          break;
+        case Op.ILT:
+          isp--;
+          istack[isp - 1] = istack[isp - 1] < istack[isp] ? 1 : 0;
+          break;
+        case Op.ILE:
+          isp--;
+          istack[isp - 1] = istack[isp - 1] <= istack[isp] ? 1 : 0;
+          break;
+        case Op.IGT:
+          isp--;
+          istack[isp - 1] = istack[isp - 1] > istack[isp] ? 1 : 0;
+          break;
+        case Op.IGE:
+          isp--;
+          istack[isp - 1] = istack[isp - 1] >= istack[isp] ? 1 : 0;
+          break;
+        case Op.DEQ:
+          dsp -= 2;
+          istack[isp++] = dstack[dsp] == dstack[dsp + 1] ? 1 : 0;
+          break;
+        case Op.DNE:
+          dsp -= 2;
+          istack[isp++] = dstack[dsp] != dstack[dsp + 1] ? 1 : 0;
+          break;
+        case Op.DLT:
+          dsp -= 2;
+          istack[isp++] = dstack[dsp] < dstack[dsp + 1] ? 1 : 0;
+          break;
+        case Op.DLE:
+          dsp -= 2;
+          istack[isp++] = dstack[dsp] <= dstack[dsp + 1] ? 1 : 0;
+          break;
+        case Op.DGT:
+          dsp -= 2;
+          istack[isp++] = dstack[dsp] > dstack[dsp + 1] ? 1 : 0;
+          break;
+        case Op.DGE:
+          dsp -= 2;
+          istack[isp++] = dstack[dsp] >= dstack[dsp + 1] ? 1 : 0;
+          break;
+        case Op.SEQ:
+          osp -= 2;
+          istack[isp++] = ostack[osp] == ostack[osp + 1] ? 1 : 0;
+          ostack[osp] = ostack[osp + 1] = null;
+          break;
+        case Op.SNE:
+          osp -= 2;
+          istack[isp++] = ostack[osp] != ostack[osp + 1] ? 1 : 0;
+          ostack[osp] = ostack[osp + 1] = null;
+          break;
+        case Op.NOT:
+          istack[isp - 1] ^= 1;
+          break;
+
+        case Op.JUMP:
+          pc = code[pc];
+          break;
+        case Op.JUMPF:
+          pc = istack[--isp] == 0 ? code[pc] : pc + 1;
+          break;
+        case Op.JUMPT:
+          pc = istack[--isp] != 0 ? code[pc] : pc + 1;
+          break;
+        case Op.JEQ:
+          isp -= 2;
+          pc = istack[isp] == istack[isp + 1] ? code[pc] : pc + 1;
+          break;
+        case Op.JNE:
+          isp -= 2;
+          pc = istack[isp] != istack[isp + 1] ? code[pc] : pc + 1;
+          break;
+        case Op.JLT:
+          isp -= 2;
+          pc = istack[isp] < istack[isp + 1] ? code[pc] : pc + 1;
+          break;
+        case Op.JLE:
+          isp -= 2;
+          pc = istack[isp] <= istack[isp + 1] ? code[pc] : pc + 1;
+          break;
+        case Op.JGT:
+          isp -= 2;
+          pc = istack[isp] > istack[isp + 1] ? code[pc] : pc + 1;
+          break;
+        case Op.JGE:
+          isp -= 2;
+          pc = istack[isp] >= istack[isp + 1] ? code[pc] : pc + 1;
+          break;
+
+        case Op.PRINTI:
+          out.print(istack[--isp]);
+          if (code[pc++] != 0) out.println();
+          break;
+        case Op.PRINTD:
+          out.print(dstack[--dsp]);
+          if (code[pc++] != 0) out.println();
+          break;
+        case Op.PRINTZ:
+          out.print(istack[--isp] != 0);
+          if (code[pc++] != 0) out.println();
+          break;
+        case Op.PRINTS:
+          out.print((String) ostack[--osp]);
+          ostack[osp] = null;
+          if (code[pc++] != 0) out.println();
+          break;
+
+        case Op.SBNEW:
+          ostack[osp++] = new StringBuilder();
+          break;
+        case Op.SBI:
+          ((StringBuilder) ostack[osp - 1]).append(istack[--isp]);
+          break;
+        case Op.SBD:
+          ((StringBuilder) ostack[osp - 1]).append(dstack[--dsp]);
+          break;
+        case Op.SBZ:
+          ((StringBuilder) ostack[osp - 1]).append(istack[--isp] != 0);
+          break;
+        case Op.SBS:
+          osp--;
+          ((StringBuilder) ostack[osp - 1]).append((String) ostack[osp]);
+          ostack[osp] = null;
+          break;
+        case Op.SBEND:
+          ostack[osp - 1] = ostack[osp - 1].toString();
+          break;
+
+        default:
+          // As leituras são raras, então ficam fora do caminho comum.
+          if (input == null) {
+            input = new java.util.Scanner(
+                new BufferedReader(new InputStreamReader(in)));
+          }
+          out.flush();
+
+          try {
+            switch (code[start]) {
+              case Op.READI:
+                istack[isp++] = input.nextInt();
+                break;
+              case Op.READD:
+                dstack[dsp++] = input.nextDouble();
+                break;
+              case Op.READZ:
+                istack[isp++] = input.nextBoolean() ? 1 : 0;
+                break;
+              case Op.READS:
+                ostack[osp++] = input.nextLine();
+                break;
+              default:
+                throw new ArrayIndexOutOfBoundsException(start);
+            }
+          } catch (InputMismatchException e) {
+            throw new VmException(chunk.line(start), "Invalid input.");
+          } catch (NoSuchElementException e) {
+            throw new VmException(chunk.line(start),
+                "Unexpected end of input.");
+          }
+          break;
+      }
+    }
+  }
+
+}
@@ -0,0 +1,143 @@
+package br.edu.ufabc.microkotlin;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static org.junit.Assert.assertEquals;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.InputStream;
+import java.io.PrintStream;
+import java.net.URISyntaxException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import javax.tools.ToolProvider;
+import org.junit.Assume;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * Executa os programas em todos os backends, com e sem as otimizações,
+ * e verifica se todos mostram a mesma saída.
+ *
+ * A referência é o backend Java sem otimizações, cujo resultado é
+ * definido pelo javac. Além dos exemplos, os programas dos recursos
+ * do teste cobrem as sequências de escape dos literais e os casos
+ * limite da aritmética de Int e Double.
+ */
+public class BackendsTest {
+
+  /**
+   * Saída e código de retorno de uma execução.
+   */
+  private static class Result {
+    final int status;
+    final String out;
+    final String err;
+
+    Result(int status, String out, String err) {
+      this.status = status;
+      this.out = out;
+      this.err = err;
+    }
+  }
+
+  @Before
+  public void requireCompiler() {
+    Assume.assumeNotNull(ToolProvider.getSystemJavaCompiler());
+  }
+
+  @Test
+  public void calculoArea() throws Exception {
+    assertSameOutput(Paths.get("samples", "CalculoArea.kt"),
+        "5\ntrue\n3\nfalse\n");
+  }
+
+  @Test
+  public void fatorial() throws Exception {
+    assertSameOutput(Paths.get("samples", "Fatorial.kt"), "12\n");
+  }
+
+  @Test
+  public void fibonacci() throws Exception {
+    assertSameOutput(Paths.get("samples", "Fibonacci.kt"), "15\n");
+  }
+
+  @Test
+  public void piramide() throws Exception {
+    assertSameOutput(Paths.get("samples", "Piramide.kt"), "5\n");
+  }
+
+  @Test
+  public void escapeLiterals() throws Exception {
+    assertSameOutput(resource("EscapeLiterals.kt"), "a b\n");
+  }
+
+  @Test
+  public void numberEdges() throws Exception {
+    assertSameOutput(resource("NumberEdges.kt"), "46341\n0.1\n");
+  }
+
+  private static Path resource(String name) throws URISyntaxException {
+    return Paths.get(BackendsTest.class.getResource(name).toURI());
+  }
+
+  /**
+   * Compara a saída de cada backend, com e sem as otimizações, com a
+   * saída do backend Java sem otimizações.
+   */
+  private static void assertSameOutput(Path file, String input)
+      throws Exception {
+    Result expected = run(file, input, Options.Backend.JAVA, false);
+    assertEquals(file + ": " + expected.err, 0, expected.status);
+
+    for (Options.Backend backend : Options.Backend.values()) {
+      for (boolean optimize : new boolean[] {false, true}) {
+        String name = file.getFileName() + " --backend="
+            + backend.name().toLowerCase()
+            + (optimize ? "" : " --no-optimize");
+        Result actual = run(file, input, backend, optimize);
+
+        assertEquals(name + ": " + actual.err, 0, actual.status);
+        assertEquals(name, expected.out, actual.out);
+      }
+    }
+  }
+
+  /**
+   * Executa o programa com --run, trocando a entrada e a saída padrão
+   * durante a execução.
+   */
+  private static synchronized Result run(Path file, String input,
+      Options.Backend backend, boolean optimize) throws Exception {
+    Options options = new Options();
+    options.backend = backend;
+    options.optimize = optimize;
+    options.run = true;
+
+    ByteArrayOutputStream out = new ByteArrayOutputStream();
+    ByteArrayOutputStream err = new ByteArrayOutputStream();
+    InputStream systemIn = System.in;
+    PrintStream systemOut = System.out;
+    int status;
+
+    try {
+      System.setIn(new ByteArrayInputStream(input.getBytes(UTF_8)));
+      System.setOut(stream(out));
+      status = new ProgramRunner(options, stream(err)).run(file.toString());
+    } finally {
+      System.setIn(systemIn);
+      System.setOut(systemOut);
+    }
+
+    return new Result(status, out.toString(), err.toString());
+  }
+
+  /**
+   * Cria uma saída com a codificação padrão, como a do console, que é
+   * também a usada pela saída com buffer dos programas gerados.
+   */
+  private static PrintStream stream(ByteArrayOutputStream bytes) {
+    return new PrintStream(bytes, true);
+  }
+
+}
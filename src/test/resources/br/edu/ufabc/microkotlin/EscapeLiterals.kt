@@ -0,0 +1,20 @@
+val TAB: String = "\t";
+val QUOTE: String = "say \"hi\"";
+
+fun main() {
+  printLn("a\tb\nc\rd\be\ff");
+  printLn("q\"uote\' and back\\slash");
+  printLn("octal \101\60\0601\477\7");
+  printLn("unicode A\uu0042 \\u0043");
+  printLn("a\\");
+  printLn("\t" == "\u0009");
+  printLn(TAB == "\11");
+  printLn(TAB + "\\" + "n" + "\1" + "01");
+  printLn(QUOTE + 1 + TAB + 2.5);
+  var s: String = "x\ty";
+  s = s + "\\" + s;
+  printLn(s);
+  printLn(s == "x\ty\\x\ty");
+  var line: String = readString();
+  printLn(line + "\t|" + line);
+}
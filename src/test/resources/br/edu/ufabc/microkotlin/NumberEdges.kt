@@ -0,0 +1,38 @@
+val BIG: Int = 46341 * 46341;
+val HALF: Double = 1 / 2.5;
+val NEG: Int = 0 - 7;
+val TEN: Double = 10;
+
+fun main() {
+  var n: Int = readInt();
+  var d: Double = readDouble();
+  printLn(BIG);
+  printLn(46341 * n);
+  printLn(NEG / 2);
+  printLn(NEG % 2);
+  printLn(7 / (0 - 2));
+  printLn(-7.5 % 2);
+  printLn(n / 3 * 3 + n % 3);
+  printLn(HALF);
+  printLn(TEN);
+  printLn(TEN / 4);
+  printLn(10000000);
+  printLn(9999999);
+  printLn(0.5 * 3);
+  printLn(1 / 3.5);
+  printLn(d * 3);
+  printLn(0.1 + 0.2);
+  printLn(n + d);
+  printLn(n == 46341.0);
+  printLn(2.5 > n);
+  printLn(1 < 2.5 == !(2 > 3));
+  printLn("s" + n + d + (n + d) + -n);
+  var i: Int = 1;
+  var f: Double = 1;
+  do {
+    i = i * 3;
+    f = f * 3;
+  } while (i > 0);
+  printLn(i);
+  printLn(f);
+}